@@ -0,0 +1,137 @@
+package com.vuongho.parkinglot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a park and a leave on a lot filled as {@link Traces#fill} leaves it,
+ * a garage of levels of {@code LEVEL} slots with the ramp in the middle of
+ * each level and one slot in twenty for EVs, under each built-in
+ * {@link AllocationStrategy}. {@code none} is the lot without a strategy,
+ * and {@code nearestScan} finds the nearest empty slot by scanning them all,
+ * as a strategy without an index of its own would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationBenchmark {
+    private static final int LEVEL = 10_000;
+    private static final IntToDoubleFunction FROM_RAMP = slot -> Math.abs(slot % LEVEL - LEVEL / 2) + slot / LEVEL * 50;
+    private static final IntUnaryOperator EV_SLOTS = slot -> slot % 20 == 0 ? 1 : 0;
+    private static final int[] EV_CLASSES = {1, 0};
+    private static final int[] OTHER_CLASSES = {0};
+    private static final Function<Car, int[]> EV_FIRST = car -> car.getLicensePlate().charAt(5) < 'I'
+            ? EV_CLASSES : OTHER_CLASSES;
+
+    @Param({"1000000"})
+    public int capacity;
+
+    @Param({"none", "lowestSlot", "nearestTo", "balancedLevels", "slotClasses", "zoned", "nearestScan"})
+    public String policy;
+
+    private ParkingLot parkingLot;
+    private Car[] cars;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        parkingLot = Traces.fill(capacity, 0.95, 8, 42);
+        switch (policy) {
+            case "lowestSlot":
+                parkingLot.setAllocationStrategy(AllocationStrategy.lowestSlot());
+                break;
+            case "nearestTo":
+                parkingLot.setAllocationStrategy(AllocationStrategy.nearestTo(FROM_RAMP));
+                break;
+            case "balancedLevels":
+                parkingLot.setAllocationStrategy(AllocationStrategy.balancedLevels(LEVEL));
+                break;
+            case "slotClasses":
+                parkingLot.setAllocationStrategy(AllocationStrategy.slotClasses(EV_SLOTS, EV_FIRST));
+                break;
+            case "zoned":
+                parkingLot.setAllocationStrategy(AllocationStrategy.zoned(
+                        slot -> slot / LEVEL * 2 + EV_SLOTS.applyAsInt(slot), zone -> zone % 2,
+                        FROM_RAMP, EV_FIRST, true));
+                break;
+            case "nearestScan":
+                parkingLot.setAllocationStrategy(new NearestScan(parkingLot));
+                break;
+            default:
+                break;
+        }
+        cars = new Car[26];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = new Car(Traces.plate(capacity * 2 + i), "White");
+        }
+    }
+
+    @Benchmark
+    public Car parkAndLeave() {
+        Car car = cars[next++ % cars.length];
+        return parkingLot.tryLeave(parkingLot.tryPark(car));
+    }
+
+    /**
+     * Takes the empty slot nearest to the ramp by scanning every slot.
+     */
+    private static final class NearestScan implements AllocationStrategy {
+        private final ParkingLot parkingLot;
+
+        NearestScan(ParkingLot parkingLot) {
+            this.parkingLot = parkingLot;
+        }
+
+        @Override
+        public void reset(int capacity) {
+            // reads the lot itself
+        }
+
+        @Override
+        public void resize(int oldCapacity, int newCapacity) {
+            // reads the lot itself
+        }
+
+        @Override
+        public int select(Car car) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int slot = 0; slot < parkingLot.getCapacity(); slot++) {
+                double distance = FROM_RAMP.applyAsDouble(slot);
+                if (distance < bestDistance && parkingLot.getCar(slot) == null) {
+                    best = slot;
+                    bestDistance = distance;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public void occupied(int slot) {
+            // reads the lot itself
+        }
+
+        @Override
+        public void freed(int slot) {
+            // reads the lot itself
+        }
+    }
+}
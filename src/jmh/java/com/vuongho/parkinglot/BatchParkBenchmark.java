@@ -0,0 +1,81 @@
+package com.vuongho.parkinglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parks a burst of arrivals in a lot filled as {@link Traces#fill} leaves it,
+ * then makes them leave again, one car at a time or in batches through
+ * {@link ParkingLot#parkAll(List)} and {@link ParkingLot#leaveAll(int[])}.
+ * When the burst is larger than the free slots, the rest of it is rejected.
+ * <pre>
+ * gradlew jmh -Pjmh="BatchParkBenchmark -p capacity=100000"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchParkBenchmark {
+    @Param({"1000", "100000"})
+    public int capacity;
+
+    @Param({"0.5", "0.95"})
+    public double occupancy;
+
+    @Param({"256"})
+    public int burst;
+
+    private ParkingLot parkingLot;
+    private List<Car> arrivals;
+    private int[] slots;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        parkingLot = Traces.fill(capacity, occupancy, 8, 42);
+        String[] colors = Traces.colors(8);
+        arrivals = new ArrayList<>(burst);
+        for (int i = 0; i < burst; i++) {
+            arrivals.add(new Car(Traces.plate(capacity + i), colors[i & 7]));
+        }
+        slots = new int[burst];
+    }
+
+    @Benchmark
+    public int oneByOne() throws ParkingLotException {
+        int parked = 0;
+        for (Car car : arrivals) {
+            try {
+                slots[parked] = parkingLot.park(car);
+                parked++;
+            } catch (ParkingLotException e) {
+                // rejected
+            }
+        }
+        for (int i = 0; i < parked; i++) {
+            parkingLot.leave(slots[i]);
+        }
+        return parked;
+    }
+
+    @Benchmark
+    public Car[] batched() {
+        return parkingLot.leaveAll(parkingLot.parkAll(arrivals));
+    }
+}
@@ -0,0 +1,87 @@
+package com.vuongho.parkinglot;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Commands per second of the file mode of {@link ParkingLotMgr#main}, with
+ * {@link ParkingLotMgr#replay} against the former loop of
+ * {@code readLine} and an auto-flushing {@code println}, like
+ * {@code System.out}'s. Both write to {@code /dev/null}, so the cost of the
+ * write calls is kept but not the cost of a terminal.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(BatchReplayBenchmark.LINES)
+public class BatchReplayBenchmark {
+    static final int LINES = 200000;
+
+    private Path trace;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        trace = Files.createTempFile("trace", ".txt");
+        Files.write(trace, Traces.gateLog(LINES - 1, 1000, 42), StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(trace);
+    }
+
+    @Benchmark
+    public void lineByLine() throws IOException {
+        ParkingLotMgr pMgr = new ParkingLotMgr();
+        try (BufferedReader inputReader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(trace.toFile()), StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(new BufferedOutputStream(
+                    new FileOutputStream("/dev/null"), 8192), true)) {
+            String command;
+            while ((command = inputReader.readLine()) != null) {
+                out.println(pMgr.giveCommand(command));
+            }
+        }
+    }
+
+    @Benchmark
+    public void replay() throws IOException {
+        ParkingLotMgr pMgr = new ParkingLotMgr();
+        try (FileChannel input = FileChannel.open(trace);
+                Writer output = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(Paths.get("/dev/null").toFile()), StandardCharsets.UTF_8), 1 << 20)) {
+            pMgr.replay(input, output);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.vuongho.parkinglot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link ParkingLotMgr#giveCommand(CharSequence)} against the
+ * {@code split(" ")} path of {@link ParkingLotMgr#processCommand(String[])}
+ * on a cycle of commands that leaves the lot unchanged, and the tokenizer
+ * path with and without {@link CommandMetrics}. Run it with {@code -prof gc}
+ * to see the bytes allocated per command.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParsingBenchmark {
+    private static final String[] COMMANDS = {
+        "leave 4",
+        "park EK3333 Red",
+        "slot_number_for_id EK3333",
+        "leave 4",
+        "park EK3333 Red",
+        "slots_for_unknown_command Red",
+    };
+
+    private ParkingLotMgr parkingLotMgr;
+    private ParkingLotMgr measuredMgr;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLotMgr = createMgr();
+        measuredMgr = createMgr();
+        measuredMgr.enableMetrics();
+    }
+
+    private static ParkingLotMgr createMgr() {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        parkingLotMgr.createParkingLot(6);
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "White");
+        parkingLotMgr.park("6TRJ24", "Black");
+        parkingLotMgr.park("EK3333", "Red");
+        return parkingLotMgr;
+    }
+
+    private String nextCommand() {
+        String command = COMMANDS[next];
+        next = next == COMMANDS.length - 1 ? 0 : next + 1;
+        return command;
+    }
+
+    @Benchmark
+    public String split() {
+        return parkingLotMgr.processCommand(nextCommand().split(" "));
+    }
+
+    @Benchmark
+    public String tokenizer() {
+        return parkingLotMgr.giveCommand(nextCommand());
+    }
+
+    @Benchmark
+    public String tokenizerWithMetrics() {
+        return measuredMgr.giveCommand(nextCommand());
+    }
+}
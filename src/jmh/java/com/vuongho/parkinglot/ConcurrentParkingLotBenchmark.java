@@ -0,0 +1,112 @@
+package com.vuongho.parkinglot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a park followed by a leave, shared by all benchmark threads,
+ * on a {@link ConcurrentParkingLot} against a plain {@link ParkingLot} behind
+ * a single lock. Run it with increasing thread counts to see the scaling,
+ * e.g. {@code gradlew jmh -Pjmh="ConcurrentParkingLot -t 4"}. The
+ * {@code reports} group renders the status of the concurrent lot on one
+ * thread while a gate parks and leaves on another.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentParkingLotBenchmark {
+    @State(Scope.Benchmark)
+    public static class Lots {
+        @Param({"100000"})
+        public int capacity;
+
+        ConcurrentParkingLot concurrentLot;
+        ParkingLot lockedLot;
+
+        @Setup(Level.Trial)
+        public void setUp() throws ParkingLotException {
+            concurrentLot = new ConcurrentParkingLot(capacity);
+            lockedLot = new ParkingLot(capacity);
+            // half full, so that the free slots are spread across the lot
+            for (int slot = 0; slot < capacity; slot++) {
+                concurrentLot.park("C" + slot, "White");
+                lockedLot.park("C" + slot, "White");
+            }
+            for (int slot = 0; slot < capacity; slot += 2) {
+                concurrentLot.leave(slot);
+                lockedLot.leave(slot);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private static int gates = 0;
+        Car[] cars = new Car[1024];
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int gate;
+            synchronized (Gate.class) {
+                gate = gates++;
+            }
+            for (int i = 0; i < cars.length; i++) {
+                cars[i] = new Car("G" + gate + "N" + i, i % 2 == 0 ? "White" : "Black");
+            }
+        }
+
+        Car nextCar() {
+            Car car = cars[next];
+            next = (next + 1) & (cars.length - 1);
+            return car;
+        }
+    }
+
+    @Benchmark
+    public Car concurrent(Lots lots, Gate gate) throws ParkingLotException {
+        return lots.concurrentLot.leave(lots.concurrentLot.park(gate.nextCar()));
+    }
+
+    @Benchmark
+    public ParkingLotSnapshot snapshot(Lots lots) {
+        return lots.concurrentLot.snapshot();
+    }
+
+    @Benchmark
+    @Group("reports")
+    @GroupThreads(1)
+    public Car reportsGate(Lots lots, Gate gate) throws ParkingLotException {
+        return lots.concurrentLot.leave(lots.concurrentLot.park(gate.nextCar()));
+    }
+
+    @Benchmark
+    @Group("reports")
+    @GroupThreads(1)
+    public String reportsStatus(Lots lots) {
+        return lots.concurrentLot.status(false);
+    }
+
+    @Benchmark
+    public Car globalLock(Lots lots, Gate gate) throws ParkingLotException {
+        synchronized (lots.lockedLot) {
+            return lots.lockedLot.leave(lots.lockedLot.park(gate.nextCar()));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.vuongho.parkinglot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the lowest empty slot of a nearly full {@link ParkingLot}
+ * with the {@link SlotSet} index against a linear scan of the slot array.
+ * Only the last slot is empty, which is the worst case for the scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmptySlotBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int capacity;
+
+    private ParkingLot parkingLot;
+    private Car[] parkedCars;
+    private Car car;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        car = new Car("EUS687", "White");
+        parkingLot = new ParkingLot(capacity);
+        parkedCars = new Car[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            parkingLot.park(new Car("C" + slot, "White"));
+            parkedCars[slot] = car;
+        }
+        parkingLot.leave(capacity - 1);
+        parkedCars[capacity - 1] = null;
+    }
+
+    @Benchmark
+    public int slotSet() throws ParkingLotException {
+        int slot = parkingLot.park(car);
+        parkingLot.leave(slot);
+        return slot;
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int slot = -1;
+        for (int i = 0; i < capacity; i++) {
+            if (parkedCars[i] == null) {
+                slot = i;
+                break;
+            }
+        }
+        parkedCars[slot] = car;
+        parkedCars[slot] = null;
+        return slot;
+    }
+}
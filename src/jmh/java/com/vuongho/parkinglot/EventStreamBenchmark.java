@@ -0,0 +1,73 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a park and a leave on a lot filled as {@link Traces#fill} leaves it,
+ * without events, publishing them on a {@link ParkingEventStream} nobody
+ * reads, and publishing them while a {@link ParkingEventFileSink} writes
+ * them to a file from its own thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventStreamBenchmark {
+    @Param({"100000"})
+    public int capacity;
+
+    @Param({"none", "stream", "file"})
+    public String consumer;
+
+    private ParkingLot parkingLot;
+    private Car car;
+    private Path file;
+    private ParkingEventFileSink sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException, IOException {
+        parkingLot = Traces.fill(capacity, 0.95, 8, 42);
+        car = new Car(Traces.plate(capacity), "White");
+        if (!consumer.equals("none")) {
+            ParkingEventStream stream = new ParkingEventStream(1 << 16);
+            parkingLot.publishEvents(stream);
+            if (consumer.equals("file")) {
+                file = Files.createTempFile("parking_lot", ".events");
+                sink = new ParkingEventFileSink(stream, file);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (sink != null) {
+            System.out.println("\nEvents lost by the sink: " + sink.getSubscription().getMissed());
+            sink.close();
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public Car parkAndLeave() {
+        return parkingLot.tryLeave(parkingLot.tryPark(car));
+    }
+}
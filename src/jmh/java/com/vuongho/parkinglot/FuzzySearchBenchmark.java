@@ -0,0 +1,95 @@
+package com.vuongho.parkinglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up a misread plate, a parked plate with one character replaced, in
+ * a lot that is 95% full, with {@link ParkingLot#getSlotsNumberForIdsNear}
+ * against a Levenshtein scan of every slot. The plates are either numbered
+ * as {@link Traces#plate} does, so that they all start with {@code AA} and
+ * thousands lie within two edits of any plate, or random seven-character
+ * plates of letters and digits, as cameras read them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FuzzySearchBenchmark {
+    @Param({"100000"})
+    public int capacity;
+
+    @Param({"1", "2"})
+    public int maxEdits;
+
+    @Param({"sequential", "random"})
+    public String plates;
+
+    private ParkingLot parkingLot;
+    private String misread;
+    private Car car;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        if (plates.equals("sequential")) {
+            parkingLot = Traces.fill(capacity, 0.95, 8, 42);
+        } else {
+            String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+            Random random = new Random(42);
+            parkingLot = new ParkingLot(capacity);
+            while (parkingLot.getCurrentSize() < capacity * 0.95) {
+                char[] plate = new char[7];
+                for (int i = 0; i < plate.length; i++) {
+                    plate[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+                }
+                parkingLot.tryPark(new Car(new String(plate), "White"));
+            }
+        }
+        String plate = parkingLot.getCar(parkingLot.getCurrentSize() / 2).getLicensePlate();
+        misread = plate.substring(0, 3) + '8' + plate.substring(4);
+        parkingLot.getSlotsNumberForIdsNear(misread, maxEdits, PlateDistance.ANPR);
+        car = new Car(Traces.plate(capacity), "White");
+    }
+
+    @Benchmark
+    public List<Integer> index() {
+        return parkingLot.getSlotsNumberForIdsNear(misread, maxEdits, PlateDistance.ANPR);
+    }
+
+    @Benchmark
+    public List<Integer> scan() {
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            Car parked = parkingLot.getCar(slot);
+            if (parked != null && PlateDistance.LEVENSHTEIN.distance(misread, parked.getLicensePlate()) <= maxEdits) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * The cost the deletion index adds to a park and a leave once built.
+     */
+    @Benchmark
+    public Car parkAndLeave() {
+        return parkingLot.tryLeave(parkingLot.tryPark(car));
+    }
+}
@@ -0,0 +1,81 @@
+package com.vuongho.parkinglot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times {@link ParkingLotMgr#giveCommand(CharSequence)} end to end, one line
+ * of a {@link Traces#gateLog(int, int, double, int, long)} trace at a time,
+ * with the lot filled to an occupancy before each iteration. Past the end of
+ * the trace, it starts over on the lot as it is, so a long iteration also
+ * times some rejected commands.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GiveCommandBenchmark {
+    private static final int LINES = 1 << 20;
+
+    @Param({"1000", "100000"})
+    public int capacity;
+
+    @Param({"0.5", "0.95"})
+    public double occupancy;
+
+    @Param({"8", "256"})
+    public int colorCount;
+
+    /**
+     * Whether the {@link CommandMetrics} are recorded, to keep their cost in
+     * check.
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private String[] trace;
+    private int prefill;
+    private ParkingLotMgr parkingLotMgr;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUpTrace() {
+        List<String> lines = Traces.gateLog(LINES, capacity, occupancy, colorCount, 42);
+        trace = lines.toArray(new String[0]);
+        prefill = 1 + Traces.prefill(capacity, occupancy);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpLot() {
+        parkingLotMgr = new ParkingLotMgr();
+        if (metrics) {
+            parkingLotMgr.enableMetrics();
+        }
+        for (int i = 0; i < prefill; i++) {
+            parkingLotMgr.giveCommand(trace[i]);
+        }
+        next = prefill;
+    }
+
+    @Benchmark
+    public String giveCommand() {
+        String command = trace[next];
+        next = next == trace.length - 1 ? prefill : next + 1;
+        return parkingLotMgr.giveCommand(command);
+    }
+}
@@ -0,0 +1,53 @@
+package com.vuongho.parkinglot;
+
+import java.util.function.IntFunction;
+
+/**
+ * Measures the retained heap of a full {@link ParkingLot} for each
+ * {@link SlotStorage}, as the used heap after garbage collection with and
+ * without the lot. Run it with
+ * <pre>
+ * gradlew jmhClasses
+ * java -cp build/classes/java/main:build/classes/java/jmh com.vuongho.parkinglot.HeapFootprint [capacity]
+ * </pre>
+ * Off-heap plates are not counted by the heap figure and are reported apart.
+ */
+public final class HeapFootprint {
+    private HeapFootprint() {
+    }
+
+    public static void main(String[] args) throws ParkingLotException {
+        int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        measure("heap", capacity, HeapSlotStorage::new);
+        measure("columnar", capacity, ColumnarSlotStorage::new);
+        measure("columnar, off-heap plates", capacity, c -> new ColumnarSlotStorage(c, 16, true));
+        System.out.println("(off-heap plates: " + (long) capacity * 16 / 1024 / 1024 + " MiB outside the heap)");
+    }
+
+    private static void measure(String name, int capacity, IntFunction<SlotStorage> storage)
+            throws ParkingLotException {
+        long before = usedHeap();
+        ParkingLot parkingLot = new ParkingLot(storage.apply(capacity));
+        for (int i = 0; i < capacity; i++) {
+            // fresh strings for every car, as parsed commands would produce
+            parkingLot.park(new Car(Traces.plate(i), new String(Traces.COLORS[i & 7].toCharArray())));
+        }
+        long after = usedHeap();
+        System.out.printf("%-28s %8.1f MiB, %5.1f bytes per slot%n", name,
+                (after - before) / 1024.0 / 1024.0, (after - before) / (double) capacity);
+        if (parkingLot.getCurrentSize() != capacity) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // a few rounds, until the figure settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,119 @@
+package com.vuongho.parkinglot;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the holds of a lot of {@code capacity} slots with {@code pending}
+ * holds spread over the next day: a second of time passing, which expires
+ * about {@code pending / 86400} holds that are then booked again, and a
+ * hold that is cancelled. {@code executorScheduleAndCancel} is the same
+ * hold and cancel as a task on a {@link ScheduledThreadPoolExecutor} with as
+ * many tasks pending.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoldBenchmark {
+    private static final long SECOND = 1000;
+    private static final long DAY = 86_400 * SECOND;
+
+    @State(Scope.Thread)
+    public static class Holds {
+        @Param({"1000000"})
+        public int capacity;
+
+        @Param({"900000"})
+        public int pending;
+
+        ParkingLot parkingLot;
+        Car[] cars;
+        Random random = new Random(42);
+        long now = 1_700_000_000_000L;
+        int booked;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            parkingLot = new ParkingLot(capacity);
+            cars = new Car[capacity + capacity / 10];
+            for (int i = 0; i < cars.length; i++) {
+                cars[i] = new Car(Traces.plate(i), "White");
+            }
+            while (booked < pending) {
+                book();
+            }
+        }
+
+        /**
+         * Holds a slot for the next booked car, until a time in the next
+         * day.
+         */
+        void book() {
+            parkingLot.hold(cars[booked++ % cars.length], now + SECOND + (long) (random.nextDouble() * DAY));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Executor {
+        @Param({"900000"})
+        public int pending;
+
+        ScheduledThreadPoolExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            executor = new ScheduledThreadPoolExecutor(1);
+            executor.setRemoveOnCancelPolicy(true);
+            Random random = new Random(42);
+            for (int i = 0; i < pending; i++) {
+                executor.schedule(() -> { }, SECOND + (long) (random.nextDouble() * DAY), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int tick(Holds holds) {
+        holds.now += SECOND;
+        int expired = holds.parkingLot.expireHolds(holds.now);
+        for (int i = 0; i < expired; i++) {
+            holds.book();
+        }
+        return expired;
+    }
+
+    @Benchmark
+    public boolean holdAndCancel(Holds holds) {
+        Car car = holds.cars[holds.booked % holds.cars.length];
+        holds.parkingLot.hold(car, holds.now + DAY / 2);
+        return holds.parkingLot.cancelHold(car.getLicensePlate());
+    }
+
+    @Benchmark
+    public boolean executorScheduleAndCancel(Executor executor) {
+        ScheduledFuture<?> task = executor.executor.schedule(() -> { }, DAY / 2, TimeUnit.MILLISECONDS);
+        return task.cancel(false);
+    }
+}
@@ -0,0 +1,88 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recovery time of a {@link ParkingLotMgr} from a {@link CommandJournal} of
+ * {@code operations} park and leave commands on a lot of {@code capacity}
+ * slots, with a snapshot every {@code snapshotInterval} commands. An interval
+ * larger than the journal means a full replay. The defaults are sized for a
+ * laptop; the 100M-command case is
+ * {@code -p operations=100000000}, which needs about 2 GB of disk.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class JournalRecoveryBenchmark {
+    @Param({"1000000"})
+    public int capacity;
+
+    @Param({"10000000"})
+    public int operations;
+
+    @Param({"1000000", "2147483647"})
+    public int snapshotInterval;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal_benchmark");
+        try (CommandJournal journal = new CommandJournal(directory, 1024, false, snapshotInterval)) {
+            ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+            parkingLotMgr.createParkingLot(capacity);
+            Random random = new Random(42);
+            int[] occupied = new int[capacity];
+            int size = 0;
+            int next = 0;
+            // keep the lot around 90% full
+            for (int i = 0; i < operations; i++) {
+                if (size == 0 || (size < capacity && random.nextInt(capacity) >= size * 9 / 10)) {
+                    String message = parkingLotMgr.park(Traces.plate(next++), Traces.COLORS[i & 7]);
+                    occupied[size++] = Integer.parseInt(message.substring(message.lastIndexOf(' ') + 1));
+                } else {
+                    int index = random.nextInt(size);
+                    parkingLotMgr.leave(occupied[index]);
+                    occupied[index] = occupied[--size];
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int recover() throws IOException {
+        try (CommandJournal journal = new CommandJournal(directory, 1024, false, snapshotInterval)) {
+            return journal.recover().getCurrentSize();
+        }
+    }
+}
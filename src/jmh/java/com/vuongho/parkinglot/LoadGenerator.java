@@ -0,0 +1,194 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load generator for {@link ParkingLotServer}: it opens many connections
+ * and has each play a gate, over and over. A gate sends a round of pipelined
+ * commands, a park (or a leave of the slot it parked in) followed by plate
+ * queries, and sends the next round once every message of the round is
+ * back. It reports the messages per second and the latency of each message
+ * from the start of its round. Start a server, then run
+ * <pre>
+ * gradlew jmhClasses
+ * java -cp build/classes/java/main:build/classes/java/jmh com.vuongho.parkinglot.LoadGenerator \
+ *     [host] [port] [connections] [depth] [seconds]
+ * </pre>
+ * The lot should have a slot per connection, or parks are rejected.
+ */
+public final class LoadGenerator {
+    private static final byte NEWLINE = '\n';
+
+    private final List<Gate> gates = new ArrayList<>();
+    private final int depth;
+    private final LongAdder messages = new LongAdder();
+    private volatile LatencyHistogram latencies = new LatencyHistogram();
+    private volatile boolean running = true;
+
+    private LoadGenerator(int depth) {
+        this.depth = depth;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+        LoadGenerator generator = new LoadGenerator(depth);
+        Selector[] selectors = new Selector[threads];
+        for (int i = 0; i < threads; i++) {
+            selectors[i] = Selector.open();
+        }
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            Gate gate = new Gate(channel, Traces.plate(i), Traces.COLORS[i & 7]);
+            generator.gates.add(gate);
+            channel.register(selectors[i % threads], SelectionKey.OP_READ, gate);
+        }
+        System.out.println("Connected " + connections + " gates, " + depth + " commands in flight each");
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Selector selector = selectors[i];
+            Thread worker = new Thread(() -> generator.run(selector), "load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        int warmup = Math.max(1, seconds / 4);
+        Thread.sleep(warmup * 1000L);
+        generator.latencies = new LatencyHistogram();
+        generator.messages.reset();
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long count = generator.messages.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        LatencyHistogram latencies = generator.latencies;
+        generator.running = false;
+        for (Selector selector : selectors) {
+            selector.wakeup();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.printf("%.0f messages/s, latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                count / elapsed, latencies.getP50Nanos() / 1e6, latencies.getP99Nanos() / 1e6,
+                latencies.getP999Nanos() / 1e6, latencies.getMaxNanos() / 1e6);
+        for (Gate gate : generator.gates) {
+            gate.channel.close();
+        }
+    }
+
+    private void run(Selector selector) {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                send((Gate) key.attachment());
+            }
+            while (running) {
+                selector.select(key -> {
+                    try {
+                        receive((Gate) key.attachment());
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void send(Gate gate) throws IOException {
+        StringBuilder round = new StringBuilder();
+        if (gate.slot == -1) {
+            round.append("park ").append(gate.plate).append(' ').append(gate.color).append('\n');
+        } else {
+            round.append("leave ").append(gate.slot).append('\n');
+        }
+        for (int i = 1; i < depth; i++) {
+            round.append("slot_number_for_id ").append(gate.plate).append('\n');
+        }
+        ByteBuffer out = ByteBuffer.wrap(round.toString().getBytes(StandardCharsets.US_ASCII));
+        gate.pending = depth;
+        gate.first.setLength(0);
+        gate.roundStart = System.nanoTime();
+        while (out.hasRemaining()) {
+            gate.channel.write(out);
+        }
+    }
+
+    private void receive(Gate gate) throws IOException {
+        ByteBuffer in = gate.in;
+        if (gate.channel.read(in) == -1) {
+            throw new IOException("The server closed " + gate.plate);
+        }
+        in.flip();
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (gate.pending == depth) {
+                gate.first.append((char) b);
+            }
+            if (b == NEWLINE && gate.lastByte == NEWLINE) {
+                // the empty line that ends a message
+                latencies.record(System.nanoTime() - gate.roundStart);
+                messages.increment();
+                if (gate.pending == depth) {
+                    gate.parsed();
+                }
+                b = 0;
+                if (--gate.pending == 0) {
+                    send(gate);
+                }
+            }
+            gate.lastByte = b;
+        }
+        in.clear();
+    }
+
+    /**
+     * A connection playing a gate with a single car.
+     */
+    private static final class Gate {
+        final SocketChannel channel;
+        final String plate;
+        final String color;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        final StringBuilder first = new StringBuilder();
+        int slot = -1;
+        int pending;
+        long roundStart;
+        byte lastByte;
+
+        Gate(SocketChannel channel, String plate, String color) {
+            this.channel = channel;
+            this.plate = plate;
+            this.color = color;
+        }
+
+        /**
+         * Takes the slot from the message of the park or leave that opened
+         * the round.
+         */
+        void parsed() {
+            String message = first.toString().trim();
+            if (message.startsWith("Allocated slot number: ")) {
+                slot = Integer.parseInt(message.substring("Allocated slot number: ".length()));
+            } else {
+                slot = -1;
+            }
+        }
+    }
+}
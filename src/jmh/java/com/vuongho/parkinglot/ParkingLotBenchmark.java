@@ -0,0 +1,144 @@
+package com.vuongho.parkinglot;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times each operation of {@link ParkingLot} on a lot filled to an occupancy
+ * with cars of a number of colors, scattered as {@link Traces#fill} leaves
+ * them. The operations that change the lot are timed in pairs that keep the
+ * occupancy steady. Narrow the parameters on the command line, e.g.
+ * <pre>
+ * gradlew jmh -Pjmh="ParkingLotBenchmark.leavePark -p capacity=100000 -p occupancy=0.95"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParkingLotBenchmark {
+    @Param({"1000", "100000"})
+    public int capacity;
+
+    @Param({"0.5", "0.95"})
+    public double occupancy;
+
+    @Param({"8", "256"})
+    public int colorCount;
+
+    private ParkingLot parkingLot;
+    private String[] colors;
+    private Car newCar;
+
+    /**
+     * The occupied slots, kept up to date by {@link #leavePark()}.
+     */
+    private int[] occupiedSlots;
+
+    /**
+     * The license plates of the parked cars.
+     */
+    private String[] plates;
+
+    /**
+     * A pseudo-random walk over the arrays above, cheap enough not to show.
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        parkingLot = Traces.fill(capacity, occupancy, colorCount, 42);
+        colors = Traces.colors(colorCount);
+        newCar = new Car(Traces.plate(capacity), colors[0]);
+        occupiedSlots = new int[parkingLot.getCurrentSize()];
+        plates = new String[occupiedSlots.length];
+        Car[] parkedCars = parkingLot.getParkedCars();
+        for (int slot = 0, i = 0; slot < capacity; slot++) {
+            if (parkedCars[slot] != null) {
+                occupiedSlots[i] = slot;
+                plates[i++] = parkedCars[slot].getLicensePlate();
+            }
+        }
+    }
+
+    private int nextIndex(int length) {
+        next = (next + 0x9E3779B9) & Integer.MAX_VALUE;
+        return next % length;
+    }
+
+    /**
+     * Parks a new car in the lowest empty slot, then makes it leave.
+     */
+    @Benchmark
+    public int parkLeave() throws ParkingLotException {
+        int slot = parkingLot.park(newCar);
+        parkingLot.leave(slot);
+        return slot;
+    }
+
+    /**
+     * Makes a random parked car leave, then parks it again in the lowest
+     * empty slot, which may be another one.
+     */
+    @Benchmark
+    public int leavePark() throws ParkingLotException {
+        int i = nextIndex(occupiedSlots.length);
+        Car car = parkingLot.leave(occupiedSlots[i]);
+        occupiedSlots[i] = parkingLot.park(car);
+        return occupiedSlots[i];
+    }
+
+    @Benchmark
+    public int slotNumberForId() {
+        return parkingLot.getSlotNumberForId(plates[nextIndex(plates.length)]);
+    }
+
+    @Benchmark
+    public int slotNumberForMissingId() {
+        return parkingLot.getSlotNumberForId(newCar.getLicensePlate());
+    }
+
+    @Benchmark
+    public List<Car> carsWithColor() {
+        return parkingLot.getCarsWithColor(colors[nextIndex(colors.length)]);
+    }
+
+    @Benchmark
+    public List<Integer> slotsForCarsWithColor() {
+        return parkingLot.getSlotsNumberForCarsWithColor(colors[nextIndex(colors.length)]);
+    }
+
+    /**
+     * Polls the compact status after a car left and parked again, as a
+     * dashboard would between gate events.
+     */
+    @Benchmark
+    public String statusCompact() throws ParkingLotException {
+        leavePark();
+        return parkingLot.status(false);
+    }
+
+    /**
+     * Polls the full status after a car left and parked again.
+     */
+    @Benchmark
+    public String statusFull() throws ParkingLotException {
+        leavePark();
+        return parkingLot.status(true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.vuongho.parkinglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searches the plates of a lot filled as {@link Traces#fill} leaves it with
+ * {@link ParkingLot#getSlotsNumberForIdsMatching(String)}, against a scan of
+ * every slot. With {@link Traces#plate} numbering, {@code AABCD*} matches 26
+ * plates at most, {@code *QZ} about one in 676, and {@code *XY*} has no
+ * literal prefix or suffix to narrow the search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlateSearchBenchmark {
+    @Param({"100000"})
+    public int capacity;
+
+    @Param({"AABCD*", "*QZ", "*XY*"})
+    public String pattern;
+
+    private ParkingLot parkingLot;
+    private Car car;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        parkingLot = Traces.fill(capacity, 0.95, 8, 42);
+        parkingLot.getSlotsNumberForIdsMatching(pattern);
+        car = new Car(Traces.plate(capacity), "White");
+    }
+
+    @Benchmark
+    public List<Integer> index() {
+        return parkingLot.getSlotsNumberForIdsMatching(pattern);
+    }
+
+    @Benchmark
+    public List<Integer> scan() {
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            Car parked = parkingLot.getCar(slot);
+            if (parked != null && PlateSearchIndex.matches(pattern, parked.getLicensePlate())) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * The cost the sorted index adds to a park and a leave once built.
+     */
+    @Benchmark
+    public Car parkAndLeave() {
+        return parkingLot.tryLeave(parkingLot.tryPark(car));
+    }
+}
@@ -0,0 +1,100 @@
+package com.vuongho.parkinglot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the commands that are turned down, as at peak hours: parks into a
+ * full lot, parks of a plate that is already parked, and leaves of a slot
+ * number that does not exist, both through {@link ParkingLotMgr} and on the
+ * {@link ParkingLot} itself, where the throwing {@link ParkingLot#park(Car)}
+ * is timed against {@link ParkingLot#tryPark(Car)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RejectionBenchmark {
+    private static final int CAPACITY = 1000;
+
+    private ParkingLot fullLot;
+    private ParkingLotMgr fullMgr;
+    private ConcurrentParkingLot fullConcurrentLot;
+    private ParkingLotMgr halfFullMgr;
+    private Car newCar;
+    private String parkedPlate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        fullLot = Traces.fill(CAPACITY, 1.0, 8, 42);
+        fullMgr = new ParkingLotMgr(fullLot);
+        fullConcurrentLot = new ConcurrentParkingLot(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            fullConcurrentLot.park(Traces.plate(i), "White");
+        }
+        ParkingLot halfFullLot = Traces.fill(CAPACITY, 0.5, 8, 42);
+        halfFullMgr = new ParkingLotMgr(halfFullLot);
+        newCar = new Car(Traces.plate(CAPACITY), "White");
+        for (Car car : halfFullLot.getParkedCars()) {
+            if (car != null) {
+                parkedPlate = car.getLicensePlate();
+            }
+        }
+    }
+
+    @Benchmark
+    public String mgrParkFull() {
+        return fullMgr.park(newCar.getLicensePlate(), "White");
+    }
+
+    @Benchmark
+    public String mgrParkDuplicate() {
+        return halfFullMgr.park(parkedPlate, "White");
+    }
+
+    @Benchmark
+    public String mgrLeaveInvalid() {
+        return halfFullMgr.leave(CAPACITY + 1);
+    }
+
+    @Benchmark
+    public String lotParkFull() {
+        try {
+            return "" + fullLot.park(newCar);
+        } catch (ParkingLotException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public int lotTryParkFull() {
+        return fullLot.tryPark(newCar);
+    }
+
+    @Benchmark
+    public int concurrentLotTryParkFull() {
+        return fullConcurrentLot.tryPark(newCar);
+    }
+
+    @Benchmark
+    public String concurrentLotParkFull() {
+        try {
+            return "" + fullConcurrentLot.park(newCar);
+        } catch (ParkingLotException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.vuongho.parkinglot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opens a level of {@code levelSize} slots on a lot filled as
+ * {@link Traces#fill} leaves it, then closes it again, either in place with
+ * {@link ParkingLot#resize(int)} or by building a new lot of the new
+ * capacity and parking every car again in its slot, as was needed before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResizeBenchmark {
+    @Param({"100000"})
+    public int capacity;
+
+    @Param({"heap", "columnar"})
+    public String storage;
+
+    @Param({"10000"})
+    public int levelSize;
+
+    private ParkingLot parkingLot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        ParkingLot filled = Traces.fill(capacity, 0.95, 8, 42);
+        parkingLot = lot(capacity);
+        Car[] cars = filled.getParkedCars();
+        for (int slot = 0; slot < capacity; slot++) {
+            if (cars[slot] != null) {
+                parkingLot.park(cars[slot]);
+            }
+        }
+    }
+
+    private ParkingLot lot(int capacity) {
+        return storage.equals("heap") ? new ParkingLot(capacity)
+                : new ParkingLot(new ColumnarSlotStorage(capacity));
+    }
+
+    @Benchmark
+    public ParkingLot resize() throws ParkingLotException {
+        parkingLot.resize(capacity + levelSize);
+        parkingLot.resize(capacity);
+        return parkingLot;
+    }
+
+    @Benchmark
+    public ParkingLot rebuild() throws ParkingLotException {
+        return rebuild(rebuild(parkingLot, capacity + levelSize), capacity);
+    }
+
+    /**
+     * Builds a lot of a new capacity holding the cars of a lot in the same
+     * slots, by parking them in slot order and freeing the gaps afterwards.
+     */
+    private ParkingLot rebuild(ParkingLot from, int newCapacity) throws ParkingLotException {
+        ParkingLot to = lot(newCapacity);
+        Car[] cars = from.getParkedCars();
+        int used = Math.min(cars.length, newCapacity);
+        for (int slot = 0; slot < used; slot++) {
+            to.park(cars[slot] != null ? cars[slot] : new Car("GAP" + slot, "None"));
+        }
+        for (int slot = 0; slot < used; slot++) {
+            if (cars[slot] == null) {
+                to.leave(slot);
+            }
+        }
+        return to;
+    }
+}
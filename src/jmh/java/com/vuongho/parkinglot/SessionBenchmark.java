@@ -0,0 +1,60 @@
+package com.vuongho.parkinglot;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a park and a leave on a lot filled as {@link Traces#fill} leaves it,
+ * with and without a {@link SessionTracker}, and the queries of the rolling
+ * aggregates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionBenchmark {
+    @Param({"100000"})
+    public int capacity;
+
+    @Param({"false", "true"})
+    public boolean tracked;
+
+    private ParkingLot parkingLot;
+    private SessionTracker sessions;
+    private Car car;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        parkingLot = Traces.fill(capacity, 0.95, 8, 42);
+        sessions = new SessionTracker(Clock.systemUTC(), FeeSchedule.perStartedHour(200, 2000));
+        if (tracked) {
+            parkingLot.trackSessions(sessions);
+        }
+        car = new Car(Traces.plate(capacity), "White");
+    }
+
+    @Benchmark
+    public Car parkAndLeave() {
+        return parkingLot.tryLeave(parkingLot.tryPark(car));
+    }
+
+    @Benchmark
+    public String report() {
+        return sessions.report();
+    }
+}
@@ -0,0 +1,116 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Polls the status of a full {@link ParkingLot} after a car leaves and
+ * parks again, as a dashboard would between gate events. The cached
+ * rendering only renders the chunk of the changed slot again; the rebuild
+ * renders every slot, as the status always did.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatusBenchmark {
+    @Param({"10000", "100000"})
+    public int capacity;
+
+    @Param({"false", "true"})
+    public boolean fullInfo;
+
+    private ParkingLot parkingLot;
+    private Car[] parkedCars;
+    private Car car;
+    private int slot;
+
+    /**
+     * A {@link Writer} that drops what it is given, to time the streaming
+     * alone.
+     */
+    private final Writer sink = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParkingLotException {
+        parkingLot = new ParkingLot(capacity);
+        for (int i = 0; i < capacity; i++) {
+            parkingLot.park(Traces.plate(i), Traces.COLORS[i & 7]);
+        }
+        slot = capacity / 2 + 1;
+        car = parkingLot.leave(slot);
+        // the slots as they are between changes, for the rebuild
+        parkedCars = parkingLot.getParkedCars();
+    }
+
+    private void change() throws ParkingLotException {
+        parkingLot.park(car);
+        parkingLot.leave(slot);
+    }
+
+    @Benchmark
+    public String cached() throws ParkingLotException {
+        change();
+        return parkingLot.status(fullInfo);
+    }
+
+    @Benchmark
+    public Writer streamed() throws ParkingLotException, IOException {
+        change();
+        parkingLot.status(fullInfo, sink);
+        return sink;
+    }
+
+    @Benchmark
+    public String rebuilt() throws ParkingLotException {
+        change();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Slot No.\tID\t\tColor\n");
+        for (int i = 0; i < capacity; i++) {
+            Car parkedCar = parkedCars[i];
+            if (parkedCar == null) {
+                if (fullInfo) {
+                    sb.append(i + 1).append("\t\t(empty)\n");
+                }
+            } else {
+                sb.append(i + 1).append("\t\t");
+                sb.append(parkedCar.getLicensePlate()).append("\t\t");
+                sb.append(parkedCar.getColor()).append("\n");
+            }
+        }
+        return sb.substring(0, sb.length() - 1);
+    }
+}
@@ -0,0 +1,155 @@
+package com.vuongho.parkinglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generators of command traces shaped like {@code file_inputs.txt}: a
+ * {@code create_parking_lot} line followed by a mix of arrivals, departures
+ * and queries.
+ */
+final class Traces {
+    static final String[] COLORS = {"White", "Black", "Blue", "Red", "Silver", "Grey", "Green", "Yellow"};
+
+    private Traces() {
+    }
+
+    /**
+     * Generates a gate log: 45% of the lines are arrivals, 45% are departures
+     * of a parked car, 8% are plate queries and 2% are color queries.
+     *
+     * @param lines the number of lines after the {@code create_parking_lot} line
+     * @param capacity the capacity of the lot
+     * @param seed the random seed
+     * @return the lines of the trace
+     */
+    static List<String> gateLog(int lines, int capacity, long seed) {
+        return gateLog(lines, capacity, 0, COLORS.length, seed);
+    }
+
+    /**
+     * Generates a gate log as {@link #gateLog(int, int, long)} over a lot that
+     * is first filled to an occupancy. The {@code create_parking_lot} line is
+     * followed by {@link #prefill(int, double)} arrivals, then by the lines of
+     * the gate log, which keep the occupancy about steady.
+     *
+     * @param lines the number of lines after the arrivals that fill the lot
+     * @param capacity the capacity of the lot
+     * @param occupancy the share of slots occupied before the gate log
+     * @param colorCount the number of distinct colors, see {@link #colors(int)}
+     * @param seed the random seed
+     * @return the lines of the trace
+     */
+    static List<String> gateLog(int lines, int capacity, double occupancy, int colorCount, long seed) {
+        Random random = new Random(seed);
+        String[] colors = colors(colorCount);
+        int prefill = prefill(capacity, occupancy);
+        List<String> trace = new ArrayList<>(prefill + lines + 1);
+        trace.add("create_parking_lot " + capacity);
+        // the model of the lot: plates by slot, the free slots, and the
+        // occupied slots in a list that allows picking one at random
+        String[] plates = new String[capacity];
+        TreeSet<Integer> free = new TreeSet<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            free.add(slot);
+        }
+        List<Integer> occupied = new ArrayList<>();
+        int next = 0;
+        for (int line = -prefill; line < lines; line++) {
+            int roll = line < 0 ? 0 : random.nextInt(100);
+            if (roll < 45 || occupied.isEmpty()) {
+                String plate = plate(next++);
+                trace.add("park " + plate + " " + colors[random.nextInt(colors.length)]);
+                if (!free.isEmpty()) {
+                    int slot = free.pollFirst();
+                    plates[slot] = plate;
+                    occupied.add(slot);
+                }
+            } else if (roll < 90) {
+                int index = random.nextInt(occupied.size());
+                int slot = occupied.get(index);
+                occupied.set(index, occupied.get(occupied.size() - 1));
+                occupied.remove(occupied.size() - 1);
+                plates[slot] = null;
+                free.add(slot);
+                trace.add("leave " + (slot + 1));
+            } else if (roll < 98) {
+                int slot = occupied.get(random.nextInt(occupied.size()));
+                trace.add("slot_number_for_id " + plates[slot]);
+            } else {
+                trace.add("slot_numbers_for_cars_with_color " + colors[random.nextInt(colors.length)]);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * @param capacity the capacity of a lot
+     * @param occupancy the share of its slots to occupy
+     * @return the number of cars that occupy the share of the slots
+     */
+    static int prefill(int capacity, double occupancy) {
+        return (int) (capacity * occupancy);
+    }
+
+    /**
+     * @param count the number of colors
+     * @return {@link #COLORS} for up to 8 colors, followed by made-up ones
+     */
+    static String[] colors(int count) {
+        String[] colors = new String[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = i < COLORS.length ? COLORS[i] : "Color" + i;
+        }
+        return colors;
+    }
+
+    /**
+     * Creates a {@link ParkingLot} with randomly scattered parked cars: every
+     * slot is filled, then random cars leave until the occupancy is reached.
+     * The car in slot {@code i} has the license plate {@code plate(i)}.
+     *
+     * @param capacity the capacity of the lot
+     * @param occupancy the share of slots left occupied
+     * @param colorCount the number of distinct colors, see {@link #colors(int)}
+     * @param seed the random seed
+     * @return the lot
+     */
+    static ParkingLot fill(int capacity, double occupancy, int colorCount, long seed)
+            throws ParkingLotException {
+        Random random = new Random(seed);
+        String[] colors = colors(colorCount);
+        ParkingLot parkingLot = new ParkingLot(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            parkingLot.park(plate(slot), colors[random.nextInt(colors.length)]);
+        }
+        int[] slots = new int[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            slots[slot] = slot;
+        }
+        for (int i = capacity - 1; i >= prefill(capacity, occupancy); i--) {
+            // a partial Fisher-Yates shuffle picks the slots to empty
+            int j = random.nextInt(i + 1);
+            int slot = slots[j];
+            slots[j] = slots[i];
+            slots[i] = slot;
+            parkingLot.leave(slot);
+        }
+        return parkingLot;
+    }
+
+    /**
+     * @param n a car number
+     * @return a six-character license plate for the car number
+     */
+    static String plate(int n) {
+        char[] plate = new char[6];
+        for (int i = 5; i >= 0; i--) {
+            plate[i] = (char) ('A' + n % 26);
+            n /= 26;
+        }
+        return new String(plate);
+    }
+}
@@ -0,0 +1,138 @@
+package com.vuongho.parkinglot;
+
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Chooses the slot of a {@link ParkingLot} a {@link Car} is parked in, see
+ * {@link ParkingLot#setAllocationStrategy(AllocationStrategy)}. Without one,
+ * a {@link ParkingLot} takes the lowest empty slot.
+ * <p>
+ * A strategy keeps its own index of the empty slots, which its
+ * {@link ParkingLot} keeps up to date: {@link #reset(int)} when the strategy
+ * is attached, then {@link #occupied(int)} for every occupied slot, and from
+ * then on {@link #occupied(int)} and {@link #freed(int)} as cars park and
+ * leave, and {@link #resize(int, int)} as the lot is resized. A strategy serves a single
+ * {@link ParkingLot}.
+ */
+public interface AllocationStrategy {
+    /**
+     * Starts over with every slot empty.
+     *
+     * @param capacity the number of slots
+     */
+    void reset(int capacity);
+
+    /**
+     * Follows a resize of the {@link ParkingLot}, keeping what is known of
+     * the slots both sizes share. The slots a grow adds are empty, as were
+     * the slots a shrink drops.
+     *
+     * @param oldCapacity the number of slots before the resize
+     * @param newCapacity the number of slots after it
+     */
+    void resize(int oldCapacity, int newCapacity);
+
+    /**
+     * Chooses an empty slot for a {@link Car}, without taking it.
+     *
+     * @param car the {@link Car} to be parked
+     * @return the index of the chosen slot, or -1 if no empty slot suits
+     *      the {@link Car}
+     */
+    int select(Car car);
+
+    /**
+     * Records that a slot is now occupied.
+     *
+     * @param slot the slot index
+     */
+    void occupied(int slot);
+
+    /**
+     * Records that a slot is now empty.
+     *
+     * @param slot the slot index
+     */
+    void freed(int slot);
+
+    /**
+     * @return an {@link AllocationStrategy} that takes the lowest empty
+     *      slot, as a {@link ParkingLot} does without one
+     */
+    static AllocationStrategy lowestSlot() {
+        return zoned(slot -> 0, zone -> 0, null, ZonedAllocator.ONLY_GROUP, false);
+    }
+
+    /**
+     * @param distance the distance of each slot index to the entrance, or
+     *      whatever else makes a slot preferable when lower
+     * @return an {@link AllocationStrategy} that takes the empty slot nearest
+     *      to the entrance, the lowest one on a tie
+     */
+    static AllocationStrategy nearestTo(IntToDoubleFunction distance) {
+        return zoned(slot -> 0, zone -> 0, distance, ZonedAllocator.ONLY_GROUP, false);
+    }
+
+    /**
+     * @param slotsPerLevel the number of slots of each level, the slots of
+     *      the first level being numbered first
+     * @return an {@link AllocationStrategy} that spreads the cars over the
+     *      levels, taking the lowest empty slot of the level with the most
+     *      empty slots, the lowest level on a tie
+     */
+    static AllocationStrategy balancedLevels(int slotsPerLevel) {
+        if (slotsPerLevel < 1) {
+            throw new IllegalArgumentException("Invalid level size " + slotsPerLevel);
+        }
+        return zoned(slot -> slot / slotsPerLevel, zone -> 0, null, ZonedAllocator.ONLY_GROUP, true);
+    }
+
+    /**
+     * Creates an {@link AllocationStrategy} for slots of different classes,
+     * such as EV charging, accessible, compact or large slots. Each
+     * {@link Car} lists the classes it may park in, in order of preference,
+     * e.g. a compact car a compact slot first, then a regular one. The lowest
+     * empty slot of the first class with one is taken.
+     *
+     * @param classOfSlot the class of each slot index, from 0
+     * @param classesForCar the classes a {@link Car} may park in, in order
+     *      of preference
+     * @return the {@link AllocationStrategy}
+     */
+    static AllocationStrategy slotClasses(IntUnaryOperator classOfSlot, Function<Car, int[]> classesForCar) {
+        return zoned(classOfSlot, IntUnaryOperator.identity(), null, classesForCar, false);
+    }
+
+    /**
+     * Creates an {@link AllocationStrategy} over zones, e.g. the levels of a
+     * garage, grouped by slot class, e.g. the EV slots of every level. Each
+     * {@link Car} lists the groups it may park in, in order of preference.
+     * In the first group with an empty slot, the strategy takes either the
+     * nearest empty slot of the whole group, or, to balance the zones, the
+     * nearest empty slot of the zone of the group with the most empty slots.
+     * <p>
+     * Choosing a slot takes O(g log n) for a {@link Car} that may park in
+     * {@code g} groups: a hierarchical bitset of the empty slots per group or
+     * zone, ordered by distance, and in balanced mode a tree over the zones
+     * of each group by number of empty slots. Attaching the strategy sorts
+     * the slots by distance once; resizing its lot sorts only the added
+     * slots and merges them in, or without distances only adds or drops the
+     * slots that changed.
+     *
+     * @param zoneOf the zone of each slot index, from 0
+     * @param groupOf the group of each zone, from 0
+     * @param distance the distance of each slot index to the entrance, or
+     *      null to prefer the lowest slots
+     * @param groupsForCar the groups a {@link Car} may park in, in order of
+     *      preference
+     * @param balanced true to balance the zones of each group, false to take
+     *      the nearest slot of the group
+     * @return the {@link AllocationStrategy}
+     */
+    static AllocationStrategy zoned(IntUnaryOperator zoneOf, IntUnaryOperator groupOf,
+            IntToDoubleFunction distance, Function<Car, int[]> groupsForCar, boolean balanced) {
+        return new ZonedAllocator(zoneOf, groupOf, distance, groupsForCar, balanced);
+    }
+}
@@ -0,0 +1,49 @@
+package com.vuongho.parkinglot;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view of ASCII bytes, so that a command read from a
+ * socket can be tokenized without decoding it into a {@link String} first.
+ * The view can be moved over another region of bytes.
+ */
+final class AsciiSequence implements CharSequence {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    /**
+     * Moves the view over a region of bytes, which must all be ASCII.
+     *
+     * @param bytes the bytes
+     * @param offset the start of the region
+     * @param length the length of the region
+     * @return this view
+     */
+    AsciiSequence reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) bytes[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiSequence().reset(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.US_ASCII);
+    }
+}
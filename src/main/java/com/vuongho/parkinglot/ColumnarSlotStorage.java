@@ -0,0 +1,239 @@
+package com.vuongho.parkinglot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact {@link SlotStorage} that keeps each field in its own column
+ * instead of a {@link Car} per slot:
+ * <ul>
+ * <li>an occupancy bitset, one bit per slot;</li>
+ * <li>a {@code short} color id per slot, indexing a dictionary of the colors
+ * of the parked cars, so that each color is stored once; the id of a color
+ * is reused once no car of that color is parked;</li>
+ * <li>the license plates as UTF-8 bytes in a fixed-width region of a
+ * {@link ByteBuffer}, on or off the heap, with a length byte per slot.</li>
+ * </ul>
+ * A {@link Car} is only created when one is asked for through {@link #get}.
+ */
+public class ColumnarSlotStorage implements SlotStorage {
+    /**
+     * The default number of bytes reserved for a license plate.
+     */
+    public static final int DEFAULT_PLATE_WIDTH = 16;
+
+    /**
+     * The most colors the dictionary can hold at once.
+     */
+    public static final int MAX_COLORS = 1 << 15;
+
+    private int capacity;
+    private final int plateWidth;
+    private long[] occupied;
+    private short[] colorIds;
+    private byte[] plateLengths;
+    private ByteBuffer plates;
+    private final List<String> colors = new ArrayList<>();
+    private final Map<String, Short> colorIdsByName = new HashMap<>();
+
+    /**
+     * The number of parked cars of each color, by color id.
+     */
+    private int[] colorCounts = new int[16];
+
+    /**
+     * The color ids no car uses, to be given to new colors first.
+     */
+    private short[] freeColorIds = new short[16];
+    private int freeColorCount = 0;
+
+    /**
+     * Constructor for a {@link ColumnarSlotStorage} with the default plate
+     * width, on the heap.
+     *
+     * @param capacity the number of slots
+     */
+    public ColumnarSlotStorage(int capacity) {
+        this(capacity, DEFAULT_PLATE_WIDTH, false);
+    }
+
+    /**
+     * Constructor for a {@link ColumnarSlotStorage}.
+     *
+     * @param capacity the number of slots
+     * @param plateWidth the number of bytes reserved for a license plate, at
+     *      most 127
+     * @param offHeap true to keep the license plates in a direct buffer, out
+     *      of the Java heap
+     */
+    public ColumnarSlotStorage(int capacity, int plateWidth, boolean offHeap) {
+        if (plateWidth < 1 || plateWidth > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Plate width must be between 1 and " + Byte.MAX_VALUE);
+        }
+        this.capacity = capacity;
+        this.plateWidth = plateWidth;
+        this.occupied = new long[(capacity + 63) >>> 6];
+        this.colorIds = new short[capacity];
+        this.plateLengths = new byte[capacity];
+        this.plates = offHeap
+                ? ByteBuffer.allocateDirect(Math.multiplyExact(capacity, plateWidth))
+                : ByteBuffer.allocate(Math.multiplyExact(capacity, plateWidth));
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each column is copied into a new one of the new size, which is a
+     * bulk copy of a few bytes per slot; the {@link Car}s are not created.
+     */
+    @Override
+    public void resize(int capacity) {
+        int kept = Math.min(this.capacity, capacity);
+        for (int slot = kept; slot < this.capacity; slot++) {
+            remove(slot);
+        }
+        occupied = Arrays.copyOf(occupied, (capacity + 63) >>> 6);
+        colorIds = Arrays.copyOf(colorIds, capacity);
+        plateLengths = Arrays.copyOf(plateLengths, capacity);
+        ByteBuffer resized = plates.isDirect()
+                ? ByteBuffer.allocateDirect(Math.multiplyExact(capacity, plateWidth))
+                : ByteBuffer.allocate(Math.multiplyExact(capacity, plateWidth));
+        resized.put(0, plates, 0, kept * plateWidth);
+        plates = resized;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Car get(int slot) {
+        if (!isOccupied(slot)) {
+            return null;
+        }
+        byte[] plate = new byte[plateLengths[slot]];
+        plates.get(slot * plateWidth, plate);
+        return new Car(new String(plate, StandardCharsets.UTF_8), colors.get(colorIds[slot]));
+    }
+
+    /**
+     * Compares the stored bytes with the license plate directly when both are
+     * ASCII, which license plates normally are.
+     */
+    @Override
+    public boolean hasLicensePlate(int slot, String licensePlate) {
+        if (!isOccupied(slot)) {
+            return false;
+        }
+        int length = plateLengths[slot];
+        if (length != licensePlate.length()) {
+            // ASCII plates have as many bytes as chars; others are compared below
+            return length > licensePlate.length() && licensePlate.equals(get(slot).getLicensePlate());
+        }
+        int offset = slot * plateWidth;
+        for (int i = 0; i < length; i++) {
+            byte b = plates.get(offset + i);
+            if (b < 0) {
+                return licensePlate.equals(get(slot).getLicensePlate());
+            }
+            if (b != licensePlate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ParkingLotException if the license plate is wider than the plate
+     *      width, or the color dictionary is full
+     */
+    @Override
+    public void put(int slot, Car car) throws ParkingLotException {
+        byte[] plate = car.getLicensePlate().getBytes(StandardCharsets.UTF_8);
+        checkPlate(plate);
+        short colorId = colorId(car.getColor());
+        remove(slot);
+        colorIds[slot] = colorId;
+        plateLengths[slot] = (byte) plate.length;
+        plates.put(slot * plateWidth, plate);
+        occupied[slot >>> 6] |= 1L << slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ParkingLotException if the license plate is wider than the plate
+     *      width, or the color is new and the color dictionary is full
+     */
+    @Override
+    public void check(Car car) throws ParkingLotException {
+        checkPlate(car.getLicensePlate().getBytes(StandardCharsets.UTF_8));
+        if (colorIdsByName.size() == MAX_COLORS && !colorIdsByName.containsKey(car.getColor())) {
+            throw new ParkingLotException("Too many colors");
+        }
+    }
+
+    @Override
+    public void remove(int slot) {
+        if (!isOccupied(slot)) {
+            return;
+        }
+        occupied[slot >>> 6] &= ~(1L << slot);
+        short id = colorIds[slot];
+        if (--colorCounts[id] == 0) {
+            colorIdsByName.remove(colors.get(id));
+            colors.set(id, null);
+            if (freeColorCount == freeColorIds.length) {
+                freeColorIds = Arrays.copyOf(freeColorIds, freeColorCount * 2);
+            }
+            freeColorIds[freeColorCount++] = id;
+        }
+    }
+
+    /**
+     * @return the number of distinct colors of the parked cars
+     */
+    public int getColorCount() {
+        return colorIdsByName.size();
+    }
+
+    private boolean isOccupied(int slot) {
+        return (occupied[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void checkPlate(byte[] plate) throws ParkingLotException {
+        if (plate.length > plateWidth) {
+            throw new ParkingLotException("License plate is longer than " + plateWidth + " bytes");
+        }
+    }
+
+    private short colorId(String color) throws ParkingLotException {
+        Short id = colorIdsByName.get(color);
+        if (id == null) {
+            if (freeColorCount > 0) {
+                id = freeColorIds[--freeColorCount];
+                colors.set(id, color);
+            } else if (colors.size() == MAX_COLORS) {
+                throw new ParkingLotException("Too many colors");
+            } else {
+                id = (short) colors.size();
+                colors.add(color);
+                if (id == colorCounts.length) {
+                    colorCounts = Arrays.copyOf(colorCounts, id * 2);
+                }
+            }
+            colorIdsByName.put(color, id);
+        }
+        colorCounts[id]++;
+        return id;
+    }
+}
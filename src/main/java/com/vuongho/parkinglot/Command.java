@@ -0,0 +1,100 @@
+package com.vuongho.parkinglot;
+
+/**
+ * The commands understood by a {@link ParkingLotMgr}, with their keyword and
+ * the number of tokens a well-formed command line has, keyword included.
+ * Batch commands take their arguments once or more, so their lines may add
+ * any number of further groups of arguments.
+ */
+enum Command {
+    CREATE_PARKING_LOT("create_parking_lot", 2),
+    PARK("park", 3),
+    LEAVE("leave", 2),
+    STATUS("status", 1),
+    IDS_FOR_CARS_WITH_COLOR("ids_for_cars_with_color", 2),
+    SLOT_NUMBERS_FOR_CARS_WITH_COLOR("slot_numbers_for_cars_with_color", 2),
+    SLOT_NUMBER_FOR_ID("slot_number_for_id", 2),
+    METRICS("metrics", 1),
+    PARK_ALL("park_all", 3, 2),
+    LEAVE_ALL("leave_all", 2, 1),
+    RESIZE_PARKING_LOT("resize_parking_lot", 2),
+    SESSIONS("sessions", 1),
+    SLOT_NUMBERS_FOR_IDS_MATCHING("slot_numbers_for_ids_matching", 2),
+    SLOT_NUMBERS_FOR_IDS_NEAR("slot_numbers_for_ids_near", 3);
+
+    private static final Command[] COMMANDS = values();
+
+    private final String keyword;
+    private final int tokens;
+    private final int repeat;
+
+    Command(String keyword, int tokens) {
+        this(keyword, tokens, 0);
+    }
+
+    Command(String keyword, int tokens, int repeat) {
+        this.keyword = keyword;
+        this.tokens = tokens;
+        this.repeat = repeat;
+    }
+
+    /**
+     * @return the keyword of the command, as typed in the REPL
+     */
+    String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * @return the number of tokens of a well-formed command line
+     */
+    int getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the number of tokens of each further group of arguments of a
+     *      batch command, or 0 if the command takes its arguments once
+     */
+    int getRepeat() {
+        return repeat;
+    }
+
+    /**
+     * @param size the number of tokens of a command line
+     * @return true if a command line of this command with that many tokens
+     *      is well-formed
+     */
+    boolean accepts(int size) {
+        if (repeat == 0) {
+            return size == tokens;
+        }
+        return size >= tokens && (size - tokens) % repeat == 0;
+    }
+
+    /**
+     * Finds the command whose keyword equals a region of a character
+     * sequence, without creating a {@link String} for the region.
+     *
+     * @param line the character sequence
+     * @param start the start of the region, inclusive
+     * @param end the end of the region, exclusive
+     * @return the matching command, or null if there is none
+     */
+    static Command match(CharSequence line, int start, int end) {
+        for (Command command : COMMANDS) {
+            String keyword = command.keyword;
+            if (keyword.length() != end - start) {
+                continue;
+            }
+            int i = 0;
+            while (i < keyword.length() && keyword.charAt(i) == line.charAt(start + i)) {
+                i++;
+            }
+            if (i == keyword.length()) {
+                return command;
+            }
+        }
+        return null;
+    }
+}
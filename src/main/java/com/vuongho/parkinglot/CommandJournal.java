@@ -0,0 +1,545 @@
+package com.vuongho.parkinglot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary journal of the commands that change a
+ * {@link ParkingLotMgr}'s state, {@code create_parking_lot}, {@code park},
+ * {@code leave} and {@code resize_parking_lot}, with periodic snapshots of the {@link ParkingLot} so that
+ * recovery loads the latest snapshot and replays only the commands after it.
+ * <p>
+ * Records are buffered and written together once {@code groupCommitSize} of
+ * them are pending (group commit), then optionally forced to the storage
+ * device. Up to {@code groupCommitSize - 1} commands can therefore be lost
+ * in a crash; a size of 1 with {@code fsync} makes every command durable.
+ * <p>
+ * The journal directory holds {@code snapshot-<n>.bin}, the state after the
+ * first {@code n} commands, and {@code journal-<n>.bin}, the commands from
+ * number {@code n} on. Each record is
+ * <pre>
+ * int   length of type and payload
+ * int   CRC32 of type and payload
+ * byte  type
+ * ...   payload
+ * </pre>
+ * so that a record torn by a crash is detected and cut off at recovery,
+ * while damage before the last record fails the recovery.
+ */
+public class CommandJournal implements Closeable {
+    private static final byte CREATE = 1;
+    private static final byte PARK = 2;
+    private static final byte LEAVE = 3;
+    private static final byte RESIZE = 4;
+
+    private static final int SNAPSHOT_MAGIC = 0x504b534e; // "PKSN"
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final int groupCommitSize;
+    private final boolean fsync;
+    private final int snapshotInterval;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private int pending = 0;
+    private int recordStart = 0;
+    private long sequence = 0;
+    private long lastSnapshot = 0;
+
+    /**
+     * Constructor for a {@link CommandJournal} in a directory. Call
+     * {@link #recover()} before logging any command.
+     *
+     * @param directory the directory of the journal and snapshot files
+     * @param groupCommitSize the number of records written together
+     * @param fsync true to force every group commit to the storage device,
+     *      false to leave it in the operating system's page cache
+     * @param snapshotInterval the number of commands between snapshots
+     */
+    public CommandJournal(Path directory, int groupCommitSize, boolean fsync, int snapshotInterval) {
+        if (groupCommitSize < 1 || snapshotInterval < 1) {
+            throw new IllegalArgumentException("Group commit size and snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.groupCommitSize = groupCommitSize;
+        this.fsync = fsync;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Rebuilds the {@link ParkingLot} from the latest snapshot and the
+     * commands journaled after it, and opens the journal for appending.
+     *
+     * @return the recovered {@link ParkingLot}, or null if no parking lot was
+     *      ever created
+     * @throws IOException if the files cannot be read
+     */
+    public ParkingLot recover() throws IOException {
+        Files.createDirectories(directory);
+        ParkingLot parkingLot = null;
+        List<Long> snapshots = list("snapshot-");
+        if (!snapshots.isEmpty()) {
+            sequence = snapshots.get(snapshots.size() - 1);
+            parkingLot = readSnapshot(file("snapshot-", sequence));
+        }
+        lastSnapshot = sequence;
+        for (long start : list("journal-")) {
+            if (start < sequence) {
+                continue;
+            }
+            parkingLot = replay(file("journal-", start), start, parkingLot);
+        }
+        channel = FileChannel.open(file("journal-", lastSnapshot), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return parkingLot;
+    }
+
+    /**
+     * @return the number of commands journaled so far, snapshots included
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Journals a {@code create_parking_lot} command.
+     *
+     * @param capacity the capacity of the created {@link ParkingLot}
+     * @throws IOException if the journal cannot be written
+     */
+    public void logCreate(int capacity) throws IOException {
+        begin(CREATE, 4);
+        buffer.putInt(capacity);
+        end();
+    }
+
+    /**
+     * Journals a {@code park} command that allocated a slot.
+     *
+     * @param licensePlate the license plate of the parked {@link Car}
+     * @param color the color of the parked {@link Car}
+     * @throws IOException if the journal cannot be written
+     */
+    public void logPark(String licensePlate, String color) throws IOException {
+        byte[] plate = licensePlate.getBytes(StandardCharsets.UTF_8);
+        byte[] colorBytes = color.getBytes(StandardCharsets.UTF_8);
+        begin(PARK, 4 + plate.length + colorBytes.length);
+        buffer.putShort((short) plate.length).put(plate);
+        buffer.putShort((short) colorBytes.length).put(colorBytes);
+        end();
+    }
+
+    /**
+     * Journals a {@code leave} command that freed a slot.
+     *
+     * @param slot the index of the freed slot
+     * @throws IOException if the journal cannot be written
+     */
+    public void logLeave(int slot) throws IOException {
+        begin(LEAVE, 4);
+        buffer.putInt(slot);
+        end();
+    }
+
+    /**
+     * Journals a {@code resize_parking_lot} command that changed the
+     * capacity.
+     *
+     * @param capacity the new capacity of the {@link ParkingLot}
+     * @throws IOException if the journal cannot be written
+     */
+    public void logResize(int capacity) throws IOException {
+        begin(RESIZE, 4);
+        buffer.putInt(capacity);
+        end();
+    }
+
+    /**
+     * @return true if {@code snapshotInterval} commands were journaled since
+     *      the last snapshot
+     */
+    public boolean isSnapshotDue() {
+        return sequence - lastSnapshot >= snapshotInterval;
+    }
+
+    /**
+     * Writes a snapshot of the {@link ParkingLot}, which must reflect every
+     * journaled command, then starts a new journal file and deletes the
+     * files the snapshot replaces.
+     *
+     * @param parkingLot the current {@link ParkingLot}, or null if none
+     * @throws IOException if the files cannot be written
+     */
+    public void snapshot(ParkingLot parkingLot) throws IOException {
+        sync();
+        Path temporary = directory.resolve("snapshot.tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeSnapshot(out, parkingLot);
+            out.force(true);
+        }
+        Files.move(temporary, file("snapshot-", sequence), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = FileChannel.open(file("journal-", sequence), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        lastSnapshot = sequence;
+        for (long start : list("journal-")) {
+            if (start < sequence) {
+                Files.delete(file("journal-", start));
+            }
+        }
+        for (long snapshot : list("snapshot-")) {
+            if (snapshot < sequence) {
+                Files.delete(file("snapshot-", snapshot));
+            }
+        }
+    }
+
+    /**
+     * Writes the pending records and forces them to the storage device, even
+     * if the group commit is not full.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    public void sync() throws IOException {
+        write();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+        }
+    }
+
+    /**
+     * Starts a record in the buffer, writing out the buffer first if the
+     * record does not fit.
+     */
+    private void begin(byte type, int payloadLength) throws IOException {
+        if (buffer.remaining() < RECORD_HEADER_SIZE + 1 + payloadLength) {
+            write();
+        }
+        recordStart = buffer.position();
+        buffer.putInt(1 + payloadLength);
+        buffer.putInt(0); // CRC, filled in by end()
+        buffer.put(type);
+    }
+
+    /**
+     * Completes the record started by {@link #begin} with its checksum, and
+     * commits the group if it is full.
+     */
+    private void end() throws IOException {
+        ByteBuffer record = buffer.duplicate();
+        record.position(recordStart + RECORD_HEADER_SIZE).limit(buffer.position());
+        crc.reset();
+        crc.update(record);
+        buffer.putInt(recordStart + 4, (int) crc.getValue());
+        sequence++;
+        if (++pending >= groupCommitSize) {
+            write();
+            if (fsync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        pending = 0;
+    }
+
+    /**
+     * Applies the records of a journal file to a {@link ParkingLot}. A torn
+     * or damaged last record, as a crash in the middle of a write leaves, is
+     * cut off the file; a damaged record followed by good ones fails the
+     * recovery instead, since cutting it off would lose the later commands.
+     *
+     * @param journal the journal file
+     * @param start the number of the first command of the file
+     * @param parkingLot the state before the file
+     * @return the state after the file
+     * @throws IOException if the file cannot be read, is damaged before its
+     *      last record, or does not replay
+     */
+    private ParkingLot replay(Path journal, long start, ParkingLot parkingLot) throws IOException {
+        try (FileChannel in = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = 0;
+            sequence = start;
+            boolean torn = false;
+            while (!torn) {
+                input.clear();
+                int read = in.read(input, position);
+                if (read <= 0) {
+                    break;
+                }
+                input.flip();
+                int consumed = 0;
+                while (input.remaining() >= RECORD_HEADER_SIZE) {
+                    int recordStart = input.position();
+                    int length = input.getInt();
+                    int checksum = input.getInt();
+                    boolean valid = length >= 1 && length <= BUFFER_SIZE - RECORD_HEADER_SIZE;
+                    if (valid && input.remaining() < length) {
+                        input.position(recordStart);
+                        break;
+                    }
+                    if (valid) {
+                        crc.reset();
+                        crc.update(input.slice(input.position(), length));
+                        valid = (int) crc.getValue() == checksum;
+                    }
+                    if (!valid) {
+                        checkTornTail(in, journal, position + recordStart, length);
+                        torn = true;
+                        break;
+                    }
+                    parkingLot = apply(input.slice(input.position(), length), parkingLot);
+                    input.position(input.position() + length);
+                    consumed = input.position();
+                    sequence++;
+                }
+                if (consumed == 0) {
+                    break;
+                }
+                position += consumed;
+            }
+            if (position < in.size()) {
+                // cut off the torn tail so that new records follow good ones
+                in.truncate(position);
+            }
+        }
+        return parkingLot;
+    }
+
+    /**
+     * Checks that a damaged record is the last record of a journal file: that
+     * it runs to the end of the file, or is followed only by bytes that do not
+     * start a good record, such as the zeros of a file extended by a crash.
+     *
+     * @param in the journal file
+     * @param journal the path of the journal file, for the error message
+     * @param offset the offset of the damaged record
+     * @param length the length in the header of the damaged record
+     * @throws IOException if a good record follows the damaged one
+     */
+    private void checkTornTail(FileChannel in, Path journal, long offset, int length) throws IOException {
+        long size = in.size();
+        boolean followed;
+        if (length >= 1 && length <= BUFFER_SIZE - RECORD_HEADER_SIZE) {
+            long next = offset + RECORD_HEADER_SIZE + length;
+            followed = next < size && isRecordAt(in, next, size);
+        } else {
+            // without a length there is no next record to check, so any data
+            // after the header may be one
+            followed = !isZeros(in, offset + RECORD_HEADER_SIZE, size);
+        }
+        if (followed) {
+            throw new IOException(journal + " is damaged at offset " + offset);
+        }
+    }
+
+    /**
+     * @return true if a complete record with a matching checksum starts at
+     *      {@code offset}
+     */
+    private boolean isRecordAt(FileChannel in, long offset, long size) throws IOException {
+        if (size - offset < RECORD_HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(in, header, offset);
+        int length = header.getInt(0);
+        if (length < 1 || length > BUFFER_SIZE - RECORD_HEADER_SIZE
+                || size - offset - RECORD_HEADER_SIZE < length) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(in, record, offset + RECORD_HEADER_SIZE);
+        record.flip();
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue() == header.getInt(4);
+    }
+
+    /**
+     * @return true if the bytes of the file from {@code offset} on are all
+     *      zeros
+     */
+    private static boolean isZeros(FileChannel in, long offset, long size) throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        for (long position = offset; position < size; ) {
+            input.clear();
+            int read = in.read(input, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (input.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+
+    /**
+     * Applies one journal record, past its header, to a {@link ParkingLot}.
+     */
+    private static ParkingLot apply(ByteBuffer record, ParkingLot parkingLot) throws IOException {
+        byte type = record.get();
+        if (parkingLot == null && type != CREATE) {
+            throw new IOException("Journal does not replay: record type " + type
+                    + " before any parking lot was created");
+        }
+        try {
+            switch (type) {
+                case CREATE:
+                    return new ParkingLot(record.getInt());
+                case PARK:
+                    parkingLot.park(readString(record), readString(record));
+                    return parkingLot;
+                case LEAVE:
+                    parkingLot.leave(record.getInt());
+                    return parkingLot;
+                case RESIZE:
+                    parkingLot.resize(record.getInt());
+                    return parkingLot;
+                default:
+                    throw new IOException("Unknown journal record type " + type);
+            }
+        } catch (ParkingLotException e) {
+            throw new IOException("Journal does not replay: " + e.getMessage(), e);
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a snapshot: magic, capacity (-1 for no parking lot), number of
+     * cars, then slot, plate and color of each car, and a CRC32 of it all.
+     */
+    private static void writeSnapshot(FileChannel out, ParkingLot parkingLot) throws IOException {
+        ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CRC32 checksum = new CRC32();
+        output.putInt(SNAPSHOT_MAGIC);
+        output.putInt(parkingLot == null ? -1 : parkingLot.getCapacity());
+        output.putInt(parkingLot == null ? 0 : parkingLot.getCurrentSize());
+        if (parkingLot != null) {
+            Car[] cars = parkingLot.getParkedCars();
+            for (int slot = 0; slot < cars.length; slot++) {
+                if (cars[slot] == null) {
+                    continue;
+                }
+                byte[] plate = cars[slot].getLicensePlate().getBytes(StandardCharsets.UTF_8);
+                byte[] color = cars[slot].getColor().getBytes(StandardCharsets.UTF_8);
+                if (output.remaining() < 8 + plate.length + color.length) {
+                    flushSnapshot(out, output, checksum);
+                }
+                output.putInt(slot);
+                output.putShort((short) plate.length).put(plate);
+                output.putShort((short) color.length).put(color);
+            }
+        }
+        flushSnapshot(out, output, checksum);
+        output.putInt((int) checksum.getValue());
+        output.flip();
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+    }
+
+    private static void flushSnapshot(FileChannel out, ByteBuffer output, CRC32 checksum) throws IOException {
+        output.flip();
+        checksum.update(output.duplicate());
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        output.clear();
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @return the {@link ParkingLot} of the snapshot, or null if the snapshot
+     *      has no parking lot
+     * @throws IOException if the snapshot is damaged
+     */
+    private static ParkingLot readSnapshot(Path snapshot) throws IOException {
+        ByteBuffer input;
+        try (FileChannel in = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            input = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(input.slice(0, input.limit() - 4));
+        if (input.getInt(0) != SNAPSHOT_MAGIC || (int) checksum.getValue() != input.getInt(input.limit() - 4)) {
+            throw new IOException(snapshot + " is damaged");
+        }
+        input.position(4);
+        int capacity = input.getInt();
+        int size = input.getInt();
+        if (capacity < 0) {
+            return null;
+        }
+        HeapSlotStorage storage = new HeapSlotStorage(capacity);
+        for (int i = 0; i < size; i++) {
+            int slot = input.getInt();
+            storage.put(slot, new Car(readString(input), readString(input)));
+        }
+        return new ParkingLot(storage);
+    }
+
+    private List<Long> list(String prefix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*.bin")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - 4)));
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path file(String prefix, long number) {
+        return directory.resolve(prefix + number + ".bin");
+    }
+}
@@ -0,0 +1,277 @@
+package com.vuongho.parkinglot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The runtime metrics of a {@link ParkingLotMgr}: a count and a
+ * {@link LatencyHistogram} per command, counters of invalid commands and
+ * rejected parks, and gauges of the occupancy of the current lot. They are
+ * updated without locks by the thread that runs the {@link ParkingLotMgr},
+ * and can be read from any thread, through {@link #report()} (the
+ * {@code metrics} command) or over JMX once {@link #registerMBeans(String)}
+ * is called.
+ * <p>
+ * The counters have a single writer, so they are bumped with an ordered
+ * store rather than an atomic add. Every command is counted, but only one in
+ * {@link #TIMING_INTERVAL} is timed: reading the clock twice costs about as
+ * much as the cheapest commands, and a regular sample of them gives the same
+ * percentiles.
+ * <p>
+ * The gauges read the lot without synchronization, so from another thread
+ * they may lag behind the commands a little.
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+    private static final String DOMAIN = "com.vuongho.parkinglot";
+
+    private static final Command[] COMMANDS = Command.values();
+
+    /**
+     * One command in this many is timed; a power of two.
+     */
+    static final int TIMING_INTERVAL = 16;
+
+    /**
+     * The start time of a command that is not timed.
+     */
+    static final long UNTIMED = Long.MIN_VALUE;
+
+    /**
+     * The current lot of the {@link ParkingLotMgr}, or null if there is none.
+     */
+    private final Supplier<ParkingLot> parkingLot;
+
+    /**
+     * The number of each command handled, by ordinal, followed by the
+     * number of invalid commands and of rejected parks.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(COMMANDS.length + 2);
+
+    private static final int INVALID_COMMANDS = COMMANDS.length;
+    private static final int REJECTED_PARKS = COMMANDS.length + 1;
+
+    /**
+     * The sampled latencies of each command, by ordinal.
+     */
+    private final LatencyHistogram[] latencies = new LatencyHistogram[COMMANDS.length];
+
+    /**
+     * The number of calls to {@link #startTiming()}; updated without
+     * synchronization, as a lost update only shifts the sample.
+     */
+    private int timingCalls;
+
+    /**
+     * The names the MBeans were registered under, to unregister them.
+     */
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    /**
+     * Constructor for the {@link CommandMetrics} of a {@link ParkingLotMgr}.
+     *
+     * @param parkingLot gives the current lot of the {@link ParkingLotMgr}
+     */
+    CommandMetrics(Supplier<ParkingLot> parkingLot) {
+        this.parkingLot = parkingLot;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Tells whether the command about to be handled is timed.
+     *
+     * @return the start time of the command from {@link System#nanoTime()},
+     *      or {@link #UNTIMED} if it is not timed
+     */
+    long startTiming() {
+        if ((++timingCalls & (TIMING_INTERVAL - 1)) != 0) {
+            return UNTIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a handled command, and its latency if it was timed.
+     *
+     * @param command the command
+     * @param start the value {@link #startTiming()} returned for the command
+     */
+    void record(Command command, long start) {
+        increment(command.ordinal());
+        if (start != UNTIMED) {
+            latencies[command.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts a command line answered with "Invalid command".
+     */
+    void recordInvalid() {
+        increment(INVALID_COMMANDS);
+    }
+
+    /**
+     * Counts a park command that did not park a car.
+     */
+    void recordRejectedPark() {
+        increment(REJECTED_PARKS);
+    }
+
+    private void increment(int counter) {
+        // the one writer needs no atomic add, only a store readers can see
+        counts.lazySet(counter, counts.get(counter) + 1);
+    }
+
+    /**
+     * @param command the keyword of a command, e.g. {@code park}
+     * @return the sampled latencies of the command, or null if there is no
+     *      such command
+     */
+    public LatencyMXBean getLatency(String command) {
+        for (Command c : COMMANDS) {
+            if (c.getKeyword().equals(command)) {
+                return latencies[c.ordinal()];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long getCommandCount() {
+        long count = 0;
+        for (Command command : COMMANDS) {
+            count += counts.get(command.ordinal());
+        }
+        return count;
+    }
+
+    /**
+     * @param command the keyword of a command, e.g. {@code park}
+     * @return the number of times the command was handled
+     */
+    public long getCommandCount(String command) {
+        for (Command c : COMMANDS) {
+            if (c.getKeyword().equals(command)) {
+                return counts.get(c.ordinal());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getInvalidCommandCount() {
+        return counts.get(INVALID_COMMANDS);
+    }
+
+    @Override
+    public long getRejectedParkCount() {
+        return counts.get(REJECTED_PARKS);
+    }
+
+    @Override
+    public int getCurrentSize() {
+        ParkingLot lot = parkingLot.get();
+        return lot == null ? 0 : lot.getCurrentSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        ParkingLot lot = parkingLot.get();
+        return lot == null ? 0 : lot.getCapacity();
+    }
+
+    /**
+     * Gets the metrics as text, one line per command that was handled
+     * followed by the counters and gauges, e.g.:
+     * <pre>
+     * park: count 6, mean 1.2 us, p50 0.9 us, p99 3.1 us, p99.9 3.1 us, max 3.1 us
+     * Occupancy: 5/6
+     * Invalid commands: 1
+     * Rejected parks: 0
+     * </pre>
+     *
+     * @return the metrics as text
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Command command : COMMANDS) {
+            long count = counts.get(command.ordinal());
+            if (count == 0) {
+                continue;
+            }
+            LatencyHistogram latency = latencies[command.ordinal()];
+            sb.append(command.getKeyword()).append(": count ").append(count);
+            sb.append(", mean ").append(micros(latency.getMeanNanos()));
+            sb.append(", p50 ").append(micros(latency.getP50Nanos()));
+            sb.append(", p99 ").append(micros(latency.getP99Nanos()));
+            sb.append(", p99.9 ").append(micros(latency.getP999Nanos()));
+            sb.append(", max ").append(micros(latency.getMaxNanos())).append('\n');
+        }
+        sb.append("Occupancy: ").append(getCurrentSize()).append('/').append(getCapacity()).append('\n');
+        sb.append("Invalid commands: ").append(getInvalidCommandCount()).append('\n');
+        sb.append("Rejected parks: ").append(getRejectedParkCount());
+        return sb.toString();
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f us", nanos / 1000);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as
+     * {@code com.vuongho.parkinglot:type=ParkingLotMgr,name=<name>} for the
+     * counters and gauges and with an extra {@code command=<keyword>} key for
+     * the latencies of each command.
+     *
+     * @param name the name that tells this {@link ParkingLotMgr} from others
+     *      of the same process
+     * @throws JMException if the MBeans cannot be registered, e.g. because
+     *      the name is taken
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String prefix = DOMAIN + ":type=ParkingLotMgr,name=" + ObjectName.quote(name);
+        try {
+            register(server, new ObjectName(prefix),
+                    new StandardMBean(this, CommandMetricsMXBean.class, true));
+            for (Command command : COMMANDS) {
+                // the latencies are sampled; the MBean counts the samples
+                register(server, new ObjectName(prefix + ",command=" + command.getKeyword()),
+                        new StandardMBean(latencies[command.ordinal()], LatencyMXBean.class, true));
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw e;
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName objectName, Object mbean) throws JMException {
+        server.registerMBean(mbean, objectName);
+        registeredNames.add(objectName);
+    }
+
+    /**
+     * Unregisters the MBeans registered by {@link #registerMBeans(String)}.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredNames) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // already gone
+            }
+        }
+        registeredNames.clear();
+    }
+}
@@ -0,0 +1,34 @@
+package com.vuongho.parkinglot;
+
+/**
+ * The counters and gauges of a {@link ParkingLotMgr}, as exposed over JMX
+ * by {@link CommandMetrics#registerMBeans(String)}.
+ */
+public interface CommandMetricsMXBean {
+    /**
+     * @return the number of well-formed commands handled
+     */
+    long getCommandCount();
+
+    /**
+     * @return the number of command lines answered with "Invalid command"
+     */
+    long getInvalidCommandCount();
+
+    /**
+     * @return the number of park commands that did not park a car, because
+     *      the lot was full or the car could not be parked
+     */
+    long getRejectedParkCount();
+
+    /**
+     * @return the number of cars parked in the current lot, or 0 if there is
+     *      none
+     */
+    int getCurrentSize();
+
+    /**
+     * @return the capacity of the current lot, or 0 if there is none
+     */
+    int getCapacity();
+}
@@ -0,0 +1,115 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+
+/**
+ * Splits a command line into space-separated tokens in place, recording only
+ * the bounds of each token, so that parsing a command allocates nothing but
+ * the {@link String} arguments it actually needs. Tokens follow the rules of
+ * {@code line.split(" ")}: consecutive spaces make empty tokens and trailing
+ * empty tokens are dropped.
+ * <p>
+ * A {@link CommandTokenizer} is reused from line to line and is not
+ * thread-safe.
+ */
+final class CommandTokenizer {
+    /**
+     * The number of tokens whose bounds are recorded at first, enough for
+     * every {@link Command} but the batch ones. The bounds grow for longer
+     * lines.
+     */
+    private static final int INITIAL_TOKENS = 4;
+
+    private int[] starts = new int[INITIAL_TOKENS];
+    private int[] ends = new int[INITIAL_TOKENS];
+    private CharSequence line;
+    private int size;
+
+    /**
+     * Tokenizes a new command line.
+     *
+     * @param line the command line
+     * @return this {@link CommandTokenizer}
+     */
+    CommandTokenizer reset(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+        int count = 0;
+        int lastNonEmpty = -1;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line.charAt(i) == ' ') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count << 1);
+                    ends = Arrays.copyOf(ends, count << 1);
+                }
+                starts[count] = start;
+                ends[count] = i;
+                if (i > start) {
+                    lastNonEmpty = count;
+                }
+                count++;
+                start = i + 1;
+            }
+        }
+        // like String.split, an empty line is one empty token
+        size = length == 0 ? 1 : lastNonEmpty + 1;
+        return this;
+    }
+
+    /**
+     * @return the number of tokens of the current line
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the {@link Command} named by the first token, or null if it
+     *      names none
+     */
+    Command command() {
+        if (size == 0) {
+            return null;
+        }
+        return Command.match(line, starts[0], ends[0]);
+    }
+
+    /**
+     * @param index the index of the token
+     * @return the token as a {@link String}
+     */
+    String argument(int index) {
+        return line.subSequence(starts[index], ends[index]).toString();
+    }
+
+    /**
+     * Parses a token as a decimal int without creating a {@link String}.
+     * Tokens that are not a plain decimal int in range are handed to
+     * {@link Integer#parseInt(String)}, so that malformed numbers fail exactly
+     * as they would there.
+     *
+     * @param index the index of the token
+     * @return the parsed int
+     * @throws NumberFormatException if the token is not a valid int
+     */
+    int intArgument(int index) {
+        int start = starts[index];
+        int end = ends[index];
+        boolean negative = start < end && line.charAt(start) == '-';
+        int i = negative || (start < end && line.charAt(start) == '+') ? start + 1 : start;
+        // up to 9 digits can never overflow an int
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(argument(index));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(argument(index));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,659 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe {@link ParkingLot} that many gates can use at once without a
+ * global lock. Slots are claimed by compare-and-set on a
+ * {@link ConcurrentSlotSet}, cars are published through an
+ * {@link AtomicReferenceArray} per segment of slots, and the occupancy count
+ * is reserved before a slot is claimed, so a slot is never given to two cars
+ * and {@link #getCurrentSize()} never exceeds the capacity. The lot can be
+ * {@link #resize(int) resized} while the gates and the readers use it.
+ * <p>
+ * Single-slot reads are always consistent. Queries over many slots, such as
+ * {@link #status(boolean)} and the color queries, read a
+ * {@link ParkingLotSnapshot} that sees all slots at the same instant. The
+ * snapshots are built by the readers, not the gates, and never make a gate
+ * wait: a gate only counts a change of a slot in the state of its segment,
+ * like a sequence lock per segment, and a reader copies each segment while
+ * its state is unchanged, then checks the states again and copies only the
+ * segments that changed meanwhile. A segment that did not change since the
+ * previous snapshot is shared with it rather than copied. The plate queries
+ * see each plate at some instant during the call.
+ */
+public class ConcurrentParkingLot extends ParkingLot {
+    /**
+     * What a gate adds to the state of a segment when it starts a change,
+     * in the low bits, which count the changes under way.
+     */
+    private static final long WRITER = 1;
+
+    /**
+     * What the state of a segment gains by each finished change, in the high
+     * bits, which count the changes of the segment. At most 65535 gates can
+     * be changing the same segment at once.
+     */
+    private static final long CHANGE = 1L << 16;
+
+    /**
+     * The slots of a segment and its state, which only grows: the number of
+     * finished changes times {@link #CHANGE} plus the number of changes under
+     * way.
+     */
+    private static final class SlotSegment {
+        final AtomicReferenceArray<Car> cars = new AtomicReferenceArray<>(ParkingLotSnapshot.SEGMENT_SIZE);
+        final AtomicLong state = new AtomicLong();
+    }
+
+    /**
+     * The segments of the slots and the capacity, replaced as a whole by a
+     * resize. A segment is never dropped, so that its state keeps growing
+     * while it is closed and after it is opened again.
+     */
+    private static final class Table {
+        final SlotSegment[] segments;
+        final int capacity;
+
+        /**
+         * The number of resizes before the table, counted in the versions
+         * of the snapshots.
+         */
+        final long resizes;
+
+        Table(SlotSegment[] segments, int capacity, long resizes) {
+            this.segments = segments;
+            this.capacity = capacity;
+            this.resizes = resizes;
+        }
+    }
+
+    /**
+     * A snapshot and the table it was taken from.
+     */
+    private static final class LatestSnapshot {
+        final Table table;
+        final ParkingLotSnapshot snapshot;
+
+        LatestSnapshot(Table table, ParkingLotSnapshot snapshot) {
+            this.table = table;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * The cars that are parked in the {@link ConcurrentParkingLot}, by
+     * segment of {@link ParkingLotSnapshot#SEGMENT_SIZE} slots, and the
+     * number of parking spaces.
+     */
+    private volatile Table table;
+
+    /**
+     * The number of slots that are occupied or being occupied in the low 32
+     * bits, and the capacity they may reach in the high 32 bits. A parking
+     * thread reserves its place in the count before it claims a slot.
+     */
+    private final AtomicLong reservations;
+
+    /**
+     * The indices of the empty slots.
+     */
+    private final ConcurrentSlotSet emptySlots;
+
+    /**
+     * The slot index of each parked {@link Car}, keyed by its license plate.
+     */
+    private final Map<String, Integer> slotsByLicensePlate = new ConcurrentHashMap<>();
+
+    /**
+     * The latest snapshot built, whose segments are shared by the next ones
+     * while they do not change.
+     */
+    private volatile LatestSnapshot latest;
+
+    /**
+     * Held by a resize, so that resizes run one at a time. Neither the gates
+     * nor the readers take it.
+     */
+    private final Object resizeLock = new Object();
+
+    /**
+     * Constructor for a {@link ConcurrentParkingLot} with a capacity.
+     *
+     * @param capacity
+     */
+    public ConcurrentParkingLot(int capacity) {
+        super(0); // all state lives in the concurrent structures below
+        SlotSegment[] segments = new SlotSegment[ParkingLotSnapshot.segmentsFor(capacity)];
+        ParkingLotSnapshot.Segment[] copies = new ParkingLotSnapshot.Segment[segments.length];
+        for (int index = 0; index < segments.length; index++) {
+            segments[index] = new SlotSegment();
+            copies[index] = ParkingLotSnapshot.EMPTY_SEGMENT;
+        }
+        this.table = new Table(segments, capacity, 0);
+        this.reservations = new AtomicLong((long) capacity << 32);
+        this.emptySlots = new ConcurrentSlotSet(capacity);
+        this.latest = new LatestSnapshot(table, new ParkingLotSnapshot(capacity, copies, 0));
+    }
+
+    @Override
+    public int getCapacity() {
+        return table.capacity;
+    }
+
+    /**
+     * @return a copy of the cars that are parked in the
+     *      {@link ConcurrentParkingLot}, all at the same instant.
+     */
+    @Override
+    public Car[] getParkedCars() {
+        return snapshot().getParkedCars();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each segment is copied while no change of it is under way, unless the
+     * latest snapshot holds a copy of it in the same state. The states of all
+     * segments are then checked again, and the segments that changed are
+     * copied again, until a check finds no change: the snapshot is then the
+     * lot at the start of that check. The gates never wait for a reader; a
+     * reader may have to copy a few segments again while the gates keep
+     * changing them, and starts over if the lot is resized meanwhile. A
+     * {@link Car} counts in {@link #getCurrentSize()} from the moment its
+     * place is reserved, but is in the snapshots only once it has a slot, so
+     * the size of a snapshot may be below the current size.
+     */
+    @Override
+    public ParkingLotSnapshot snapshot() {
+        while (true) {
+            Table table = this.table;
+            LatestSnapshot previous = latest;
+            boolean sameTable = previous.table == table;
+            if (sameTable && isCurrent(table, previous.snapshot)) {
+                return previous.snapshot;
+            }
+            int open = ParkingLotSnapshot.segmentsFor(table.capacity);
+            ParkingLotSnapshot.Segment[] copies = new ParkingLotSnapshot.Segment[open];
+            for (int index = 0; index < open; index++) {
+                copies[index] = copy(table, index,
+                        sameTable ? previous.snapshot.segment(index) : ParkingLotSnapshot.EMPTY_SEGMENT);
+            }
+            boolean changed;
+            do {
+                changed = false;
+                for (int index = 0; index < open; index++) {
+                    if (table.segments[index].state.get() != copies[index].stamp) {
+                        copies[index] = copy(table, index, copies[index]);
+                        changed = true;
+                    }
+                }
+            } while (changed);
+            if (this.table != table) {
+                continue;
+            }
+            long version = table.resizes;
+            for (int index = 0; index < table.segments.length; index++) {
+                version += (index < open ? copies[index].stamp : table.segments[index].state.get()) / CHANGE;
+            }
+            ParkingLotSnapshot snapshot = new ParkingLotSnapshot(table.capacity, copies, version);
+            if (latest.snapshot.getVersion() < version) {
+                latest = new LatestSnapshot(table, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * @param table the table of the {@link ConcurrentParkingLot}
+     * @param snapshot a snapshot taken from the table
+     * @return true if no open segment changed since the snapshot was taken
+     */
+    private static boolean isCurrent(Table table, ParkingLotSnapshot snapshot) {
+        int open = ParkingLotSnapshot.segmentsFor(table.capacity);
+        for (int index = 0; index < open; index++) {
+            if (table.segments[index].state.get() != snapshot.segment(index).stamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a segment while no change of it is under way.
+     *
+     * @param table the table of the {@link ConcurrentParkingLot}
+     * @param index the index of the segment
+     * @param current a copy of the segment, returned if it is in the state of
+     *      the segment
+     * @return the copy of the segment
+     */
+    private static ParkingLotSnapshot.Segment copy(Table table, int index, ParkingLotSnapshot.Segment current) {
+        SlotSegment segment = table.segments[index];
+        int length = Math.min(ParkingLotSnapshot.SEGMENT_SIZE,
+                table.capacity - (index << ParkingLotSnapshot.SEGMENT_BITS));
+        while (true) {
+            long state = segment.state.get();
+            if (state == current.stamp) {
+                return current;
+            }
+            if (state % CHANGE == 0) {
+                Car[] cars = new Car[length];
+                int count = 0;
+                for (int offset = 0; offset < length; offset++) {
+                    Car car = segment.cars.get(offset);
+                    cars[offset] = car;
+                    count += car == null ? 0 : 1;
+                }
+                if (segment.state.get() == state) {
+                    return new ParkingLotSnapshot.Segment(count == 0 ? null : cars, count, state);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public Car getCar(int slot) {
+        Table table = this.table;
+        return slot >= 0 && slot < table.capacity ? carAt(table, slot) : null;
+    }
+
+    @Override
+    public int getCurrentSize() {
+        return size(reservations.get());
+    }
+
+    @Override
+    public boolean isFull() {
+        long reserved = reservations.get();
+        return size(reserved) >= capacity(reserved);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The gates and the readers go on during a resize. Opened slots get
+     * their segments first, then join the empty slots, then raise the
+     * capacity the gates may reserve. Slots are closed the other way round:
+     * the capacity the gates may reserve is lowered first, then each closed
+     * slot is claimed from the empty slots so that no gate can take it, and
+     * the resize is undone if a gate parked in one meanwhile. Resizes run one
+     * at a time.
+     */
+    @Override
+    public void resize(int capacity) throws ParkingLotException {
+        if (capacity < 0) {
+            throw new ParkingLotException("Invalid capacity");
+        }
+        synchronized (resizeLock) {
+            Table table = this.table;
+            if (capacity < table.capacity) {
+                close(table, capacity);
+            } else {
+                open(table, capacity);
+            }
+        }
+        ParkingEventStream events = getEventStream();
+        if (events != null) {
+            events.publish(ParkingEvent.Type.RESIZED, -1, null, capacity);
+        }
+    }
+
+    /**
+     * Opens the slots from the capacity of a table up to a larger one.
+     */
+    private void open(Table table, int capacity) {
+        SlotSegment[] segments = table.segments;
+        int needed = ParkingLotSnapshot.segmentsFor(capacity);
+        if (needed > segments.length) {
+            segments = Arrays.copyOf(segments, needed);
+            for (int index = table.segments.length; index < needed; index++) {
+                segments[index] = new SlotSegment();
+            }
+        }
+        this.table = new Table(segments, capacity, table.resizes + 1);
+        emptySlots.add(table.capacity, capacity);
+        reservations.addAndGet((long) (capacity - table.capacity) << 32);
+    }
+
+    /**
+     * Closes the slots from a smaller capacity up to the capacity of a
+     * table, if they are all empty.
+     *
+     * @throws ParkingLotException if a closed slot is occupied
+     */
+    private void close(Table table, int capacity) throws ParkingLotException {
+        long closed = (long) (table.capacity - capacity) << 32;
+        long reserved;
+        while (true) {
+            for (int slot = capacity; slot < table.capacity; slot++) {
+                if (carAt(table, slot) != null) {
+                    throw new ParkingLotException("Sorry, slot number " + (slot + 1) + " is still occupied");
+                }
+            }
+            reserved = reservations.get();
+            if (size(reserved) <= capacity) {
+                if (reservations.compareAndSet(reserved, reserved - closed)) {
+                    break;
+                }
+            } else {
+                // cars are being parked that the closed slots may get
+                Thread.onSpinWait();
+            }
+        }
+        for (int slot = capacity; slot < table.capacity; slot++) {
+            if (!emptySlots.claim(slot)) {
+                // parked meanwhile by a gate that reserved its place before
+                emptySlots.add(capacity, slot);
+                reservations.addAndGet(closed);
+                throw new ParkingLotException("Sorry, slot number " + (slot + 1) + " is still occupied");
+            }
+        }
+        this.table = new Table(table.segments, capacity, table.resizes + 1);
+    }
+
+    /**
+     * Sessions are not tracked on a {@link ConcurrentParkingLot}, as a
+     * {@link SessionTracker} is updated by a single thread.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void trackSessions(SessionTracker tracker) {
+        throw new UnsupportedOperationException("Sessions are not tracked on a concurrent parking lot");
+    }
+
+    /**
+     * A {@link ConcurrentParkingLot} always claims the lowest empty slot it
+     * can, as an {@link AllocationStrategy} is updated by a single thread.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void setAllocationStrategy(AllocationStrategy strategy) {
+        throw new UnsupportedOperationException("Allocation strategies are not supported on a concurrent parking lot");
+    }
+
+    /**
+     * Slots are not held on a {@link ConcurrentParkingLot}, as the deadlines
+     * of the holds are kept by a single thread.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public int hold(Car car, long untilMillis) {
+        throw new UnsupportedOperationException("Slots are not held on a concurrent parking lot");
+    }
+
+    @Override
+    public int tryPark(Car car) {
+        if (slotsByLicensePlate.containsKey(car.getLicensePlate())) {
+            return ALREADY_PARKED;
+        }
+        long reserved;
+        do {
+            reserved = reservations.get();
+            if (size(reserved) >= capacity(reserved)) {
+                return FULL;
+            }
+        } while (!reservations.compareAndSet(reserved, reserved + 1));
+        // the reservation guarantees an empty slot, which a concurrent leave
+        // may still be in the middle of releasing
+        int slot;
+        while ((slot = emptySlots.claimFirst()) == -1) {
+            Thread.onSpinWait();
+        }
+        if (slotsByLicensePlate.putIfAbsent(car.getLicensePlate(), slot) != null) {
+            emptySlots.release(slot);
+            reservations.decrementAndGet();
+            return ALREADY_PARKED;
+        }
+        publish(ParkingEvent.Type.PARKED, slot, car);
+        set(slot, car);
+        return slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The places of the whole batch are reserved in the occupancy count with
+     * a single compare-and-set, after the already parked plates and those
+     * repeated in the batch are left out, so that a batch of parked plates
+     * reserves nothing. A place is given back at the end only if a gate
+     * parks the same plate meanwhile. The slots are not guaranteed to be the
+     * lowest ones, nor contiguous, as other gates park at the same time.
+     */
+    @Override
+    public int[] parkAll(List<Car> cars) {
+        int[] slots = new int[cars.size()];
+        Set<String> arriving = new HashSet<>();
+        for (int i = 0; i < slots.length; i++) {
+            String licensePlate = cars.get(i).getLicensePlate();
+            slots[i] = slotsByLicensePlate.containsKey(licensePlate) || !arriving.add(licensePlate)
+                    ? ALREADY_PARKED : FULL;
+        }
+        long before;
+        int reserved;
+        do {
+            before = reservations.get();
+            reserved = Math.max(0, Math.min(arriving.size(), capacity(before) - size(before)));
+        } while (reserved > 0 && !reservations.compareAndSet(before, before + reserved));
+        for (int i = 0; i < slots.length && reserved > 0; i++) {
+            if (slots[i] == ALREADY_PARKED) {
+                continue;
+            }
+            Car car = cars.get(i);
+            int slot;
+            while ((slot = emptySlots.claimFirst()) == -1) {
+                Thread.onSpinWait();
+            }
+            if (slotsByLicensePlate.putIfAbsent(car.getLicensePlate(), slot) != null) {
+                // parked through another gate meanwhile
+                emptySlots.release(slot);
+                slots[i] = ALREADY_PARKED;
+                continue;
+            }
+            reserved--;
+            publish(ParkingEvent.Type.PARKED, slot, car);
+            set(slot, car);
+            slots[i] = slot;
+        }
+        if (reserved > 0) {
+            reservations.addAndGet(-reserved);
+        }
+        return slots;
+    }
+
+    @Override
+    public boolean isEmptyLot(int slot) throws ParkingLotException {
+        Table table = this.table;
+        if (slot < 0 || slot >= table.capacity) {
+            throw new ParkingLotException("Invalid slot number");
+        }
+        return carAt(table, slot) == null;
+    }
+
+    @Override
+    public Car tryLeave(int slot) {
+        Table table = this.table;
+        if (slot < 0 || slot >= table.capacity) {
+            return null;
+        }
+        SlotSegment segment = table.segments[slot >>> ParkingLotSnapshot.SEGMENT_BITS];
+        int offset = slot & ParkingLotSnapshot.SEGMENT_MASK;
+        if (segment.cars.get(offset) == null) {
+            return null;
+        }
+        segment.state.getAndAdd(WRITER);
+        Car carToLeave = segment.cars.getAndSet(offset, null);
+        segment.state.getAndAdd(CHANGE - WRITER);
+        if (carToLeave == null) {
+            // left through another gate meanwhile
+            return null;
+        }
+        slotsByLicensePlate.remove(carToLeave.getLicensePlate(), slot);
+        publish(ParkingEvent.Type.LEFT, slot, carToLeave);
+        emptySlots.release(slot);
+        reservations.decrementAndGet();
+        return carToLeave;
+    }
+
+    /**
+     * Publishes a change of a slot, if events are published. It is called
+     * while the slot is still held by the thread making the change, so that
+     * the events of each slot are numbered in the order they happened.
+     *
+     * @param type the kind of change
+     * @param slot the slot index
+     * @param car the {@link Car} that parks or leaves
+     */
+    private void publish(ParkingEvent.Type type, int slot, Car car) {
+        ParkingEventStream events = getEventStream();
+        if (events != null) {
+            events.publish(type, slot, car, -1);
+        }
+    }
+
+    /**
+     * Parks a {@link Car} in a claimed slot, counted as a change for the
+     * readers of {@link #snapshot()}.
+     *
+     * @param slot the slot index
+     * @param car the {@link Car}
+     */
+    private void set(int slot, Car car) {
+        SlotSegment segment = segmentOf(slot);
+        segment.state.getAndAdd(WRITER);
+        segment.cars.set(slot & ParkingLotSnapshot.SEGMENT_MASK, car);
+        segment.state.getAndAdd(CHANGE - WRITER);
+    }
+
+    /**
+     * @param slot a slot index, which a resize may not close meanwhile
+     * @return the segment of the slot
+     */
+    private SlotSegment segmentOf(int slot) {
+        return table.segments[slot >>> ParkingLotSnapshot.SEGMENT_BITS];
+    }
+
+    /**
+     * @param table the table of the {@link ConcurrentParkingLot}
+     * @param slot a slot index below the capacity of the table
+     * @return the {@link Car} in the slot, or null
+     */
+    private static Car carAt(Table table, int slot) {
+        return table.segments[slot >>> ParkingLotSnapshot.SEGMENT_BITS].cars.get(slot & ParkingLotSnapshot.SEGMENT_MASK);
+    }
+
+    /**
+     * @param reserved a value of {@link #reservations}
+     * @return the number of slots occupied or being occupied
+     */
+    private static int size(long reserved) {
+        return (int) reserved;
+    }
+
+    /**
+     * @param reserved a value of {@link #reservations}
+     * @return the number of slots that may be reserved
+     */
+    private static int capacity(long reserved) {
+        return (int) (reserved >>> 32);
+    }
+
+    @Override
+    public String status(boolean fullInfo) {
+        return snapshot().status(fullInfo);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Nothing is cached, as the slots change under the call; the lines of
+     * a snapshot are written a few thousand at a time instead.
+     */
+    @Override
+    public void status(boolean fullInfo, Appendable out) throws IOException {
+        snapshot().status(fullInfo, out);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The cars are read from a snapshot, through the color index of each of
+     * its segments, which is built once per change of the segment rather
+     * than once per query; a gate never updates an index.
+     */
+    @Override
+    public List<Car> getCarsWithColor(String color) {
+        return snapshot().getCarsWithColor(color);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The slots are read from a snapshot, as for
+     * {@link #getCarsWithColor(String)}.
+     */
+    @Override
+    public List<Integer> getSlotsNumberForCarsWithColor(String color) {
+        return snapshot().getSlotsNumberForCarsWithColor(color);
+    }
+
+    @Override
+    public int getSlotNumberForId(String id) {
+        Integer slot = slotsByLicensePlate.get(id);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * No sorted index is kept, as it would cost every gate a lock or a
+     * sorted insert; the plates of the parked cars are scanned instead, so
+     * the search costs about the number of parked cars.
+     */
+    @Override
+    public List<Integer> getSlotsNumberForIdsMatching(String pattern) {
+        List<Integer> slots = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : slotsByLicensePlate.entrySet()) {
+            if (PlateSearchIndex.matches(pattern, entry.getKey())) {
+                slots.add(entry.getValue());
+            }
+        }
+        Collections.sort(slots);
+        return slots;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * No deletion index is kept, as it would cost every gate a lock; the
+     * plates of the parked cars are scanned with a bounded edit distance
+     * instead.
+     */
+    @Override
+    public List<Integer> getSlotsNumberForIdsNear(String id, int maxEdits, PlateDistance distance) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Invalid number of edits " + maxEdits);
+        }
+        List<Integer> slots = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : slotsByLicensePlate.entrySet()) {
+            if (PlateDistance.edits(id, entry.getKey(), maxEdits) != -1) {
+                slots.add(entry.getValue());
+            }
+        }
+        return orderByDistance(id, slots, distance);
+    }
+}
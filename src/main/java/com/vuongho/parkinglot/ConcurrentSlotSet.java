@@ -0,0 +1,287 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe set of slot indices, shaped like {@link SlotSet} but with
+ * every word updated by compare-and-set. The bottom level holds one bit per
+ * slot and is the only source of truth: a slot is claimed by the thread whose
+ * compare-and-set clears its bit. The levels above are hints that a word of
+ * the level below may be non-empty; they are set after a bit is released and
+ * cleared lazily by claimers that find an empty word, which then re-check the
+ * word so that a concurrent release is never lost.
+ * <p>
+ * The slot bits are kept in chunks of {@link #CHUNK_WORDS} words, so that the
+ * set can grow while it is used: the chunks are shared by the old and the new
+ * {@link Layout}, and the hints of a new layout start all set, which only
+ * costs a claimer a few empty words to clear. A release sets its hints again
+ * if the layout changed meanwhile.
+ */
+final class ConcurrentSlotSet {
+    private static final int CHUNK_BITS = 4;
+    private static final int CHUNK_WORDS = 1 << CHUNK_BITS;
+
+    /**
+     * The levels of the bitset: the slot bits, in chunks, and the hints
+     * above them, the last being a single word.
+     */
+    private static final class Layout {
+        final AtomicLongArray[] chunks;
+        final AtomicLongArray[] hints;
+
+        /**
+         * Constructor for a {@link Layout} whose hints are all set.
+         *
+         * @param chunks the chunks of slot bits
+         */
+        Layout(AtomicLongArray[] chunks) {
+            this.chunks = chunks;
+            int depth = 0;
+            for (int bits = chunks.length << CHUNK_BITS; bits > 1; bits = wordsFor(bits)) {
+                depth++;
+            }
+            hints = new AtomicLongArray[depth];
+            int bits = chunks.length << CHUNK_BITS;
+            for (int level = 0; level < depth; level++) {
+                hints[level] = new AtomicLongArray(wordsFor(bits));
+                for (int word = 0; word < hints[level].length(); word++) {
+                    int remaining = bits - (word << 6);
+                    hints[level].set(word, remaining >= 64 ? -1L : (1L << remaining) - 1);
+                }
+                bits = hints[level].length();
+            }
+        }
+
+        /**
+         * @return the number of levels, the slot bits included
+         */
+        int depth() {
+            return hints.length + 1;
+        }
+
+        long get(int level, int index) {
+            return level == 0
+                    ? chunks[index >>> CHUNK_BITS].get(index & (CHUNK_WORDS - 1))
+                    : hints[level - 1].get(index);
+        }
+
+        boolean compareAndSet(int level, int index, long expected, long bits) {
+            return level == 0
+                    ? chunks[index >>> CHUNK_BITS].compareAndSet(index & (CHUNK_WORDS - 1), expected, bits)
+                    : hints[level - 1].compareAndSet(index, expected, bits);
+        }
+    }
+
+    private volatile Layout layout;
+
+    /**
+     * Constructor for a {@link ConcurrentSlotSet} holding every slot index
+     * from {@code 0} to {@code capacity - 1}.
+     *
+     * @param capacity the number of slot indices
+     */
+    ConcurrentSlotSet(int capacity) {
+        this.layout = new Layout(new AtomicLongArray[0]);
+        add(0, capacity);
+    }
+
+    /**
+     * Atomically removes the lowest slot index that this thread can find in
+     * the set. Under contention the index may not be the lowest one at the
+     * instant of return, but no index is ever handed to two threads.
+     *
+     * @return the claimed slot index, or -1 if the set looked empty.
+     */
+    int claimFirst() {
+        retry:
+        while (true) {
+            Layout layout = this.layout;
+            int top = layout.depth() - 1;
+            int index = 0;
+            for (int level = top; level > 0; level--) {
+                long bits = layout.get(level, index);
+                if (bits == 0) {
+                    if (level == top) {
+                        return -1;
+                    }
+                    clearHint(layout, level, index);
+                    continue retry;
+                }
+                index = (index << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            while (true) {
+                long bits = layout.get(0, index);
+                if (bits == 0) {
+                    if (top == 0) {
+                        return -1;
+                    }
+                    clearHint(layout, 0, index);
+                    continue retry;
+                }
+                long lowest = Long.lowestOneBit(bits);
+                if (layout.compareAndSet(0, index, bits, bits & ~lowest)) {
+                    if ((bits & ~lowest) == 0 && top > 0) {
+                        clearHint(layout, 0, index);
+                    }
+                    return (index << 6) + Long.numberOfTrailingZeros(lowest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Atomically removes a given slot index from the set.
+     *
+     * @param slot the slot index
+     * @return true if this thread removed the index, false if it was not in
+     *      the set.
+     */
+    boolean claim(int slot) {
+        Layout layout = this.layout;
+        int word = slot >>> 6;
+        long mask = 1L << slot;
+        while (true) {
+            long bits = layout.get(0, word);
+            if ((bits & mask) == 0) {
+                return false;
+            }
+            if (layout.compareAndSet(0, word, bits, bits & ~mask)) {
+                if ((bits & ~mask) == 0 && layout.depth() > 1) {
+                    clearHint(layout, 0, word);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically adds a slot index back to the set.
+     *
+     * @param slot the slot index
+     */
+    void release(int slot) {
+        Layout layout = this.layout;
+        setBit(layout, 0, slot);
+        setHints(layout, slot >>> 6);
+    }
+
+    /**
+     * Adds the slot indices from {@code from} to {@code to - 1}, none of
+     * which may be in the set, making room for them first. The set may be
+     * used meanwhile, but not grown by another thread.
+     *
+     * @param from the first slot index
+     * @param to the slot index after the last one
+     */
+    void add(int from, int to) {
+        Layout layout = this.layout;
+        int chunks = (wordsFor(to) + CHUNK_WORDS - 1) >>> CHUNK_BITS;
+        if (chunks > layout.chunks.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(layout.chunks, chunks);
+            for (int chunk = layout.chunks.length; chunk < chunks; chunk++) {
+                grown[chunk] = new AtomicLongArray(CHUNK_WORDS);
+            }
+            layout = new Layout(grown);
+            this.layout = layout;
+        }
+        for (int slot = from; slot < to; ) {
+            int word = slot >>> 6;
+            int end = Math.min(to, (word + 1) << 6);
+            long mask = (end - slot == 64 ? -1L : (1L << (end - slot)) - 1) << slot;
+            long bits;
+            do {
+                bits = layout.get(0, word);
+            } while (!layout.compareAndSet(0, word, bits, bits | mask));
+            setHints(layout, word);
+            slot = end;
+        }
+    }
+
+    /**
+     * Checks if a slot index is in the set.
+     *
+     * @param slot the slot index
+     * @return true if the slot index is in the set, false otherwise
+     */
+    boolean contains(int slot) {
+        return (layout.get(0, slot >>> 6) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Sets the hints above a word of slot bits, again in the new layout if
+     * the set grew meanwhile.
+     *
+     * @param layout the layout the bits were set in
+     * @param index the index of the word
+     */
+    private void setHints(Layout layout, int index) {
+        while (true) {
+            for (int level = 1, word = index; level < layout.depth(); level++, word >>>= 6) {
+                setBit(layout, level, word);
+            }
+            Layout current = this.layout;
+            if (current == layout) {
+                return;
+            }
+            layout = current;
+        }
+    }
+
+    /**
+     * Clears the hint bit for a word that was found empty, then re-checks the
+     * word and restores the hint if a release raced with the clear. Walks up
+     * while the hint words become empty too.
+     *
+     * @param layout the layout the word was found empty in
+     * @param level the level of the empty word
+     * @param index the index of the empty word in its level
+     */
+    private static void clearHint(Layout layout, int level, int index) {
+        int depth = layout.depth();
+        while (level < depth - 1) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            long bits;
+            do {
+                bits = layout.get(level + 1, word);
+            } while ((bits & mask) != 0 && !layout.compareAndSet(level + 1, word, bits, bits & ~mask));
+            if (layout.get(level, index) != 0) {
+                for (int up = level + 1; up < depth; up++) {
+                    setBit(layout, up, index);
+                    index >>>= 6;
+                }
+                return;
+            }
+            if (layout.get(level + 1, word) != 0) {
+                return;
+            }
+            level++;
+            index = word;
+        }
+    }
+
+    /**
+     * Atomically sets a bit of a level.
+     *
+     * @param layout the layout
+     * @param level the level
+     * @param index the index of the bit in the level
+     */
+    private static void setBit(Layout layout, int level, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long bits;
+        do {
+            bits = layout.get(level, word);
+        } while ((bits & mask) == 0 && !layout.compareAndSet(level, word, bits, bits | mask));
+    }
+
+    /**
+     * @param bits a number of bits
+     * @return the number of words needed to hold the bits, at least one
+     */
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+}
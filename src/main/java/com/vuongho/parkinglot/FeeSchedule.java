@@ -0,0 +1,33 @@
+package com.vuongho.parkinglot;
+
+/**
+ * Computes the fee of a {@link ParkingSession} from its arrival and
+ * departure times, in cents.
+ */
+@FunctionalInterface
+public interface FeeSchedule {
+    /**
+     * @param arrivalMillis the arrival time, in milliseconds since the epoch
+     * @param departureMillis the departure time, in milliseconds since the
+     *      epoch
+     * @return the fee of the session, in cents
+     */
+    long fee(long arrivalMillis, long departureMillis);
+
+    /**
+     * A fee for every started hour, with each full day and the rest of the
+     * stay capped at a daily maximum. A stay of no time at all still pays
+     * for its first hour.
+     *
+     * @param centsPerHour the fee of an hour, in cents
+     * @param dailyMaximum the most a day costs, in cents
+     * @return the fee schedule
+     */
+    static FeeSchedule perStartedHour(long centsPerHour, long dailyMaximum) {
+        return (arrivalMillis, departureMillis) -> {
+            long millis = Math.max(0, departureMillis - arrivalMillis);
+            long hours = Math.max(1, (millis + SessionTracker.HOUR_MILLIS - 1) / SessionTracker.HOUR_MILLIS);
+            return hours / 24 * dailyMaximum + Math.min(hours % 24 * centsPerHour, dailyMaximum);
+        };
+    }
+}
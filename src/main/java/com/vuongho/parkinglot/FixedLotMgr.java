@@ -0,0 +1,43 @@
+package com.vuongho.parkinglot;
+
+/**
+ * A {@link ParkingLotMgr} over a lot owned by a server, which a client can
+ * use but not replace.
+ */
+class FixedLotMgr extends ParkingLotMgr {
+    /**
+     * Constructor for a {@link FixedLotMgr} over a served lot.
+     *
+     * @param parkingLot the served lot
+     */
+    FixedLotMgr(ParkingLot parkingLot) {
+        super(parkingLot);
+    }
+
+    @Override
+    public String createParkingLot(int capacity) {
+        return "Sorry, the parking lot is managed by the server";
+    }
+
+    /**
+     * Handles a command from a client as
+     * {@link ParkingLotMgr#giveCommand(CharSequence)} does, except that an
+     * invalid number or any other failure of the command is answered rather
+     * than thrown: the REPL would stop, but a server goes on with the other
+     * commands and clients.
+     *
+     * @param parkingLotMgr the manager of the client
+     * @param command input command
+     * @return appropriate message from processing the command
+     */
+    static String giveCommand(ParkingLotMgr parkingLotMgr, CharSequence command) {
+        try {
+            return parkingLotMgr.giveCommand(command);
+        } catch (NumberFormatException e) {
+            return "Invalid command";
+        } catch (RuntimeException e) {
+            System.err.println("Command " + command + " failed: " + e);
+            return "Sorry, the command failed";
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A symmetric deletion index of the license plates of a {@link ParkingLot},
+ * to find the plates within a few edits of a misread one. Every plate is
+ * indexed under each string obtained by deleting up to {@link #maxEdits} of
+ * its characters; two plates within {@code k} edits of each other always
+ * share such a string with at most {@code k} deletions on each side. A
+ * search thus looks up the deletions of the misread plate, then checks the
+ * few plates found there with a bounded edit distance.
+ * <p>
+ * The deletions are not kept as strings: each is hashed to 64 bits and
+ * stored with its slot in a chained hash table of parallel arrays, with no
+ * object per entry. Chaining rather than open addressing keeps a deletion
+ * shared by many plates, e.g. when plates share most of their characters,
+ * from turning into a long probe run for every other deletion. A hash
+ * collision only adds a candidate that the check turns down. A plate of
+ * {@code n} characters takes {@code 1 + n + n(n-1)/2} entries of 16 bytes
+ * for two edits, 29 for seven characters.
+ */
+final class FuzzyPlateIndex {
+    private static final int NONE = -1;
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private final SlotStorage storage;
+    private final int maxEdits;
+
+    /**
+     * The first entry of each bucket, or {@link #NONE}.
+     */
+    private int[] buckets;
+    private int mask;
+
+    /**
+     * The entries: the hash of a deletion, the slot of its plate, and the
+     * next entry of the same bucket, or of the free list.
+     */
+    private long[] hashes;
+    private int[] slots;
+    private int[] next;
+    private int size = 0;
+    private int freeEntry = NONE;
+    private int usedEntries = 0;
+
+    /**
+     * The deletion hashes of the plate being indexed or searched.
+     */
+    private long[] deletions = new long[32];
+    private int deletionCount;
+    private boolean[] deleted = new boolean[16];
+
+    /**
+     * Constructor for an empty {@link FuzzyPlateIndex} over a
+     * {@link SlotStorage}.
+     *
+     * @param storage where the plates of the indexed slots are kept
+     * @param maxEdits the most edits a search may allow
+     */
+    FuzzyPlateIndex(SlotStorage storage, int maxEdits) {
+        this.storage = storage;
+        this.maxEdits = maxEdits;
+        allocate(MIN_TABLE_SIZE);
+    }
+
+    /**
+     * @return the most edits a search may allow
+     */
+    int getMaxEdits() {
+        return maxEdits;
+    }
+
+    /**
+     * @return the number of entries, a few per plate
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Indexes the slot of a license plate.
+     *
+     * @param licensePlate the license plate
+     * @param slot the slot of the license plate
+     */
+    void put(String licensePlate, int slot) {
+        computeDeletions(licensePlate, maxEdits);
+        if (size + deletionCount > buckets.length) {
+            int tableSize = buckets.length;
+            while (size + deletionCount > tableSize) {
+                tableSize <<= 1;
+            }
+            resize(tableSize);
+        }
+        for (int d = 0; d < deletionCount; d++) {
+            insert(deletions[d], slot);
+        }
+    }
+
+    /**
+     * Removes the entries of a license plate and slot. It does not read the
+     * {@link SlotStorage}, so the slot may already be emptied.
+     *
+     * @param licensePlate the license plate
+     * @param slot the slot of the license plate
+     */
+    void remove(String licensePlate, int slot) {
+        computeDeletions(licensePlate, maxEdits);
+        for (int d = 0; d < deletionCount; d++) {
+            delete(deletions[d], slot);
+        }
+    }
+
+    /**
+     * Finds the slots of the license plates within a number of edits of a
+     * license plate.
+     *
+     * @param licensePlate the license plate, e.g. as read by a camera
+     * @param edits the most insertions, deletions and replacements allowed,
+     *      at most {@link #getMaxEdits()}
+     * @param found where the slots of the plates found are added, in no
+     *      particular order
+     */
+    void find(String licensePlate, int edits, List<Integer> found) {
+        computeDeletions(licensePlate, edits);
+        int[] candidates = new int[16];
+        int count = 0;
+        for (int d = 0; d < deletionCount; d++) {
+            long hash = deletions[d];
+            for (int i = buckets[index(hash)]; i != NONE; i = next[i]) {
+                if (hashes[i] == hash) {
+                    if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, count * 2);
+                    }
+                    candidates[count++] = slots[i];
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, count);
+        for (int c = 0; c < count; c++) {
+            int slot = candidates[c];
+            if (c > 0 && slot == candidates[c - 1]) {
+                continue;
+            }
+            Car car = storage.get(slot);
+            if (car != null && PlateDistance.edits(licensePlate, car.getLicensePlate(), edits) != -1) {
+                found.add(slot);
+            }
+        }
+    }
+
+    /**
+     * Fills {@link #deletions} with the distinct hashes of the strings
+     * obtained by deleting up to {@code edits} characters of a plate.
+     */
+    private void computeDeletions(String licensePlate, int edits) {
+        if (deleted.length < licensePlate.length()) {
+            deleted = new boolean[licensePlate.length()];
+        }
+        deletionCount = 0;
+        addDeletions(licensePlate, 0, Math.min(edits, licensePlate.length()));
+        // deleting either of two equal neighbours gives the same string
+        Arrays.sort(deletions, 0, deletionCount);
+        int distinct = 0;
+        for (int d = 0; d < deletionCount; d++) {
+            if (d == 0 || deletions[d] != deletions[d - 1]) {
+                deletions[distinct++] = deletions[d];
+            }
+        }
+        deletionCount = distinct;
+    }
+
+    private void addDeletions(String licensePlate, int from, int edits) {
+        if (deletionCount == deletions.length) {
+            deletions = Arrays.copyOf(deletions, deletionCount * 2);
+        }
+        deletions[deletionCount++] = hash(licensePlate);
+        if (edits == 0) {
+            return;
+        }
+        for (int i = from; i < licensePlate.length(); i++) {
+            deleted[i] = true;
+            addDeletions(licensePlate, i + 1, edits - 1);
+            deleted[i] = false;
+        }
+    }
+
+    /**
+     * Hashes the characters of a plate that are not marked in
+     * {@link #deleted}, with FNV-1a over 64 bits and a final mix.
+     */
+    private long hash(String licensePlate) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < licensePlate.length(); i++) {
+            if (!deleted[i]) {
+                h = (h ^ licensePlate.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+
+    private int index(long hash) {
+        return (int) hash & mask;
+    }
+
+    private void insert(long hash, int slot) {
+        int entry = freeEntry;
+        if (entry != NONE) {
+            freeEntry = next[entry];
+        } else {
+            if (usedEntries == slots.length) {
+                growEntries(usedEntries * 2);
+            }
+            entry = usedEntries++;
+        }
+        int bucket = index(hash);
+        hashes[entry] = hash;
+        slots[entry] = slot;
+        next[entry] = buckets[bucket];
+        buckets[bucket] = entry;
+        size++;
+    }
+
+    private void delete(long hash, int slot) {
+        int bucket = index(hash);
+        int previous = NONE;
+        for (int i = buckets[bucket]; i != NONE; previous = i, i = next[i]) {
+            if (slots[i] == slot && hashes[i] == hash) {
+                if (previous == NONE) {
+                    buckets[bucket] = next[i];
+                } else {
+                    next[previous] = next[i];
+                }
+                slots[i] = NONE;
+                next[i] = freeEntry;
+                freeEntry = i;
+                size--;
+                return;
+            }
+        }
+    }
+
+    private void resize(int tableSize) {
+        buckets = new int[tableSize];
+        mask = tableSize - 1;
+        Arrays.fill(buckets, NONE);
+        growEntries(tableSize);
+        // relink every entry in use; the free ones have slot NONE
+        for (int i = 0; i < usedEntries; i++) {
+            if (slots[i] != NONE) {
+                int bucket = index(hashes[i]);
+                next[i] = buckets[bucket];
+                buckets[bucket] = i;
+            }
+        }
+    }
+
+    private void growEntries(int entryCount) {
+        if (entryCount <= slots.length) {
+            return;
+        }
+        hashes = Arrays.copyOf(hashes, entryCount);
+        slots = Arrays.copyOf(slots, entryCount);
+        next = Arrays.copyOf(next, entryCount);
+    }
+
+    private void allocate(int tableSize) {
+        hashes = new long[0];
+        slots = new int[0];
+        next = new int[0];
+        resize(tableSize);
+    }
+}
@@ -0,0 +1,75 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+
+/**
+ * The default {@link SlotStorage}, arrays of {@link Car} on the heap. The
+ * slots are split into chunks of 4096, so that {@link #resize(int)} only
+ * copies the list of chunks and the last chunk, never all the cars.
+ */
+public class HeapSlotStorage implements SlotStorage {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The cars that are parked, by chunk then slot within the chunk. Every
+     * chunk but the last holds {@link #CHUNK_SIZE} slots.
+     */
+    private Car[][] chunks = new Car[0][];
+
+    /**
+     * The number of slots.
+     */
+    private int capacity = 0;
+
+    /**
+     * Constructor for a {@link HeapSlotStorage} with a capacity.
+     *
+     * @param capacity the number of slots
+     */
+    public HeapSlotStorage(int capacity) {
+        resize(capacity);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public Car get(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+    }
+
+    @Override
+    public void put(int slot, Car car) {
+        chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK] = car;
+    }
+
+    @Override
+    public void remove(int slot) {
+        chunks[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK] = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The chunks that are kept whole are shared with the new list of chunks.
+     */
+    @Override
+    public void resize(int capacity) {
+        int chunkCount = (capacity + CHUNK_MASK) >>> CHUNK_SHIFT;
+        Car[][] resized = Arrays.copyOf(chunks, chunkCount);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int length = Math.min(CHUNK_SIZE, capacity - (chunk << CHUNK_SHIFT));
+            if (resized[chunk] == null) {
+                resized[chunk] = new Car[length];
+            } else if (resized[chunk].length != length) {
+                resized[chunk] = Arrays.copyOf(resized[chunk], length);
+            }
+        }
+        this.chunks = resized;
+        this.capacity = capacity;
+    }
+}
@@ -0,0 +1,38 @@
+package com.vuongho.parkinglot;
+
+/**
+ * The latencies of one command of a {@link ParkingLotMgr}, as exposed over
+ * JMX by {@link CommandMetrics#registerMBeans(String)}. The percentiles are
+ * known to within about 3%.
+ */
+public interface LatencyMXBean {
+    /**
+     * @return the number of recorded latencies
+     */
+    long getCount();
+
+    /**
+     * @return the mean latency in nanoseconds, or 0 if there are none
+     */
+    double getMeanNanos();
+
+    /**
+     * @return the highest latency in nanoseconds, or 0 if there are none
+     */
+    long getMaxNanos();
+
+    /**
+     * @return the median latency in nanoseconds
+     */
+    long getP50Nanos();
+
+    /**
+     * @return the 99th percentile latency in nanoseconds
+     */
+    long getP99Nanos();
+
+    /**
+     * @return the 99.9th percentile latency in nanoseconds
+     */
+    long getP999Nanos();
+}
@@ -0,0 +1,223 @@
+package com.vuongho.parkinglot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link SlotStorage} kept in a memory-mapped file, so that the parked cars
+ * survive a restart of the process. The file holds a header with the
+ * capacity and the current number of cars, followed by one fixed-size record
+ * per slot:
+ * <pre>
+ * offset  size  field
+ * 0       1     occupied flag
+ * 1       1     license plate length, in UTF-8 bytes
+ * 2       1     color length, in UTF-8 bytes
+ * 3       32    license plate
+ * 35      29    color
+ * </pre>
+ * Parking writes the plate and color before setting the occupied flag, and
+ * leaving clears the flag first, so a process killed in the middle of a write
+ * leaves every slot either empty or holding a whole car. Writes reach the
+ * operating system's page cache immediately and survive a killed process;
+ * {@link #force()} also makes them survive a crash of the machine.
+ */
+public class MappedSlotStorage implements SlotStorage, Closeable {
+    private static final int MAGIC = 0x504b4c54; // "PKLT"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+
+    private static final int RECORD_SIZE = 64;
+    private static final int FLAG_OFFSET = 0;
+    private static final int PLATE_LENGTH_OFFSET = 1;
+    private static final int COLOR_LENGTH_OFFSET = 2;
+    private static final int PLATE_OFFSET = 3;
+    private static final int MAX_PLATE_LENGTH = 32;
+    private static final int COLOR_OFFSET = PLATE_OFFSET + MAX_PLATE_LENGTH;
+    private static final int MAX_COLOR_LENGTH = RECORD_SIZE - COLOR_OFFSET;
+
+    /**
+     * The largest capacity that fits in a single mapping.
+     */
+    public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private MappedSlotStorage(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens the slot store in a file. If the file does not exist, it is created
+     * with the input capacity and every slot empty. If it exists, it is mapped
+     * as it is and keeps its own capacity.
+     *
+     * @param file the file of the slot store
+     * @param capacity the capacity of a newly created store
+     * @return the opened {@link MappedSlotStorage}
+     * @throws IOException if the file cannot be opened, or is not a slot store
+     */
+    public static MappedSlotStorage open(Path file, int capacity) throws IOException {
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (exists) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+                    throw new IOException(file + " is not a parking lot slot store");
+                }
+                capacity = header.getInt(CAPACITY_OFFSET);
+            } else if (capacity < 0 || capacity > MAX_CAPACITY) {
+                throw new IllegalArgumentException("Capacity must be between 0 and " + MAX_CAPACITY);
+            }
+            long length = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (!exists) {
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(SIZE_OFFSET, 0);
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+            }
+            MappedSlotStorage storage = new MappedSlotStorage(channel, buffer, capacity);
+            if (exists) {
+                storage.repairSize();
+            }
+            return storage;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of cars recorded in the header
+     */
+    public int getCurrentSize() {
+        return buffer.getInt(SIZE_OFFSET);
+    }
+
+    @Override
+    public Car get(int slot) {
+        int record = offset(slot);
+        if (buffer.get(record + FLAG_OFFSET) == 0) {
+            return null;
+        }
+        byte[] plate = new byte[buffer.get(record + PLATE_LENGTH_OFFSET)];
+        byte[] color = new byte[buffer.get(record + COLOR_LENGTH_OFFSET)];
+        buffer.get(record + PLATE_OFFSET, plate);
+        buffer.get(record + COLOR_OFFSET, color);
+        return new Car(new String(plate, StandardCharsets.UTF_8), new String(color, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ParkingLotException if the license plate or the color is too
+     *      long for a record
+     */
+    @Override
+    public void put(int slot, Car car) throws ParkingLotException {
+        byte[] plate = car.getLicensePlate().getBytes(StandardCharsets.UTF_8);
+        byte[] color = car.getColor().getBytes(StandardCharsets.UTF_8);
+        check(plate, color);
+        int record = offset(slot);
+        buffer.put(record + PLATE_LENGTH_OFFSET, (byte) plate.length);
+        buffer.put(record + COLOR_LENGTH_OFFSET, (byte) color.length);
+        buffer.put(record + PLATE_OFFSET, plate);
+        buffer.put(record + COLOR_OFFSET, color);
+        buffer.put(record + FLAG_OFFSET, (byte) 1);
+        buffer.putInt(SIZE_OFFSET, buffer.getInt(SIZE_OFFSET) + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ParkingLotException if the license plate or the color is too
+     *      long for a record
+     */
+    @Override
+    public void check(Car car) throws ParkingLotException {
+        check(car.getLicensePlate().getBytes(StandardCharsets.UTF_8), car.getColor().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void check(byte[] plate, byte[] color) throws ParkingLotException {
+        if (plate.length > MAX_PLATE_LENGTH) {
+            throw new ParkingLotException("License plate is longer than " + MAX_PLATE_LENGTH + " bytes");
+        }
+        if (color.length > MAX_COLOR_LENGTH) {
+            throw new ParkingLotException("Color is longer than " + MAX_COLOR_LENGTH + " bytes");
+        }
+    }
+
+    @Override
+    public void remove(int slot) {
+        int record = offset(slot);
+        if (buffer.get(record + FLAG_OFFSET) == 0) {
+            return;
+        }
+        buffer.put(record + FLAG_OFFSET, (byte) 0);
+        buffer.putInt(SIZE_OFFSET, buffer.getInt(SIZE_OFFSET) - 1);
+    }
+
+    /**
+     * Writes every change to the storage device.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Forces the changes to the storage device and closes the file. The
+     * mapping stays valid until it is garbage collected, but must not be used.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Recounts the occupied records into the header, which may be off by one
+     * if the process was killed between a flag write and the size write.
+     */
+    private void repairSize() {
+        int size = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (buffer.get(offset(slot) + FLAG_OFFSET) != 0) {
+                size++;
+            }
+        }
+        buffer.putInt(SIZE_OFFSET, size);
+    }
+
+    /**
+     * @param slot the slot index
+     * @return the offset of the record of the slot in the file
+     */
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,283 @@
+package com.vuongho.parkinglot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Manages many {@link ParkingLot}s in one process, e.g. the levels of a
+ * garage or the garages of a site, each addressed by an id. A {@link Car} is
+ * parked in the lot chosen by a {@link PlacementPolicy}, and a license plate
+ * is parked at most once across all lots.
+ * <p>
+ * The color queries over all lots run on the common fork-join pool once
+ * there are {@link #PARALLEL_THRESHOLD} lots or more, and their results are merged in
+ * the order the lots were created, then by slot, whatever the pool does. Like
+ * {@link ParkingLotMgr}, a {@link MultiLotMgr} is used by one thread at a
+ * time.
+ */
+public class MultiLotMgr {
+    /**
+     * The number of lots from which the color queries over all lots run in
+     * parallel; below it, forking costs more than it saves.
+     */
+    static final int PARALLEL_THRESHOLD = 8;
+
+    /**
+     * The lots, in the order they were created.
+     */
+    private final List<ParkingLot> lots = new ArrayList<>();
+
+    /**
+     * The id of each lot of {@link #lots}, at the same index.
+     */
+    private final List<String> lotIds = new ArrayList<>();
+
+    /**
+     * The index of each lot in {@link #lots}, keyed by its id.
+     */
+    private final Map<String, Integer> lotIndexesById = new HashMap<>();
+
+    private final PlacementPolicy placementPolicy;
+
+    private final IntFunction<ParkingLot> parkingLotFactory;
+
+    /**
+     * Constructor for a {@link MultiLotMgr} that fills its lots in the order
+     * they were created.
+     */
+    public MultiLotMgr() {
+        this(PlacementPolicy.firstAvailable());
+    }
+
+    /**
+     * Constructor for a {@link MultiLotMgr} with a {@link PlacementPolicy}.
+     *
+     * @param placementPolicy chooses the lot of each parked {@link Car}
+     */
+    public MultiLotMgr(PlacementPolicy placementPolicy) {
+        this(placementPolicy, ParkingLot::new);
+    }
+
+    /**
+     * Constructor for a {@link MultiLotMgr} with a {@link PlacementPolicy}
+     * that creates its {@link ParkingLot}s with a factory.
+     *
+     * @param placementPolicy chooses the lot of each parked {@link Car}
+     * @param parkingLotFactory creates a {@link ParkingLot} from its capacity
+     */
+    public MultiLotMgr(PlacementPolicy placementPolicy, IntFunction<ParkingLot> parkingLotFactory) {
+        this.placementPolicy = placementPolicy;
+        this.parkingLotFactory = parkingLotFactory;
+    }
+
+    /**
+     * @return the ids of the lots, in the order they were created
+     */
+    public List<String> getLotIds() {
+        return Collections.unmodifiableList(lotIds);
+    }
+
+    /**
+     * @param lotId the id of a lot
+     * @return the {@link ParkingLot} with the id, or null if there is none
+     */
+    public ParkingLot getParkingLot(String lotId) {
+        Integer index = lotIndexesById.get(lotId);
+        return index == null ? null : lots.get(index);
+    }
+
+    /**
+     * Creates a {@link ParkingLot} with an id and a capacity.
+     *
+     * @param lotId the id of the new lot
+     * @param capacity capacity of {@link ParkingLot}
+     * @return appropriate message from creating the parking lot
+     */
+    public String createParkingLot(String lotId, int capacity) {
+        if (lotIndexesById.containsKey(lotId)) {
+            return "Parking lot " + lotId + " already exists";
+        }
+        lotIndexesById.put(lotId, lots.size());
+        lots.add(parkingLotFactory.apply(capacity));
+        lotIds.add(lotId);
+        return "Created parking lot " + lotId + " with " + capacity + " slots";
+    }
+
+    /**
+     * Parks a {@link Car} in the lot chosen by the {@link PlacementPolicy}.
+     *
+     * @param licensePlate license plate of the {@link Car}
+     * @param color color of the {@link Car}
+     * @return appropriate message from processing the command
+     */
+    public String park(String licensePlate, String color) {
+        if (lots.isEmpty()) {
+            return "Please create a parking lot first";
+        }
+        if (findLot(licensePlate) != -1) {
+            return "Car " + licensePlate + " is already parked";
+        }
+        Car car = new Car(licensePlate, color);
+        int index = placementPolicy.choose(Collections.unmodifiableList(lots), car);
+        if (index == -1) {
+            return "Sorry, all parking lots are full";
+        }
+        int slot = lots.get(index).tryPark(car);
+        if (slot == ParkingLot.FULL) {
+            // filled up by another gate since the policy chose it
+            return "Sorry, all parking lots are full";
+        }
+        if (slot == ParkingLot.ALREADY_PARKED) {
+            return "Car " + licensePlate + " is already parked";
+        }
+        if (slot < 0) {
+            return lots.get(index).getUnstorableReason(car);
+        }
+        return "Allocated slot number: " + (slot + 1) + " in parking lot " + lotIds.get(index);
+    }
+
+    /**
+     * Checks a {@link Car}'s out of the specified slot of a lot.
+     *
+     * @param lotId the id of the lot
+     * @param slot slot number
+     * @return appropriate message from processing the command
+     */
+    public String leave(String lotId, int slot) {
+        ParkingLot lot = getParkingLot(lotId);
+        if (lot == null) {
+            return "Parking lot " + lotId + " not found";
+        }
+        if (!lot.isValidSlot(slot - 1)) {
+            return "Invalid slot number";
+        }
+        lot.tryLeave(slot - 1);
+        return "Slot number " + slot + " in parking lot " + lotId + " is free";
+    }
+
+    /**
+     * Checks the status of a lot, as {@link ParkingLotMgr#status(boolean)}.
+     *
+     * @param lotId the id of the lot
+     * @param fullInfo true to show full info (empty slots incl.), false to
+     *      show compact info
+     * @return the string status of the lot
+     */
+    public String status(String lotId, boolean fullInfo) {
+        ParkingLot lot = getParkingLot(lotId);
+        if (lot == null) {
+            return "Parking lot " + lotId + " not found";
+        }
+        return lot.status(fullInfo);
+    }
+
+    /**
+     * Gets the license number (id) of the {@link Car}s with the specified
+     * color in all lots, formatted by the following:
+     * <pre>
+     * <id1>, <id2>, <id3>,...
+     * </pre>
+     *
+     * @param color color of the {@link Car}
+     * @return the license number of the {@link Car}s with the specified color
+     */
+    public String idsForCarsWithColor(String color) {
+        if (lots.isEmpty()) {
+            return "Please create a parking lot first";
+        }
+        List<List<Car>> carsByLot = queryAll(lot -> lot.getCarsWithColor(color));
+        StringBuilder sb = new StringBuilder();
+        for (List<Car> cars : carsByLot) {
+            for (Car car : cars) {
+                sb.append(car.getLicensePlate()).append(", ");
+            }
+        }
+        if (sb.length() == 0) {
+            return "None found";
+        }
+        return sb.substring(0, sb.length() - 2);
+    }
+
+    /**
+     * Gets the lot id and slot number of the {@link Car}s with the specified
+     * color in all lots, formatted by the following:
+     * <pre>
+     * <lot1>:<slot1>, <lot1>:<slot2>, <lot2>:<slot1>,...
+     * </pre>
+     *
+     * @param color color of the {@link Car}
+     * @return the lot id and slot number of the {@link Car}s with the
+     *      specified color
+     */
+    public String slotsForCarsWithColor(String color) {
+        if (lots.isEmpty()) {
+            return "Please create a parking lot first";
+        }
+        List<List<Integer>> slotsByLot = queryAll(lot -> lot.getSlotsNumberForCarsWithColor(color));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < slotsByLot.size(); i++) {
+            for (int slot : slotsByLot.get(i)) {
+                sb.append(lotIds.get(i)).append(':').append(slot + 1).append(", ");
+            }
+        }
+        if (sb.length() == 0) {
+            return "None found";
+        }
+        return sb.substring(0, sb.length() - 2);
+    }
+
+    /**
+     * Gets the lot id and slot number of the {@link Car} with the specified
+     * license plate, formatted as {@code <lot>:<slot>}.
+     *
+     * @param id license plate of the {@link Car}
+     * @return the lot id and slot number of the {@link Car}
+     */
+    public String slotForId(String id) {
+        if (lots.isEmpty()) {
+            return "Please create a parking lot first";
+        }
+        int index = findLot(id);
+        if (index == -1) {
+            return "Not found";
+        }
+        return lotIds.get(index) + ":" + (lots.get(index).getSlotNumberForId(id) + 1);
+    }
+
+    /**
+     * Finds the lot a license plate is parked in. The lots are asked in
+     * turn, never in parallel: each asks a hash index, so forking would cost
+     * far more than the lookups, and every park starts with this search.
+     *
+     * @param licensePlate the license plate
+     * @return the index of the lot in {@link #lots}, or -1 if the license
+     *      plate is not parked
+     */
+    private int findLot(String licensePlate) {
+        for (int i = 0; i < lots.size(); i++) {
+            if (lots.get(i).getSlotNumberForId(licensePlate) != -1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs a query on every lot, in parallel when there are many.
+     *
+     * @param query the query of one lot
+     * @return the result of each lot, in the order of {@link #lots}
+     */
+    private <T> List<T> queryAll(Function<ParkingLot, T> query) {
+        Stream<ParkingLot> stream = lots.size() >= PARALLEL_THRESHOLD ? lots.parallelStream() : lots.stream();
+        // an ordered collect keeps the order of the lots
+        return stream.map(query).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,572 @@
+package com.vuongho.parkinglot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A TCP server for one {@link ParkingLot}, speaking the same protocol as
+ * {@link ParkingLotServer}, without a thread per connection or a lock on the
+ * lot:
+ * <ul>
+ * <li>one or more reactor threads each watch their connections with a
+ * {@link Selector}, read what arrives into a buffer per connection, and
+ * hand every complete line read at once to the lot thread as one batch;</li>
+ * <li>a single lot thread owns the lot, which is a plain {@link ParkingLot}
+ * as nothing else touches it. It runs the batches in the order they arrive,
+ * turning each into one buffer of messages, and wakes each reactor once per
+ * round of up to {@link #MAX_ROUND} batches rather than once per batch;</li>
+ * <li>the reactors send the buffers of a connection with a single gathering
+ * write.</li>
+ * </ul>
+ * A command line is tokenized straight from the bytes read, through an
+ * {@link AsciiSequence}, unless it holds non-ASCII bytes. The messages of a
+ * connection keep the order of its commands, since one thread runs them all.
+ * A command that throws is answered as failed, but an {@link Error} in the
+ * lot thread, such as running out of memory, stops the process.
+ * A connection is not read while more than {@link #MAX_PENDING_OUTPUT} bytes
+ * of its messages wait to be sent.
+ */
+public class NioParkingLotServer implements Closeable {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The longest command line accepted; a longer one closes the connection.
+     */
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+
+    /**
+     * The bytes of messages a connection may have waiting before it is no
+     * longer read.
+     */
+    static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    /**
+     * The most buffers sent by one gathering write.
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * The most batches the lot thread runs before it wakes the reactors, so
+     * that a steady stream of batches does not hold messages back.
+     */
+    private static final int MAX_ROUND = 64;
+
+    /**
+     * How long the accepting reactor stops accepting after a failed accept,
+     * e.g. when the process is out of file descriptors.
+     */
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    private static final byte[] MESSAGE_END = {'\n', '\n'};
+
+    private final ServerSocketChannel serverChannel;
+    private final Reactor[] reactors;
+    private final LotThread lotThread;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for a {@link NioParkingLotServer} listening on a port, which
+     * starts accepting connections at once.
+     *
+     * @param parkingLot the lot to serve, used by the lot thread only
+     * @param port the port, or 0 for any free port
+     * @param reactorCount the number of reactor threads
+     * @throws IOException if the port cannot be bound
+     */
+    public NioParkingLotServer(ParkingLot parkingLot, int port, int reactorCount) throws IOException {
+        this.lotThread = new LotThread(parkingLot);
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 4096);
+        serverChannel.configureBlocking(false);
+        this.reactors = new Reactor[reactorCount];
+        for (int i = 0; i < reactorCount; i++) {
+            reactors[i] = new Reactor(i);
+        }
+        // the first reactor accepts the connections and deals them out
+        serverChannel.register(reactors[0].selector, SelectionKey.OP_ACCEPT);
+        lotThread.start();
+        for (Reactor reactor : reactors) {
+            reactor.start();
+        }
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the threads and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(lotThread);
+        for (Reactor reactor : reactors) {
+            reactor.selector.wakeup();
+        }
+        try {
+            lotThread.join();
+            for (Reactor reactor : reactors) {
+                reactor.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+    }
+
+    /**
+     * The state of a connection. The read buffer and the buffers being
+     * written belong to the reactor; {@link #output} is how the lot thread
+     * hands messages over.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final Reactor reactor;
+        SelectionKey key;
+        ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        /**
+         * The position in {@link #input} up to which no newline was found.
+         */
+        int scanned;
+
+        /**
+         * Buffers of messages from the lot thread, not yet taken by the
+         * reactor.
+         */
+        final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Buffers taken by the reactor and not yet fully written.
+         */
+        final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+
+        /**
+         * The bytes of messages produced and not yet written.
+         */
+        final AtomicLong pendingOutput = new AtomicLong();
+
+        /**
+         * Whether the connection is in the queue of its reactor for writing.
+         */
+        final AtomicBoolean flushQueued = new AtomicBoolean();
+
+        /**
+         * The batches handed to the lot thread whose messages are not yet in
+         * {@link #output}.
+         */
+        final AtomicInteger queuedBatches = new AtomicInteger();
+
+        /**
+         * Whether the client has sent all its commands, so that the
+         * connection is closed once their messages are sent.
+         */
+        boolean closing;
+
+        Connection(SocketChannel channel, Reactor reactor) {
+            this.channel = channel;
+            this.reactor = reactor;
+        }
+    }
+
+    /**
+     * The complete command lines read from a connection at once.
+     */
+    private static final class Batch {
+        final Connection connection;
+        final byte[] lines;
+
+        Batch(Connection connection, byte[] lines) {
+            this.connection = connection;
+            this.lines = lines;
+        }
+    }
+
+    private final class Reactor extends Thread {
+        final Selector selector;
+
+        /**
+         * Connections accepted by another reactor, to be registered here.
+         */
+        final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Connections with messages from the lot thread to send.
+         */
+        final Queue<Connection> flushes = new ConcurrentLinkedQueue<>();
+
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private int nextReactor;
+
+        /**
+         * The key of the server channel while accepting is paused after a
+         * failed accept, or null.
+         */
+        private SelectionKey pausedAccept;
+
+        /**
+         * When to accept again, as a {@link System#nanoTime()}, while
+         * {@link #pausedAccept} is set.
+         */
+        private long acceptResumeTime;
+
+        Reactor(int index) throws IOException {
+            super("parking-lot-reactor-" + index);
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    if (pausedAccept == null) {
+                        selector.select(this::handle);
+                    } else {
+                        long wait = TimeUnit.NANOSECONDS.toMillis(acceptResumeTime - System.nanoTime());
+                        selector.select(this::handle, Math.max(1, wait));
+                        if (System.nanoTime() - acceptResumeTime >= 0) {
+                            pausedAccept.interestOps(SelectionKey.OP_ACCEPT);
+                            pausedAccept = null;
+                        }
+                    }
+                    SocketChannel channel;
+                    while ((channel = accepted.poll()) != null) {
+                        register(channel);
+                    }
+                    Connection connection;
+                    while ((connection = flushes.poll()) != null) {
+                        connection.flushQueued.set(false);
+                        try {
+                            flush(connection);
+                        } catch (IOException e) {
+                            // the client went away
+                            connection.key.cancel();
+                            closeQuietly(connection.channel);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println(getName() + " failed: " + e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            try {
+                if (key.isAcceptable()) {
+                    accept(key);
+                    return;
+                }
+                Connection connection = (Connection) key.attachment();
+                if (key.isReadable()) {
+                    read(connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(connection);
+                }
+            } catch (IOException e) {
+                // the client went away
+                key.cancel();
+                closeQuietly(key.channel());
+            }
+        }
+
+        /**
+         * Accepts the pending connections and deals them out to the reactors.
+         * A failure to set up one connection closes only that connection; a
+         * failure to accept pauses accepting, without closing the server
+         * channel or blocking the connections of this reactor.
+         */
+        private void accept(SelectionKey key) {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (IOException e) {
+                    if (!serverChannel.isOpen()) {
+                        return;
+                    }
+                    // e.g. out of file descriptors: the error would come back
+                    // at once, so give the connections some time to close
+                    System.err.println("Accepting a connection failed: " + e);
+                    key.interestOps(0);
+                    pausedAccept = key;
+                    acceptResumeTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_BACKOFF_MILLIS);
+                    return;
+                }
+                if (channel == null) {
+                    return;
+                }
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                } catch (IOException e) {
+                    // the connection went away before it was served
+                    closeQuietly(channel);
+                    continue;
+                }
+                Reactor reactor = reactors[nextReactor];
+                nextReactor = (nextReactor + 1) % reactors.length;
+                if (reactor == this) {
+                    register(channel);
+                } else {
+                    reactor.accepted.add(channel);
+                    reactor.selector.wakeup();
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            Connection connection = new Connection(channel, this);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+
+        private void read(Connection connection) throws IOException {
+            ByteBuffer input = connection.input;
+            if (connection.channel.read(input) == -1) {
+                // the client is done sending: run the last line even without
+                // a newline, then close once every message is sent
+                connection.closing = true;
+                if (input.position() > 0) {
+                    byte[] lines = Arrays.copyOf(input.array(), input.position() + 1);
+                    lines[lines.length - 1] = '\n';
+                    input.clear();
+                    submit(connection, lines);
+                }
+                flush(connection);
+                return;
+            }
+            // the lines end at the last newline read so far
+            int end = -1;
+            for (int i = input.position() - 1; i >= connection.scanned; i--) {
+                if (input.get(i) == '\n') {
+                    end = i + 1;
+                    break;
+                }
+            }
+            if (end == -1) {
+                connection.scanned = input.position();
+                if (!input.hasRemaining()) {
+                    if (input.capacity() >= MAX_LINE_LENGTH) {
+                        throw new IOException("line too long");
+                    }
+                    ByteBuffer larger = ByteBuffer.allocate(input.capacity() * 2);
+                    input.flip();
+                    connection.input = larger.put(input);
+                }
+                return;
+            }
+            byte[] lines = Arrays.copyOfRange(input.array(), 0, end);
+            input.flip().position(end);
+            input.compact();
+            connection.scanned = 0;
+            submit(connection, lines);
+        }
+
+        private void submit(Connection connection, byte[] lines) {
+            connection.queuedBatches.incrementAndGet();
+            lotThread.submit(new Batch(connection, lines));
+        }
+
+        /**
+         * Sends the messages waiting for a connection with gathering writes,
+         * as far as the socket takes them.
+         */
+        private void flush(Connection connection) throws IOException {
+            if (!connection.key.isValid()) {
+                return;
+            }
+            ByteBuffer buffer;
+            while ((buffer = connection.output.poll()) != null) {
+                connection.writing.add(buffer);
+            }
+            while (!connection.writing.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer pending : connection.writing) {
+                    gather[count++] = pending;
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                }
+                long written = connection.channel.write(gather, 0, count);
+                Arrays.fill(gather, 0, count, null);
+                connection.pendingOutput.addAndGet(-written);
+                while (!connection.writing.isEmpty() && !connection.writing.peek().hasRemaining()) {
+                    connection.writing.poll();
+                }
+                if (written == 0) {
+                    break;
+                }
+            }
+            // the lot thread adds the messages before it counts their batch
+            // as done, so none is left behind once the count is zero
+            if (connection.closing && connection.writing.isEmpty() && connection.queuedBatches.get() == 0
+                    && connection.output.isEmpty()) {
+                connection.key.cancel();
+                closeQuietly(connection.channel);
+                return;
+            }
+            int ops = connection.closing ? 0 : SelectionKey.OP_READ;
+            if (!connection.writing.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            if (connection.pendingOutput.get() > MAX_PENDING_OUTPUT) {
+                // let the client read its messages before sending more commands
+                ops &= ~SelectionKey.OP_READ;
+            }
+            connection.key.interestOps(ops);
+        }
+    }
+
+    /**
+     * The thread that owns the lot and runs every command.
+     */
+    private final class LotThread extends Thread {
+        private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+        private final ParkingLotMgr parkingLotMgr;
+        private final AsciiSequence line = new AsciiSequence();
+        private final ArrayDeque<Reactor> reactorsToWake = new ArrayDeque<>();
+        private byte[] messages = new byte[READ_BUFFER_SIZE];
+        private int messagesLength;
+
+        LotThread(ParkingLot parkingLot) {
+            super("parking-lot-owner");
+            this.parkingLotMgr = new FixedLotMgr(parkingLot);
+        }
+
+        void submit(Batch batch) {
+            batches.add(batch);
+            LockSupport.unpark(this);
+        }
+
+        @Override
+        public void run() {
+            int round = 0;
+            while (running) {
+                Batch batch = batches.poll();
+                if (batch == null || round == MAX_ROUND) {
+                    // the round is over: wake the reactors with messages to send
+                    Reactor reactor;
+                    while ((reactor = reactorsToWake.poll()) != null) {
+                        reactor.selector.wakeup();
+                    }
+                    round = 0;
+                }
+                if (batch == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                try {
+                    execute(batch);
+                } catch (Error e) {
+                    // e.g. out of memory: the lot may be half changed and no
+                    // other thread can run the commands, so stop the process
+                    // rather than serve a broken lot or none at all
+                    System.err.println(getName() + " failed: " + e);
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                round++;
+            }
+        }
+
+        private void execute(Batch batch) {
+            byte[] lines = batch.lines;
+            messagesLength = 0;
+            int start = 0;
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i] != '\n') {
+                    continue;
+                }
+                int end = i > start && lines[i - 1] == '\r' ? i - 1 : i;
+                append(FixedLotMgr.giveCommand(parkingLotMgr, command(lines, start, end)));
+                start = i + 1;
+            }
+            Connection connection = batch.connection;
+            connection.pendingOutput.addAndGet(messagesLength);
+            connection.output.add(ByteBuffer.wrap(Arrays.copyOf(messages, messagesLength)));
+            connection.queuedBatches.decrementAndGet();
+            if (connection.flushQueued.compareAndSet(false, true)) {
+                connection.reactor.flushes.add(connection);
+                if (!reactorsToWake.contains(connection.reactor)) {
+                    reactorsToWake.add(connection.reactor);
+                }
+            }
+        }
+
+        private CharSequence command(byte[] lines, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (lines[i] < 0) {
+                    return new String(lines, start, end - start, StandardCharsets.UTF_8);
+                }
+            }
+            return line.reset(lines, start, end - start);
+        }
+
+        private void append(String message) {
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            int length = messagesLength + bytes.length + MESSAGE_END.length;
+            if (length > messages.length) {
+                messages = Arrays.copyOf(messages, Math.max(length, messages.length * 2));
+            }
+            System.arraycopy(bytes, 0, messages, messagesLength, bytes.length);
+            System.arraycopy(MESSAGE_END, 0, messages, messagesLength + bytes.length, MESSAGE_END.length);
+            messagesLength = length;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Serves a new {@link ParkingLot} until the process is killed.
+     *
+     * @param args the port and the capacity of the lot, and optionally the
+     *      number of reactor threads (1 by default)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: NioParkingLotServer <port> <capacity> [reactors]");
+            System.exit(2);
+        }
+        int reactors = args.length == 3 ? Integer.parseInt(args[2]) : 1;
+        NioParkingLotServer server = new NioParkingLotServer(
+                new ParkingLot(Integer.parseInt(args[1])), Integer.parseInt(args[0]), reactors);
+        System.out.println("Serving a parking lot with " + args[1] + " slots on port " + server.getPort()
+                + " with " + reactors + " reactor(s)");
+    }
+}
@@ -0,0 +1,116 @@
+package com.vuongho.parkinglot;
+
+/**
+ * A change of a {@link ParkingLot}, as published on a
+ * {@link ParkingEventStream}: a lot was created or resized, or a
+ * {@link Car} parked or left. Events are immutable, and numbered in the
+ * order they were published.
+ */
+public final class ParkingEvent {
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        /** A parking lot was created, see {@link #getCapacity()}. */
+        CREATED,
+        /** A {@link Car} parked, see {@link #getSlot()} and {@link #getCar()}. */
+        PARKED,
+        /** A {@link Car} left, see {@link #getSlot()} and {@link #getCar()}. */
+        LEFT,
+        /** A parking lot was resized, see {@link #getCapacity()}. */
+        RESIZED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final long timeMillis;
+    private final int slot;
+    private final Car car;
+    private final int capacity;
+
+    /**
+     * Constructor for a {@link ParkingEvent}.
+     *
+     * @param sequence the number of the event on its stream
+     * @param type the kind of change
+     * @param timeMillis the time of the change, in milliseconds since the
+     *      epoch
+     * @param slot the slot index, or -1 for a change of the whole lot
+     * @param car the {@link Car} that parked or left, or null
+     * @param capacity the capacity of the lot after the change
+     */
+    ParkingEvent(long sequence, Type type, long timeMillis, int slot, Car car, int capacity) {
+        this.sequence = sequence;
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.slot = slot;
+        this.car = car;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the number of the event on its stream, from 0
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the time of the change, in milliseconds since the epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return the slot index the {@link Car} parked in or left, or -1 for
+     *      a change of the whole lot
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return the {@link Car} that parked or left, or null for a change of
+     *      the whole lot
+     */
+    public Car getCar() {
+        return car;
+    }
+
+    /**
+     * @return the capacity of a created or resized lot, or -1 if the
+     *      capacity did not change
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the event as a line of text, with the slot numbered from 1 as in
+     * the messages of {@link ParkingLotMgr}, e.g.
+     * <pre>
+     * 0 1700000000000 CREATED 6
+     * 1 1700000000042 PARKED 1 KA-01-HH-1234 White
+     * 2 1700000000097 LEFT 1 KA-01-HH-1234 White
+     * </pre>
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(48);
+        sb.append(sequence).append(' ').append(timeMillis).append(' ').append(type).append(' ');
+        if (car == null) {
+            sb.append(capacity);
+        } else {
+            sb.append(slot + 1).append(' ').append(car.getLicensePlate()).append(' ').append(car.getColor());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+
+/**
+ * Receives the events drained from a {@link ParkingEventStream}, see
+ * {@link ParkingEventStream.Subscription#drainTo}.
+ */
+@FunctionalInterface
+public interface ParkingEventConsumer {
+    /**
+     * Handles the next event.
+     *
+     * @param event the event
+     * @throws IOException if the event cannot be handled
+     */
+    void accept(ParkingEvent event) throws IOException;
+
+    /**
+     * Handles the events that were overwritten before this consumer read
+     * them, as the consumer fell a whole ring behind. Called before the
+     * first event read after the gap.
+     *
+     * @param missed the number of events lost
+     * @throws IOException if the gap cannot be handled
+     */
+    default void lagged(long missed) throws IOException {
+        // ignored by default
+    }
+}
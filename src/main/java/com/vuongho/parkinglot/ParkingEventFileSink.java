@@ -0,0 +1,107 @@
+package com.vuongho.parkinglot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends the events of a {@link ParkingEventStream} to a file, one line per
+ * event as {@link ParkingEvent#toString()} writes it, from a thread of its
+ * own. Events lost because the sink fell a whole ring behind are marked by a
+ * line such as {@code # lost 42 events}. The file is flushed whenever the
+ * sink catches up with the stream.
+ */
+public class ParkingEventFileSink implements ParkingEventConsumer, Closeable {
+    /**
+     * The most events written between two checks for {@link #close()}.
+     */
+    private static final int DRAIN_LIMIT = 4096;
+
+    /**
+     * How long the sink sleeps when it has caught up, in nanoseconds.
+     */
+    private static final long IDLE_NANOS = 1_000_000L;
+
+    private final ParkingEventStream.Subscription subscription;
+    private final Writer writer;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile IOException failure = null;
+
+    /**
+     * Constructor for a {@link ParkingEventFileSink}, which subscribes to the
+     * stream and starts writing the events published from now on.
+     *
+     * @param stream the stream to read
+     * @param file the file to append to, created if missing
+     * @throws IOException if the file cannot be opened
+     */
+    public ParkingEventFileSink(ParkingEventStream stream, Path file) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        this.subscription = stream.subscribe();
+        this.thread = new Thread(this::run, "parking-event-sink");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void accept(ParkingEvent event) throws IOException {
+        writer.append(event.toString()).append('\n');
+    }
+
+    @Override
+    public void lagged(long missed) throws IOException {
+        writer.append("# lost ").append(Long.toString(missed)).append(" events\n");
+    }
+
+    /**
+     * @return the reader of the stream, to watch its lag
+     */
+    public ParkingEventStream.Subscription getSubscription() {
+        return subscription;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                if (subscription.drainTo(this, DRAIN_LIMIT) == 0) {
+                    writer.flush();
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+            // whatever was published before the close
+            while (subscription.drainTo(this, DRAIN_LIMIT) > 0) {
+                // keep draining
+            }
+            writer.flush();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Writes the events published so far, then closes the file.
+     *
+     * @throws IOException if an event could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
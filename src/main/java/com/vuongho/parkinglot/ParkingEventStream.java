@@ -0,0 +1,190 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring of the {@link ParkingEvent}s of one or more
+ * {@link ParkingLot}s, read by any number of consumers, each at its own pace
+ * through a {@link Subscription}.
+ * <p>
+ * Publishing never blocks and never waits for a consumer: a producer claims
+ * the next sequence number with a single atomic increment and stores the
+ * event in its entry of the ring, so several producers, e.g. the gates of a
+ * {@link ConcurrentParkingLot}, may publish at once. A consumer that falls a
+ * whole ring behind finds its next entry overwritten; instead of holding up
+ * the lot, it skips to the oldest event still in the ring and is told how
+ * many it missed, see {@link Subscription#getMissed()} and
+ * {@link ParkingEventConsumer#lagged(long)}. {@link Subscription#getLag()}
+ * tells how far behind a consumer is before that happens, so that it can
+ * batch more or shed work.
+ */
+public class ParkingEventStream {
+    private final AtomicReferenceArray<ParkingEvent> entries;
+    private final int mask;
+
+    /**
+     * The sequence number of the next event to publish.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Constructor for a {@link ParkingEventStream}.
+     *
+     * @param size the number of events the ring holds, rounded up to a
+     *      power of two
+     */
+    public ParkingEventStream(int size) {
+        if (size < 1 || size > 1 << 30) {
+            throw new IllegalArgumentException("Invalid ring size " + size);
+        }
+        int entryCount = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        this.entries = new AtomicReferenceArray<>(entryCount);
+        this.mask = entryCount - 1;
+    }
+
+    /**
+     * @return the number of events the ring holds
+     */
+    public int getSize() {
+        return entries.length();
+    }
+
+    /**
+     * @return the number of events published so far, which is also the
+     *      sequence number of the next one
+     */
+    public long getPublished() {
+        return next.get();
+    }
+
+    /**
+     * Publishes an event.
+     *
+     * @param type the kind of change
+     * @param slot the slot index, or -1 for a change of the whole lot
+     * @param car the {@link Car} that parked or left, or null
+     * @param capacity the capacity of the lot after a change of the whole
+     *      lot, or -1
+     * @return the sequence number of the event
+     */
+    public long publish(ParkingEvent.Type type, int slot, Car car, int capacity) {
+        long sequence = next.getAndIncrement();
+        ParkingEvent event = new ParkingEvent(sequence, type, System.currentTimeMillis(), slot, car, capacity);
+        int index = (int) sequence & mask;
+        ParkingEvent old;
+        do {
+            old = entries.get(index);
+            if (old != null && old.getSequence() > sequence) {
+                // a faster producer a whole ring ahead already took the entry
+                return sequence;
+            }
+        } while (!entries.compareAndSet(index, old, event));
+        return sequence;
+    }
+
+    /**
+     * Starts reading the events published from now on.
+     *
+     * @return a new reader of the stream
+     */
+    public Subscription subscribe() {
+        return new Subscription(next.get());
+    }
+
+    /**
+     * A reader of a {@link ParkingEventStream}. Each {@link Subscription}
+     * sees every event in order, unless it falls a whole ring behind, and is
+     * meant for one consumer thread.
+     */
+    public final class Subscription {
+        /**
+         * The sequence number of the next event to read.
+         */
+        private long sequence;
+
+        /**
+         * The number of events overwritten before they were read.
+         */
+        private long missed = 0;
+
+        /**
+         * The value of {@link #missed} last reported to a consumer.
+         */
+        private long reported = 0;
+
+        private Subscription(long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * Reads the next event, skipping those that were overwritten.
+         *
+         * @return the next event, or null if it is not published yet
+         */
+        public ParkingEvent poll() {
+            while (true) {
+                ParkingEvent event = entries.get((int) sequence & mask);
+                if (event == null || event.getSequence() < sequence) {
+                    return null;
+                }
+                if (event.getSequence() == sequence) {
+                    sequence++;
+                    return event;
+                }
+                // lapped: move on to the oldest entry that can still be read
+                long oldest = Math.max(sequence + 1, next.get() - entries.length());
+                missed += oldest - sequence;
+                sequence = oldest;
+            }
+        }
+
+        /**
+         * Reads up to {@code limit} events into a consumer, telling it first
+         * about any events it missed.
+         *
+         * @param consumer the consumer of the events
+         * @param limit the most events to read
+         * @return the number of events read
+         * @throws IOException if the consumer fails, in which case the event
+         *      it failed on is not read again
+         */
+        public int drainTo(ParkingEventConsumer consumer, int limit) throws IOException {
+            int count = 0;
+            ParkingEvent event;
+            while (count < limit && (event = poll()) != null) {
+                if (missed != reported) {
+                    long gap = missed - reported;
+                    reported = missed;
+                    consumer.lagged(gap);
+                }
+                consumer.accept(event);
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * @return the sequence number of the next event to read
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the number of events published but not read yet, which
+         *      is more than the size of the ring once events are lost
+         */
+        public long getLag() {
+            return next.get() - sequence;
+        }
+
+        /**
+         * @return the number of events overwritten before they were read
+         */
+        public long getMissed() {
+            return missed;
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.vuongho.parkinglot;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of a parking lot.
@@ -9,21 +14,122 @@ import java.util.List;
  * @author Vuong Ho
  */
 public class ParkingLot {
+    /**
+     * The result of {@link #tryPark(Car)} and {@link #parkAll(List)} for a
+     * {@link Car} that found the {@link ParkingLot} full, or no empty slot
+     * that its {@link AllocationStrategy} lets it park in.
+     */
+    public static final int FULL = -1;
+
+    /**
+     * The result of {@link #tryPark(Car)} and {@link #parkAll(List)} for a
+     * {@link Car} whose license plate is already parked.
+     */
+    public static final int ALREADY_PARKED = -2;
+
+    /**
+     * The result of {@link #tryPark(Car)} and {@link #parkAll(List)} for a
+     * {@link Car} that the {@link SlotStorage} cannot hold, e.g. with too
+     * long a license plate.
+     */
+    public static final int UNSTORABLE = -3;
+
+    /**
+     * The most edits a search by edit distance uses an index for, and the
+     * depth of that index whatever the searches ask for. Each more edit
+     * multiplies the size of the index by about the plate length.
+     */
+    public static final int MAX_INDEXED_EDITS = 2;
+
+    /**
+     * The granularity of the expiry of holds: a hold expires on the first
+     * whole second at or after its deadline.
+     */
+    static final long HOLD_TICK_MILLIS = 1000;
+
     /**
      * The number of parking spaces of the {@link ParkingLot}.
      */
     private int capacity;
 
     /**
-     * The list of cars that are parked in the {@link ParkingLot}.
+     * The cars that are parked in the {@link ParkingLot}, by slot.
      */
-    private Car[] parkedCars;
+    private SlotStorage parkedCars;
 
     /**
      * The current number of cars that are parked in the {@link ParkingLot}.
      */
     private int currentSize = 0;
 
+    /**
+     * The indices of the empty slots of the {@link ParkingLot}, so that the
+     * lowest empty slot can be found without scanning {@link #parkedCars}.
+     */
+    private SlotSet emptySlots;
+
+    /**
+     * The slot index of each parked {@link Car}, keyed by its license plate.
+     */
+    private PlateIndex slotsByLicensePlate;
+
+    /**
+     * The slot indices of the parked {@link Car}s, keyed by their color. A
+     * color is dropped from the map once no parked {@link Car} has it, and
+     * the sets of the rare colors stay small sorted arrays, so free-text
+     * colors cost memory by car rather than by slot.
+     */
+    private Map<String, SparseSlotSet> slotsByColor = new HashMap<>();
+
+    /**
+     * The rendered status, patched chunk by chunk as cars park and leave.
+     */
+    private StatusCache statusCache;
+
+    /**
+     * The tracker of the parking sessions, or null if they are not tracked.
+     */
+    private SessionTracker sessions = null;
+
+    /**
+     * The stream the changes are published on, or null if they are not.
+     */
+    private ParkingEventStream events = null;
+
+    /**
+     * The sorted plates for wildcard searches, built by the first search and
+     * kept up to date from then on, or null before that.
+     */
+    private PlateSearchIndex plateSearch = null;
+
+    /**
+     * The deletion index for searches by edit distance, built by the first
+     * such search and kept up to date from then on, or null before that.
+     */
+    private FuzzyPlateIndex fuzzyPlates = null;
+
+    /**
+     * Chooses the slot of each arriving {@link Car}, or null to take the
+     * lowest empty slot.
+     */
+    private AllocationStrategy allocation = null;
+
+    /**
+     * The license plate each slot is held for, or null if it is not held,
+     * created by the first hold.
+     */
+    private String[] heldPlates = null;
+
+    /**
+     * The slot held for each license plate.
+     */
+    private Map<String, Integer> holdsByPlate = new HashMap<>();
+
+    /**
+     * The deadlines of the holds, created by the first hold.
+     */
+    private TimingWheel holdExpiry = null;
+
     /**
      * Default constructor, with capacity set to 6.
      */
@@ -37,8 +143,29 @@ public class ParkingLot {
      * @param capacity
      */
     public ParkingLot(int capacity) {
-        this.capacity = capacity;
-        this.parkedCars = new Car[capacity];
+        this(new HeapSlotStorage(capacity));
+    }
+
+    /**
+     * Constructor for a {@link ParkingLot} over a {@link SlotStorage}, which
+     * may already hold parked cars, e.g. a {@link MappedSlotStorage} reopened
+     * after a restart. The indexes are rebuilt from the stored cars.
+     * 
+     * @param storage where the cars are kept
+     */
+    public ParkingLot(SlotStorage storage) {
+        this.capacity = storage.getCapacity();
+        this.parkedCars = storage;
+        this.emptySlots = new SlotSet(capacity, true);
+        this.slotsByLicensePlate = new PlateIndex(storage);
+        this.statusCache = new StatusCache(storage);
+        for (int slot = 0; slot < capacity; slot++) {
+            Car car = storage.get(slot);
+            if (car != null) {
+                index(slot, car);
+                currentSize++;
+            }
+        }
     }
 
     /**
@@ -49,10 +176,35 @@ public class ParkingLot {
     }
 
     /**
-     * @return the list of cars that are parked in the {@link ParkingLot}.
+     * @return a copy of the list of cars that are parked in the
+     *      {@link ParkingLot}, by slot.
      */
     public Car[] getParkedCars() {
-        return parkedCars;
+        Car[] cars = new Car[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            cars[slot] = parkedCars.get(slot);
+        }
+        return cars;
+    }
+
+    /**
+     * Takes a point-in-time view of the slots, which later changes of the
+     * {@link ParkingLot} do not affect. The slots are copied; a
+     * {@link ConcurrentParkingLot} takes one without copying.
+     * 
+     * @return the view of the slots
+     */
+    public ParkingLotSnapshot snapshot() {
+        return ParkingLotSnapshot.of(getParkedCars(), 0);
+    }
+
+    /**
+     * @param slot the slot index
+     * @return the {@link Car} parked in the slot, or null if the slot is
+     *      empty or does not exist
+     */
+    public Car getCar(int slot) {
+        return isValidSlot(slot) ? parkedCars.get(slot) : null;
     }
 
     /**
@@ -70,34 +222,336 @@ public class ParkingLot {
     }
 
     /**
-     * Sets the capacity of the {@link ParkingLot}.
+     * Sets the capacity of the {@link ParkingLot}, as {@link #resize(int)}.
      * 
      * @param capacity
+     * @throws ParkingLotException if a slot that shrinking would drop is
+     *      occupied.
      */
-    public void setCapacity(int capacity) {
+    public void setCapacity(int capacity) throws ParkingLotException {
+        resize(capacity);
+    }
+
+    /**
+     * Changes the number of parking spaces in place, e.g. to open or close a
+     * level, without rebuilding the {@link ParkingLot}. The parked cars keep
+     * their slots. Growing adds empty slots after the last one, and
+     * shrinking drops the last slots, which must be empty. The free-slot
+     * index, the cached status and the {@link AllocationStrategy} are
+     * resized in step, each color index grows as cars park in the new slots,
+     * and the license plate index does not depend on the capacity.
+     * 
+     * @param capacity the new number of parking spaces.
+     * @throws ParkingLotException if the capacity is negative, or if a slot
+     *      that shrinking would drop is occupied or held.
+     * @throws UnsupportedOperationException if the {@link SlotStorage} has a
+     *      fixed number of slots.
+     */
+    public void resize(int capacity) throws ParkingLotException {
+        if (capacity < 0) {
+            throw new ParkingLotException("Invalid capacity");
+        }
+        for (int slot = capacity; slot < this.capacity; slot++) {
+            if (!emptySlots.contains(slot)) {
+                throw new ParkingLotException("Sorry, slot number " + (slot + 1)
+                        + (isHeld(slot) ? " is held" : " is still occupied"));
+            }
+        }
+        parkedCars.resize(capacity);
+        emptySlots.resize(capacity, true);
+        statusCache.resize(capacity);
+        if (holdExpiry != null) {
+            heldPlates = Arrays.copyOf(heldPlates, capacity);
+            holdExpiry.resize(capacity);
+        }
+        if (sessions != null) {
+            sessions.resize(capacity);
+        }
+        if (allocation != null) {
+            allocation.resize(this.capacity, capacity);
+        }
         this.capacity = capacity;
+        if (events != null) {
+            events.publish(ParkingEvent.Type.RESIZED, -1, null, capacity);
+        }
+    }
+
+    /**
+     * Sets how the slot of each arriving {@link Car} is chosen, e.g. nearest
+     * to the entrance or by slot class; see the factories of
+     * {@link AllocationStrategy}. The strategy is told which slots are
+     * occupied or held already.
+     * 
+     * @param strategy the strategy, or null to take the lowest empty slot
+     */
+    public void setAllocationStrategy(AllocationStrategy strategy) {
+        if (strategy != null) {
+            strategy.reset(capacity);
+            for (int slot = 0; slot < capacity; slot++) {
+                if (!emptySlots.contains(slot)) {
+                    strategy.occupied(slot);
+                }
+            }
+        }
+        this.allocation = strategy;
+    }
+
+    /**
+     * @return how the slot of each arriving {@link Car} is chosen, or null
+     *      if the lowest empty slot is taken
+     */
+    public AllocationStrategy getAllocationStrategy() {
+        return allocation;
+    }
+
+    /**
+     * Starts timing the stay of every {@link Car} with a
+     * {@link SessionTracker}, which then records each arrival and turns each
+     * departure into a {@link ParkingSession} with its fee. The cars already
+     * parked are taken to arrive now.
+     * 
+     * @param tracker the tracker of the sessions
+     */
+    public void trackSessions(SessionTracker tracker) {
+        tracker.reset(capacity);
+        int parked = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (parkedCars.get(slot) != null) {
+                tracker.arrived(slot, ++parked);
+            }
+        }
+        this.sessions = tracker;
+    }
+
+    /**
+     * @return the tracker of the parking sessions, or null if they are not
+     *      tracked
+     */
+    public SessionTracker getSessionTracker() {
+        return sessions;
+    }
+
+    /**
+     * Starts publishing every {@link Car} that parks or leaves, and every
+     * resize, on a {@link ParkingEventStream}. Publishing does not wait for
+     * the consumers of the stream. On a {@link ConcurrentParkingLot}, call
+     * this before the lot is shared between threads.
+     * 
+     * @param stream the stream to publish on, or null to stop publishing
+     */
+    public void publishEvents(ParkingEventStream stream) {
+        this.events = stream;
+    }
+
+    /**
+     * @return the stream the changes are published on, or null if they are
+     *      not published
+     */
+    public ParkingEventStream getEventStream() {
+        return events;
+    }
+
+    /**
+     * Holds a slot for a pre-booked {@link Car} until a deadline. The slot is
+     * chosen as if the {@link Car} parked now, and no other {@link Car} can
+     * park in it; when the {@link Car} arrives, {@link #tryPark(Car)} parks
+     * it there. A hold that is not used by its deadline is released by
+     * {@link #expireHolds(long)}. A held slot is listed as empty by
+     * {@link #status(boolean)}.
+     *
+     * @param car the {@link Car} the slot is held for, matched by license
+     *      plate on arrival
+     * @param untilMillis the deadline, in milliseconds since the epoch
+     * @return the slot index held, or {@link #FULL}, or
+     *      {@link #ALREADY_PARKED} if the license plate is parked or holds a
+     *      slot already
+     */
+    public int hold(Car car, long untilMillis) {
+        String licensePlate = car.getLicensePlate();
+        if (slotsByLicensePlate.get(licensePlate) != -1 || holdsByPlate.containsKey(licensePlate)) {
+            return ALREADY_PARKED;
+        }
+        int slot = allocation == null ? getEmptyLot() : allocation.select(car);
+        if (slot == -1) {
+            return FULL;
+        }
+        if (holdExpiry == null) {
+            heldPlates = new String[capacity];
+            holdExpiry = new TimingWheel(capacity, HOLD_TICK_MILLIS);
+        }
+        emptySlots.remove(slot);
+        if (allocation != null) {
+            allocation.occupied(slot);
+        }
+        heldPlates[slot] = licensePlate;
+        holdsByPlate.put(licensePlate, slot);
+        holdExpiry.schedule(slot, untilMillis);
+        return slot;
+    }
+
+    /**
+     * Releases the slot held for a license plate before its deadline.
+     *
+     * @param licensePlate the license plate
+     * @return true if the license plate held a slot
+     */
+    public boolean cancelHold(String licensePlate) {
+        Integer slot = holdsByPlate.get(licensePlate);
+        if (slot == null) {
+            return false;
+        }
+        holdExpiry.cancel(slot);
+        unhold(slot);
+        return true;
+    }
+
+    /**
+     * Releases every hold whose deadline has passed. The deadlines are kept
+     * in a {@link TimingWheel}, so a call costs about the number of holds it
+     * releases, however many are pending or however long since the last
+     * call.
+     *
+     * @param nowMillis the current time, in milliseconds since the epoch
+     * @return the number of holds released
+     */
+    public int expireHolds(long nowMillis) {
+        if (holdExpiry == null) {
+            return 0;
+        }
+        int pending = holdExpiry.size();
+        holdExpiry.advance(nowMillis, this::unhold);
+        return pending - holdExpiry.size();
+    }
+
+    /**
+     * @param licensePlate the license plate
+     * @return the slot index held for the license plate, or -1 if none
+     */
+    public int getHeldSlot(String licensePlate) {
+        return holdsByPlate.getOrDefault(licensePlate, -1);
+    }
+
+    /**
+     * @param slot the slot index
+     * @return true if the slot is held for a pre-booked {@link Car}
+     */
+    public boolean isHeld(int slot) {
+        return heldPlates != null && isValidSlot(slot) && heldPlates[slot] != null;
+    }
+
+    /**
+     * @return the number of held slots
+     */
+    public int getHoldCount() {
+        return holdsByPlate.size();
+    }
+
+    /**
+     * Frees a held slot, whose deadline is no longer pending.
+     *
+     * @param slot the slot index
+     */
+    private void unhold(int slot) {
+        holdsByPlate.remove(heldPlates[slot]);
+        heldPlates[slot] = null;
+        emptySlots.add(slot);
+        if (allocation != null) {
+            allocation.freed(slot);
+        }
     }
 
     /**
      * Parks a {@link Car} in the {@link ParkingLot}, if capacity haven't been
      * reached. Returns the number of slot that the {@link Car} was parked in.
-     * If there is no space, throws a {@link ParkingLotException}.
+     * If there is no space, or a {@link Car} with the same license plate is
+     * already parked, throws a {@link ParkingLotException}.
      * 
      * @param car the {@link Car} to be parked.
      * @return the number of slot that the {@link Car} was parked in.
-     * @throws ParkingLotException if there is no space.
+     * @throws ParkingLotException if there is no space, or if the license
+     *      plate is already parked.
      */
     public int park(Car car) throws ParkingLotException {
-        if (currentSize < capacity) {
-            int emptyLot = getEmptyLot();
-            parkedCars[emptyLot] = car;
-            currentSize++;
-            return emptyLot;
-        } else {
-            throw new ParkingLotException("Sorry, parking slot is full");
+        int slot = tryPark(car);
+        switch (slot) {
+            case FULL:
+                throw new ParkingLotException("Sorry, parking slot is full");
+            case ALREADY_PARKED:
+                throw new ParkingLotException("Car " + car.getLicensePlate() + " is already parked");
+            case UNSTORABLE:
+                throw new ParkingLotException(getUnstorableReason(car));
+            default:
+                return slot;
         }
     }
 
+    /**
+     * Gets why the storage of the {@link ParkingLot} turns a {@link Car}
+     * down, for a {@link Car} that {@link #tryPark(Car)} found
+     * {@link #UNSTORABLE}. Nothing is stored: the storage only checks the
+     * {@link Car} again, which is rare enough not to keep the reason of
+     * every rejection.
+     * 
+     * @param car the {@link Car} that was turned down.
+     * @return the reason, as a message.
+     */
+    public String getUnstorableReason(Car car) {
+        try {
+            parkedCars.check(car);
+        } catch (ParkingLotException e) {
+            return e.getMessage();
+        }
+        return "Car " + car.getLicensePlate() + " cannot be stored";
+    }
+
+    /**
+     * Parks a {@link Car} like {@link #park(Car)}, but returns a result code
+     * instead of throwing when the {@link Car} is turned down, which is
+     * cheaper on a busy, full lot than building an exception per car. A
+     * {@link Car} whose license plate holds a slot parks in that slot, even
+     * if every other slot is taken.
+     * 
+     * @param car the {@link Car} to be parked.
+     * @return the number of slot that the {@link Car} was parked in, or
+     *      {@link #FULL}, {@link #ALREADY_PARKED} or {@link #UNSTORABLE} if
+     *      it was not parked.
+     */
+    public int tryPark(Car car) {
+        if (slotsByLicensePlate.get(car.getLicensePlate()) != -1) {
+            return ALREADY_PARKED;
+        }
+        int heldSlot = holdsByPlate.isEmpty() ? -1 : holdsByPlate.getOrDefault(car.getLicensePlate(), -1);
+        int emptyLot = heldSlot;
+        if (heldSlot == -1) {
+            if (currentSize == capacity) {
+                return FULL;
+            }
+            emptyLot = allocation == null ? getEmptyLot() : allocation.select(car);
+            if (emptyLot == -1) {
+                return FULL;
+            }
+        }
+        try {
+            parkedCars.put(emptyLot, car);
+        } catch (ParkingLotException e) {
+            return UNSTORABLE;
+        }
+        if (heldSlot != -1) {
+            holdExpiry.cancel(heldSlot);
+            unhold(heldSlot);
+        }
+        index(emptyLot, car);
+        statusCache.invalidate(emptyLot);
+        currentSize++;
+        if (sessions != null) {
+            sessions.arrived(emptyLot, currentSize);
+        }
+        if (events != null) {
+            events.publish(ParkingEvent.Type.PARKED, emptyLot, car, -1);
+        }
+        return emptyLot;
+    }
+
     /**
      * Creates then parks a {@link Car} in the {@link ParkingLot} with the
      * input license number and color, if capacity haven't been reached. 
@@ -106,7 +560,8 @@ public class ParkingLot {
      * 
      * @param car the {@link Car} to be parked.
      * @return the number of slot that the {@link Car} was parked in.
-     * @throws ParkingLotException if there is no space.
+     * @throws ParkingLotException if there is no space, or if the license
+     *      plate is already parked.
      */
     public int park(String licenseNumber, String color) throws ParkingLotException {
         Car parkedCar = new Car(licenseNumber, color);
@@ -114,18 +569,158 @@ public class ParkingLot {
     }
 
     /**
-     * Checks if there is an empty slot in the {@link ParkingLot}, and return its
-     * index. If there is no empty slot, returns -1.
+     * Parks a batch of {@link Car}s as if {@link #tryPark(Car)} were called
+     * for each in turn, so a rejected {@link Car} costs no exception as it
+     * would with {@link #park(Car)}. The batch is parked in bulk: the empty
+     * slots it needs are taken in one pass over the free-slot index, a word
+     * of slots at a time, the slots of each color are added to the color
+     * index in one merge, and the cached status is dropped once per chunk of
+     * slots. With an {@link AllocationStrategy} or held slots, which choose
+     * the slot car by car, the {@link Car}s are parked one at a time.
      * 
-     * @return the index of the empty slot, or -1 if there is no empty slot.
+     * @param cars the {@link Car}s to be parked, in order.
+     * @return for each {@link Car}, the number of slot it was parked in, or
+     *      {@link #FULL}, {@link #ALREADY_PARKED} or {@link #UNSTORABLE} if
+     *      it was not parked.
      */
-    private int getEmptyLot() {
-        for (int i=0; i < capacity; i++) {
-            if (parkedCars[i] == null) {
-                return i;
+    public int[] parkAll(List<Car> cars) {
+        int[] slots = new int[cars.size()];
+        if (allocation != null || !holdsByPlate.isEmpty()) {
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = tryPark(cars.get(i));
             }
+            return slots;
         }
-        return -1;
+        // the cars whose plates are not parked need at most a slot each
+        int arriving = 0;
+        for (Car car : cars) {
+            if (slotsByLicensePlate.get(car.getLicensePlate()) == -1) {
+                arriving++;
+            }
+        }
+        int[] taken = new int[Math.min(arriving, capacity - currentSize)];
+        int available = emptySlots.removeFirst(taken, taken.length);
+        slotsByLicensePlate.ensureCapacity(available);
+        Car[] parked = new Car[available];
+        int used = 0;
+        for (int i = 0; i < slots.length; i++) {
+            Car car = cars.get(i);
+            if (slotsByLicensePlate.get(car.getLicensePlate()) != -1) {
+                // parked before, or earlier in the batch
+                slots[i] = ALREADY_PARKED;
+            } else if (used == available) {
+                slots[i] = FULL;
+            } else {
+                try {
+                    parkedCars.put(taken[used], car);
+                } catch (ParkingLotException e) {
+                    slots[i] = UNSTORABLE;
+                    continue;
+                }
+                slotsByLicensePlate.put(car.getLicensePlate(), taken[used]);
+                slots[i] = taken[used];
+                parked[used++] = car;
+            }
+        }
+        // give back the highest slots, left by the cars turned down
+        for (int i = used; i < available; i++) {
+            emptySlots.add(taken[i]);
+        }
+        indexAll(taken, parked, used);
+        return slots;
+    }
+
+    /**
+     * Adds the {@link Car}s parked by {@link #parkAll(List)} to the indexes
+     * other than the free-slot and license plate ones, which the batch
+     * updated as it went.
+     * 
+     * @param slots the slots of the parked {@link Car}s, in ascending order
+     * @param cars the parked {@link Car}s, in the order of their slots
+     * @param count the number of parked {@link Car}s
+     */
+    private void indexAll(int[] slots, Car[] cars, int count) {
+        // the slots of each color, grouped by a counting sort that keeps
+        // them in ascending order: the start and end of each color's run
+        Map<String, int[]> runs = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            runs.computeIfAbsent(cars[i].getColor(), color -> new int[2])[1]++;
+        }
+        int start = 0;
+        for (int[] run : runs.values()) {
+            int length = run[1];
+            run[0] = start;
+            run[1] = start;
+            start += length;
+        }
+        int[] byColor = new int[count];
+        for (int i = 0; i < count; i++) {
+            byColor[runs.get(cars[i].getColor())[1]++] = slots[i];
+        }
+        for (Map.Entry<String, int[]> run : runs.entrySet()) {
+            colorSlots(run.getKey()).addAll(byColor, run.getValue()[0], run.getValue()[1]);
+        }
+        statusCache.invalidate(slots, count);
+        for (int i = 0; i < count; i++) {
+            if (plateSearch != null) {
+                plateSearch.put(cars[i].getLicensePlate(), slots[i]);
+            }
+            if (fuzzyPlates != null) {
+                fuzzyPlates.put(cars[i].getLicensePlate(), slots[i]);
+            }
+            currentSize++;
+            if (sessions != null) {
+                sessions.arrived(slots[i], currentSize);
+            }
+            if (events != null) {
+                events.publish(ParkingEvent.Type.PARKED, slots[i], cars[i], -1);
+            }
+        }
+    }
+
+    /**
+     * Adds a parked {@link Car} to the free-slot, license plate and color
+     * indexes.
+     * 
+     * @param slot the slot the {@link Car} is parked in
+     * @param car the parked {@link Car}
+     */
+    private void index(int slot, Car car) {
+        emptySlots.remove(slot);
+        slotsByLicensePlate.put(car.getLicensePlate(), slot);
+        if (plateSearch != null) {
+            plateSearch.put(car.getLicensePlate(), slot);
+        }
+        if (fuzzyPlates != null) {
+            fuzzyPlates.put(car.getLicensePlate(), slot);
+        }
+        colorSlots(car.getColor()).add(slot);
+        if (allocation != null) {
+            allocation.occupied(slot);
+        }
+    }
+
+    /**
+     * Gets the slot set of a color to add a slot to, creating it for a new
+     * color and growing it if the {@link ParkingLot} grew since.
+     * 
+     * @param color the color
+     * @return the slot set of the color
+     */
+    private SparseSlotSet colorSlots(String color) {
+        SparseSlotSet colorSlots = slotsByColor.computeIfAbsent(color, c -> new SparseSlotSet(capacity));
+        colorSlots.ensureCapacity(capacity);
+        return colorSlots;
+    }
+
+    /**
+     * Checks if there is an empty slot in the {@link ParkingLot}, and return the
+     * lowest index of one. If there is no empty slot, returns -1.
+     * 
+     * @return the index of the empty slot, or -1 if there is no empty slot.
+     */
+    private int getEmptyLot() {
+        return emptySlots.first();
     }
 
     /**
@@ -136,10 +731,21 @@ public class ParkingLot {
      * @throws ParkingLotException if the index is out of range.
      */
     public boolean isEmptyLot(int slot) throws ParkingLotException {
-        if (slot < 0 || slot >= capacity) {
+        if (!isValidSlot(slot)) {
             throw new ParkingLotException("Invalid slot number");
         }
-        return parkedCars[slot] == null;
+        return parkedCars.get(slot) == null;
+    }
+
+    /**
+     * Checks if a slot index is within the {@link ParkingLot}, so that
+     * {@link #isEmptyLot(int)} and {@link #leave(int)} will not throw.
+     * 
+     * @param slot the index of the parking slot.
+     * @return true if the slot index is valid, false otherwise.
+     */
+    public boolean isValidSlot(int slot) {
+        return slot >= 0 && slot < getCapacity();
     }
 
     /**
@@ -151,15 +757,75 @@ public class ParkingLot {
      * @throws ParkingLotException if the slot number is invalid
      */
     public Car leave(int slot) throws ParkingLotException {
-        if (slot < 0 || slot >= capacity) {
+        if (!isValidSlot(slot)) {
             throw new ParkingLotException("Invalid slot number");
         }
-        if (parkedCars[slot] == null) {
+        return tryLeave(slot);
+    }
+
+    /**
+     * Checks a car out like {@link #leave(int)}, but without throwing for
+     * an invalid slot number.
+     * 
+     * @param slot the slot index
+     * @return the {@link Car} that was parked in the slot, or null if the
+     *      slot was empty or invalid.
+     */
+    public Car tryLeave(int slot) {
+        return slot >= 0 && slot < capacity ? release(slot) : null;
+    }
+
+    /**
+     * Checks the cars out of a batch of slots with {@link #tryLeave(int)}.
+     * 
+     * @param slots the slot indices
+     * @return for each slot, the {@link Car} that was parked in it, or null
+     *      if the slot was empty or invalid.
+     */
+    public Car[] leaveAll(int[] slots) {
+        Car[] cars = new Car[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            cars[i] = tryLeave(slots[i]);
+        }
+        return cars;
+    }
+
+    /**
+     * Empties a valid slot and removes its {@link Car} from the indexes.
+     * 
+     * @param slot the slot index
+     * @return the {@link Car} that was parked in the slot, null if none.
+     */
+    private Car release(int slot) {
+        Car carToLeave = parkedCars.get(slot);
+        if (carToLeave == null) {
             return null;
         }
-        Car carToLeave = parkedCars[slot];
-        parkedCars[slot] = null;
+        parkedCars.remove(slot);
+        statusCache.invalidate(slot);
+        emptySlots.add(slot);
+        slotsByLicensePlate.remove(carToLeave.getLicensePlate(), slot);
+        if (plateSearch != null) {
+            plateSearch.remove(carToLeave.getLicensePlate());
+        }
+        if (fuzzyPlates != null) {
+            fuzzyPlates.remove(carToLeave.getLicensePlate(), slot);
+        }
+        if (allocation != null) {
+            allocation.freed(slot);
+        }
+        SparseSlotSet colorSlots = slotsByColor.get(carToLeave.getColor());
+        colorSlots.remove(slot);
+        if (colorSlots.isEmpty()) {
+            slotsByColor.remove(carToLeave.getColor());
+        }
         currentSize--;
+        if (sessions != null) {
+            sessions.departed(slot, carToLeave, currentSize);
+        }
+        if (events != null) {
+            events.publish(ParkingEvent.Type.LEFT, slot, carToLeave, -1);
+        }
         return carToLeave;
     }
 
@@ -183,57 +849,58 @@ public class ParkingLot {
      * @return a formatted string of the current status of the parking slot.
      */
     public String status(boolean fullInfo) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Slot No.\tID\t\tColor\n");
-        for (int slot=0; slot < capacity; slot++) {
-            boolean isOccupied = (parkedCars[slot] != null);
-            if (!isOccupied) {
-                if (fullInfo) {
-                    sb.append(slot+1).append("\t\t(empty)\n");
-                }
-                continue;
-            } else {
-                sb.append(slot+1).append("\t\t");
-                Car parkedCar = parkedCars[slot];
-                sb.append(parkedCar.getLicensePlate()).append("\t\t");
-                sb.append(parkedCar.getColor()).append("\n");
-            }
-        }
-        return sb.substring(0, sb.length()-1);
+        return statusCache.status(fullInfo);
     }
 
     /**
-     * Returns the list of {@link Car} in this {@link ParkingLot} that has the
-     * same color as the input color.
+     * Writes the same status as {@link #status(boolean)} to an
+     * {@link Appendable}, e.g. a {@link java.io.Writer}, without building the
+     * whole string when it is not already cached.
+     * 
+     * @param fullInfo true if want to get the full status (including empty slot),
+     *      false otherwise.
+     * @param out where the status is written.
+     * @throws IOException if writing to {@code out} fails.
+     */
+    public void status(boolean fullInfo, Appendable out) throws IOException {
+        statusCache.status(fullInfo, out);
+    }
+
+    /**
+     * Returns the list of {@link Car} in this {@link ParkingLot}, in ascending
+     * order of slot, that has the same color as the input color.
      * 
      * @param color the color of the {@link Car} to be searched.
      * @return a list of {@link Car} that has the same color as the input color.
      */
     public List<Car> getCarsWithColor(String color) {
-        List<Car> cars = new ArrayList<>();
-        for (int slot=0; slot < capacity; slot++) {
-            Car parkedCar = parkedCars[slot];
-            if (parkedCar != null && parkedCar.getColor().equals(color)) {
-                cars.add(parkedCar);
-            }
+        SparseSlotSet colorSlots = slotsByColor.get(color);
+        if (colorSlots == null) {
+            return new ArrayList<>();
+        }
+        List<Car> cars = new ArrayList<>(colorSlots.size());
+        for (int slot = colorSlots.first(); slot != -1; slot = colorSlots.next(slot + 1)) {
+            cars.add(parkedCars.get(slot));
         }
         return cars;
     }
 
     /**
-     * Returns the list of {@link Car} in this {@link ParkingLot} that has the
-     * same color as the input color.
+     * Returns the list of slot indices in this {@link ParkingLot}, in ascending
+     * order, where the parked {@link Car} has the same color as the input color.
      * 
      * @param color the color of the {@link Car} to be searched.
-     * @return a list of {@link Car} that has the same color as the input color.
+     * @return a list of slot indices of the {@link Car}s that have the same
+     *      color as the input color.
      */
     public List<Integer> getSlotsNumberForCarsWithColor(String color) {
-        List<Integer> slots = new ArrayList<>();
-        for (int slot=0; slot < capacity; slot++) {
-            Car parkedCar = parkedCars[slot];
-            if (parkedCar != null && parkedCar.getColor().equals(color)) {
-                slots.add(slot);
-            }
+        SparseSlotSet colorSlots = slotsByColor.get(color);
+        if (colorSlots == null) {
+            return new ArrayList<>();
+        }
+        List<Integer> slots = new ArrayList<>(colorSlots.size());
+        for (int slot = colorSlots.first(); slot != -1; slot = colorSlots.next(slot + 1)) {
+            slots.add(slot);
         }
         return slots;
     }
@@ -247,12 +914,110 @@ public class ParkingLot {
      *    or -1 if not found.
      */
     public int getSlotNumberForId(String id) {
-        for (int slot=0; slot < capacity; slot++) {
-            Car parkedCar = parkedCars[slot];
-            if (parkedCar != null && parkedCar.getLicensePlate().equals(id)) {
-                return slot;
+        return slotsByLicensePlate.get(id);
+    }
+
+    /**
+     * Returns the list of slot indices in this {@link ParkingLot}, in
+     * ascending order, where the license plate of the parked {@link Car}
+     * matches a pattern, e.g. {@code EUS6*} or {@code *24}: a {@code *}
+     * matches any run of characters and a {@code ?} any single one.
+     * <p>
+     * The first search sorts the parked plates once; the sorted index is
+     * then kept up to date as cars park and leave, so a search costs about
+     * the number of plates sharing the literal prefix or suffix of the
+     * pattern, not the capacity.
+     * 
+     * @param pattern the pattern of the license plates to be searched.
+     * @return a list of slot indices of the {@link Car}s whose license
+     *      plate matches the pattern.
+     */
+    public List<Integer> getSlotsNumberForIdsMatching(String pattern) {
+        if (plateSearch == null) {
+            plateSearch = new PlateSearchIndex();
+            for (int slot = 0; slot < capacity; slot++) {
+                Car car = parkedCars.get(slot);
+                if (car != null) {
+                    plateSearch.put(car.getLicensePlate(), slot);
+                }
+            }
+        }
+        List<Integer> slots = new ArrayList<>();
+        plateSearch.find(pattern, slots);
+        Collections.sort(slots);
+        return slots;
+    }
+
+    /**
+     * Returns the list of slot indices in this {@link ParkingLot} where the
+     * license plate of the parked {@link Car} is within a number of edits of
+     * a license plate, e.g. one misread by a camera. Each insertion,
+     * deletion or replacement of a character counts as one edit. The slots
+     * are ordered by the {@link PlateDistance} of their plate, closest
+     * first, then by slot.
+     * <p>
+     * The first search for at most {@link #MAX_INDEXED_EDITS} edits indexes
+     * the parked plates by their deletions, up to that many of them; the
+     * index is then kept up to date as cars park and leave. A search for
+     * more edits scans every slot instead, so that one such search does not
+     * make every later park and leave pay for a deeper index.
+     * 
+     * @param id the license plate to be searched.
+     * @param maxEdits the most edits allowed.
+     * @param distance how close each plate found is, to order them.
+     * @return a list of slot indices of the {@link Car}s whose license plate
+     *      is within {@code maxEdits} edits, closest first.
+     */
+    public List<Integer> getSlotsNumberForIdsNear(String id, int maxEdits, PlateDistance distance) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Invalid number of edits " + maxEdits);
+        }
+        List<Integer> slots = new ArrayList<>();
+        if (maxEdits > MAX_INDEXED_EDITS) {
+            for (int slot = 0; slot < capacity; slot++) {
+                Car car = parkedCars.get(slot);
+                if (car != null && PlateDistance.edits(id, car.getLicensePlate(), maxEdits) != -1) {
+                    slots.add(slot);
+                }
+            }
+        } else {
+            if (fuzzyPlates == null) {
+                fuzzyPlates = new FuzzyPlateIndex(parkedCars, MAX_INDEXED_EDITS);
+                for (int slot = 0; slot < capacity; slot++) {
+                    Car car = parkedCars.get(slot);
+                    if (car != null) {
+                        fuzzyPlates.put(car.getLicensePlate(), slot);
+                    }
+                }
             }
+            fuzzyPlates.find(id, maxEdits, slots);
+        }
+        return orderByDistance(id, slots, distance);
+    }
+
+    /**
+     * Orders slots by the distance of the plates parked there to a plate,
+     * then by slot.
+     * 
+     * @param id the license plate
+     * @param slots the slot indices, of occupied slots
+     * @param distance the distance between plates
+     * @return the slot indices, in order
+     */
+    List<Integer> orderByDistance(String id, List<Integer> slots, PlateDistance distance) {
+        double[] distances = new double[slots.size()];
+        Integer[] order = new Integer[slots.size()];
+        for (int i = 0; i < order.length; i++) {
+            Car car = getCar(slots.get(i));
+            distances[i] = car == null ? Double.MAX_VALUE : distance.distance(id, car.getLicensePlate());
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> distances[a] != distances[b]
+                ? Double.compare(distances[a], distances[b]) : Integer.compare(slots.get(a), slots.get(b)));
+        List<Integer> ordered = new ArrayList<>(order.length);
+        for (int i : order) {
+            ordered.add(slots.get(i));
         }
-        return -1;
+        return ordered;
     }
 }
@@ -1,18 +1,76 @@
 package com.vuongho.parkinglot;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.IntFunction;
+
+import javax.management.JMException;
 
 /**
  * A REPL implementation for managing a {@link ParkingLot}.
  */
 public class ParkingLotMgr {
+    /**
+     * Size of the input and output buffers of {@link #replay}.
+     */
+    private static final int BATCH_BUFFER_SIZE = 1 << 20;
+
     private ParkingLot parkingLot = null;
+
+    /**
+     * Creates the {@link ParkingLot} of a {@code create_parking_lot} command
+     * from its capacity.
+     */
+    private IntFunction<ParkingLot> parkingLotFactory = ParkingLot::new;
+
+    /**
+     * The journal of the commands that change the state, or null if the
+     * state is not persisted.
+     */
+    private CommandJournal journal = null;
+
+    /**
+     * Tokenizer reused by {@link #giveCommand(CharSequence)} for every line.
+     */
+    private final CommandTokenizer tokenizer = new CommandTokenizer();
+
+    /**
+     * The runtime metrics of the commands, or null if they are not enabled.
+     */
+    private CommandMetrics metrics = null;
+
+    /**
+     * The tracker of the parking sessions of every {@link ParkingLot} this
+     * {@link ParkingLotMgr} manages, or null if they are not tracked.
+     */
+    private SessionTracker sessions = null;
+
+    /**
+     * The stream the changes of every {@link ParkingLot} this
+     * {@link ParkingLotMgr} manages are published on, or null if they are
+     * not published.
+     */
+    private ParkingEventStream events = null;
+
     /**
      * Default constructor
      */
@@ -31,15 +89,121 @@ public class ParkingLotMgr {
         this.parkingLot = new ParkingLot(capacity);
     }
 
+    /**
+     * Constructor for a {@link ParkingLotMgr} managing an existing
+     * {@link ParkingLot}, e.g. one reopened from a {@link MappedSlotStorage}.
+     * 
+     * @param parkingLot the {@link ParkingLot} to manage
+     */
+    public ParkingLotMgr(ParkingLot parkingLot) {
+        this.parkingLot = parkingLot;
+    }
+
+    /**
+     * Constructor for a {@link ParkingLotMgr} that creates its
+     * {@link ParkingLot}s with a factory, e.g. to choose their
+     * {@link SlotStorage}:
+     * <pre>
+     * new ParkingLotMgr(capacity -&gt; new ParkingLot(new ColumnarSlotStorage(capacity)))
+     * </pre>
+     * 
+     * @param parkingLotFactory creates a {@link ParkingLot} from its capacity
+     */
+    public ParkingLotMgr(IntFunction<ParkingLot> parkingLotFactory) {
+        this.parkingLotFactory = parkingLotFactory;
+    }
+
+    /**
+     * Constructor for a {@link ParkingLotMgr} that recovers its state from a
+     * {@link CommandJournal} and journals every later command that changes it.
+     * 
+     * @param journal the journal to recover from and write to
+     * @throws IOException if the journal cannot be recovered
+     */
+    public ParkingLotMgr(CommandJournal journal) throws IOException {
+        this.parkingLot = journal.recover();
+        this.journal = journal;
+    }
+
     /**
      * Handles the input command and returns appropriate message.
      * This function is exposed to the REPL.
+     * <p>
+     * The command is tokenized in place, so apart from the message itself only
+     * the license plate and color arguments are allocated. The messages are
+     * the same as the ones of {@link #processCommand(String[])}. Once
+     * {@link #enableMetrics()} is called, each command is counted and a
+     * sample of them timed.
      * 
      * @param command input command
      * @return appropriate message from processing the command
      */
-    public String giveCommand(String command) {
-        return processCommand(command.split(" "));
+    public String giveCommand(CharSequence command) {
+        long start = metrics == null ? CommandMetrics.UNTIMED : metrics.startTiming();
+        tokenizer.reset(command);
+        Command verb = tokenizer.command();
+        if (verb == null || !verb.accepts(tokenizer.size())) {
+            if (metrics != null) {
+                metrics.recordInvalid();
+            }
+            return "Invalid command";
+        }
+        String message = run(verb);
+        if (metrics != null) {
+            metrics.record(verb, start);
+        }
+        return message;
+    }
+
+    /**
+     * Runs a well-formed command held by {@link #tokenizer}.
+     * 
+     * @param verb the command
+     * @return appropriate message from processing the command
+     */
+    private String run(Command verb) {
+        switch (verb) {
+            case CREATE_PARKING_LOT:
+                return createParkingLot(tokenizer.intArgument(1));
+            case PARK:
+                return park(tokenizer.argument(1), tokenizer.argument(2));
+            case LEAVE:
+                return leave(tokenizer.intArgument(1));
+            case STATUS:
+                return status();
+            case IDS_FOR_CARS_WITH_COLOR:
+                return idsForCarsWithColor(tokenizer.argument(1));
+            case SLOT_NUMBERS_FOR_CARS_WITH_COLOR:
+                return slotsForCarsWithColor(tokenizer.argument(1));
+            case SLOT_NUMBER_FOR_ID:
+                return slotForId(tokenizer.argument(1));
+            case SLOT_NUMBERS_FOR_IDS_MATCHING:
+                return slotsForIdsMatching(tokenizer.argument(1));
+            case SLOT_NUMBERS_FOR_IDS_NEAR:
+                return slotsForIdsNear(tokenizer.argument(1), tokenizer.intArgument(2));
+            case METRICS:
+                return metrics();
+            case SESSIONS:
+                return sessions();
+            case PARK_ALL: {
+                List<Car> cars = new ArrayList<>(tokenizer.size() / 2);
+                for (int i = 1; i < tokenizer.size(); i += 2) {
+                    cars.add(new Car(tokenizer.argument(i), tokenizer.argument(i + 1)));
+                }
+                return parkAll(cars);
+            }
+            case RESIZE_PARKING_LOT:
+                return resizeParkingLot(tokenizer.intArgument(1));
+            case LEAVE_ALL: {
+                int[] slots = new int[tokenizer.size() - 1];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = tokenizer.intArgument(i + 1);
+                }
+                return leaveAll(slots);
+            }
+            default:
+                return "Invalid command";
+        }
     }
 
     /**
@@ -65,6 +229,20 @@ public class ParkingLotMgr {
                 return slotsForCarsWithColor(args);
             case "slot_number_for_id":
                 return slotForId(args);
+            case "slot_numbers_for_ids_matching":
+                return args.length == 2 ? slotsForIdsMatching(args[1]) : "Invalid command";
+            case "slot_numbers_for_ids_near":
+                return args.length == 3 ? slotsForIdsNear(args[1], Integer.parseInt(args[2])) : "Invalid command";
+            case "metrics":
+                return args.length == 1 ? metrics() : "Invalid command";
+            case "sessions":
+                return args.length == 1 ? sessions() : "Invalid command";
+            case "park_all":
+                return parkAll(args);
+            case "leave_all":
+                return leaveAll(args);
+            case "resize_parking_lot":
+                return resizeParkingLot(args);
             default:
                 return "Invalid command";
         }
@@ -92,10 +270,71 @@ public class ParkingLotMgr {
      * @return appropriate message from creating the parking lot
      */
     public String createParkingLot(int capacity) {
-        parkingLot = new ParkingLot(capacity);
+        parkingLot = parkingLotFactory.apply(capacity);
+        if (sessions != null) {
+            parkingLot.trackSessions(sessions);
+        }
+        if (events != null) {
+            parkingLot.publishEvents(events);
+            events.publish(ParkingEvent.Type.CREATED, -1, null, capacity);
+        }
+        if (journal != null) {
+            try {
+                journal.logCreate(capacity);
+                // nothing before the new lot matters any more
+                journal.snapshot(parkingLot);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return "Created a parking lot with " + capacity + " slots";
     }
 
+    /**
+     * Changes the capacity of the current {@link ParkingLot} to the input
+     * {@link capacity}.
+     *
+     * @param args command array
+     * @return appropriate message from processing the command
+     */
+    String resizeParkingLot(String[] args) {
+        if (args.length != 2) {
+            return "Invalid command";
+        }
+        int capacity = Integer.parseInt(args[1]);
+        return resizeParkingLot(capacity);
+    }
+
+    /**
+     * Changes the capacity of the current {@link ParkingLot} in place with
+     * {@link ParkingLot#resize(int)}, keeping the parked cars, unlike
+     * {@link #createParkingLot(int)}.
+     *
+     * @param capacity new capacity of the {@link ParkingLot}
+     * @return appropriate message from resizing the parking lot
+     */
+    public String resizeParkingLot(int capacity) {
+        if (parkingLot == null) {
+            return "Please create a parking lot first";
+        }
+        try {
+            parkingLot.resize(capacity);
+        } catch (ParkingLotException e) {
+            return e.getMessage();
+        } catch (UnsupportedOperationException e) {
+            return "Sorry, the capacity of this parking lot is fixed";
+        }
+        if (journal != null) {
+            try {
+                journal.logResize(capacity);
+                snapshotIfDue();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return "Resized the parking lot to " + capacity + " slots";
+    }
+
     /**
      * Parks a {@link Car} taken from the input args. {@link Car}'s detail must
      * contain a registration number and its color.
@@ -117,18 +356,49 @@ public class ParkingLotMgr {
             return "Please create a parking lot first";
         }
         if (parkingLot.isFull()) {
+            if (metrics != null) {
+                metrics.recordRejectedPark();
+            }
             return "Sorry, parking lot is full";
         }
         Car car = new Car(licensePlate, color);
-        int slot;
-        try {
-            slot = parkingLot.park(car);
-        } catch (ParkingLotException e) {
-            return e.getMessage();
+        int slot = parkingLot.tryPark(car);
+        if (slot < 0) {
+            if (metrics != null) {
+                metrics.recordRejectedPark();
+            }
+            return rejection(slot, car);
+        }
+        if (journal != null) {
+            try {
+                journal.logPark(licensePlate, color);
+                snapshotIfDue();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
         return "Allocated slot number: " + (slot + 1);
     }
 
+    /**
+     * Gets the message for a {@link Car} that the {@link ParkingLot} turned
+     * down.
+     * 
+     * @param result the result code of {@link ParkingLot#tryPark(Car)}
+     * @param car the {@link Car}
+     * @return the message
+     */
+    private String rejection(int result, Car car) {
+        switch (result) {
+            case ParkingLot.FULL:
+                return "Sorry, parking lot is full";
+            case ParkingLot.ALREADY_PARKED:
+                return "Car " + car.getLicensePlate() + " is already parked";
+            default:
+                return parkingLot.getUnstorableReason(car);
+        }
+    }
+
     /**
      * Checks a {@link Car}'s out of the specified lot number.
      * 
@@ -153,14 +423,151 @@ public class ParkingLotMgr {
         if (parkingLot == null) {
             return "Please create a parking lot first";
         }
-        try {
-            parkingLot.leave(slot-1);
-        } catch (ParkingLotException e) {
-            return e.getMessage();
+        if (!parkingLot.isValidSlot(slot-1)) {
+            return "Invalid slot number";
+        }
+        Car car = parkingLot.tryLeave(slot-1);
+        if (journal != null && car != null) {
+            try {
+                journal.logLeave(slot-1);
+                snapshotIfDue();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
         return "Slot number " + slot + " is free";
     }
 
+    /**
+     * Parks the {@link Car}s taken from the input args, a registration number
+     * and a color for each.
+     * 
+     * @param args command array
+     * @return appropriate message from processing the command
+     */
+    String parkAll(String[] args) {
+        if (!Command.PARK_ALL.accepts(args.length)) {
+            return "Invalid command";
+        }
+        List<Car> cars = new ArrayList<>(args.length / 2);
+        for (int i = 1; i < args.length; i += 2) {
+            cars.add(new Car(args[i], args[i + 1]));
+        }
+        return parkAll(cars);
+    }
+
+    /**
+     * Parks a batch of {@link Car}s with {@link ParkingLot#parkAll(List)}.
+     * The message has one line per {@link Car}, the same as the message of
+     * {@link #park(String, String)} for it.
+     * 
+     * @param cars the {@link Car}s to be parked, in order
+     * @return appropriate message from processing the command
+     */
+    public String parkAll(List<Car> cars) {
+        if (parkingLot == null) {
+            return "Please create a parking lot first";
+        }
+        int[] slots = parkingLot.parkAll(cars);
+        StringBuilder sb = new StringBuilder(slots.length * 28);
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                if (i > 0) {
+                    sb.append('\n');
+                }
+                Car car = cars.get(i);
+                if (slots[i] < 0) {
+                    if (metrics != null) {
+                        metrics.recordRejectedPark();
+                    }
+                    sb.append(rejection(slots[i], car));
+                    continue;
+                }
+                if (journal != null) {
+                    journal.logPark(car.getLicensePlate(), car.getColor());
+                }
+                sb.append("Allocated slot number: ").append(slots[i] + 1);
+            }
+            if (journal != null) {
+                snapshotIfDue();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks the {@link Car}s out of the lot numbers taken from the input args.
+     * 
+     * @param args command array
+     * @return appropriate message from processing the command
+     */
+    String leaveAll(String[] args) {
+        if (!Command.LEAVE_ALL.accepts(args.length)) {
+            return "Invalid command";
+        }
+        int[] slots = new int[args.length - 1];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = Integer.parseInt(args[i + 1]);
+        }
+        return leaveAll(slots);
+    }
+
+    /**
+     * Checks the {@link Car}s out of a batch of lot numbers with
+     * {@link ParkingLot#leaveAll(int[])}. The message has one line per lot
+     * number, the same as the message of {@link #leave(int)} for it.
+     * 
+     * @param slots slot numbers
+     * @return appropriate message from processing the command
+     */
+    public String leaveAll(int... slots) {
+        if (parkingLot == null) {
+            return "Please create a parking lot first";
+        }
+        int[] indices = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            indices[i] = slots[i] - 1;
+        }
+        Car[] cars = parkingLot.leaveAll(indices);
+        int capacity = parkingLot.getCapacity();
+        StringBuilder sb = new StringBuilder(slots.length * 24);
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                if (i > 0) {
+                    sb.append('\n');
+                }
+                if (indices[i] < 0 || indices[i] >= capacity) {
+                    sb.append("Invalid slot number");
+                    continue;
+                }
+                if (journal != null && cars[i] != null) {
+                    journal.logLeave(indices[i]);
+                }
+                sb.append("Slot number ").append(slots[i]).append(" is free");
+            }
+            if (journal != null) {
+                snapshotIfDue();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a snapshot of the {@link ParkingLot} if the journal has grown by
+     * its snapshot interval since the last one.
+     * 
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void snapshotIfDue() throws IOException {
+        if (journal.isSnapshotDue()) {
+            journal.snapshot(parkingLot);
+        }
+    }
+
     /**
      * Checks the status of the current {@link ParkingLot} stored in this
      * {@link ParkingLotMgr}.
@@ -319,16 +726,284 @@ public class ParkingLotMgr {
         return (slot + 1) + "";
     }
 
-    public static void main(String[] args) throws ParkingLotException, IOException {
+    /**
+     * Gets the slot number and license plate of the {@link Car}s whose
+     * license plate matches a pattern, e.g. a partial plate read by a
+     * camera, formatted by the following:
+     * <pre>
+     * <slot1>:<id1>, <slot2>:<id2>, <slot3>:<id3>,...
+     * </pre>
+     * A {@code *} in the pattern matches any run of characters, and a
+     * {@code ?} any single one.
+     * 
+     * @param pattern the pattern of the license plates, e.g. {@code EUS6*}
+     * @return the slot numbers and license plates of the matching
+     *      {@link Car}s
+     */
+    public String slotsForIdsMatching(String pattern) {
+        if (parkingLot == null) {
+            return "Please create a parking lot first";
+        }
+        return formatSlots(parkingLot.getSlotsNumberForIdsMatching(pattern));
+    }
+
+    /**
+     * Formats slots with the license plates parked there as
+     * {@code <slot1>:<id1>, <slot2>:<id2>,...}.
+     * 
+     * @param slots the slot indices
+     * @return the formatted slots, or "None found" if there are none
+     */
+    private String formatSlots(List<Integer> slots) {
+        StringBuilder sb = new StringBuilder();
+        for (Integer slot : slots) {
+            Car car = parkingLot.getCar(slot);
+            // on a concurrent lot the car may have left since the search
+            if (car != null) {
+                sb.append(slot + 1).append(':').append(car.getLicensePlate()).append(", ");
+            }
+        }
+        return sb.length() == 0 ? "None found" : sb.substring(0, sb.length() - 2);
+    }
+
+    /**
+     * Gets the slot number and license plate of the {@link Car}s whose
+     * license plate is within a number of edits of a license plate, e.g.
+     * one misread by a camera, closest first as measured by
+     * {@link PlateDistance#ANPR}, formatted by the following:
+     * <pre>
+     * <slot1>:<id1>, <slot2>:<id2>, <slot3>:<id3>,...
+     * </pre>
+     * 
+     * @param id the license plate, as read
+     * @param maxEdits the most insertions, deletions and replacements of a
+     *      character allowed
+     * @return the slot numbers and license plates of the {@link Car}s found
+     */
+    public String slotsForIdsNear(String id, int maxEdits) {
+        if (parkingLot == null) {
+            return "Please create a parking lot first";
+        }
+        if (maxEdits < 0) {
+            return "Invalid number of edits";
+        }
+        return formatSlots(parkingLot.getSlotsNumberForIdsNear(id, maxEdits, PlateDistance.ANPR));
+    }
+
+    /**
+     * Starts recording the runtime metrics of the commands handled by
+     * {@link #giveCommand(CharSequence)}, if they are not recorded already.
+     * Recording costs an add per command, and two clock reads and a few
+     * atomic adds per timed command.
+     * 
+     * @return the metrics of this {@link ParkingLotMgr}
+     */
+    public CommandMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new CommandMetrics(() -> parkingLot);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of this {@link ParkingLotMgr}, or null if they are
+     *      not enabled
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the runtime metrics of the commands, as {@link CommandMetrics#report()}.
+     * 
+     * @return the metrics as text
+     */
+    public String metrics() {
+        if (metrics == null) {
+            return "Metrics are not enabled";
+        }
+        return metrics.report();
+    }
+
+    /**
+     * Starts publishing the changes of the current {@link ParkingLot} and of
+     * those created later on a {@link ParkingEventStream}, if they are not
+     * published already: the creation of a lot, and each {@link Car} that
+     * parks or leaves. Read the stream with
+     * {@link ParkingEventStream#subscribe()}, or write it to a file with a
+     * {@link ParkingEventFileSink}.
+     * 
+     * @param size the number of events the stream holds for its slowest
+     *      consumer
+     * @return the stream of the changes
+     */
+    public ParkingEventStream enableEvents(int size) {
+        if (events == null) {
+            events = new ParkingEventStream(size);
+            if (parkingLot != null) {
+                parkingLot.publishEvents(events);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Starts tracking the parking sessions of the current {@link ParkingLot}
+     * and of those created later, if they are not tracked already. The
+     * revenue and occupancy aggregates carry over from lot to lot.
+     * 
+     * @param clock the clock the arrivals and departures are timed with
+     * @param fees the fee schedule of the sessions
+     * @return the tracker of the sessions
+     */
+    public SessionTracker enableSessions(Clock clock, FeeSchedule fees) {
+        if (sessions == null) {
+            sessions = new SessionTracker(clock, fees);
+            if (parkingLot != null) {
+                parkingLot.trackSessions(sessions);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Gets the revenue, stay and occupancy aggregates of the parking
+     * sessions, as {@link SessionTracker#report()}.
+     * 
+     * @return the aggregates as text
+     */
+    public String sessions() {
+        if (sessions == null) {
+            return "Sessions are not enabled";
+        }
+        return sessions.report();
+    }
+
+    /**
+     * Runs every command line of a UTF-8 input and writes one message line per
+     * command to the output, like the REPL does. Lines end at {@code \n},
+     * {@code \r} or {@code \r\n}, as with {@link java.io.BufferedReader#readLine()}.
+     * <p>
+     * The input is decoded a large block at a time and each line is handed to
+     * {@link #giveCommand(CharSequence)} as a view of the decoded block, with no
+     * {@link String} per line, and a status is streamed to the output rather
+     * than built as a whole. The output is not flushed by this method, so a
+     * buffered {@link Writer} flushes only when its buffer fills.
+     *
+     * @param input the command lines
+     * @param output where the messages are written
+     * @throws IOException if reading or writing fails
+     */
+    public void replay(ReadableByteChannel input, Writer output) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        String lineSeparator = System.lineSeparator();
+        ByteBuffer bytes = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BATCH_BUFFER_SIZE);
+        boolean skipLineFeed = false;
+        boolean endOfInput = false;
+        while (true) {
+            if (!endOfInput) {
+                endOfInput = input.read(bytes) == -1;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            boolean drained = endOfInput && result.isUnderflow() && decoder.flush(chars).isUnderflow();
+            bytes.compact();
+            chars.flip();
+
+            CharBuffer line = chars.duplicate();
+            int lineStart = chars.position();
+            for (int i = lineStart; i < chars.limit(); i++) {
+                char c = chars.get(i);
+                if (c != '\n' && c != '\r') {
+                    skipLineFeed = false;
+                    continue;
+                }
+                if (c == '\n' && skipLineFeed) {
+                    // second half of a \r\n
+                    skipLineFeed = false;
+                    lineStart = i + 1;
+                    continue;
+                }
+                line.limit(i).position(lineStart);
+                writeCommand(line, output);
+                output.write(lineSeparator);
+                skipLineFeed = c == '\r';
+                lineStart = i + 1;
+            }
+            if (drained && lineStart < chars.limit()) {
+                line.limit(chars.limit()).position(lineStart);
+                writeCommand(line, output);
+                output.write(lineSeparator);
+                lineStart = chars.limit();
+            }
+            if (drained) {
+                return;
+            }
+            chars.position(lineStart);
+            chars.compact();
+            if (!chars.hasRemaining()) {
+                // a single line fills the buffer
+                CharBuffer larger = CharBuffer.allocate(chars.capacity() * 2);
+                chars.flip();
+                larger.put(chars);
+                chars = larger;
+            }
+        }
+    }
+
+    /**
+     * Runs a command line as {@link #giveCommand(CharSequence)} and writes its
+     * message, streaming the status of the {@link ParkingLot} to the output.
+     *
+     * @param command input command
+     * @param output where the message is written
+     * @throws IOException if writing fails
+     */
+    private void writeCommand(CharSequence command, Writer output) throws IOException {
+        tokenizer.reset(command);
+        if (parkingLot != null && tokenizer.command() == Command.STATUS
+                && tokenizer.size() == Command.STATUS.getTokens()) {
+            long start = metrics == null ? CommandMetrics.UNTIMED : metrics.startTiming();
+            parkingLot.status(false, output);
+            if (metrics != null) {
+                metrics.record(Command.STATUS, start);
+            }
+        } else {
+            output.write(giveCommand(command));
+        }
+    }
+
+    public static void main(String[] args) throws ParkingLotException, IOException, JMException {
+        if (args.length >= 3 && args[0].equals("--serve")) {
+            // a shared lot over TCP, see ParkingLotServer
+            ParkingLotServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("--serve-nio")) {
+            NioParkingLotServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         ParkingLotMgr pMgr = new ParkingLotMgr();
+        pMgr.enableMetrics().registerMBeans("default");
+        if (args.length >= 3 && args[0].equals("--fees")) {
+            // bill the sessions per started hour, up to a daily maximum
+            pMgr.enableSessions(Clock.systemUTC(),
+                    FeeSchedule.perStartedHour(Long.parseLong(args[1]), Long.parseLong(args[2])));
+            args = Arrays.copyOfRange(args, 3, args.length);
+        }
 
         if (args.length == 1) {
-            BufferedReader inputReader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8));
-            String command;
-            while ((command = inputReader.readLine()) != null) {
-                System.out.println(pMgr.giveCommand(command));
+            Writer output = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BATCH_BUFFER_SIZE);
+            try (FileChannel input = FileChannel.open(Paths.get(args[0]))) {
+                pMgr.replay(input, output);
+            } finally {
+                output.flush();
             }
-            inputReader.close();
             return;
         }
 
@@ -0,0 +1,224 @@
+package com.vuongho.parkinglot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TCP server that lets many gates share one {@link ParkingLot}. It speaks
+ * the line protocol of the REPL: each line a client sends is a command, and
+ * each message is sent back followed by an empty line, since a status spans
+ * several lines.
+ * <p>
+ * Each connection is served by a thread of its own, reading its commands one
+ * after the other, so a client may send several commands without waiting and
+ * still get the messages in order. The messages are flushed once no sent
+ * command is left to read. The threads are virtual threads where the Java
+ * runtime has them (21 and later), and small platform threads otherwise.
+ * <p>
+ * A {@link ConcurrentParkingLot} is used by the connections at once; any
+ * other lot is guarded by a single lock, one command at a time. The lot is
+ * fixed: {@code create_parking_lot} is refused, though it can be resized,
+ * while the other connections go on. See {@link NioParkingLotServer}
+ * for a server that needs neither a thread per connection nor a lock.
+ */
+public class ParkingLotServer implements Closeable {
+    /**
+     * The stack size of a platform connection thread, enough for a command
+     * and small enough for thousands of connections.
+     */
+    private static final long PLATFORM_THREAD_STACK_SIZE = 256 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * How long the acceptor waits after a failed accept, e.g. when the
+     * process is out of file descriptors, before it tries again.
+     */
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    private final ParkingLot parkingLot;
+
+    /**
+     * The lock of a lot that is not thread-safe, or null.
+     */
+    private final Object lock;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = newConnectionExecutor();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    /**
+     * Constructor for a {@link ParkingLotServer} listening on a port, which
+     * starts accepting connections at once.
+     *
+     * @param parkingLot the lot to serve
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ParkingLotServer(ParkingLot parkingLot, int port) throws IOException {
+        this.parkingLot = parkingLot;
+        this.lock = parkingLot instanceof ConcurrentParkingLot ? null : new Object();
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port), 4096);
+        this.acceptor = new Thread(this::accept, "parking-lot-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            close(socket);
+        }
+        connectionExecutor.shutdownNow();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                // e.g. out of file descriptors: the error would come back at
+                // once, so give the connections some time to close
+                System.err.println("Accepting a connection failed: " + e);
+                try {
+                    Thread.sleep(ACCEPT_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                // the connection went away before it was served
+                close(socket);
+                continue;
+            }
+            connections.add(socket);
+            if (serverSocket.isClosed()) {
+                // accepted while closing, after the open ones were closed
+                close(socket);
+                return;
+            }
+            connectionExecutor.execute(() -> serve(socket));
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    private void serve(Socket socket) {
+        ParkingLotMgr session = new FixedLotMgr(parkingLot);
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            String command;
+            while ((command = in.readLine()) != null) {
+                String message;
+                if (lock == null) {
+                    message = FixedLotMgr.giveCommand(session, command);
+                } else {
+                    synchronized (lock) {
+                        message = FixedLotMgr.giveCommand(session, command);
+                    }
+                }
+                out.write(message);
+                out.write("\n\n");
+                if (!in.ready()) {
+                    // answer the commands sent together in one go
+                    out.flush();
+                }
+            }
+        } catch (SocketException e) {
+            // the client went away
+        } catch (IOException e) {
+            System.err.println("Connection " + socket.getRemoteSocketAddress() + " failed: " + e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Creates the executor of the connection threads: a virtual thread per
+     * connection where the runtime has them, found by reflection so that the
+     * code still builds and runs on Java 17.
+     *
+     * @return the executor
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(null, task, "parking-lot-connection-" + count.incrementAndGet(),
+                        PLATFORM_THREAD_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    /**
+     * Serves a new {@link ConcurrentParkingLot}, or a {@link ParkingLot}
+     * behind a lock, until the process is killed.
+     *
+     * @param args the port and the capacity of the lot, then {@code locked}
+     *      to serve a lot behind a lock
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("locked"))) {
+            System.err.println("Usage: ParkingLotServer <port> <capacity> [locked]");
+            System.exit(2);
+        }
+        int capacity = Integer.parseInt(args[1]);
+        ParkingLot parkingLot = args.length == 3 ? new ParkingLot(capacity) : new ConcurrentParkingLot(capacity);
+        ParkingLotServer server = new ParkingLotServer(parkingLot, Integer.parseInt(args[0]));
+        System.out.println("Serving a parking lot with " + args[1] + " slots on port " + server.getPort());
+    }
+}
@@ -0,0 +1,335 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, point-in-time view of the slots of a {@link ParkingLot},
+ * see {@link ParkingLot#snapshot()}. Every query on a snapshot sees the same
+ * instant, however the lot changes meanwhile.
+ * <p>
+ * The slots are kept in segments of {@link #SEGMENT_SIZE} slots, each an
+ * immutable copy that counts its cars and indexes them by color on the first
+ * color query. A snapshot of a {@link ConcurrentParkingLot} shares the
+ * segments that did not change with the snapshot before it, so a segment is
+ * copied and indexed once per change, not once per read. Empty segments are
+ * skipped by the scans.
+ */
+public final class ParkingLotSnapshot {
+    static final int SEGMENT_BITS = 10;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * An immutable copy of the cars of a segment of slots.
+     */
+    static final class Segment {
+        /**
+         * The {@link Car} in each slot of the segment, or null if none is.
+         */
+        private final Car[] cars;
+
+        private final int count;
+
+        /**
+         * The state of the segment of the lot when it was copied, which the
+         * lot compares to tell whether the copy is still current.
+         */
+        final long stamp;
+
+        /**
+         * The offsets of the slots of each color, in ascending order, built
+         * on the first color query. Two threads may both build it, which is
+         * harmless.
+         */
+        private volatile Map<String, int[]> offsetsByColor;
+
+        /**
+         * Constructor for a {@link Segment}.
+         *
+         * @param cars the {@link Car} in each slot, or null if the segment
+         *      is empty
+         * @param count the number of cars
+         * @param stamp the state of the segment of the lot
+         */
+        Segment(Car[] cars, int count, long stamp) {
+            this.cars = cars;
+            this.count = count;
+            this.stamp = stamp;
+        }
+
+        /**
+         * @param color a color
+         * @return the offsets of the slots of the cars of the color, in
+         *      ascending order, or null if there are none
+         */
+        private int[] offsetsWithColor(String color) {
+            if (count == 0) {
+                return null;
+            }
+            Map<String, int[]> index = offsetsByColor;
+            if (index == null) {
+                index = indexByColor();
+                offsetsByColor = index;
+            }
+            return index.get(color);
+        }
+
+        private Map<String, int[]> indexByColor() {
+            Map<String, int[]> counts = new HashMap<>();
+            for (Car car : cars) {
+                if (car != null) {
+                    counts.computeIfAbsent(car.getColor(), color -> new int[1])[0]++;
+                }
+            }
+            Map<String, int[]> index = new HashMap<>(counts.size() * 2);
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                index.put(entry.getKey(), new int[entry.getValue()[0]]);
+                entry.getValue()[0] = 0;
+            }
+            for (int offset = 0; offset < cars.length; offset++) {
+                Car car = cars[offset];
+                if (car != null) {
+                    index.get(car.getColor())[counts.get(car.getColor())[0]++] = offset;
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The copy of an empty segment that was never changed.
+     */
+    static final Segment EMPTY_SEGMENT = new Segment(null, 0, 0);
+
+    private final int capacity;
+    private final Segment[] segments;
+    private final int size;
+    private final long version;
+
+    /**
+     * Constructor for a {@link ParkingLotSnapshot}.
+     *
+     * @param capacity the number of slots
+     * @param segments the copy of each segment of slots
+     * @param version the version of the snapshot
+     */
+    ParkingLotSnapshot(int capacity, Segment[] segments, long version) {
+        this.capacity = capacity;
+        this.segments = segments;
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * Creates a snapshot of cars by slot, cutting them into segments.
+     *
+     * @param cars the {@link Car} in each slot, or null for an empty one
+     * @param version the version of the snapshot
+     * @return the snapshot
+     */
+    static ParkingLotSnapshot of(Car[] cars, long version) {
+        Segment[] segments = new Segment[segmentsFor(cars.length)];
+        for (int index = 0; index < segments.length; index++) {
+            int from = index << SEGMENT_BITS;
+            int to = Math.min(cars.length, from + SEGMENT_SIZE);
+            int count = 0;
+            for (int slot = from; slot < to; slot++) {
+                count += cars[slot] == null ? 0 : 1;
+            }
+            segments[index] = count == 0 ? EMPTY_SEGMENT
+                    : new Segment(Arrays.copyOfRange(cars, from, to), count, 0);
+        }
+        return new ParkingLotSnapshot(cars.length, segments, version);
+    }
+
+    /**
+     * @param capacity a number of slots
+     * @return the number of segments that hold the slots
+     */
+    static int segmentsFor(int capacity) {
+        return (capacity + SEGMENT_MASK) >>> SEGMENT_BITS;
+    }
+
+    /**
+     * @param index the index of a segment
+     * @return the copy of the segment
+     */
+    Segment segment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * @return the number of the snapshot: for a {@link ConcurrentParkingLot},
+     *      the number of changes of its slots before the snapshot was taken,
+     *      so that two snapshots of the same version are the same
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of parking spaces
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of cars parked at the instant of the snapshot
+     */
+    public int getCurrentSize() {
+        return size;
+    }
+
+    /**
+     * @param slot the slot index
+     * @return the {@link Car} parked in the slot, or null if the slot is
+     *      empty or does not exist
+     */
+    public Car getCar(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            return null;
+        }
+        Segment segment = segments[slot >>> SEGMENT_BITS];
+        return segment.count == 0 ? null : segment.cars[slot & SEGMENT_MASK];
+    }
+
+    /**
+     * @return a copy of the cars, by slot
+     */
+    public Car[] getParkedCars() {
+        Car[] cars = new Car[capacity];
+        for (int index = 0; index < segments.length; index++) {
+            Segment segment = segments[index];
+            if (segment.count > 0) {
+                System.arraycopy(segment.cars, 0, cars, index << SEGMENT_BITS,
+                        Math.min(segment.cars.length, capacity - (index << SEGMENT_BITS)));
+            }
+        }
+        return cars;
+    }
+
+    /**
+     * Returns the {@link Car}s of a color, in ascending order of slot. Only
+     * the segments holding cars are visited, through their color index.
+     *
+     * @param color the color of the {@link Car}s to be searched.
+     * @return the {@link Car}s of the color
+     */
+    public List<Car> getCarsWithColor(String color) {
+        List<Car> cars = new ArrayList<>();
+        for (Segment segment : segments) {
+            int[] offsets = segment.offsetsWithColor(color);
+            if (offsets != null) {
+                for (int offset : offsets) {
+                    cars.add(segment.cars[offset]);
+                }
+            }
+        }
+        return cars;
+    }
+
+    /**
+     * Returns the slot indices of the {@link Car}s of a color, in ascending
+     * order, like {@link #getCarsWithColor(String)}.
+     *
+     * @param color the color of the {@link Car}s to be searched.
+     * @return the slot indices of the {@link Car}s of the color
+     */
+    public List<Integer> getSlotsNumberForCarsWithColor(String color) {
+        List<Integer> slots = new ArrayList<>();
+        for (int index = 0; index < segments.length; index++) {
+            int[] offsets = segments[index].offsetsWithColor(color);
+            if (offsets != null) {
+                for (int offset : offsets) {
+                    slots.add((index << SEGMENT_BITS) + offset);
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Gets the status at the instant of the snapshot, in the form of
+     * {@link ParkingLot#status(boolean)}.
+     *
+     * @param fullInfo true to list the empty slots too
+     * @return the status
+     */
+    public String status(boolean fullInfo) {
+        StringBuilder sb = new StringBuilder(StatusCache.HEADER);
+        appendStatus(sb, fullInfo, null);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the same status as {@link #status(boolean)} to an
+     * {@link Appendable}, a few thousand lines at a time.
+     *
+     * @param fullInfo true to list the empty slots too
+     * @param out where the status is written
+     * @throws IOException if writing to {@code out} fails
+     */
+    public void status(boolean fullInfo, Appendable out) throws IOException {
+        StringBuilder sb = new StringBuilder(StatusCache.HEADER);
+        IOException failure = appendStatus(sb, fullInfo, out);
+        if (failure != null) {
+            throw failure;
+        }
+        out.append(sb);
+    }
+
+    /**
+     * Renders the slots, handing the lines over to {@code out} a few
+     * thousand at a time if it is not null.
+     *
+     * @return the failure of {@code out}, or null
+     */
+    private IOException appendStatus(StringBuilder sb, boolean fullInfo, Appendable out) {
+        IOException failure = null;
+        for (int index = 0; index < segments.length; index++) {
+            Segment segment = segments[index];
+            if (segment.count == 0 && !fullInfo) {
+                continue;
+            }
+            int from = index << SEGMENT_BITS;
+            int to = Math.min(capacity, from + SEGMENT_SIZE);
+            for (int slot = from; slot < to; slot++) {
+                Car car = segment.count == 0 ? null : segment.cars[slot - from];
+                if (car != null || fullInfo) {
+                    StatusCache.appendSlot(sb, slot, car, fullInfo);
+                    failure = handOver(sb, out, failure);
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Hands the rendered lines over to {@code out} once there are a few
+     * thousand characters of them, unless {@code out} is null or already
+     * failed.
+     *
+     * @return the failure of {@code out}, or null
+     */
+    private static IOException handOver(StringBuilder sb, Appendable out, IOException failure) {
+        if (out != null && failure == null && sb.length() >= 8192) {
+            try {
+                out.append(sb);
+                sb.setLength(0);
+            } catch (IOException e) {
+                return e;
+            }
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,73 @@
+package com.vuongho.parkinglot;
+
+/**
+ * A finished stay of a {@link Car} in a {@link ParkingLot}, as recorded by a
+ * {@link SessionTracker} when the {@link Car} leaves.
+ */
+public final class ParkingSession {
+    private final Car car;
+    private final int slot;
+    private final long arrivalMillis;
+    private final long departureMillis;
+    private final long fee;
+
+    /**
+     * Constructor for a finished {@link ParkingSession}.
+     *
+     * @param car the {@link Car}
+     * @param slot the slot index the {@link Car} was parked in
+     * @param arrivalMillis the arrival time, in milliseconds since the epoch
+     * @param departureMillis the departure time, in milliseconds since the
+     *      epoch
+     * @param fee the fee of the session, in cents
+     */
+    ParkingSession(Car car, int slot, long arrivalMillis, long departureMillis, long fee) {
+        this.car = car;
+        this.slot = slot;
+        this.arrivalMillis = arrivalMillis;
+        this.departureMillis = departureMillis;
+        this.fee = fee;
+    }
+
+    /**
+     * @return the {@link Car} of the session
+     */
+    public Car getCar() {
+        return car;
+    }
+
+    /**
+     * @return the slot index the {@link Car} was parked in
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return the arrival time, in milliseconds since the epoch
+     */
+    public long getArrivalMillis() {
+        return arrivalMillis;
+    }
+
+    /**
+     * @return the departure time, in milliseconds since the epoch
+     */
+    public long getDepartureMillis() {
+        return departureMillis;
+    }
+
+    /**
+     * @return how long the {@link Car} stayed, in milliseconds
+     */
+    public long getDwellMillis() {
+        return departureMillis - arrivalMillis;
+    }
+
+    /**
+     * @return the fee of the session, in cents
+     */
+    public long getFee() {
+        return fee;
+    }
+}
@@ -0,0 +1,58 @@
+package com.vuongho.parkinglot;
+
+import java.util.List;
+
+/**
+ * Chooses which {@link ParkingLot} of a {@link MultiLotMgr} a {@link Car} is
+ * parked in.
+ */
+public interface PlacementPolicy {
+    /**
+     * Chooses a {@link ParkingLot} that is not full.
+     *
+     * @param lots the lots, in the order they were created
+     * @param car the {@link Car} to be parked
+     * @return the index of the chosen lot in {@code lots}, or -1 if every lot
+     *      is full
+     */
+    int choose(List<ParkingLot> lots, Car car);
+
+    /**
+     * @return a {@link PlacementPolicy} that fills the lots in the order they
+     *      were created, e.g. the levels of a garage from the ground up
+     */
+    static PlacementPolicy firstAvailable() {
+        return (lots, car) -> {
+            for (int i = 0; i < lots.size(); i++) {
+                if (!lots.get(i).isFull()) {
+                    return i;
+                }
+            }
+            return -1;
+        };
+    }
+
+    /**
+     * @return a {@link PlacementPolicy} that spreads the cars over the lots,
+     *      choosing the one with the lowest share of occupied slots, the
+     *      first one on a tie
+     */
+    static PlacementPolicy leastOccupied() {
+        return (lots, car) -> {
+            int chosen = -1;
+            double chosenOccupancy = 1;
+            for (int i = 0; i < lots.size(); i++) {
+                ParkingLot lot = lots.get(i);
+                if (lot.isFull()) {
+                    continue;
+                }
+                double occupancy = (double) lot.getCurrentSize() / lot.getCapacity();
+                if (chosen == -1 || occupancy < chosenOccupancy) {
+                    chosen = i;
+                    chosenOccupancy = occupancy;
+                }
+            }
+            return chosen;
+        };
+    }
+}
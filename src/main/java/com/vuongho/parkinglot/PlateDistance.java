@@ -0,0 +1,137 @@
+package com.vuongho.parkinglot;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An edit distance between license plates, where turning one character
+ * into another costs less if a plate camera easily confuses the two, e.g.
+ * {@code 0} and {@code O} or {@code 8} and {@code B}. Inserting or deleting
+ * a character, or replacing it with one it is not confused with, costs 1.
+ */
+public final class PlateDistance {
+    /**
+     * The plain Levenshtein distance, where every edit costs 1.
+     */
+    public static final PlateDistance LEVENSHTEIN = new PlateDistance(1);
+
+    /**
+     * A distance for plates read by a camera, where the usual misreads
+     * cost half an edit.
+     */
+    public static final PlateDistance ANPR = confusable(0.5,
+            "0O", "0D", "0Q", "1I", "1L", "2Z", "5S", "6G", "8B");
+
+    private final double confusableCost;
+    private final Set<Integer> confusablePairs = new HashSet<>();
+
+    private PlateDistance(double confusableCost) {
+        this.confusableCost = confusableCost;
+    }
+
+    /**
+     * Creates a distance where some pairs of characters are cheaper to
+     * replace with each other.
+     *
+     * @param cost the cost of replacing a character with one it is confused
+     *      with, between 0 and 1
+     * @param pairs the confused pairs, each as a two-character string such
+     *      as {@code "8B"}
+     * @return the distance
+     */
+    public static PlateDistance confusable(double cost, String... pairs) {
+        if (cost < 0 || cost > 1) {
+            throw new IllegalArgumentException("Invalid cost " + cost);
+        }
+        PlateDistance distance = new PlateDistance(cost);
+        for (String pair : pairs) {
+            if (pair.length() != 2) {
+                throw new IllegalArgumentException("Invalid pair " + pair);
+            }
+            distance.confusablePairs.add(pair(pair.charAt(0), pair.charAt(1)));
+        }
+        return distance;
+    }
+
+    private static int pair(char a, char b) {
+        return a < b ? a << 16 | b : b << 16 | a;
+    }
+
+    /**
+     * Gets the cost of replacing one character with another.
+     *
+     * @param a a character
+     * @param b another character
+     * @return 0 if they are equal, the cost of a confused pair, or 1
+     */
+    public double replaceCost(char a, char b) {
+        if (a == b) {
+            return 0;
+        }
+        return confusablePairs.contains(pair(a, b)) ? confusableCost : 1;
+    }
+
+    /**
+     * Computes the distance between two license plates.
+     *
+     * @param a a license plate
+     * @param b another license plate
+     * @return the least total cost of the edits turning one into the other
+     */
+    public double distance(String a, String b) {
+        double[] previous = new double[b.length() + 1];
+        double[] current = new double[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                double replace = previous[j - 1] + replaceCost(a.charAt(i - 1), b.charAt(j - 1));
+                current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            double[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * Tells whether two strings are within a number of edits of each other,
+     * each insertion, deletion or replacement counting as one, giving up as
+     * soon as a row of the table exceeds the bound.
+     *
+     * @param a a string
+     * @param b another string
+     * @param maxEdits the most edits allowed
+     * @return the Levenshtein distance if it is at most {@code maxEdits},
+     *      or -1
+     */
+    static int edits(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return -1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int replace = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(replace, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return -1;
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[b.length()] <= maxEdits ? previous[b.length()] : -1;
+    }
+}
@@ -0,0 +1,157 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+
+/**
+ * A hash index from license plate to slot, for a {@link ParkingLot}. It is an
+ * open-addressing table of slot numbers and plate hashes, with the plates
+ * themselves left in the {@link SlotStorage}, so an entry costs two ints and
+ * the index holds no reference to a plate. Lookups compare the plate through
+ * {@link SlotStorage#hasLicensePlate(int, String)}.
+ */
+final class PlateIndex {
+    private static final int EMPTY = -1;
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private final SlotStorage storage;
+    private int[] slots;
+    private int[] hashes;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * Constructor for an empty {@link PlateIndex} over a {@link SlotStorage}.
+     *
+     * @param storage where the plates of the indexed slots are kept
+     */
+    PlateIndex(SlotStorage storage) {
+        this.storage = storage;
+        allocate(MIN_TABLE_SIZE);
+    }
+
+    /**
+     * @return the number of indexed plates
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot of a license plate.
+     *
+     * @param licensePlate the license plate
+     * @return the slot of the license plate, or -1 if it is not indexed
+     */
+    int get(String licensePlate) {
+        int hash = hash(licensePlate);
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == EMPTY) {
+                return -1;
+            }
+            if (hashes[i] == hash && storage.hasLicensePlate(slot, licensePlate)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Indexes the slot of a license plate that is not indexed yet. The plate
+     * must already be in the {@link SlotStorage}.
+     *
+     * @param licensePlate the license plate
+     * @param slot the slot of the license plate
+     */
+    void put(String licensePlate, int slot) {
+        if (size + 1 > slots.length >>> 1) {
+            resize(slots.length << 1);
+        }
+        insert(hash(licensePlate), slot);
+        size++;
+    }
+
+    /**
+     * Grows the table once so that {@code extra} more plates can be indexed
+     * without resizing in between.
+     *
+     * @param extra the number of plates about to be indexed
+     */
+    void ensureCapacity(int extra) {
+        int tableSize = slots.length;
+        while (size + extra > tableSize >>> 1) {
+            tableSize <<= 1;
+        }
+        if (tableSize != slots.length) {
+            resize(tableSize);
+        }
+    }
+
+    /**
+     * Removes the entry of a license plate and slot. It does not read the
+     * {@link SlotStorage}, so the slot may already be emptied.
+     *
+     * @param licensePlate the license plate
+     * @param slot the slot of the license plate
+     * @return true if the entry was removed, false if it was not indexed
+     */
+    boolean remove(String licensePlate, int slot) {
+        int hash = hash(licensePlate);
+        int i = hash & mask;
+        while (slots[i] != slot || hashes[i] != hash) {
+            if (slots[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // shift back the entries that probed past the removed one
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (slots[j] == EMPTY) {
+                break;
+            }
+            int home = hashes[j] & mask;
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                slots[i] = slots[j];
+                hashes[i] = hashes[j];
+                i = j;
+            }
+        }
+        slots[i] = EMPTY;
+        size--;
+        return true;
+    }
+
+    private void insert(int hash, int slot) {
+        int i = hash & mask;
+        while (slots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = slot;
+        hashes[i] = hash;
+    }
+
+    private void resize(int tableSize) {
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        allocate(tableSize);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != EMPTY) {
+                insert(oldHashes[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        slots = new int[tableSize];
+        hashes = new int[tableSize];
+        mask = tableSize - 1;
+        Arrays.fill(slots, EMPTY);
+    }
+
+    private static int hash(String licensePlate) {
+        int h = licensePlate.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,164 @@
+package com.vuongho.parkinglot;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A sorted index of the license plates of a {@link ParkingLot}, with a twin
+ * sorted on the plates read from their end, for wildcard searches such as
+ * {@code EUS6*}, {@code *24} or {@code E?S*87}. A {@code *} matches any run
+ * of characters and a {@code ?} any single one.
+ * <p>
+ * A search walks only the plates that share the longer of the literal
+ * prefix and literal suffix of the pattern: the prefix is a range of the
+ * plates, the suffix a range of the twin. Its cost is therefore
+ * proportional to the number of those candidates, not to the capacity. A
+ * pattern that starts and ends with a wildcard has neither, and walks every
+ * plate.
+ */
+final class PlateSearchIndex {
+    /**
+     * Orders strings as their reversals would be ordered, without reversing
+     * them, so that the strings sharing a suffix are contiguous.
+     */
+    private static final Comparator<String> FROM_END = (a, b) -> {
+        int i = a.length() - 1;
+        int j = b.length() - 1;
+        for (; i >= 0 && j >= 0; i--, j--) {
+            if (a.charAt(i) != b.charAt(j)) {
+                return a.charAt(i) - b.charAt(j);
+            }
+        }
+        return (i + 1) - (j + 1);
+    };
+
+    private final TreeMap<String, Integer> slotsByPlate = new TreeMap<>();
+    private final TreeMap<String, Integer> slotsByPlateEnd = new TreeMap<>(FROM_END);
+
+    /**
+     * @return the number of indexed plates
+     */
+    int size() {
+        return slotsByPlate.size();
+    }
+
+    /**
+     * Indexes the slot of a license plate.
+     *
+     * @param licensePlate the license plate
+     * @param slot the slot of the license plate
+     */
+    void put(String licensePlate, int slot) {
+        slotsByPlate.put(licensePlate, slot);
+        slotsByPlateEnd.put(licensePlate, slot);
+    }
+
+    /**
+     * Removes a license plate.
+     *
+     * @param licensePlate the license plate
+     */
+    void remove(String licensePlate) {
+        slotsByPlate.remove(licensePlate);
+        slotsByPlateEnd.remove(licensePlate);
+    }
+
+    /**
+     * Finds the slots of the license plates that match a pattern.
+     *
+     * @param pattern the pattern, where {@code *} matches any run of
+     *      characters and {@code ?} any single one
+     * @param slots where the slots of the matching plates are added, in no
+     *      particular order
+     */
+    void find(String pattern, List<Integer> slots) {
+        int first = firstWildcard(pattern);
+        if (first == -1) {
+            Integer slot = slotsByPlate.get(pattern);
+            if (slot != null) {
+                slots.add(slot);
+            }
+            return;
+        }
+        int last = lastWildcard(pattern);
+        String prefix = pattern.substring(0, first);
+        String suffix = pattern.substring(last + 1);
+        NavigableMap<String, Integer> candidates = suffix.length() > prefix.length()
+                ? range(slotsByPlateEnd, suffix, Character.MAX_VALUE + suffix)
+                : range(slotsByPlate, prefix, prefix + Character.MAX_VALUE);
+        // a pattern such as EUS6* needs no further check
+        boolean prefixOnly = first == last && pattern.charAt(first) == '*' && suffix.isEmpty();
+        for (Map.Entry<String, Integer> entry : candidates.entrySet()) {
+            if (prefixOnly || matches(pattern, entry.getKey())) {
+                slots.add(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the entries from {@code from}, inclusive, to {@code to},
+     *      exclusive, or the whole map if {@code from} is empty
+     */
+    private static NavigableMap<String, Integer> range(NavigableMap<String, Integer> map, String from, String to) {
+        return from.isEmpty() ? map : map.subMap(from, true, to, false);
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastWildcard(String pattern) {
+        for (int i = pattern.length() - 1; i >= 0; i--) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Matches a license plate against a pattern, in time proportional to
+     * the product of their lengths at worst.
+     *
+     * @param pattern the pattern, where {@code *} matches any run of
+     *      characters and {@code ?} any single one
+     * @param plate the license plate
+     * @return true if the whole plate matches the pattern
+     */
+    static boolean matches(String pattern, String plate) {
+        int p = 0;
+        int s = 0;
+        // where to resume after the last star: the pattern after it, and the
+        // plate one character further than last time
+        int star = -1;
+        int resume = 0;
+        while (s < plate.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == plate.charAt(s))) {
+                p++;
+                s++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                resume = s;
+            } else if (star != -1) {
+                p = star + 1;
+                s = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+}
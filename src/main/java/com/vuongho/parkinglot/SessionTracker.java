@@ -0,0 +1,324 @@
+package com.vuongho.parkinglot;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Records the arrival of every {@link Car} parked in a {@link ParkingLot}
+ * and turns each departure into a {@link ParkingSession} with its fee. It
+ * keeps rolling aggregates over a fixed window, 24 buckets of an hour by
+ * default: the revenue and departures of each bucket, the total dwell time,
+ * and the occupancy integrated over time. The buckets form a ring that is
+ * reused as time moves on, and running totals are kept over the whole ring,
+ * so memory does not grow with history and every query is O(1); a query
+ * after a long idle time first clears at most the whole ring.
+ * <p>
+ * A {@link SessionTracker} is updated by its {@link ParkingLot}, see
+ * {@link ParkingLot#trackSessions(SessionTracker)}, and is not thread-safe.
+ * Arrival times are kept in memory only, so the cars that a
+ * {@link ParkingLot} already holds when tracking starts are taken to arrive
+ * at that moment.
+ */
+public class SessionTracker {
+    /**
+     * The length of an hour, in milliseconds.
+     */
+    public static final long HOUR_MILLIS = 3_600_000L;
+
+    private final Clock clock;
+    private final FeeSchedule fees;
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    /**
+     * The arrival time of the {@link Car} in each slot, meaningful for the
+     * occupied slots only.
+     */
+    private long[] arrivals = new long[0];
+
+    /**
+     * The number of parked cars since {@link #lastChange}.
+     */
+    private int occupancy = 0;
+
+    /**
+     * The time up to which the occupancy has been integrated.
+     */
+    private long lastChange;
+
+    /**
+     * The time tracking started, so that a window that is not full yet is
+     * averaged over the time it actually covers.
+     */
+    private final long start;
+
+    /**
+     * The absolute number, time divided by {@link #bucketMillis}, of the
+     * newest bucket of the ring.
+     */
+    private long currentBucket;
+
+    private final long[] revenue;
+    private final long[] departures;
+    private final long[] dwellMillis;
+    private final long[] occupancyMillis;
+
+    private long totalRevenue = 0;
+    private long totalDepartures = 0;
+    private long totalDwellMillis = 0;
+    private long totalOccupancyMillis = 0;
+
+    private ParkingSession lastSession = null;
+
+    /**
+     * Constructor for a {@link SessionTracker} with a window of 24 hourly
+     * buckets.
+     *
+     * @param clock the clock the arrivals and departures are timed with
+     * @param fees the fee schedule of the sessions
+     */
+    public SessionTracker(Clock clock, FeeSchedule fees) {
+        this(clock, fees, HOUR_MILLIS, 24);
+    }
+
+    /**
+     * Constructor for a {@link SessionTracker}.
+     *
+     * @param clock the clock the arrivals and departures are timed with
+     * @param fees the fee schedule of the sessions
+     * @param bucketMillis the length of a bucket, in milliseconds
+     * @param bucketCount the number of buckets of the window
+     */
+    public SessionTracker(Clock clock, FeeSchedule fees, long bucketMillis, int bucketCount) {
+        if (bucketMillis < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Bucket length and count must be positive");
+        }
+        this.clock = clock;
+        this.fees = fees;
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.revenue = new long[bucketCount];
+        this.departures = new long[bucketCount];
+        this.dwellMillis = new long[bucketCount];
+        this.occupancyMillis = new long[bucketCount];
+        this.start = clock.millis();
+        this.lastChange = start;
+        this.currentBucket = Math.floorDiv(start, bucketMillis);
+    }
+
+    /**
+     * Starts tracking the slots of a {@link ParkingLot}, which is empty until
+     * {@link #arrived} is called for its cars. The aggregates are kept.
+     *
+     * @param capacity the number of slots
+     */
+    void reset(int capacity) {
+        advance(clock.millis());
+        arrivals = new long[capacity];
+        occupancy = 0;
+    }
+
+    /**
+     * Follows a change of the number of slots of the {@link ParkingLot}.
+     *
+     * @param capacity the new number of slots
+     */
+    void resize(int capacity) {
+        arrivals = Arrays.copyOf(arrivals, capacity);
+    }
+
+    /**
+     * Records that a {@link Car} parked.
+     *
+     * @param slot the slot index the {@link Car} parked in
+     * @param occupancy the number of parked cars, this one included
+     */
+    void arrived(int slot, int occupancy) {
+        long now = advance(clock.millis());
+        arrivals[slot] = now;
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * Records that a {@link Car} left, and computes the fee of its stay.
+     *
+     * @param slot the slot index the {@link Car} left
+     * @param car the {@link Car}
+     * @param occupancy the number of parked cars, this one no longer included
+     * @return the finished session
+     */
+    ParkingSession departed(int slot, Car car, int occupancy) {
+        long now = advance(clock.millis());
+        long arrival = arrivals[slot];
+        long fee = fees.fee(arrival, now);
+        int bucket = index(currentBucket);
+        revenue[bucket] += fee;
+        departures[bucket]++;
+        dwellMillis[bucket] += now - arrival;
+        totalRevenue += fee;
+        totalDepartures++;
+        totalDwellMillis += now - arrival;
+        this.occupancy = occupancy;
+        lastSession = new ParkingSession(car, slot, arrival, now, fee);
+        return lastSession;
+    }
+
+    /**
+     * @return the session finished by the latest departure, or null if no
+     *      car left yet
+     */
+    public ParkingSession getLastSession() {
+        return lastSession;
+    }
+
+    /**
+     * @return the length of the window, in milliseconds
+     */
+    public long getWindowMillis() {
+        return bucketMillis * bucketCount;
+    }
+
+    /**
+     * @return the fees of the sessions that ended within the window, in
+     *      cents
+     */
+    public long getRevenue() {
+        advance(clock.millis());
+        return totalRevenue;
+    }
+
+    /**
+     * Gets the fees of the sessions that ended within one bucket, e.g. the
+     * revenue of one hour.
+     *
+     * @param bucketsAgo 0 for the current bucket, up to the number of
+     *      buckets minus one for the oldest
+     * @return the revenue of the bucket, in cents
+     */
+    public long getRevenue(int bucketsAgo) {
+        if (bucketsAgo < 0 || bucketsAgo >= bucketCount) {
+            throw new IllegalArgumentException("No bucket " + bucketsAgo + " in a window of " + bucketCount);
+        }
+        advance(clock.millis());
+        return revenue[index(currentBucket - bucketsAgo)];
+    }
+
+    /**
+     * @return the number of sessions that ended within the window
+     */
+    public long getDepartures() {
+        advance(clock.millis());
+        return totalDepartures;
+    }
+
+    /**
+     * @return the mean stay of the sessions that ended within the window, in
+     *      milliseconds, or 0 if none did
+     */
+    public double getAverageDwellMillis() {
+        advance(clock.millis());
+        return totalDepartures == 0 ? 0 : (double) totalDwellMillis / totalDepartures;
+    }
+
+    /**
+     * @return the mean number of parked cars over the window, or over the
+     *      time since tracking started if that is shorter
+     */
+    public double getAverageOccupancy() {
+        long now = advance(clock.millis());
+        long windowStart = Math.max(start, (currentBucket - bucketCount + 1) * bucketMillis);
+        long span = now - windowStart;
+        return span <= 0 ? occupancy : (double) totalOccupancyMillis / span;
+    }
+
+    /**
+     * Gets the aggregates as text, one per line, e.g.
+     * <pre>
+     * Revenue in the last 24 h: 125.00
+     * Departures: 12, average stay 95.5 min
+     * Average occupancy: 4.21
+     * </pre>
+     *
+     * @return the aggregates as text
+     */
+    public String report() {
+        long cents = getRevenue();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Revenue in the last ").append(hours(getWindowMillis())).append(": ");
+        sb.append(String.format(Locale.ROOT, "%d.%02d", cents / 100, cents % 100)).append('\n');
+        sb.append("Departures: ").append(totalDepartures);
+        sb.append(String.format(Locale.ROOT, ", average stay %.1f min", getAverageDwellMillis() / 60_000)).append('\n');
+        sb.append(String.format(Locale.ROOT, "Average occupancy: %.2f", getAverageOccupancy()));
+        return sb.toString();
+    }
+
+    private static String hours(long millis) {
+        return millis % HOUR_MILLIS == 0 ? millis / HOUR_MILLIS + " h" : millis / 1000 + " s";
+    }
+
+    /**
+     * Integrates the occupancy up to a time, spread over the buckets it
+     * spans, and moves the ring on to the bucket of that time.
+     *
+     * @param time the current time
+     * @return the current time, or the last one seen if the clock went back
+     */
+    private long advance(long time) {
+        long now = Math.max(time, lastChange);
+        // anything before the oldest bucket at now would be dropped anyway
+        long t = Math.max(lastChange, (Math.floorDiv(now, bucketMillis) - bucketCount + 1) * bucketMillis);
+        while (true) {
+            long bucket = Math.floorDiv(t, bucketMillis);
+            if (bucket > currentBucket) {
+                rotateTo(bucket);
+            }
+            long end = Math.min(now, (bucket + 1) * bucketMillis);
+            long accrued = occupancy * (end - t);
+            occupancyMillis[index(bucket)] += accrued;
+            totalOccupancyMillis += accrued;
+            if (end >= now) {
+                break;
+            }
+            t = end;
+        }
+        lastChange = now;
+        return now;
+    }
+
+    /**
+     * Moves the newest bucket of the ring forward, clearing the buckets that
+     * are reused and taking them out of the running totals.
+     *
+     * @param bucket the absolute number of the new newest bucket
+     */
+    private void rotateTo(long bucket) {
+        if (bucket - currentBucket >= bucketCount) {
+            Arrays.fill(revenue, 0);
+            Arrays.fill(departures, 0);
+            Arrays.fill(dwellMillis, 0);
+            Arrays.fill(occupancyMillis, 0);
+            totalRevenue = 0;
+            totalDepartures = 0;
+            totalDwellMillis = 0;
+            totalOccupancyMillis = 0;
+        } else {
+            for (long reused = currentBucket + 1; reused <= bucket; reused++) {
+                int i = index(reused);
+                totalRevenue -= revenue[i];
+                totalDepartures -= departures[i];
+                totalDwellMillis -= dwellMillis[i];
+                totalOccupancyMillis -= occupancyMillis[i];
+                revenue[i] = 0;
+                departures[i] = 0;
+                dwellMillis[i] = 0;
+                occupancyMillis[i] = 0;
+            }
+        }
+        currentBucket = bucket;
+    }
+
+    private int index(long bucket) {
+        return (int) Math.floorMod(bucket, (long) bucketCount);
+    }
+}
@@ -0,0 +1,346 @@
+package com.vuongho.parkinglot;
+
+/**
+ * A set of slot indices of a {@link ParkingLot}, stored as a hierarchical
+ * bitset. The bottom level holds one bit per slot, and every level above
+ * holds one bit per word of the level below, set when that word is not
+ * empty. Finding the lowest member at or after an index, adding and removing
+ * all take O(log<sub>64</sub> n) word operations.
+ */
+final class SlotSet {
+    /**
+     * The levels of the bitset, {@code levels[0]} being the slot bits and the
+     * last level being a single summary word.
+     */
+    private long[][] levels;
+
+    /**
+     * The number of slot indices this {@link SlotSet} can hold.
+     */
+    private int capacity;
+
+    /**
+     * The number of slot indices currently in this {@link SlotSet}.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor for a {@link SlotSet} that can hold the slot indices
+     * {@code 0} to {@code capacity - 1}.
+     *
+     * @param capacity the number of slot indices
+     * @param full true to start with every slot index in the set, false to
+     *      start empty
+     */
+    SlotSet(int capacity, boolean full) {
+        this.capacity = capacity;
+        this.levels = allocateLevels(capacity);
+        if (full) {
+            for (int level = 0; level < levels.length; level++) {
+                int bits = level == 0 ? capacity : levels[level - 1].length;
+                fill(levels[level], bits);
+            }
+            size = capacity;
+        }
+    }
+
+    /**
+     * @return the number of slot indices this {@link SlotSet} can hold
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of slot indices in this {@link SlotSet}
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return true if this {@link SlotSet} holds no slot index
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if a slot index is in this {@link SlotSet}.
+     *
+     * @param slot the slot index
+     * @return true if the slot index is in the set, false otherwise
+     */
+    boolean contains(int slot) {
+        return (levels[0][slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Adds a slot index to this {@link SlotSet}.
+     *
+     * @param slot the slot index
+     * @return true if the set changed, false if it already held the index
+     */
+    boolean add(int slot) {
+        int index = slot;
+        for (int level = 0; level < levels.length; level++) {
+            long[] words = levels[level];
+            int word = index >>> 6;
+            long before = words[word];
+            long after = before | (1L << index);
+            if (before == after) {
+                return level > 0;
+            }
+            words[word] = after;
+            if (level == 0) {
+                size++;
+            }
+            if (before != 0) {
+                return true;
+            }
+            index = word;
+        }
+        return true;
+    }
+
+    /**
+     * Removes a slot index from this {@link SlotSet}.
+     *
+     * @param slot the slot index
+     * @return true if the set changed, false if it did not hold the index
+     */
+    boolean remove(int slot) {
+        int index = slot;
+        for (int level = 0; level < levels.length; level++) {
+            long[] words = levels[level];
+            int word = index >>> 6;
+            long before = words[word];
+            long after = before & ~(1L << index);
+            if (before == after) {
+                return level > 0;
+            }
+            words[word] = after;
+            if (level == 0) {
+                size--;
+            }
+            if (after != 0) {
+                return true;
+            }
+            index = word;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the lowest slot indices of this {@link SlotSet} in one pass,
+     * a word of the bottom level at a time: each word is cleared with one
+     * write, and the levels above are updated once per word that empties
+     * rather than once per slot.
+     *
+     * @param slots where the removed slot indices are written, in ascending
+     *      order
+     * @param count the most slot indices to remove
+     * @return the number of slot indices removed, below {@code count} only
+     *      if the set ran out
+     */
+    int removeFirst(int[] slots, int count) {
+        long[] bits = levels[0];
+        int removed = 0;
+        for (int from = 0; removed < count; ) {
+            int slot = next(from);
+            if (slot == -1) {
+                break;
+            }
+            int word = slot >>> 6;
+            long remaining = bits[word];
+            while (remaining != 0 && removed < count) {
+                slots[removed++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+            }
+            size -= Long.bitCount(bits[word]) - Long.bitCount(remaining);
+            bits[word] = remaining;
+            if (remaining == 0) {
+                clearSummary(word);
+            }
+            from = (word + 1) << 6;
+        }
+        return removed;
+    }
+
+    /**
+     * Clears the bit of a bottom-level word that emptied in the levels above,
+     * and the bits of the summary words that empty in turn.
+     *
+     * @param word the index of the emptied word of the bottom level
+     */
+    private void clearSummary(int word) {
+        int index = word;
+        for (int level = 1; level < levels.length; level++) {
+            long[] words = levels[level];
+            int summary = index >>> 6;
+            words[summary] &= ~(1L << index);
+            if (words[summary] != 0) {
+                return;
+            }
+            index = summary;
+        }
+    }
+
+    /**
+     * Changes the number of slot indices this {@link SlotSet} can hold,
+     * keeping the members below the new capacity. It copies the slot bits
+     * and rebuilds the summary levels from them, so it costs a word
+     * operation per 64 slots.
+     *
+     * @param capacity the new number of slot indices
+     * @param full true to add the slot indices that a grow makes room for,
+     *      false to leave them out
+     */
+    void resize(int capacity, boolean full) {
+        long[][] resized = allocateLevels(capacity);
+        long[] bits = resized[0];
+        System.arraycopy(levels[0], 0, bits, 0, Math.min(levels[0].length, bits.length));
+        if (capacity < this.capacity) {
+            // drop the members at or above the new capacity
+            int last = bits.length - 1;
+            bits[last] &= (capacity & 63) == 0 && capacity > 0 ? -1L : (1L << capacity) - 1;
+        } else if (full) {
+            setRange(bits, this.capacity, capacity);
+        }
+        size = 0;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+        for (int level = 1; level < resized.length; level++) {
+            long[] below = resized[level - 1];
+            for (int word = 0; word < below.length; word++) {
+                if (below[word] != 0) {
+                    resized[level][word >>> 6] |= 1L << word;
+                }
+            }
+        }
+        this.levels = resized;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the lowest slot index in this {@link SlotSet}, or -1 if it is
+     *      empty.
+     */
+    int first() {
+        return next(0);
+    }
+
+    /**
+     * Returns the lowest slot index in this {@link SlotSet} that is greater
+     * than or equal to {@code from}.
+     *
+     * @param from the slot index to start searching from
+     * @return the lowest slot index at or after {@code from}, or -1 if there
+     *      is none.
+     */
+    int next(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        if (from >= capacity) {
+            return -1;
+        }
+        int level = 0;
+        int index = from;
+        // climb until a word with a member at or after the index is found
+        while (true) {
+            long[] words = levels[level];
+            int word = index >>> 6;
+            if (word >= words.length) {
+                return -1;
+            }
+            long bits = words[word] & (-1L << index);
+            if (bits != 0) {
+                index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                break;
+            }
+            if (level == levels.length - 1) {
+                return -1;
+            }
+            index = word + 1;
+            level++;
+        }
+        // descend to the lowest member below the found bit
+        while (level > 0) {
+            level--;
+            index = (index << 6) + Long.numberOfTrailingZeros(levels[level][index]);
+        }
+        return index;
+    }
+
+    /**
+     * Allocates the levels for a {@link SlotSet} of the input capacity. The
+     * top level is always a single word.
+     *
+     * @param capacity the number of slot indices
+     * @return the empty levels
+     */
+    private static long[][] allocateLevels(int capacity) {
+        int depth = 1;
+        for (int words = wordsFor(capacity); words > 1; words = wordsFor(words)) {
+            depth++;
+        }
+        long[][] levels = new long[depth][];
+        int bits = capacity;
+        for (int level = 0; level < depth; level++) {
+            levels[level] = new long[wordsFor(bits)];
+            bits = levels[level].length;
+        }
+        return levels;
+    }
+
+    /**
+     * @param bits a number of bits
+     * @return the number of words needed to hold the bits, at least one
+     */
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    /**
+     * Sets the bits {@code from} to {@code to - 1} of the input words.
+     *
+     * @param words the words
+     * @param from the first bit to set
+     * @param to the bit after the last one to set
+     */
+    private static void setRange(long[] words, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        for (int word = first; word <= last; word++) {
+            long mask = -1L;
+            if (word == first) {
+                mask &= -1L << from;
+            }
+            if (word == last) {
+                mask &= -1L >>> (63 - ((to - 1) & 63));
+            }
+            words[word] |= mask;
+        }
+    }
+
+    /**
+     * Sets the lowest {@code bits} bits of the input words.
+     *
+     * @param words the words to fill
+     * @param bits the number of bits to set
+     */
+    private static void fill(long[] words, int bits) {
+        int fullWords = bits >>> 6;
+        for (int i = 0; i < fullWords; i++) {
+            words[i] = -1L;
+        }
+        if ((bits & 63) != 0) {
+            words[fullWords] = (1L << bits) - 1;
+        }
+    }
+}
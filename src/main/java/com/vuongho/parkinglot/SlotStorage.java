@@ -0,0 +1,74 @@
+package com.vuongho.parkinglot;
+
+/**
+ * Where a {@link ParkingLot} keeps the {@link Car} parked in each slot. The
+ * {@link ParkingLot} owns the free-slot and lookup indexes; a
+ * {@link SlotStorage} only stores and returns the occupant of a slot.
+ */
+public interface SlotStorage {
+    /**
+     * @return the number of slots of this {@link SlotStorage}
+     */
+    int getCapacity();
+
+    /**
+     * Returns the {@link Car} parked in a slot.
+     *
+     * @param slot the slot index
+     * @return the {@link Car} in the slot, or null if the slot is empty
+     */
+    Car get(int slot);
+
+    /**
+     * Checks if the {@link Car} parked in a slot has a license plate, without
+     * creating a {@link Car} where the storage does not hold one.
+     *
+     * @param slot the slot index
+     * @param licensePlate the license plate
+     * @return true if the slot holds a {@link Car} with the license plate
+     */
+    default boolean hasLicensePlate(int slot, String licensePlate) {
+        Car car = get(slot);
+        return car != null && car.getLicensePlate().equals(licensePlate);
+    }
+
+    /**
+     * Stores a {@link Car} in an empty slot.
+     *
+     * @param slot the slot index
+     * @param car the {@link Car} to store
+     * @throws ParkingLotException if the {@link Car} cannot be stored
+     */
+    void put(int slot, Car car) throws ParkingLotException;
+
+    /**
+     * Checks if a {@link Car} can be stored, without storing it or changing
+     * anything else, e.g. to find why {@link #put(int, Car)} turned it down.
+     *
+     * @param car the {@link Car} to check
+     * @throws ParkingLotException with the reason {@link #put(int, Car)}
+     *      would give, if the {@link Car} cannot be stored
+     */
+    default void check(Car car) throws ParkingLotException {
+    }
+
+    /**
+     * Empties a slot.
+     *
+     * @param slot the slot index
+     */
+    void remove(int slot);
+
+    /**
+     * Changes the number of slots, keeping the {@link Car}s of the slots
+     * that remain. The slots dropped by a shrink must already be empty.
+     *
+     * @param capacity the new number of slots
+     * @throws UnsupportedOperationException if this {@link SlotStorage} has
+     *      a fixed number of slots
+     */
+    default void resize(int capacity) {
+        throw new UnsupportedOperationException("The number of slots of a "
+                + getClass().getSimpleName() + " is fixed");
+    }
+}
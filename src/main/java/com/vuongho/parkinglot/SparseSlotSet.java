@@ -0,0 +1,205 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+
+/**
+ * A set of slot indices that usually holds a small part of a
+ * {@link ParkingLot}, such as the slots of the cars of one color. While it
+ * holds at most {@link #MAX_SORTED} indices they are kept in a sorted array,
+ * so it costs memory by member rather than by slot; above that it switches
+ * to a {@link SlotSet}. It switches back only once it shrinks to a quarter
+ * of the limit, so a set around the limit does not switch on every change.
+ */
+final class SparseSlotSet {
+    /**
+     * The largest number of slot indices kept in the sorted array.
+     */
+    static final int MAX_SORTED = 1024;
+
+    /**
+     * The number of slot indices this {@link SparseSlotSet} can hold.
+     */
+    private int capacity;
+
+    /**
+     * The slot indices in ascending order, in the first {@link #size}
+     * elements, or null once the set is a {@link SlotSet}.
+     */
+    private int[] sorted = new int[4];
+
+    /**
+     * The number of slot indices in {@link #sorted}.
+     */
+    private int size = 0;
+
+    /**
+     * The slot indices once there are too many to keep sorted, or null.
+     */
+    private SlotSet bits = null;
+
+    /**
+     * Constructor for an empty {@link SparseSlotSet} that can hold the slot
+     * indices {@code 0} to {@code capacity - 1}.
+     *
+     * @param capacity the number of slot indices
+     */
+    SparseSlotSet(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Grows this {@link SparseSlotSet} to hold the slot indices up to
+     * {@code capacity - 1}, if it cannot already.
+     *
+     * @param capacity the number of slot indices
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > this.capacity) {
+            this.capacity = capacity;
+            if (bits != null) {
+                bits.resize(capacity, false);
+            }
+        }
+    }
+
+    /**
+     * @return the number of slot indices in this {@link SparseSlotSet}
+     */
+    int size() {
+        return bits == null ? size : bits.size();
+    }
+
+    /**
+     * @return true if this {@link SparseSlotSet} holds no slot index
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds a slot index to this {@link SparseSlotSet}.
+     *
+     * @param slot the slot index
+     * @return true if the set changed, false if it already held the index
+     */
+    boolean add(int slot) {
+        if (bits != null) {
+            return bits.add(slot);
+        }
+        int i = Arrays.binarySearch(sorted, 0, size, slot);
+        if (i >= 0) {
+            return false;
+        }
+        if (size == MAX_SORTED) {
+            bits = new SlotSet(capacity, false);
+            for (int j = 0; j < size; j++) {
+                bits.add(sorted[j]);
+            }
+            sorted = null;
+            return bits.add(slot);
+        }
+        i = -i - 1;
+        if (size == sorted.length) {
+            sorted = Arrays.copyOf(sorted, size * 2);
+        }
+        System.arraycopy(sorted, i, sorted, i + 1, size - i);
+        sorted[i] = slot;
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds a run of slot indices to this {@link SparseSlotSet} at once,
+     * merging them into the sorted array in one pass instead of shifting
+     * the array for each.
+     *
+     * @param slots the slot indices, in ascending order from {@code from},
+     *      none of which the set holds
+     * @param from the index of the first slot index in {@code slots}
+     * @param to the index after the last one
+     */
+    void addAll(int[] slots, int from, int to) {
+        int count = to - from;
+        if (bits == null && size + count > MAX_SORTED) {
+            bits = new SlotSet(capacity, false);
+            for (int j = 0; j < size; j++) {
+                bits.add(sorted[j]);
+            }
+            sorted = null;
+        }
+        if (bits != null) {
+            for (int i = from; i < to; i++) {
+                bits.add(slots[i]);
+            }
+            return;
+        }
+        if (size + count > sorted.length) {
+            sorted = Arrays.copyOf(sorted, Math.max(size + count, size * 2));
+        }
+        // merge from the back, so that no member is moved twice
+        int i = size - 1;
+        int j = to - 1;
+        for (int k = size + count - 1; j >= from; k--) {
+            sorted[k] = i >= 0 && sorted[i] > slots[j] ? sorted[i--] : slots[j--];
+        }
+        size += count;
+    }
+
+    /**
+     * Removes a slot index from this {@link SparseSlotSet}.
+     *
+     * @param slot the slot index
+     * @return true if the set changed, false if it did not hold the index
+     */
+    boolean remove(int slot) {
+        if (bits != null) {
+            if (!bits.remove(slot)) {
+                return false;
+            }
+            if (bits.size() <= MAX_SORTED / 4) {
+                size = bits.size();
+                sorted = new int[MAX_SORTED / 2];
+                int j = 0;
+                for (int member = bits.first(); member != -1; member = bits.next(member + 1)) {
+                    sorted[j++] = member;
+                }
+                bits = null;
+            }
+            return true;
+        }
+        int i = Arrays.binarySearch(sorted, 0, size, slot);
+        if (i < 0) {
+            return false;
+        }
+        System.arraycopy(sorted, i + 1, sorted, i, size - i - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the lowest slot index in this {@link SparseSlotSet}, or -1 if
+     *      it is empty.
+     */
+    int first() {
+        return next(0);
+    }
+
+    /**
+     * Returns the lowest slot index in this {@link SparseSlotSet} that is
+     * greater than or equal to {@code from}.
+     *
+     * @param from the slot index to start searching from
+     * @return the lowest slot index at or after {@code from}, or -1 if there
+     *      is none.
+     */
+    int next(int from) {
+        if (bits != null) {
+            return bits.next(from);
+        }
+        int i = Arrays.binarySearch(sorted, 0, size, from);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < size ? sorted[i] : -1;
+    }
+}
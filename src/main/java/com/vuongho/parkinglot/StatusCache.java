@@ -0,0 +1,167 @@
+package com.vuongho.parkinglot;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A cached rendering of {@link ParkingLot#status(boolean)}. The slots are
+ * split into chunks of 1024, and the text of each chunk is kept for each
+ * {@code fullInfo} mode. A park or leave only drops the text of its chunk,
+ * so the next status renders that chunk again and reuses all the others.
+ * The whole status string is kept too, until the next change.
+ * <p>
+ * Each slot renders as a line preceded by its newline, so the status is the
+ * header followed by the chunks, without any trailing newline to strip.
+ */
+final class StatusCache {
+    static final String HEADER = "Slot No.\tID\t\tColor";
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final SlotStorage storage;
+    private int capacity;
+
+    /**
+     * The text of each chunk, indexed by mode (1 for {@code fullInfo}) then
+     * chunk; null when the chunk changed since it was rendered.
+     */
+    private final String[][] chunks = new String[2][];
+
+    /**
+     * The whole status, indexed by mode; null when any slot changed since it
+     * was rendered.
+     */
+    private final String[] statuses = new String[2];
+
+    /**
+     * Constructor for an empty {@link StatusCache} of a {@link SlotStorage}.
+     *
+     * @param storage the slots to render
+     */
+    StatusCache(SlotStorage storage) {
+        this.storage = storage;
+        this.capacity = storage.getCapacity();
+        int chunkCount = (capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        chunks[0] = new String[chunkCount];
+        chunks[1] = new String[chunkCount];
+    }
+
+    /**
+     * Drops the cached text of a slot that changed.
+     *
+     * @param slot the slot index
+     */
+    void invalidate(int slot) {
+        int chunk = slot >>> CHUNK_SHIFT;
+        chunks[0][chunk] = null;
+        chunks[1][chunk] = null;
+        statuses[0] = null;
+        statuses[1] = null;
+    }
+
+    /**
+     * Drops the cached text of the slots that changed in a batch, once per
+     * chunk for the slots of a chunk that follow one another.
+     *
+     * @param slots the slot indices, in ascending order
+     * @param count the number of slot indices in {@code slots}
+     */
+    void invalidate(int[] slots, int count) {
+        int chunk = -1;
+        for (int i = 0; i < count; i++) {
+            if (slots[i] >>> CHUNK_SHIFT != chunk) {
+                chunk = slots[i] >>> CHUNK_SHIFT;
+                invalidate(slots[i]);
+            }
+        }
+    }
+
+    /**
+     * Follows a change of the number of slots of the {@link SlotStorage}.
+     * Only the chunk that held the last common slot is rendered again.
+     *
+     * @param capacity the new number of slots
+     */
+    void resize(int capacity) {
+        int kept = Math.min(this.capacity, capacity);
+        int chunkCount = (capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        chunks[0] = Arrays.copyOf(chunks[0], chunkCount);
+        chunks[1] = Arrays.copyOf(chunks[1], chunkCount);
+        this.capacity = capacity;
+        if (kept > 0) {
+            invalidate(kept - 1);
+        }
+        statuses[0] = null;
+        statuses[1] = null;
+    }
+
+    /**
+     * @param fullInfo true to include the empty slots
+     * @return the status string, as {@link ParkingLot#status(boolean)}
+     */
+    String status(boolean fullInfo) {
+        int mode = fullInfo ? 1 : 0;
+        if (statuses[mode] == null) {
+            StringBuilder sb = new StringBuilder(HEADER);
+            for (int chunk = 0; chunk < chunks[mode].length; chunk++) {
+                sb.append(chunk(mode, chunk));
+            }
+            statuses[mode] = sb.toString();
+        }
+        return statuses[mode];
+    }
+
+    /**
+     * Writes the status, as {@link ParkingLot#status(boolean)}, chunk by chunk.
+     *
+     * @param fullInfo true to include the empty slots
+     * @param out where the status is written
+     * @throws IOException if writing fails
+     */
+    void status(boolean fullInfo, Appendable out) throws IOException {
+        int mode = fullInfo ? 1 : 0;
+        if (statuses[mode] != null) {
+            out.append(statuses[mode]);
+            return;
+        }
+        out.append(HEADER);
+        for (int chunk = 0; chunk < chunks[mode].length; chunk++) {
+            out.append(chunk(mode, chunk));
+        }
+    }
+
+    private String chunk(int mode, int chunk) {
+        String text = chunks[mode][chunk];
+        if (text == null) {
+            StringBuilder sb = new StringBuilder();
+            int end = Math.min(capacity, (chunk + 1) << CHUNK_SHIFT);
+            for (int slot = chunk << CHUNK_SHIFT; slot < end; slot++) {
+                appendSlot(sb, slot, storage.get(slot), mode == 1);
+            }
+            text = sb.toString();
+            chunks[mode][chunk] = text;
+        }
+        return text;
+    }
+
+    /**
+     * Renders the line of a slot, preceded by its newline.
+     *
+     * @param sb where the line is appended
+     * @param slot the slot index
+     * @param parkedCar the {@link Car} in the slot, or null if it is empty
+     * @param fullInfo true to render the slot even if it is empty
+     */
+    static void appendSlot(StringBuilder sb, int slot, Car parkedCar, boolean fullInfo) {
+        if (parkedCar == null) {
+            if (fullInfo) {
+                sb.append('\n').append(slot + 1).append("\t\t(empty)");
+            }
+        } else {
+            sb.append('\n').append(slot + 1).append("\t\t");
+            sb.append(parkedCar.getLicensePlate()).append("\t\t");
+            sb.append(parkedCar.getColor());
+        }
+    }
+}
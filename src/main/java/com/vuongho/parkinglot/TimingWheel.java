@@ -0,0 +1,260 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A hierarchical timing wheel of deadlines, at most one per slot, e.g. the
+ * expiry of the holds of a {@link ParkingLot}. Time is cut into ticks, and
+ * each level is a wheel of 64 buckets, a bucket of level {@code L} spanning
+ * {@code 64^L} ticks. A deadline sits in the lowest level whose current turn
+ * it falls in; when time enters a bucket of a higher level, its deadlines
+ * are spread over the levels below. A deadline thus moves at most once per
+ * level, and a tick costs O(1) however many deadlines are pending.
+ * <p>
+ * The buckets are doubly linked lists threaded through arrays indexed by
+ * slot, so scheduling and cancelling allocate nothing, and a word per level
+ * marks its non-empty buckets, so that {@link #advance(long, IntConsumer)}
+ * skips empty buckets instead of visiting every tick. A
+ * {@link TimingWheel} is not thread-safe.
+ */
+final class TimingWheel {
+    private static final int BITS = 6;
+    private static final int BUCKETS = 1 << BITS;
+    private static final int MASK = BUCKETS - 1;
+
+    /**
+     * Enough levels for any tick of a non-negative long.
+     */
+    private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+    private final long tickMillis;
+
+    /**
+     * The first slot of each bucket of each level, or -1.
+     */
+    private final int[] heads = new int[LEVELS * BUCKETS];
+
+    /**
+     * The non-empty buckets of each level, one bit per bucket.
+     */
+    private final long[] occupied = new long[LEVELS];
+
+    private int[] next;
+    private int[] prev;
+
+    /**
+     * The bucket each slot is linked in, or -1 if it has no deadline.
+     */
+    private int[] bucketOf;
+
+    private long[] deadlines;
+
+    /**
+     * The tick up to which the deadlines have been expired.
+     */
+    private long current = 0;
+
+    private int size = 0;
+
+    /**
+     * Constructor for an empty {@link TimingWheel}.
+     *
+     * @param capacity the number of slots
+     * @param tickMillis the length of a tick, in milliseconds
+     */
+    TimingWheel(int capacity, long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick length must be positive");
+        }
+        this.tickMillis = tickMillis;
+        Arrays.fill(heads, -1);
+        next = new int[capacity];
+        prev = new int[capacity];
+        bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, -1);
+        deadlines = new long[capacity];
+    }
+
+    /**
+     * Follows a change of the number of slots. The slots dropped by
+     * shrinking must have no deadline.
+     *
+     * @param capacity the new number of slots
+     */
+    void resize(int capacity) {
+        int old = bucketOf.length;
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        if (capacity > old) {
+            Arrays.fill(bucketOf, old, capacity, -1);
+        }
+    }
+
+    /**
+     * @return the number of pending deadlines
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param slot the slot index
+     * @return true if the slot has a pending deadline
+     */
+    boolean isScheduled(int slot) {
+        return bucketOf[slot] != -1;
+    }
+
+    /**
+     * @param slot the slot index, with a pending deadline
+     * @return the deadline of the slot, in milliseconds
+     */
+    long getDeadline(int slot) {
+        return deadlines[slot];
+    }
+
+    /**
+     * Sets the deadline of a slot, replacing any it had. It expires on the
+     * first tick that starts at or after it, so never early and at most a
+     * tick late.
+     *
+     * @param slot the slot index
+     * @param deadlineMillis the deadline, in milliseconds
+     */
+    void schedule(int slot, long deadlineMillis) {
+        if (bucketOf[slot] != -1) {
+            unlink(slot);
+        } else {
+            size++;
+        }
+        deadlines[slot] = deadlineMillis;
+        insert(slot, Math.max(-Math.floorDiv(-deadlineMillis, tickMillis), current + 1));
+    }
+
+    /**
+     * Removes the deadline of a slot.
+     *
+     * @param slot the slot index
+     * @return true if the slot had a pending deadline
+     */
+    boolean cancel(int slot) {
+        if (bucketOf[slot] == -1) {
+            return false;
+        }
+        unlink(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves time on, expiring every deadline it passes. Only the ticks where
+     * a bucket is due are visited, so a long idle time costs no more than a
+     * short one.
+     *
+     * @param nowMillis the current time, in milliseconds; an earlier time
+     *      than already seen changes nothing
+     * @param expired called with the slot of each expired deadline, which
+     *      may schedule or cancel deadlines
+     */
+    void advance(long nowMillis, IntConsumer expired) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        while (size > 0) {
+            long tick = nextTick();
+            if (tick > target) {
+                break;
+            }
+            current = tick;
+            // a bucket of a higher level is due when the ticks below it wrap
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((tick >>> (BITS * level)) & MASK));
+                }
+            }
+            int bucket = (int) (tick & MASK);
+            for (int slot = heads[bucket]; slot != -1; slot = heads[bucket]) {
+                unlink(slot);
+                size--;
+                expired.accept(slot);
+            }
+        }
+        current = Math.max(current, target);
+    }
+
+    /**
+     * Finds the first tick after the current one where a bucket is due. The
+     * non-empty buckets of a level all come after the current one within the
+     * current turn of the level above.
+     *
+     * @return the tick, or {@link Long#MAX_VALUE} if nothing is pending
+     */
+    private long nextTick() {
+        long earliest = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            int digit = (int) ((current >>> (BITS * level)) & MASK);
+            long later = occupied[level] & (-2L << digit);
+            if (later == 0) {
+                continue;
+            }
+            int shift = BITS * (level + 1);
+            long turn = shift >= Long.SIZE ? 0 : current >>> shift << shift;
+            earliest = Math.min(earliest, turn | (long) Long.numberOfTrailingZeros(later) << (BITS * level));
+        }
+        return earliest;
+    }
+
+    /**
+     * Spreads the deadlines of a bucket that is due over the levels below.
+     *
+     * @param level the level of the bucket
+     * @param digit the position of the bucket in its wheel
+     */
+    private void cascade(int level, int digit) {
+        int bucket = level * BUCKETS + digit;
+        for (int slot = heads[bucket]; slot != -1; slot = heads[bucket]) {
+            unlink(slot);
+            insert(slot, Math.max(-Math.floorDiv(-deadlines[slot], tickMillis), current));
+        }
+    }
+
+    /**
+     * Links a slot into the bucket of a tick: on the level of the highest
+     * base-64 digit where the tick differs from the current one.
+     *
+     * @param slot the slot index
+     * @param tick the tick, not before the current one
+     */
+    private void insert(int slot, long tick) {
+        long differ = tick ^ current;
+        int level = differ == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(differ)) / BITS;
+        int digit = (int) ((tick >>> (BITS * level)) & MASK);
+        int bucket = level * BUCKETS + digit;
+        int head = heads[bucket];
+        next[slot] = head;
+        prev[slot] = -1;
+        if (head != -1) {
+            prev[head] = slot;
+        }
+        heads[bucket] = slot;
+        bucketOf[slot] = bucket;
+        occupied[level] |= 1L << digit;
+    }
+
+    private void unlink(int slot) {
+        int bucket = bucketOf[slot];
+        if (prev[slot] != -1) {
+            next[prev[slot]] = next[slot];
+        } else {
+            heads[bucket] = next[slot];
+        }
+        if (next[slot] != -1) {
+            prev[next[slot]] = prev[slot];
+        }
+        bucketOf[slot] = -1;
+        if (heads[bucket] == -1) {
+            occupied[bucket / BUCKETS] &= ~(1L << (bucket & MASK));
+        }
+    }
+}
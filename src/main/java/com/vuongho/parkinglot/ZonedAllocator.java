@@ -0,0 +1,455 @@
+package com.vuongho.parkinglot;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The {@link AllocationStrategy} behind the built-in policies, see
+ * {@link AllocationStrategy#zoned}. The slots are ranked once by distance,
+ * and the slots a resize adds are merged into the ranking. The empty slots
+ * are kept in a {@link SlotSet} of ranks per group, or in balanced mode per
+ * zone, so that the nearest empty slot of a group or zone is its lowest
+ * member. In balanced mode, a segment tree per group
+ * holds, at its root, the zone of the group with the most empty slots.
+ */
+final class ZonedAllocator implements AllocationStrategy {
+    /**
+     * The groups of a {@link Car} when there is a single group.
+     */
+    static final Function<Car, int[]> ONLY_GROUP = new Function<Car, int[]>() {
+        private final int[] groups = {0};
+
+        @Override
+        public int[] apply(Car car) {
+            return groups;
+        }
+    };
+
+    private final IntUnaryOperator zoneOf;
+    private final IntUnaryOperator groupOf;
+    private final IntToDoubleFunction distance;
+    private final Function<Car, int[]> groupsForCar;
+    private final boolean balanced;
+
+    private int groupCount;
+    private int[] zoneOfSlot;
+    private int[] groupOfZone;
+
+    /**
+     * The rank of each slot by distance, and the slot of each rank, or null
+     * if the slots are ranked by index.
+     */
+    private int[] rankOfSlot;
+    private int[] slotOfRank;
+
+    /**
+     * The distance of each slot, or null if the slots are ranked by index.
+     */
+    private double[] distances;
+
+    /**
+     * The ranks of the empty slots of each group, when not balanced.
+     */
+    private SlotSet[] groupFree;
+
+    /**
+     * When balanced: the slots of each zone in rank order, the position of
+     * each slot in its zone, the positions of the empty slots of each zone
+     * and their number.
+     */
+    private int[][] zoneSlots;
+    private int[] positionOfSlot;
+    private SlotSet[] zoneFree;
+
+    /**
+     * When balanced: for each group, a segment tree over its zones whose
+     * nodes hold the zone with the most empty slots below them, or -1, and
+     * the index of each zone among the leaves of its group.
+     */
+    private int[][] trees;
+    private int[] leafOfZone;
+
+    ZonedAllocator(IntUnaryOperator zoneOf, IntUnaryOperator groupOf, IntToDoubleFunction distance,
+            Function<Car, int[]> groupsForCar, boolean balanced) {
+        this.zoneOf = zoneOf;
+        this.groupOf = groupOf;
+        this.distance = distance;
+        this.groupsForCar = groupsForCar;
+        this.balanced = balanced;
+        reset(0);
+    }
+
+    @Override
+    public void reset(int capacity) {
+        zoneOfSlot = new int[capacity];
+        groupOfZone = new int[0];
+        groupCount = 0;
+        addSlots(0, capacity);
+        rankSlots(capacity);
+        buildFreeSets(capacity, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the zones of the added slots and the groups of the new zones are
+     * looked up. Without distances, the slots are ranked by index, so the
+     * added slots go after the others in their group or zone and the dropped
+     * ones are the last of theirs: the free sets are only resized. With
+     * distances, only the added slots are sorted, then merged into the
+     * ranking in one pass, and the free sets are rebuilt from the merged
+     * ranking.
+     */
+    @Override
+    public void resize(int oldCapacity, int newCapacity) {
+        SlotSet free = distance == null ? null : freeSlots(newCapacity);
+        zoneOfSlot = Arrays.copyOf(zoneOfSlot, newCapacity);
+        addSlots(oldCapacity, newCapacity);
+        if (distance != null) {
+            for (int slot = oldCapacity; slot < newCapacity; slot++) {
+                free.add(slot);
+            }
+            mergeRanks(oldCapacity, newCapacity);
+            buildFreeSets(newCapacity, free);
+        } else if (balanced) {
+            resizeZones(oldCapacity, newCapacity);
+        } else {
+            int groups = groupFree.length;
+            groupFree = Arrays.copyOf(groupFree, groupCount);
+            for (int group = 0; group < groupCount; group++) {
+                if (group < groups) {
+                    groupFree[group].resize(newCapacity, false);
+                } else {
+                    groupFree[group] = new SlotSet(newCapacity, false);
+                }
+            }
+            for (int slot = oldCapacity; slot < newCapacity; slot++) {
+                groupFree[groupOfZone[zoneOfSlot[slot]]].add(slot);
+            }
+        }
+    }
+
+    /**
+     * Looks up the zones of the slots {@code from} to {@code to - 1}, in a
+     * {@link #zoneOfSlot} that has room for them, and the groups of the
+     * zones they add.
+     */
+    private void addSlots(int from, int to) {
+        int zoneCount = groupOfZone.length;
+        for (int slot = from; slot < to; slot++) {
+            int zone = zoneOf.applyAsInt(slot);
+            if (zone < 0) {
+                throw new IllegalArgumentException("Invalid zone " + zone + " of slot " + slot);
+            }
+            zoneOfSlot[slot] = zone;
+            zoneCount = Math.max(zoneCount, zone + 1);
+        }
+        int zones = groupOfZone.length;
+        groupOfZone = Arrays.copyOf(groupOfZone, zoneCount);
+        for (int zone = zones; zone < zoneCount; zone++) {
+            int group = groupOf.applyAsInt(zone);
+            if (group < 0) {
+                throw new IllegalArgumentException("Invalid group " + group + " of zone " + zone);
+            }
+            groupOfZone[zone] = group;
+            groupCount = Math.max(groupCount, group + 1);
+        }
+    }
+
+    /**
+     * Ranks the slots by distance, then by index.
+     */
+    private void rankSlots(int capacity) {
+        if (distance == null) {
+            rankOfSlot = null;
+            slotOfRank = null;
+            return;
+        }
+        distances = new double[capacity];
+        slotOfRank = new int[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            distances[slot] = distance.applyAsDouble(slot);
+            slotOfRank[slot] = slot;
+        }
+        sortByDistance(slotOfRank);
+        rankOfSlot = new int[capacity];
+        for (int rank = 0; rank < capacity; rank++) {
+            rankOfSlot[slotOfRank[rank]] = rank;
+        }
+    }
+
+    /**
+     * Ranks the slots after a resize: the kept slots keep their order, and
+     * the added ones, sorted among themselves, are merged in.
+     */
+    private void mergeRanks(int oldCapacity, int newCapacity) {
+        distances = Arrays.copyOf(distances, newCapacity);
+        int[] added = new int[Math.max(0, newCapacity - oldCapacity)];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = oldCapacity + i;
+            distances[added[i]] = distance.applyAsDouble(added[i]);
+        }
+        sortByDistance(added);
+        int[] ranked = slotOfRank;
+        slotOfRank = new int[newCapacity];
+        rankOfSlot = new int[newCapacity];
+        int next = 0;
+        int nextAdded = 0;
+        for (int rank = 0; rank < newCapacity; rank++) {
+            while (next < ranked.length && ranked[next] >= newCapacity) {
+                next++; // dropped by a shrink
+            }
+            int slot = next < ranked.length && (nextAdded == added.length || closer(ranked[next], added[nextAdded]))
+                    ? ranked[next++] : added[nextAdded++];
+            slotOfRank[rank] = slot;
+            rankOfSlot[slot] = rank;
+        }
+    }
+
+    /**
+     * @return true if a slot ranks before another: it is nearer, or as near
+     *      with a lower index
+     */
+    private boolean closer(int slot, int otherSlot) {
+        return distances[slot] != distances[otherSlot]
+                ? distances[slot] < distances[otherSlot] : slot < otherSlot;
+    }
+
+    /**
+     * Sorts slot indices by rank with a merge sort, which needs no boxing.
+     */
+    private void sortByDistance(int[] slots) {
+        int[] from = slots;
+        int[] to = new int[slots.length];
+        for (int width = 1; width < slots.length; width *= 2) {
+            for (int start = 0; start < slots.length; start += 2 * width) {
+                int middle = Math.min(start + width, slots.length);
+                int end = Math.min(start + 2 * width, slots.length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    to[i] = left < middle && (right == end || !closer(from[right], from[left]))
+                            ? from[left++] : from[right++];
+                }
+            }
+            int[] sorted = to;
+            to = from;
+            from = sorted;
+        }
+        if (from != slots) {
+            System.arraycopy(from, 0, slots, 0, slots.length);
+        }
+    }
+
+    /**
+     * @return the empty slots below a capacity, read from the free sets
+     */
+    private SlotSet freeSlots(int capacity) {
+        SlotSet free = new SlotSet(capacity, false);
+        if (balanced) {
+            for (int zone = 0; zone < zoneFree.length; zone++) {
+                for (int position = zoneFree[zone].first(); position != -1;
+                        position = zoneFree[zone].next(position + 1)) {
+                    int slot = zoneSlots[zone][position];
+                    if (slot < capacity) {
+                        free.add(slot);
+                    }
+                }
+            }
+        } else {
+            for (SlotSet ranks : groupFree) {
+                for (int rank = ranks.first(); rank != -1; rank = ranks.next(rank + 1)) {
+                    int slot = slotOfRank == null ? rank : slotOfRank[rank];
+                    if (slot < capacity) {
+                        free.add(slot);
+                    }
+                }
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Builds the free sets.
+     *
+     * @param capacity the number of slots
+     * @param free the empty slots, or null if every slot is empty
+     */
+    private void buildFreeSets(int capacity, SlotSet free) {
+        if (balanced) {
+            buildZones(capacity, groupOfZone.length, free);
+        } else {
+            groupFree = new SlotSet[groupCount];
+            for (int group = 0; group < groupCount; group++) {
+                groupFree[group] = new SlotSet(capacity, false);
+            }
+            for (int slot = 0; slot < capacity; slot++) {
+                if (free == null || free.contains(slot)) {
+                    groupFree[groupOfZone[zoneOfSlot[slot]]].add(rank(slot));
+                }
+            }
+        }
+    }
+
+    private void buildZones(int capacity, int zoneCount, SlotSet free) {
+        int[] sizes = new int[zoneCount];
+        for (int slot = 0; slot < capacity; slot++) {
+            sizes[zoneOfSlot[slot]]++;
+        }
+        zoneSlots = new int[zoneCount][];
+        zoneFree = new SlotSet[zoneCount];
+        for (int zone = 0; zone < zoneCount; zone++) {
+            zoneSlots[zone] = new int[sizes[zone]];
+            zoneFree[zone] = new SlotSet(sizes[zone], free == null);
+        }
+        positionOfSlot = new int[capacity];
+        int[] filled = new int[zoneCount];
+        for (int rank = 0; rank < capacity; rank++) {
+            int slot = slotOfRank == null ? rank : slotOfRank[rank];
+            int zone = zoneOfSlot[slot];
+            positionOfSlot[slot] = filled[zone];
+            if (free != null && free.contains(slot)) {
+                zoneFree[zone].add(filled[zone]);
+            }
+            zoneSlots[zone][filled[zone]++] = slot;
+        }
+        buildTrees();
+    }
+
+    /**
+     * Resizes the zones of slots ranked by index: the dropped slots are the
+     * last of their zones, and the added ones go after the others, empty.
+     */
+    private void resizeZones(int oldCapacity, int newCapacity) {
+        int zones = zoneSlots.length;
+        int zoneCount = groupOfZone.length;
+        int[] kept = new int[zoneCount];
+        int[] sizes = new int[zoneCount];
+        for (int zone = 0; zone < zones; zone++) {
+            int size = zoneSlots[zone].length;
+            while (size > 0 && zoneSlots[zone][size - 1] >= newCapacity) {
+                size--;
+            }
+            kept[zone] = size;
+            sizes[zone] = size;
+        }
+        for (int slot = oldCapacity; slot < newCapacity; slot++) {
+            sizes[zoneOfSlot[slot]]++;
+        }
+        zoneSlots = Arrays.copyOf(zoneSlots, zoneCount);
+        zoneFree = Arrays.copyOf(zoneFree, zoneCount);
+        for (int zone = 0; zone < zoneCount; zone++) {
+            if (zone >= zones) {
+                zoneSlots[zone] = new int[sizes[zone]];
+                zoneFree[zone] = new SlotSet(sizes[zone], true);
+            } else if (sizes[zone] != zoneSlots[zone].length) {
+                zoneSlots[zone] = Arrays.copyOf(zoneSlots[zone], sizes[zone]);
+                zoneFree[zone].resize(sizes[zone], true);
+            }
+        }
+        positionOfSlot = Arrays.copyOf(positionOfSlot, newCapacity);
+        for (int slot = oldCapacity; slot < newCapacity; slot++) {
+            int zone = zoneOfSlot[slot];
+            positionOfSlot[slot] = kept[zone];
+            zoneSlots[zone][kept[zone]++] = slot;
+        }
+        buildTrees();
+    }
+
+    /**
+     * Builds the segment tree of each group over its zones.
+     */
+    private void buildTrees() {
+        int zoneCount = zoneSlots.length;
+        int[] zonesPerGroup = new int[groupCount];
+        leafOfZone = new int[zoneCount];
+        for (int zone = 0; zone < zoneCount; zone++) {
+            leafOfZone[zone] = zonesPerGroup[groupOfZone[zone]]++;
+        }
+        trees = new int[groupCount][];
+        for (int group = 0; group < groupCount; group++) {
+            int leaves = Integer.highestOneBit(Math.max(1, zonesPerGroup[group] * 2 - 1));
+            trees[group] = new int[leaves * 2];
+            Arrays.fill(trees[group], -1);
+        }
+        for (int zone = 0; zone < zoneCount; zone++) {
+            int[] tree = trees[groupOfZone[zone]];
+            tree[tree.length / 2 + leafOfZone[zone]] = zone;
+        }
+        for (int[] tree : trees) {
+            for (int node = tree.length / 2 - 1; node >= 1; node--) {
+                tree[node] = fuller(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+    }
+
+    private int rank(int slot) {
+        return rankOfSlot == null ? slot : rankOfSlot[slot];
+    }
+
+    /**
+     * @return the zone with the most empty slots, the first one on a tie,
+     *      or -1 if both are -1
+     */
+    private int fuller(int zone, int otherZone) {
+        if (zone == -1 || otherZone == -1) {
+            return zone == -1 ? otherZone : zone;
+        }
+        return zoneFree[otherZone].size() > zoneFree[zone].size() ? otherZone : zone;
+    }
+
+    private void update(int zone) {
+        int[] tree = trees[groupOfZone[zone]];
+        for (int node = (tree.length / 2 + leafOfZone[zone]) >>> 1; node >= 1; node >>>= 1) {
+            tree[node] = fuller(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    @Override
+    public int select(Car car) {
+        for (int group : groupsForCar.apply(car)) {
+            if (group < 0 || group >= groupCount) {
+                continue;
+            }
+            if (balanced) {
+                int[] tree = trees[group];
+                int zone = tree[1];
+                if (zone != -1 && !zoneFree[zone].isEmpty()) {
+                    return zoneSlots[zone][zoneFree[zone].first()];
+                }
+            } else {
+                int rank = groupFree[group].first();
+                if (rank != -1) {
+                    return slotOfRank == null ? rank : slotOfRank[rank];
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void occupied(int slot) {
+        int zone = zoneOfSlot[slot];
+        if (balanced) {
+            if (zoneFree[zone].remove(positionOfSlot[slot])) {
+                update(zone);
+            }
+        } else {
+            groupFree[groupOfZone[zone]].remove(rank(slot));
+        }
+    }
+
+    @Override
+    public void freed(int slot) {
+        int zone = zoneOfSlot[slot];
+        if (balanced) {
+            if (zoneFree[zone].add(positionOfSlot[slot])) {
+                update(zone);
+            }
+        } else {
+            groupFree[groupOfZone[zone]].add(rank(slot));
+        }
+    }
+}
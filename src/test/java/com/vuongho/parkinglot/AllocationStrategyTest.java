@@ -0,0 +1,177 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Test class for the {@link AllocationStrategy}s of a {@link ParkingLot},
+ * each checked against a scan of the empty slots.
+ */
+public class AllocationStrategyTest {
+    private static final int LEVEL = 50;
+    private static final IntToDoubleFunction FROM_RAMP = slot -> Math.abs(slot % LEVEL - 20) + slot / LEVEL * 5;
+    private static final IntUnaryOperator EV_SLOTS = slot -> slot % LEVEL < 5 ? 1 : 0;
+    private static final Function<Car, int[]> EV_FIRST = car -> car.getLicensePlate().startsWith("EV")
+            ? new int[] {1, 0} : new int[] {0};
+
+    @Test
+    public void policiesTest() throws ParkingLotException {
+        ParkingLot parkingLot = new ParkingLot(6);
+        parkingLot.setAllocationStrategy(AllocationStrategy.nearestTo(slot -> Math.abs(slot - 3)));
+        assertEquals(3, parkingLot.park("EUS687", "White"));
+        assertEquals(2, parkingLot.park("510IBD", "White"));
+        assertEquals(4, parkingLot.park("6TRJ24", "Black"));
+
+        parkingLot = new ParkingLot(6);
+        parkingLot.setAllocationStrategy(AllocationStrategy.balancedLevels(3));
+        assertEquals(0, parkingLot.park("EUS687", "White"));
+        assertEquals(3, parkingLot.park("510IBD", "White"));
+        assertEquals(1, parkingLot.park("6TRJ24", "Black"));
+        parkingLot.leave(0);
+        parkingLot.leave(1);
+        assertEquals(0, parkingLot.park("EK3333", "Red"));
+
+        parkingLot = new ParkingLot(4);
+        parkingLot.setAllocationStrategy(AllocationStrategy.slotClasses(slot -> slot == 0 ? 1 : 0, EV_FIRST));
+        assertEquals(1, parkingLot.park("EUS687", "White"));
+        assertEquals(0, parkingLot.park("EV0001", "White"));
+        assertEquals(2, parkingLot.park("EV0002", "White"));
+        assertEquals(3, parkingLot.park("510IBD", "White"));
+        parkingLot.leave(0);
+        // the EV slot is free, but not for a car that is not electric
+        assertEquals(ParkingLot.FULL, parkingLot.tryPark(new Car("6TRJ24", "Black")));
+        assertEquals("Sorry, parking lot is full", new ParkingLotMgr(parkingLot).park("6TRJ24", "Black"));
+    }
+
+    @Test
+    public void attachAndResizeTest() throws ParkingLotException {
+        ParkingLot parkingLot = new ParkingLot(4);
+        parkingLot.park("EUS687", "White");
+        parkingLot.park("510IBD", "White");
+        parkingLot.setAllocationStrategy(AllocationStrategy.nearestTo(slot -> -slot));
+        assertEquals(3, parkingLot.park("6TRJ24", "Black"));
+        parkingLot.resize(6);
+        assertEquals(5, parkingLot.park("EK3333", "Red"));
+        parkingLot.leave(3);
+        parkingLot.leave(5);
+        parkingLot.resize(3);
+        assertEquals(2, parkingLot.park("IYTE32", "Blue"));
+        assertEquals(ParkingLot.FULL, parkingLot.tryPark(new Car("MNG728", "Black")));
+        parkingLot.setAllocationStrategy(null);
+        parkingLot.resize(5);
+        assertEquals(3, parkingLot.park("MNG728", "Black"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void concurrentLotTest() {
+        new ConcurrentParkingLot(4).setAllocationStrategy(AllocationStrategy.lowestSlot());
+    }
+
+    @Test
+    public void lowestSlotModelTest() throws ParkingLotException {
+        check(AllocationStrategy.lowestSlot(), slot -> 0, zone -> 0, slot -> slot, car -> new int[] {0}, false);
+    }
+
+    @Test
+    public void nearestToModelTest() throws ParkingLotException {
+        check(AllocationStrategy.nearestTo(FROM_RAMP), slot -> 0, zone -> 0, FROM_RAMP, car -> new int[] {0}, false);
+    }
+
+    @Test
+    public void balancedLevelsModelTest() throws ParkingLotException {
+        check(AllocationStrategy.balancedLevels(LEVEL), slot -> slot / LEVEL, zone -> 0, slot -> slot,
+                car -> new int[] {0}, true);
+    }
+
+    @Test
+    public void slotClassesModelTest() throws ParkingLotException {
+        check(AllocationStrategy.slotClasses(EV_SLOTS, EV_FIRST), EV_SLOTS, zone -> zone, slot -> slot,
+                EV_FIRST, false);
+    }
+
+    @Test
+    public void zonedModelTest() throws ParkingLotException {
+        // a zone per slot class of each level, balanced across the levels
+        IntUnaryOperator zoneOf = slot -> slot / LEVEL * 2 + EV_SLOTS.applyAsInt(slot);
+        IntUnaryOperator groupOf = zone -> zone % 2;
+        check(AllocationStrategy.zoned(zoneOf, groupOf, FROM_RAMP, EV_FIRST, true), zoneOf, groupOf, FROM_RAMP,
+                EV_FIRST, true);
+    }
+
+    /**
+     * Parks, unparks, and resizes at random, checking each slot given
+     * against a scan of the empty slots for the expected one.
+     */
+    private static void check(AllocationStrategy strategy, IntUnaryOperator zoneOf, IntUnaryOperator groupOf,
+            IntToDoubleFunction distance, Function<Car, int[]> groupsForCar, boolean balanced)
+            throws ParkingLotException {
+        Random random = new Random(8);
+        ParkingLot parkingLot = new ParkingLot(4 * LEVEL);
+        for (int round = 0; round < 150; round++) {
+            parkingLot.tryPark(new Car("P" + round, "White"));
+        }
+        parkingLot.setAllocationStrategy(strategy);
+        for (int round = 0; round < 5000; round++) {
+            int op = random.nextInt(20);
+            if (op == 0) {
+                int capacity = parkingLot.getCapacity();
+                while (capacity > 0 && parkingLot.getCar(capacity - 1) == null && random.nextBoolean()) {
+                    capacity--;
+                }
+                parkingLot.resize(random.nextBoolean() ? capacity : capacity + random.nextInt(LEVEL));
+            } else if (op < 11) {
+                Car car = new Car((random.nextInt(3) == 0 ? "EV" : "IC") + round, "White");
+                int expected = expected(parkingLot, car, zoneOf, groupOf, distance, groupsForCar, balanced);
+                int[] slots = op == 1 ? parkingLot.parkAll(Arrays.asList(car)) : new int[] {parkingLot.tryPark(car)};
+                if (slots[0] != expected) {
+                    fail("Round " + round + ": expected slot " + expected + ", got " + slots[0]);
+                }
+            } else {
+                parkingLot.tryLeave(random.nextInt(parkingLot.getCapacity() + 1));
+            }
+        }
+    }
+
+    private static int expected(ParkingLot parkingLot, Car car, IntUnaryOperator zoneOf, IntUnaryOperator groupOf,
+            IntToDoubleFunction distance, Function<Car, int[]> groupsForCar, boolean balanced) {
+        int capacity = parkingLot.getCapacity();
+        for (int group : groupsForCar.apply(car)) {
+            int zone = -1;
+            if (balanced) {
+                int[] free = new int[capacity * 2 + 2];
+                for (int slot = 0; slot < capacity; slot++) {
+                    if (parkingLot.getCar(slot) == null && groupOf.applyAsInt(zoneOf.applyAsInt(slot)) == group) {
+                        free[zoneOf.applyAsInt(slot)]++;
+                    }
+                }
+                for (int z = 0; z < free.length; z++) {
+                    if (free[z] > 0 && (zone == -1 || free[z] > free[zone])) {
+                        zone = z;
+                    }
+                }
+            }
+            int best = -1;
+            for (int slot = 0; slot < capacity; slot++) {
+                if (parkingLot.getCar(slot) != null || groupOf.applyAsInt(zoneOf.applyAsInt(slot)) != group
+                        || (balanced && zoneOf.applyAsInt(slot) != zone)) {
+                    continue;
+                }
+                if (best == -1 || distance.applyAsDouble(slot) < distance.applyAsDouble(best)) {
+                    best = slot;
+                }
+            }
+            if (best != -1) {
+                return best;
+            }
+        }
+        return ParkingLot.FULL;
+    }
+}
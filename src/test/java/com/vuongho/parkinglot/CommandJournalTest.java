@@ -0,0 +1,206 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for a {@link ParkingLotMgr} persisted by a {@link CommandJournal}.
+ */
+public class CommandJournalTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("parking_lot_journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void recoverTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 4, true, 1000);
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+        parkingLotMgr.createParkingLot(6);
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "White");
+        parkingLotMgr.park("6TRJ24", "Black");
+        parkingLotMgr.park("EUS687", "Black"); // rejected, not journaled
+        parkingLotMgr.leave(2);
+        parkingLotMgr.park("EK3333", "Red");
+        String status = parkingLotMgr.status(true);
+        journal.close();
+
+        ParkingLotMgr recovered = new ParkingLotMgr(new CommandJournal(directory, 4, true, 1000));
+        assertEquals(status, recovered.status(true));
+        assertEquals("Allocated slot number: 4", recovered.park("IYTE32", "Blue"));
+    }
+
+    @Test
+    public void resizeTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 4, true, 1000);
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+        parkingLotMgr.createParkingLot(2);
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "White");
+        assertEquals("Resized the parking lot to 4 slots", parkingLotMgr.resizeParkingLot(4));
+        parkingLotMgr.park("6TRJ24", "Black");
+        assertEquals("Sorry, slot number 3 is still occupied", parkingLotMgr.resizeParkingLot(2));
+        parkingLotMgr.leave(3);
+        assertEquals("Resized the parking lot to 2 slots", parkingLotMgr.resizeParkingLot(2));
+        String status = parkingLotMgr.status(true);
+        journal.close();
+
+        ParkingLotMgr recovered = new ParkingLotMgr(new CommandJournal(directory, 4, true, 1000));
+        assertEquals(status, recovered.status(true));
+        assertEquals("Sorry, parking lot is full", recovered.park("IYTE32", "Blue"));
+    }
+
+    @Test
+    public void snapshotTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 8, false, 10);
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+        assertEquals("Please create a parking lot first", parkingLotMgr.status());
+        parkingLotMgr.createParkingLot(50);
+        for (int i = 0; i < 45; i++) {
+            parkingLotMgr.park("CAR" + i, i % 2 == 0 ? "White" : "Black");
+            if (i % 3 == 0) {
+                parkingLotMgr.leave(i / 2 + 1);
+            }
+        }
+        String status = parkingLotMgr.status(true);
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            // one snapshot and the journal after it
+            assertEquals(2, files.count());
+        }
+
+        CommandJournal reopened = new CommandJournal(directory, 8, false, 10);
+        assertEquals(status, new ParkingLotMgr(reopened).status(true));
+        assertEquals(journal.getSequence(), reopened.getSequence());
+        reopened.close();
+    }
+
+    @Test
+    public void tornTailTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 1, false, 1000);
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+        parkingLotMgr.createParkingLot(6);
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "White");
+        journal.close();
+
+        // cut the last record in half, as a crash in the middle of a write would
+        Path file = directory.resolve("journal-1.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        journal = new CommandJournal(directory, 1, false, 1000);
+        parkingLotMgr = new ParkingLotMgr(journal);
+        assertEquals("1", parkingLotMgr.slotForId("EUS687"));
+        assertEquals("Not found", parkingLotMgr.slotForId("510IBD"));
+        assertEquals("Allocated slot number: 2", parkingLotMgr.park("6TRJ24", "Black"));
+        journal.close();
+
+        parkingLotMgr = new ParkingLotMgr(new CommandJournal(directory, 1, false, 1000));
+        assertEquals("2", parkingLotMgr.slotForId("6TRJ24"));
+    }
+
+    @Test
+    public void damagedLastRecordTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 1, false, 1000);
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+        parkingLotMgr.createParkingLot(6);
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "White");
+        journal.close();
+
+        // damage the payload of the last record, keeping its length
+        Path file = directory.resolve("journal-1.bin");
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), size - 3);
+        }
+        parkingLotMgr = new ParkingLotMgr(new CommandJournal(directory, 1, false, 1000));
+        assertEquals("1", parkingLotMgr.slotForId("EUS687"));
+        assertEquals("Not found", parkingLotMgr.slotForId("510IBD"));
+        assertEquals(size / 2, Files.size(file));
+    }
+
+    @Test
+    public void damagedMiddleRecordTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 1, false, 1000);
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(journal);
+        parkingLotMgr.createParkingLot(6);
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "White");
+        journal.close();
+
+        // damage the first of the two park records; the second is still good
+        Path file = directory.resolve("journal-1.bin");
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), 12);
+        }
+        try {
+            new CommandJournal(directory, 1, false, 1000).recover();
+            fail("Expected the damaged journal to fail recovery");
+        } catch (IOException e) {
+            assertEquals(file + " is damaged at offset 0", e.getMessage());
+        }
+        // nothing is cut off, so the journal can still be repaired by hand
+        assertEquals(size, Files.size(file));
+
+        // a damaged length is only a torn tail if nothing but zeros follows it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'E'}), 12);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xff}), 0);
+        }
+        try {
+            new CommandJournal(directory, 1, false, 1000).recover();
+            fail("Expected the damaged journal to fail recovery");
+        } catch (IOException e) {
+            assertEquals(file + " is damaged at offset 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void parkBeforeCreateTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 1, false, 1000);
+        journal.recover();
+        journal.logPark("EUS687", "White");
+        journal.close();
+        try {
+            new CommandJournal(directory, 1, false, 1000).recover();
+            fail("Expected a park before any create to fail recovery");
+        } catch (IOException e) {
+            assertEquals("Journal does not replay: record type 2 before any parking lot was created",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void emptyJournalTest() throws IOException {
+        CommandJournal journal = new CommandJournal(directory, 1, false, 1000);
+        assertNull(journal.recover());
+        journal.close();
+    }
+}
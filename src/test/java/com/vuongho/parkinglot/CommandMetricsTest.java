@@ -0,0 +1,103 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * Unit test class for {@link CommandMetrics}
+ */
+public class CommandMetricsTest {
+    @Test
+    public void histogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getP99Nanos());
+        Random random = new Random(3);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 25);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + expected + " vs " + actual,
+                    actual >= expected && actual <= expected + expected / 32 + 1);
+        }
+        for (long value = 0; value < 1 << 20; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+        }
+        assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.bucket(1L << 41));
+    }
+
+    @Test
+    public void metricsCommandTest() {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        assertEquals("Metrics are not enabled", parkingLotMgr.giveCommand("metrics"));
+        CommandMetrics metrics = parkingLotMgr.enableMetrics();
+        parkingLotMgr.giveCommand("create_parking_lot 2");
+        parkingLotMgr.giveCommand("park EUS687 White");
+        parkingLotMgr.giveCommand("park EUS687 White");
+        parkingLotMgr.giveCommand("park 510IBD White");
+        parkingLotMgr.giveCommand("park 6TRJ24 Black");
+        parkingLotMgr.giveCommand("parking 6TRJ24 Black");
+        parkingLotMgr.giveCommand("status 1");
+        assertEquals(5, metrics.getCommandCount());
+        assertEquals(4, metrics.getCommandCount("park"));
+        assertEquals(2, metrics.getInvalidCommandCount());
+        assertEquals(2, metrics.getRejectedParkCount());
+        assertEquals(2, metrics.getCurrentSize());
+        assertEquals(2, metrics.getCapacity());
+
+        String[] lines = parkingLotMgr.giveCommand("metrics").split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("create_parking_lot: count 1, mean "));
+        assertTrue(lines[1], lines[1].startsWith("park: count 4, mean "));
+        assertEquals("Occupancy: 2/2", lines[2]);
+        assertEquals("Invalid commands: 2", lines[3]);
+        assertEquals("Rejected parks: 2", lines[4]);
+        assertTrue(parkingLotMgr.giveCommand("metrics").startsWith("create_parking_lot: count 1"));
+        assertEquals(2, metrics.getCommandCount("metrics"));
+        for (int i = 0; i < 100 * CommandMetrics.TIMING_INTERVAL; i++) {
+            parkingLotMgr.giveCommand("slot_number_for_id EUS687");
+        }
+        LatencyMXBean latency = metrics.getLatency("slot_number_for_id");
+        assertEquals(100, latency.getCount());
+        assertTrue(latency.getP50Nanos() > 0 && latency.getP50Nanos() <= latency.getMaxNanos());
+    }
+
+    @Test
+    public void mbeansTest() throws Exception {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        CommandMetrics metrics = parkingLotMgr.enableMetrics();
+        metrics.registerMBeans("test");
+        try {
+            parkingLotMgr.giveCommand("create_parking_lot 6");
+            parkingLotMgr.giveCommand("park EUS687 White");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.vuongho.parkinglot:type=ParkingLotMgr,name=\"test\"");
+            assertEquals(1, server.getAttribute(name, "CurrentSize"));
+            assertEquals(6, server.getAttribute(name, "Capacity"));
+            assertEquals(2L, server.getAttribute(name, "CommandCount"));
+            ObjectName park = new ObjectName("com.vuongho.parkinglot:type=ParkingLotMgr,name=\"test\",command=park");
+            assertEquals(0L, server.getAttribute(park, "P99Nanos"));
+        } finally {
+            metrics.unregisterMBeans();
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("com.vuongho.parkinglot:name=\"test\",*"), null).isEmpty());
+    }
+}
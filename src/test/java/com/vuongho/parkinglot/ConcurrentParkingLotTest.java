@@ -0,0 +1,604 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Multithreaded stress test for {@link ConcurrentParkingLot}.
+ */
+public class ConcurrentParkingLotTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20000;
+
+    @Test
+    public void sequentialBehaviourTest() throws ParkingLotException {
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(3);
+        assertEquals(0, parkingLot.park("EUS687", "White"));
+        assertEquals(1, parkingLot.park("510IBD", "White"));
+        assertEquals(2, parkingLot.park("6TRJ24", "Black"));
+        assertTrue(parkingLot.isFull());
+        assertEquals("510IBD", parkingLot.leave(1).getLicensePlate());
+        assertNull(parkingLot.leave(1));
+        assertEquals(1, parkingLot.park("EK3333", "Red"));
+        assertEquals(2, parkingLot.getSlotNumberForId("6TRJ24"));
+        assertEquals(List.of(0), parkingLot.getSlotsNumberForCarsWithColor("White"));
+        String expected =
+        "Slot No.\tID\t\tColor\n" +
+        "1\t\tEUS687\t\tWhite\n" +
+        "2\t\tEK3333\t\tRed\n" +
+        "3\t\t6TRJ24\t\tBlack";
+        assertEquals(expected, parkingLot.status(false));
+    }
+
+    @Test
+    public void snapshotTest() throws ParkingLotException {
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(200);
+        parkingLot.park("EUS687", "White");
+        parkingLot.park("510IBD", "Black");
+        ParkingLotSnapshot before = parkingLot.snapshot();
+        parkingLot.leave(0);
+        parkingLot.park("6TRJ24", "White");
+        for (int i = 0; i < 100; i++) {
+            parkingLot.park("C" + i, "Red");
+        }
+        assertEquals(2, before.getCurrentSize());
+        assertEquals("EUS687", before.getCar(0).getLicensePlate());
+        assertNull(before.getCar(199));
+        assertEquals(List.of(0), before.getSlotsNumberForCarsWithColor("White"));
+        assertEquals("Slot No.\tID\t\tColor\n1\t\tEUS687\t\tWhite\n2\t\t510IBD\t\tBlack", before.status(false));
+        ParkingLotSnapshot after = parkingLot.snapshot();
+        assertEquals(before.getVersion() + 102, after.getVersion());
+        assertEquals(102, after.getCurrentSize());
+        assertEquals("6TRJ24", after.getCar(0).getLicensePlate());
+        assertEquals(100, after.getCarsWithColor("Red").size());
+        assertEquals(parkingLot.status(true), after.status(true));
+        assertEquals(201, after.status(true).split("\n").length);
+
+        // a single-threaded lot copies its slots into the snapshot
+        ParkingLot lot = new ParkingLot(70);
+        lot.park("EUS687", "White");
+        ParkingLotSnapshot copy = lot.snapshot();
+        lot.leave(0);
+        assertEquals(1, copy.getCurrentSize());
+        assertEquals("Slot No.\tID\t\tColor\n1\t\tEUS687\t\tWhite", copy.status(false));
+        assertEquals(lot.status(true), lot.snapshot().status(true));
+    }
+
+    @Test
+    public void snapshotSegmentsTest() throws ParkingLotException {
+        int capacity = 3 * ParkingLotSnapshot.SEGMENT_SIZE + 10;
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            parkingLot.park("C" + slot, slot % 3 == 0 ? "White" : "Red");
+        }
+        ParkingLotSnapshot before = parkingLot.snapshot();
+        assertSame(before, parkingLot.snapshot());
+        assertEquals((capacity + 2) / 3, before.getSlotsNumberForCarsWithColor("White").size());
+
+        // only the segment that changed is copied again
+        parkingLot.leave(ParkingLotSnapshot.SEGMENT_SIZE + 2);
+        ParkingLotSnapshot after = parkingLot.snapshot();
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertSame(before.segment(0), after.segment(0));
+        assertTrue(before.segment(1) != after.segment(1));
+        assertSame(before.segment(3), after.segment(3));
+        assertEquals(capacity - 1, after.getCurrentSize());
+        assertNull(after.getCar(ParkingLotSnapshot.SEGMENT_SIZE + 2));
+        List<Integer> white = after.getSlotsNumberForCarsWithColor("White");
+        assertEquals((capacity + 2) / 3 - 1, white.size());
+        for (int i = 0; i < white.size(); i++) {
+            int expected = 3 * i < ParkingLotSnapshot.SEGMENT_SIZE + 2 ? 3 * i : 3 * (i + 1);
+            assertEquals(expected, (int) white.get(i));
+        }
+        assertEquals(capacity - 1 - white.size(), after.getCarsWithColor("Red").size());
+        assertEquals(parkingLot.getCar(capacity - 1), after.getCar(capacity - 1));
+    }
+
+    @Test
+    public void resizeTest() throws ParkingLotException {
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(2);
+        parkingLot.park("EUS687", "White");
+        parkingLot.park("510IBD", "Black");
+        assertTrue(parkingLot.isFull());
+        ParkingLotSnapshot small = parkingLot.snapshot();
+
+        // grow across segments; the new slots are taken lowest first
+        int capacity = 2 * ParkingLotSnapshot.SEGMENT_SIZE + 5;
+        parkingLot.resize(capacity);
+        assertEquals(capacity, parkingLot.getCapacity());
+        assertEquals(2, parkingLot.park("6TRJ24", "White"));
+        for (int slot = 3; slot < capacity; slot++) {
+            assertEquals(slot, parkingLot.park("C" + slot, "Red"));
+        }
+        assertTrue(parkingLot.isFull());
+        ParkingLotSnapshot large = parkingLot.snapshot();
+        assertEquals(capacity, large.getCapacity());
+        assertEquals(capacity, large.getCurrentSize());
+        assertEquals(small.getVersion() + 1 + capacity - 2, large.getVersion());
+        assertEquals(2, small.getCapacity());
+
+        // closing an occupied slot is refused and undone
+        try {
+            parkingLot.resize(10);
+            fail();
+        } catch (ParkingLotException e) {
+            assertEquals("Sorry, slot number 11 is still occupied", e.getMessage());
+        }
+        assertTrue(parkingLot.isFull());
+        for (int slot = 10; slot < capacity; slot++) {
+            parkingLot.leave(slot);
+        }
+        parkingLot.leave(4);
+        parkingLot.resize(10);
+        assertEquals(10, parkingLot.getCapacity());
+        assertNull(parkingLot.getCar(10));
+        assertNull(parkingLot.tryLeave(10));
+        assertEquals(4, parkingLot.park("EK3333", "Red"));
+        assertEquals(ParkingLot.FULL, parkingLot.tryPark(new Car("KA01", "Red")));
+        ParkingLotSnapshot closed = parkingLot.snapshot();
+        assertEquals(10, closed.getCapacity());
+        assertEquals(11, closed.status(true).split("\n").length);
+        assertTrue(closed.getVersion() > large.getVersion());
+
+        // the closed slots are opened again, empty, and the versions go on
+        parkingLot.resize(ParkingLotSnapshot.SEGMENT_SIZE + 1);
+        assertEquals(10, parkingLot.park("KA01", "Red"));
+        assertNull(parkingLot.snapshot().getCar(11));
+        assertEquals(ParkingLotSnapshot.SEGMENT_SIZE + 1 - 11, parkingLot.getCapacity() - parkingLot.getCurrentSize());
+        assertTrue(parkingLot.snapshot().getVersion() > closed.getVersion());
+        assertEquals(parkingLot.status(true), parkingLot.snapshot().status(true));
+    }
+
+    @Test
+    public void streamedStatusTest() throws Exception {
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(100000);
+        parkingLot.park("EUS687", "White");
+        // the empty slots are handed over a few thousand lines at a time too
+        List<Integer> chunks = new ArrayList<>();
+        StringBuilder streamed = new StringBuilder();
+        parkingLot.status(true, new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                chunks.add(csq.length());
+                streamed.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        });
+        assertEquals(parkingLot.status(true), streamed.toString());
+        assertTrue(chunks.size() > 100);
+        for (int length : chunks) {
+            assertTrue(length < 8192 + 64);
+        }
+    }
+
+    /**
+     * Gates park and leave while readers take snapshots. Each gate parks two
+     * cars first, then in every round parks a car before it leaves its
+     * oldest, so at every instant it has two or three cars parked, from
+     * consecutive rounds. A torn view shows a gate with one car, or with a
+     * car that already left next to one parked after. The queries of a
+     * snapshot, which read its segments by slot or through their color
+     * indexes, must agree with each other.
+     */
+    @Test
+    public void snapshotStressTest() throws InterruptedException, ParkingLotException {
+        int gates = THREADS / 2;
+        int capacity = 4096;
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(capacity);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicInteger running = new AtomicInteger(gates);
+        AtomicInteger snapshots = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < gates; t++) {
+            int id = t;
+            List<Integer> mySlots = new ArrayList<>();
+            mySlots.add(parkingLot.park("G" + id + "R0", "White"));
+            mySlots.add(parkingLot.park("G" + id + "R1", "Black"));
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int round = 2; round < ROUNDS; round++) {
+                        mySlots.add(parkingLot.park("G" + id + "R" + round, round % 2 == 0 ? "White" : "Black"));
+                        parkingLot.leave(mySlots.remove(0));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e.toString());
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            threads.add(thread);
+        }
+        for (int t = gates; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                long lastVersion = -1;
+                while (running.get() > 0) {
+                    ParkingLotSnapshot snapshot = parkingLot.snapshot();
+                    if (snapshot.getVersion() < lastVersion) {
+                        failure.set("Snapshot version went back from " + lastVersion);
+                    }
+                    lastVersion = snapshot.getVersion();
+                    int[] carsByGate = new int[gates];
+                    int[] firstRound = new int[gates];
+                    int[] lastRound = new int[gates];
+                    int cars = 0;
+                    for (Car car : snapshot.getParkedCars()) {
+                        if (car != null) {
+                            cars++;
+                            String plate = car.getLicensePlate();
+                            int gate = Integer.parseInt(plate.substring(1, plate.indexOf('R')));
+                            int round = Integer.parseInt(plate.substring(plate.indexOf('R') + 1));
+                            firstRound[gate] = carsByGate[gate] == 0 ? round : Math.min(firstRound[gate], round);
+                            lastRound[gate] = Math.max(lastRound[gate], round);
+                            carsByGate[gate]++;
+                        }
+                    }
+                    for (int gate = 0; gate < gates; gate++) {
+                        if (carsByGate[gate] < 2 || lastRound[gate] - firstRound[gate] != carsByGate[gate] - 1) {
+                            failure.set("Torn snapshot, gate " + gate + " has " + carsByGate[gate]
+                                    + " cars from rounds " + firstRound[gate] + " to " + lastRound[gate]);
+                        }
+                    }
+                    int colored = snapshot.getSlotsNumberForCarsWithColor("White").size()
+                            + snapshot.getCarsWithColor("Black").size();
+                    int listed = snapshot.status(false).split("\n").length - 1;
+                    if (colored != cars || listed != cars) {
+                        failure.set("Snapshot queries disagree: " + cars + ", " + colored + ", " + listed);
+                    }
+                    snapshots.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            fail(failure.get());
+        }
+        assertTrue(snapshots.get() > 0);
+        assertEquals(2 * gates, parkingLot.snapshot().getCurrentSize());
+        assertEquals(2 * gates, parkingLot.getCurrentSize());
+        // every park and every leave is one version
+        assertEquals(2L * gates * ROUNDS - 2 * gates, parkingLot.snapshot().getVersion());
+    }
+
+    /**
+     * Gates park and leave as in {@link #snapshotStressTest()}, above parked
+     * cars that fill the first segment but a few slots, while a thread keeps
+     * resizing the lot across segments and readers take snapshots. The lot
+     * never gets smaller than the cars, so a gate is never refused; a resize
+     * closing a slot of a gate is refused. Afterwards every open slot must be
+     * given exactly once.
+     */
+    @Test
+    public void resizeStressTest() throws InterruptedException, ParkingLotException {
+        int gates = THREADS / 2 - 1;
+        int parked = ParkingLotSnapshot.SEGMENT_SIZE - 4;
+        int[] capacities = {parked + 3 * gates, 2 * ParkingLotSnapshot.SEGMENT_SIZE + 7, parked + 40,
+                ParkingLotSnapshot.SEGMENT_SIZE};
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(capacities[0]);
+        for (int i = 0; i < parked; i++) {
+            parkingLot.park("P" + i, "Black");
+        }
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicInteger running = new AtomicInteger(gates);
+        AtomicInteger resizes = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < gates; t++) {
+            int id = t;
+            List<Integer> mySlots = new ArrayList<>();
+            mySlots.add(parkingLot.park("G" + id + "R0", "White"));
+            mySlots.add(parkingLot.park("G" + id + "R1", "Black"));
+            threads.add(new Thread(() -> {
+                try {
+                    for (int round = 2; round < ROUNDS / 4; round++) {
+                        mySlots.add(parkingLot.park("G" + id + "R" + round, "White"));
+                        parkingLot.leave(mySlots.remove(0));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e.toString());
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            for (int i = 1; running.get() > 0; i++) {
+                try {
+                    parkingLot.resize(capacities[i % capacities.length]);
+                    resizes.incrementAndGet();
+                } catch (ParkingLotException e) {
+                    if (!e.getMessage().endsWith("is still occupied")) {
+                        failure.set(e.toString());
+                    }
+                }
+            }
+        }));
+        for (int t = gates + 1; t < THREADS; t++) {
+            threads.add(new Thread(() -> {
+                long lastVersion = -1;
+                while (running.get() > 0) {
+                    ParkingLotSnapshot snapshot = parkingLot.snapshot();
+                    if (snapshot.getVersion() < lastVersion) {
+                        failure.set("Snapshot version went back from " + lastVersion);
+                    }
+                    lastVersion = snapshot.getVersion();
+                    Car[] cars = snapshot.getParkedCars();
+                    int[] carsByGate = new int[gates];
+                    int others = 0;
+                    for (Car car : cars) {
+                        if (car != null && car.getLicensePlate().charAt(0) == 'G') {
+                            carsByGate[car.getLicensePlate().charAt(1) - '0']++;
+                        } else if (car != null) {
+                            others++;
+                        }
+                    }
+                    if (others != parked) {
+                        failure.set("Snapshot holds " + others + " parked cars");
+                    }
+                    for (int gate = 0; gate < gates; gate++) {
+                        if (carsByGate[gate] < 2 || carsByGate[gate] > 3) {
+                            failure.set("Torn snapshot, gate " + gate + " has " + carsByGate[gate] + " cars");
+                        }
+                    }
+                    if (snapshot.status(true).split("\n").length != snapshot.getCapacity() + 1) {
+                        failure.set("Snapshot status does not list " + snapshot.getCapacity() + " slots");
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            fail(failure.get());
+        }
+        assertTrue(resizes.get() > 0);
+        assertEquals(parked + 2 * gates, parkingLot.getCurrentSize());
+
+        int capacity = parkingLot.getCapacity();
+        boolean[] taken = new boolean[capacity];
+        for (Car car : parkingLot.getParkedCars()) {
+            if (car != null) {
+                taken[parkingLot.getSlotNumberForId(car.getLicensePlate())] = true;
+            }
+        }
+        for (int i = parked + 2 * gates; i < capacity; i++) {
+            int slot = parkingLot.park("F" + i, "Red");
+            assertTrue("slot " + slot, !taken[slot]);
+            taken[slot] = true;
+        }
+        assertEquals(ParkingLot.FULL, parkingLot.tryPark(new Car("F", "Red")));
+    }
+
+    /**
+     * Every thread repeatedly parks its own cars in a lot smaller than the
+     * number of cars wanting a slot, checks that the slot it was given still
+     * holds its car, then leaves. Any double allocation or lost slot shows up
+     * as a foreign car in a slot or as a wrong final count.
+     */
+    @Test
+    public void parkLeaveStressTest() throws InterruptedException {
+        int capacity = THREADS * 4;
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(capacity);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicInteger parked = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    List<Integer> mySlots = new ArrayList<>();
+                    List<Car> myCars = new ArrayList<>();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        Car car = new Car("T" + id + "R" + round, round % 2 == 0 ? "White" : "Black");
+                        try {
+                            mySlots.add(parkingLot.park(car));
+                            myCars.add(car);
+                            parked.incrementAndGet();
+                        } catch (ParkingLotException e) {
+                            // full, leave below
+                        }
+                        if (!mySlots.isEmpty() && (round % 3 == 2 || mySlots.size() > 6)) {
+                            int slot = mySlots.remove(0);
+                            Car expected = myCars.remove(0);
+                            if (parkingLot.getSlotNumberForId(expected.getLicensePlate()) != slot) {
+                                failure.set("Plate index lost " + expected.getLicensePlate());
+                            }
+                            Car left = parkingLot.leave(slot);
+                            if (left != expected) {
+                                failure.set("Slot " + slot + " held " + left + " instead of " + expected);
+                            }
+                            parked.decrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e.toString());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            fail(failure.get());
+        }
+        assertEquals(parked.get(), parkingLot.getCurrentSize());
+        int occupied = 0;
+        for (Car car : parkingLot.getParkedCars()) {
+            if (car != null) {
+                occupied++;
+                assertSame(car, parkingLot.getParkedCars()[parkingLot.getSlotNumberForId(car.getLicensePlate())]);
+            }
+        }
+        assertEquals(parked.get(), occupied);
+        int white = parkingLot.getSlotsNumberForCarsWithColor("White").size();
+        int black = parkingLot.getSlotsNumberForCarsWithColor("Black").size();
+        assertEquals(occupied, white + black);
+    }
+
+    /**
+     * Many threads race to fill a lot; exactly {@code capacity} cars must get
+     * a slot, each slot exactly once.
+     */
+    @Test
+    public void fillStressTest() throws InterruptedException {
+        int capacity = 10000;
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(capacity);
+        AtomicInteger rejected = new AtomicInteger();
+        boolean[][] claimed = new boolean[THREADS][capacity];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < capacity / 2; i++) {
+                    try {
+                        claimed[id][parkingLot.park("T" + id + "C" + i, "White")] = true;
+                    } catch (ParkingLotException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(THREADS * capacity / 2 - capacity, rejected.get());
+        assertEquals(capacity, parkingLot.getCurrentSize());
+        for (int slot = 0; slot < capacity; slot++) {
+            int owners = 0;
+            for (int t = 0; t < THREADS; t++) {
+                owners += claimed[t][slot] ? 1 : 0;
+            }
+            assertEquals("slot " + slot, 1, owners);
+        }
+    }
+
+    /**
+     * Many threads fill a lot in batches, some of whose plates are parked
+     * already; exactly {@code capacity} cars must get a slot, each slot
+     * exactly once, and no reservation may be left behind.
+     */
+    @Test
+    public void parkAllStressTest() throws InterruptedException {
+        int capacity = 10000;
+        int batch = 64;
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(capacity);
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        boolean[][] claimed = new boolean[THREADS][capacity];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < capacity / 2; i += batch) {
+                    List<Car> cars = new ArrayList<>();
+                    for (int j = i; j < i + batch; j++) {
+                        // every fourth plate is shared by all threads
+                        String plate = j % 4 == 0 ? "S" + j : "T" + id + "C" + j;
+                        cars.add(new Car(plate, "White"));
+                    }
+                    for (int slot : parkingLot.parkAll(cars)) {
+                        if (slot == ParkingLot.FULL) {
+                            full.incrementAndGet();
+                        } else if (slot == ParkingLot.ALREADY_PARKED) {
+                            duplicates.incrementAndGet();
+                        } else {
+                            claimed[id][slot] = true;
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(capacity, parkingLot.getCurrentSize());
+        int owned = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int owners = 0;
+            for (int t = 0; t < THREADS; t++) {
+                owners += claimed[t][slot] ? 1 : 0;
+            }
+            assertTrue("slot " + slot, owners <= 1);
+            owned += owners;
+        }
+        assertEquals(capacity, owned);
+        assertEquals(THREADS * ((capacity / 2 + batch - 1) / batch) * batch - capacity,
+                full.get() + duplicates.get());
+
+        int[] slots = new int[capacity + 1];
+        for (int slot = 0; slot <= capacity; slot++) {
+            slots[slot] = slot;
+        }
+        Car[] cars = parkingLot.leaveAll(slots);
+        assertNull(cars[capacity]);
+        assertEquals(0, parkingLot.getCurrentSize());
+    }
+
+    @Test
+    public void parkedPlatesBatchTest() throws InterruptedException, ParkingLotException {
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(2);
+        parkingLot.park(new Car("EUS687", "White"));
+        List<Car> parked = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            parked.add(new Car("EUS687", "White"));
+        }
+        AtomicInteger full = new AtomicInteger();
+        Thread gate = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                int slot = parkingLot.tryPark(new Car("510IBD", "Black"));
+                if (slot == ParkingLot.FULL) {
+                    full.incrementAndGet();
+                } else {
+                    parkingLot.tryLeave(slot);
+                }
+            }
+        });
+        gate.start();
+        while (gate.isAlive()) {
+            for (int slot : parkingLot.parkAll(parked)) {
+                assertEquals(ParkingLot.ALREADY_PARKED, slot);
+            }
+        }
+        gate.join();
+        // a batch of parked plates reserves no place the gate could have had
+        assertEquals(0, full.get());
+    }
+}
@@ -1,11 +1,15 @@
 package com.vuongho.parkinglot;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
@@ -17,6 +21,25 @@ public class InputTest {
         evaluateParkingLot("./file_inputs_current.txt", "./file_outputs_current.txt");
     }
 
+    @Test
+    public void replayTest() throws IOException {
+        String input = new String(Utils.getFileFromResourceAsStream("./file_inputs_current.txt").readAllBytes(),
+                StandardCharsets.UTF_8);
+        String expected = new String(Utils.getFileFromResourceAsStream("./file_outputs_current.txt").readAllBytes(),
+                StandardCharsets.UTF_8).replace("\n", System.lineSeparator()) + System.lineSeparator();
+        assertEquals(expected, replay(input));
+        assertEquals(expected, replay(input.replace("\n", "\r\n")));
+        assertEquals(expected, replay(input + "\n"));
+        assertEquals(System.lineSeparator() + System.lineSeparator(), replay("\n\r\n").replace("Invalid command", ""));
+    }
+
+    private static String replay(String input) throws IOException {
+        StringWriter output = new StringWriter();
+        new ParkingLotMgr().replay(Channels.newChannel(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), output);
+        return output.toString();
+    }
+
     /**
      * Batch evaluation for an opening hours file, with input time values and its corresponding correct answers.
      * This is successful if the evaluator return all correct answer
@@ -0,0 +1,126 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for a {@link ParkingLot} over a {@link MappedSlotStorage},
+ * including recovery after the process holding it is killed.
+ */
+public class MappedSlotStorageTest {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("parking_lot", ".slots");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void reopenTest() throws IOException, ParkingLotException {
+        try (MappedSlotStorage storage = MappedSlotStorage.open(file, 6)) {
+            ParkingLotMgr parkingLotMgr = new ParkingLotMgr(new ParkingLot(storage));
+            parkingLotMgr.park("EUS687", "White");
+            parkingLotMgr.park("510IBD", "White");
+            parkingLotMgr.park("6TRJ24", "Black");
+            parkingLotMgr.leave(2);
+        }
+        try (MappedSlotStorage storage = MappedSlotStorage.open(file, 100)) {
+            assertEquals(6, storage.getCapacity());
+            assertEquals(2, storage.getCurrentSize());
+            ParkingLot parkingLot = new ParkingLot(storage);
+            assertEquals(2, parkingLot.getCurrentSize());
+            assertEquals(2, parkingLot.getSlotNumberForId("6TRJ24"));
+            assertEquals(1, parkingLot.park("EK3333", "Red"));
+            assertEquals(3, parkingLot.park("IYTE32", "Blue"));
+        }
+    }
+
+    @Test(expected = ParkingLotException.class)
+    public void longPlateTest() throws IOException, ParkingLotException {
+        try (MappedSlotStorage storage = MappedSlotStorage.open(file, 6)) {
+            ParkingLot parkingLot = new ParkingLot(storage);
+            try {
+                parkingLot.park("A".repeat(33), "White");
+            } finally {
+                assertEquals(0, parkingLot.getCurrentSize());
+                assertNull(storage.get(0));
+            }
+        }
+    }
+
+    /**
+     * Parks cars from a child JVM, kills it without any shutdown, then reopens
+     * the file and checks that every car is where the child left it.
+     */
+    @Test
+    public void killAndRecoverTest() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Child.class.getName(), file.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("parked", output.readLine());
+        }
+        child.destroyForcibly();
+        child.waitFor(30, TimeUnit.SECONDS);
+
+        ParkingLot expected = new ParkingLot(Child.CAPACITY);
+        Child.run(expected);
+        try (MappedSlotStorage storage = MappedSlotStorage.open(file, Child.CAPACITY)) {
+            ParkingLot recovered = new ParkingLot(storage);
+            assertEquals(expected.getCurrentSize(), recovered.getCurrentSize());
+            assertEquals(expected.status(true), recovered.status(true));
+            assertEquals(expected.getSlotsNumberForCarsWithColor("Black"),
+                    recovered.getSlotsNumberForCarsWithColor("Black"));
+        }
+    }
+
+    /**
+     * The process that is killed by {@link #killAndRecoverTest()}.
+     */
+    public static class Child {
+        static final int CAPACITY = 1000;
+
+        static void run(ParkingLot parkingLot) throws ParkingLotException {
+            for (int i = 0; i < CAPACITY; i++) {
+                parkingLot.park("CAR" + i, i % 3 == 0 ? "Black" : "White");
+            }
+            for (int slot = 0; slot < CAPACITY; slot += 7) {
+                parkingLot.leave(slot);
+            }
+            for (int i = 0; i < CAPACITY / 14; i++) {
+                parkingLot.park("NEW" + i, "Red");
+            }
+        }
+
+        public static void main(String[] args) throws Exception {
+            MappedSlotStorage storage = MappedSlotStorage.open(new File(args[0]).toPath(), CAPACITY);
+            run(new ParkingLot(storage));
+            System.out.println("parked");
+            System.out.flush();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        }
+    }
+}
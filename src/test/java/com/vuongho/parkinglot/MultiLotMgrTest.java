@@ -0,0 +1,90 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test class for {@link MultiLotMgr}
+ */
+public class MultiLotMgrTest {
+    @Test
+    public void firstAvailableTest() {
+        MultiLotMgr multiLotMgr = new MultiLotMgr();
+        assertEquals("Please create a parking lot first", multiLotMgr.park("EUS687", "White"));
+        assertEquals("Created parking lot L1 with 2 slots", multiLotMgr.createParkingLot("L1", 2));
+        assertEquals("Created parking lot L2 with 2 slots", multiLotMgr.createParkingLot("L2", 2));
+        assertEquals("Parking lot L1 already exists", multiLotMgr.createParkingLot("L1", 4));
+        assertEquals("Allocated slot number: 1 in parking lot L1", multiLotMgr.park("EUS687", "White"));
+        assertEquals("Allocated slot number: 2 in parking lot L1", multiLotMgr.park("510IBD", "White"));
+        assertEquals("Allocated slot number: 1 in parking lot L2", multiLotMgr.park("6TRJ24", "Black"));
+        assertEquals("Car EUS687 is already parked", multiLotMgr.park("EUS687", "White"));
+        assertEquals("Allocated slot number: 2 in parking lot L2", multiLotMgr.park("EK3333", "Red"));
+        assertEquals("Sorry, all parking lots are full", multiLotMgr.park("IYTE32", "Blue"));
+        assertEquals("Slot number 2 in parking lot L1 is free", multiLotMgr.leave("L1", 2));
+        assertEquals("Parking lot L3 not found", multiLotMgr.leave("L3", 2));
+        assertEquals("Allocated slot number: 2 in parking lot L1", multiLotMgr.park("IYTE32", "Blue"));
+        assertEquals("L2:2", multiLotMgr.slotForId("EK3333"));
+        assertEquals("Not found", multiLotMgr.slotForId("510IBD"));
+        assertEquals("Slot No.\tID\t\tColor\n1\t\t6TRJ24\t\tBlack\n2\t\tEK3333\t\tRed",
+                multiLotMgr.status("L2", false));
+    }
+
+    @Test
+    public void leastOccupiedTest() {
+        MultiLotMgr multiLotMgr = new MultiLotMgr(PlacementPolicy.leastOccupied());
+        multiLotMgr.createParkingLot("L1", 4);
+        multiLotMgr.createParkingLot("L2", 2);
+        assertEquals("Allocated slot number: 1 in parking lot L1", multiLotMgr.park("EUS687", "White"));
+        assertEquals("Allocated slot number: 1 in parking lot L2", multiLotMgr.park("510IBD", "White"));
+        assertEquals("Allocated slot number: 2 in parking lot L1", multiLotMgr.park("6TRJ24", "Black"));
+        assertEquals("Allocated slot number: 3 in parking lot L1", multiLotMgr.park("EK3333", "Red"));
+        assertEquals("Allocated slot number: 2 in parking lot L2", multiLotMgr.park("IYTE32", "Blue"));
+    }
+
+    @Test
+    public void parallelQueriesTest() {
+        MultiLotMgr multiLotMgr = new MultiLotMgr(PlacementPolicy.leastOccupied());
+        int lotCount = MultiLotMgr.PARALLEL_THRESHOLD * 4;
+        for (int i = 1; i <= lotCount; i++) {
+            multiLotMgr.createParkingLot("L" + i, 50);
+        }
+        for (int i = 0; i < lotCount * 40; i++) {
+            multiLotMgr.park("CAR" + i, i % 3 == 0 ? "White" : "Black");
+        }
+        for (int i = 1; i <= lotCount; i += 3) {
+            multiLotMgr.leave("L" + i, i % 40 + 1);
+        }
+
+        List<String> ids = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        for (String lotId : multiLotMgr.getLotIds()) {
+            ParkingLot lot = multiLotMgr.getParkingLot(lotId);
+            for (Car car : lot.getCarsWithColor("White")) {
+                ids.add(car.getLicensePlate());
+            }
+            for (int slot : lot.getSlotsNumberForCarsWithColor("White")) {
+                slots.add(lotId + ":" + (slot + 1));
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.join(", ", ids), multiLotMgr.idsForCarsWithColor("White"));
+            assertEquals(String.join(", ", slots), multiLotMgr.slotsForCarsWithColor("White"));
+        }
+        assertEquals("None found", multiLotMgr.idsForCarsWithColor("Red"));
+        assertEquals("None found", multiLotMgr.slotsForCarsWithColor("Red"));
+
+        for (String lotId : multiLotMgr.getLotIds()) {
+            ParkingLot lot = multiLotMgr.getParkingLot(lotId);
+            for (Car car : lot.getParkedCars()) {
+                if (car != null) {
+                    String expected = lotId + ":" + (lot.getSlotNumberForId(car.getLicensePlate()) + 1);
+                    assertEquals(expected, multiLotMgr.slotForId(car.getLicensePlate()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Unit test class for {@link NioParkingLotServer}
+ */
+public class NioParkingLotServerTest {
+    /**
+     * Reads one message, up to the empty line that ends it.
+     */
+    private static String readMessage(BufferedReader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while (!(line = in.readLine()).isEmpty()) {
+            sb.append(sb.length() == 0 ? "" : "\n").append(line);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void pipelinedCommandsTest() throws Exception {
+        try (NioParkingLotServer server = new NioParkingLotServer(new ParkingLot(6), 0, 2);
+                Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("park EUS687 White\npark 510IBD White\r\nleave 1\nsta".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("Allocated slot number: 1", readMessage(in));
+            assertEquals("Allocated slot number: 2", readMessage(in));
+            assertEquals("Slot number 1 is free", readMessage(in));
+            // the rest of a command split over two writes
+            out.write(("tus\nleave x\ncreate_parking_lot 3\npark \u00C9LAN Blue\nslot_number_for_id \u00C9LAN\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("Slot No.\tID\t\tColor\n2\t\t510IBD\t\tWhite", readMessage(in));
+            assertEquals("Invalid command", readMessage(in));
+            assertEquals("Sorry, the parking lot is managed by the server", readMessage(in));
+            assertEquals("Allocated slot number: 1", readMessage(in));
+            assertEquals("1", readMessage(in));
+        }
+    }
+
+    @Test
+    public void resetConnectionsTest() throws Exception {
+        try (NioParkingLotServer server = new NioParkingLotServer(new ParkingLot(6), 0, 2)) {
+            // clients that reset their connection right after connecting,
+            // which can fail the set-up of the accepted channel
+            for (int i = 0; i < 200; i++) {
+                Socket socket = new Socket("localhost", server.getPort());
+                socket.setSoLinger(true, 0);
+                socket.close();
+            }
+            // the server channel is still open and accepting
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                OutputStream out = socket.getOutputStream();
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                out.write("park EUS687 White\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                assertEquals("Allocated slot number: 1", readMessage(in));
+            }
+        }
+    }
+
+    @Test
+    public void endOfInputTest() throws Exception {
+        try (NioParkingLotServer server = new NioParkingLotServer(new ParkingLot(6), 0, 1);
+                Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("park EUS687 White\npark 510IBD White\nslot_number_for_id 510IBD"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            // the last command has no newline, and is still answered
+            socket.shutdownOutput();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("Allocated slot number: 1", readMessage(in));
+            assertEquals("Allocated slot number: 2", readMessage(in));
+            assertEquals("2", readMessage(in));
+            assertNull(in.readLine());
+        }
+    }
+
+    @Test
+    public void failedCommandTest() throws Exception {
+        ParkingLot parkingLot = new ParkingLot(6) {
+            @Override
+            public int getSlotNumberForId(String id) {
+                if (id.equals("BROKEN")) {
+                    throw new IllegalStateException("broken index");
+                }
+                return super.getSlotNumberForId(id);
+            }
+        };
+        try (NioParkingLotServer server = new NioParkingLotServer(parkingLot, 0, 1);
+                Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("park EUS687 White\nslot_number_for_id BROKEN\nslot_number_for_id EUS687\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("Allocated slot number: 1", readMessage(in));
+            assertEquals("Sorry, the command failed", readMessage(in));
+            // the lot thread goes on
+            assertEquals("1", readMessage(in));
+        }
+    }
+
+    @Test
+    public void longPipelineTest() throws Exception {
+        int commands = 200000;
+        try (NioParkingLotServer server = new NioParkingLotServer(new ParkingLot(6), 0, 1);
+                Socket socket = new Socket("localhost", server.getPort())) {
+            Thread writer = new Thread(() -> {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    byte[] command = "status\n".getBytes(StandardCharsets.UTF_8);
+                    for (int i = 0; i < commands; i++) {
+                        out.write(command);
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // the messages pile up until they are read, which the server
+            // must survive by no longer reading
+            writer.start();
+            Thread.sleep(200);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < commands; i++) {
+                assertEquals("Slot No.\tID\t\tColor", readMessage(in));
+            }
+            writer.join();
+        }
+    }
+
+    @Test
+    public void sharedLotTest() throws Exception {
+        int clients = 16;
+        int carsPerClient = 50;
+        ParkingLot parkingLot = new ParkingLot(clients * carsPerClient / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try (NioParkingLotServer server = new NioParkingLotServer(parkingLot, 0, 3)) {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                results.add(executor.submit(() -> {
+                    List<String> messages = new ArrayList<>();
+                    try (Socket socket = new Socket("localhost", server.getPort())) {
+                        BufferedReader in = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        for (int i = 0; i < carsPerClient; i++) {
+                            String command = "park C" + client + "_" + i + " White\n";
+                            socket.getOutputStream().write(command.getBytes(StandardCharsets.UTF_8));
+                        }
+                        for (int i = 0; i < carsPerClient; i++) {
+                            messages.add(readMessage(in));
+                        }
+                    }
+                    return messages;
+                }));
+            }
+            Set<String> slots = new HashSet<>();
+            int full = 0;
+            for (Future<List<String>> result : results) {
+                for (String message : result.get()) {
+                    if (message.equals("Sorry, parking lot is full")) {
+                        full++;
+                    } else {
+                        assertEquals(true, slots.add(message));
+                    }
+                }
+            }
+            assertEquals(parkingLot.getCapacity(), slots.size());
+            assertEquals(clients * carsPerClient - parkingLot.getCapacity(), full);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
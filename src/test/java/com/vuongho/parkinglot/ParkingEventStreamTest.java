@@ -0,0 +1,198 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Test class for the {@link ParkingEvent}s published on a
+ * {@link ParkingEventStream}, by one lot and by many gates at once.
+ */
+public class ParkingEventStreamTest {
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 20000;
+
+    @Test
+    public void eventsTest() throws ParkingLotException {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        ParkingEventStream stream = parkingLotMgr.enableEvents(16);
+        ParkingEventStream.Subscription first = stream.subscribe();
+        parkingLotMgr.createParkingLot(2);
+        ParkingEventStream.Subscription second = stream.subscribe();
+        parkingLotMgr.park("EUS687", "White");
+        parkingLotMgr.park("510IBD", "Black");
+        parkingLotMgr.park("6TRJ24", "Red");
+        parkingLotMgr.leave(1);
+        parkingLotMgr.resizeParkingLot(4);
+
+        ParkingEvent created = first.poll();
+        assertEquals(ParkingEvent.Type.CREATED, created.getType());
+        assertEquals(2, created.getCapacity());
+        assertEquals(0, created.getSequence());
+        for (ParkingEventStream.Subscription subscription : List.of(first, second)) {
+            ParkingEvent parked = subscription.poll();
+            assertEquals(ParkingEvent.Type.PARKED, parked.getType());
+            assertEquals(0, parked.getSlot());
+            assertEquals("EUS687", parked.getCar().getLicensePlate());
+            assertEquals(parked.getTimeMillis() + " PARKED 1 EUS687 White",
+                    parked.toString().substring(2));
+            assertEquals("510IBD", subscription.poll().getCar().getLicensePlate());
+            ParkingEvent left = subscription.poll();
+            assertEquals(ParkingEvent.Type.LEFT, left.getType());
+            assertEquals("EUS687", left.getCar().getLicensePlate());
+            ParkingEvent resized = subscription.poll();
+            assertEquals(ParkingEvent.Type.RESIZED, resized.getType());
+            assertEquals(4, resized.getCapacity());
+            assertEquals(4, resized.getSequence());
+            assertNull(subscription.poll());
+            assertEquals(0, subscription.getLag());
+        }
+    }
+
+    @Test
+    public void lagTest() throws IOException {
+        ParkingEventStream stream = new ParkingEventStream(3);
+        assertEquals(4, stream.getSize());
+        ParkingEventStream.Subscription subscription = stream.subscribe();
+        ParkingLot parkingLot = new ParkingLot(20);
+        parkingLot.publishEvents(stream);
+        for (int i = 0; i < 10; i++) {
+            parkingLot.tryPark(new Car("P" + i, "White"));
+        }
+        assertEquals(10, subscription.getLag());
+        List<String> seen = new ArrayList<>();
+        int read = subscription.drainTo(new ParkingEventConsumer() {
+            @Override
+            public void accept(ParkingEvent event) {
+                seen.add(event.getCar().getLicensePlate());
+            }
+
+            @Override
+            public void lagged(long missed) {
+                seen.add("lost " + missed);
+            }
+        }, 100);
+        assertEquals(4, read);
+        assertEquals(List.of("lost 6", "P6", "P7", "P8", "P9"), seen);
+        assertEquals(6, subscription.getMissed());
+        assertEquals(10, subscription.getSequence());
+    }
+
+    /**
+     * Gates park and leave on a {@link ConcurrentParkingLot} while two
+     * consumers read its stream. Each consumer must see every event once, in
+     * sequence, and each slot must alternate between a car parking and the
+     * same car leaving.
+     */
+    @Test
+    public void concurrentLotTest() throws InterruptedException {
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(THREADS * 4);
+        ParkingEventStream stream = new ParkingEventStream(1 << 20);
+        parkingLot.publishEvents(stream);
+        List<ParkingEventStream.Subscription> subscriptions = List.of(stream.subscribe(), stream.subscribe());
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> gates = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            Thread gate = new Thread(() -> {
+                try {
+                    start.await();
+                    List<Integer> mySlots = new ArrayList<>();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        int slot = parkingLot.tryPark(new Car("T" + id + "R" + round, "White"));
+                        if (slot >= 0) {
+                            mySlots.add(slot);
+                        }
+                        if (!mySlots.isEmpty() && (round % 3 == 2 || mySlots.size() > 3)) {
+                            parkingLot.tryLeave(mySlots.remove(0));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e.toString());
+                }
+            });
+            gates.add(gate);
+            gate.start();
+        }
+        List<Thread> consumers = new ArrayList<>();
+        for (ParkingEventStream.Subscription subscription : subscriptions) {
+            Thread consumer = new Thread(() -> {
+                Map<Integer, Car> slots = new HashMap<>();
+                long expected = 0;
+                while (failure.get() == null) {
+                    ParkingEvent event = subscription.poll();
+                    if (event == null) {
+                        if (gates.stream().noneMatch(Thread::isAlive) && subscription.getLag() == 0) {
+                            break;
+                        }
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    if (event.getSequence() != expected++) {
+                        failure.set("Expected event " + (expected - 1) + ", got " + event);
+                    } else if (event.getType() == ParkingEvent.Type.PARKED
+                            && slots.putIfAbsent(event.getSlot(), event.getCar()) != null) {
+                        failure.set("Slot parked twice: " + event);
+                    } else if (event.getType() == ParkingEvent.Type.LEFT
+                            && slots.remove(event.getSlot()) != event.getCar()) {
+                        failure.set("Wrong car left: " + event);
+                    }
+                }
+                if (subscription.getMissed() != 0) {
+                    failure.set("Lost " + subscription.getMissed() + " events");
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        start.countDown();
+        for (Thread thread : gates) {
+            thread.join();
+        }
+        for (Thread thread : consumers) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            fail(failure.get());
+        }
+        for (ParkingEventStream.Subscription subscription : subscriptions) {
+            assertEquals(stream.getPublished(), subscription.getSequence());
+        }
+    }
+
+    @Test
+    public void fileSinkTest() throws IOException {
+        Path file = Files.createTempFile("parking_lot", ".events");
+        try {
+            ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+            ParkingEventStream stream = parkingLotMgr.enableEvents(1024);
+            ParkingEventFileSink sink = new ParkingEventFileSink(stream, file);
+            parkingLotMgr.createParkingLot(6);
+            parkingLotMgr.park("EUS687", "White");
+            parkingLotMgr.leave(1);
+            sink.close();
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertEquals(3, lines.size());
+            assertEquals("CREATED 6", lines.get(0).split(" ", 3)[2]);
+            assertEquals("PARKED 1 EUS687 White", lines.get(1).split(" ", 3)[2]);
+            assertEquals("LEFT 1 EUS687 White", lines.get(2).split(" ", 3)[2]);
+            assertEquals(3, stream.getPublished());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
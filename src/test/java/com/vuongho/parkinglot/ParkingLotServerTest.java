@@ -0,0 +1,104 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Unit test class for {@link ParkingLotServer}
+ */
+public class ParkingLotServerTest {
+    /**
+     * Reads one message, up to the empty line that ends it.
+     */
+    private static String readMessage(BufferedReader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while (!(line = in.readLine()).isEmpty()) {
+            sb.append(sb.length() == 0 ? "" : "\n").append(line);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void pipelinedCommandsTest() throws Exception {
+        try (ParkingLotServer server = new ParkingLotServer(new ConcurrentParkingLot(6), 0);
+                Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // all in one write, without waiting for the messages
+            out.write(("park EUS687 White\npark 510IBD White\nleave 1\nstatus\nleave x\n"
+                    + "create_parking_lot 3\nslot_number_for_id 510IBD\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("Allocated slot number: 1", readMessage(in));
+            assertEquals("Allocated slot number: 2", readMessage(in));
+            assertEquals("Slot number 1 is free", readMessage(in));
+            assertEquals("Slot No.\tID\t\tColor\n2\t\t510IBD\t\tWhite", readMessage(in));
+            assertEquals("Invalid command", readMessage(in));
+            assertEquals("Sorry, the parking lot is managed by the server", readMessage(in));
+            assertEquals("2", readMessage(in));
+        }
+    }
+
+    @Test
+    public void sharedLotTest() throws Exception {
+        int clients = 16;
+        int carsPerClient = 50;
+        ConcurrentParkingLot parkingLot = new ConcurrentParkingLot(clients * carsPerClient / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try (ParkingLotServer server = new ParkingLotServer(parkingLot, 0)) {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                results.add(executor.submit(() -> {
+                    List<String> messages = new ArrayList<>();
+                    try (Socket socket = new Socket("localhost", server.getPort())) {
+                        BufferedReader in = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        StringBuilder commands = new StringBuilder();
+                        for (int i = 0; i < carsPerClient; i++) {
+                            commands.append("park C").append(client).append('_').append(i).append(" White\n");
+                        }
+                        socket.getOutputStream().write(commands.toString().getBytes(StandardCharsets.UTF_8));
+                        for (int i = 0; i < carsPerClient; i++) {
+                            messages.add(readMessage(in));
+                        }
+                    }
+                    return messages;
+                }));
+            }
+            Set<String> slots = new HashSet<>();
+            int full = 0;
+            for (Future<List<String>> result : results) {
+                for (String message : result.get()) {
+                    if (message.equals("Sorry, parking lot is full")
+                            || message.equals("Sorry, parking slot is full")) {
+                        full++;
+                    } else {
+                        assertEquals(true, slots.add(message));
+                    }
+                }
+            }
+            assertEquals(parkingLot.getCapacity(), slots.size());
+            assertEquals(clients * carsPerClient - parkingLot.getCapacity(), full);
+            assertEquals(parkingLot.getCapacity(), parkingLot.getCurrentSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+/**
+ * Test class for the parking sessions recorded by a {@link SessionTracker}.
+ */
+public class SessionTrackerTest {
+    private static final long HOUR = SessionTracker.HOUR_MILLIS;
+    private static final long MINUTE = HOUR / 60;
+
+    /**
+     * A clock that only moves when told to.
+     */
+    private static final class ManualClock extends Clock {
+        long millis = 1000 * HOUR;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+
+    @Test
+    public void feeTest() {
+        FeeSchedule fees = FeeSchedule.perStartedHour(200, 1500);
+        assertEquals(200, fees.fee(0, 0));
+        assertEquals(200, fees.fee(0, HOUR));
+        assertEquals(400, fees.fee(0, HOUR + 1));
+        assertEquals(1500, fees.fee(0, 10 * HOUR));
+        assertEquals(1700, fees.fee(0, 25 * HOUR));
+    }
+
+    @Test
+    public void sessionsTest() {
+        ManualClock clock = new ManualClock();
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        assertEquals("Sessions are not enabled", parkingLotMgr.giveCommand("sessions"));
+        SessionTracker sessions = parkingLotMgr.enableSessions(clock, FeeSchedule.perStartedHour(200, 1500));
+        parkingLotMgr.createParkingLot(3);
+        parkingLotMgr.park("EUS687", "White");
+        clock.millis += 30 * MINUTE;
+        parkingLotMgr.park("510IBD", "White");
+        clock.millis += 90 * MINUTE;
+        parkingLotMgr.leave(1);
+        ParkingSession session = sessions.getLastSession();
+        assertEquals("EUS687", session.getCar().getLicensePlate());
+        assertEquals(0, session.getSlot());
+        assertEquals(2 * HOUR, session.getDwellMillis());
+        assertEquals(400, session.getFee());
+        clock.millis += 90 * MINUTE;
+        parkingLotMgr.leave(2);
+        assertEquals(3 * HOUR, sessions.getLastSession().getDwellMillis());
+
+        assertEquals(1000, sessions.getRevenue());
+        assertEquals(2, sessions.getDepartures());
+        assertEquals(2.5 * HOUR, sessions.getAverageDwellMillis(), 0);
+        // one car for 30 min, two for 90 min, one for 90 min, over 3.5 h
+        assertEquals(5.0 / 3.5, sessions.getAverageOccupancy(), 1e-9);
+        assertEquals("Revenue in the last 24 h: 10.00\nDepartures: 2, average stay 150.0 min\n"
+                + "Average occupancy: 1.43", parkingLotMgr.giveCommand("sessions"));
+    }
+
+    @Test
+    public void rollingWindowTest() {
+        ManualClock clock = new ManualClock();
+        ParkingLot parkingLot = new ParkingLot(2);
+        SessionTracker sessions = new SessionTracker(clock, FeeSchedule.perStartedHour(200, 1500));
+        parkingLot.trackSessions(sessions);
+        long start = clock.millis;
+        parkingLot.tryPark(new Car("RESIDENT", "Black"));
+        // a car an hour for two days, each staying 30 minutes
+        for (int hour = 0; hour < 48; hour++) {
+            clock.millis = start + hour * HOUR;
+            int slot = parkingLot.tryPark(new Car("CAR" + hour, "White"));
+            clock.millis += 30 * MINUTE;
+            parkingLot.tryLeave(slot);
+        }
+        // only the last 24 hourly buckets count, the newest one half over
+        assertEquals(24 * 200, sessions.getRevenue());
+        assertEquals(24, sessions.getDepartures());
+        assertEquals(30 * MINUTE, sessions.getAverageDwellMillis(), 0);
+        assertEquals((23.5 + 24 * 0.5) / 23.5, sessions.getAverageOccupancy(), 1e-9);
+        assertEquals(200, sessions.getRevenue(0));
+        assertEquals(200, sessions.getRevenue(23));
+
+        clock.millis += 12 * HOUR;
+        assertEquals(12 * 200, sessions.getRevenue());
+        assertEquals(200, sessions.getRevenue(12));
+        assertEquals(0, sessions.getRevenue(11));
+
+        clock.millis += 100 * HOUR;
+        assertEquals(0, sessions.getRevenue());
+        assertEquals(0, sessions.getDepartures());
+        assertEquals(1.0, sessions.getAverageOccupancy(), 1e-9);
+        assertEquals(1, parkingLot.getCurrentSize());
+    }
+
+    @Test
+    public void resizeTest() throws ParkingLotException {
+        ManualClock clock = new ManualClock();
+        ParkingLot parkingLot = new ParkingLot(1);
+        SessionTracker sessions = new SessionTracker(clock, FeeSchedule.perStartedHour(200, 1500));
+        parkingLot.tryPark(new Car("EUS687", "White"));
+        parkingLot.trackSessions(sessions);
+        parkingLot.resize(5000);
+        int[] slots = parkingLot.parkAll(java.util.Arrays.asList(new Car("510IBD", "White"), new Car("6TRJ24", "Red")));
+        clock.millis += 5 * HOUR;
+        parkingLot.leaveAll(new int[] {0, slots[1]});
+        assertEquals(2000, sessions.getRevenue());
+        assertEquals(5 * HOUR, sessions.getLastSession().getDwellMillis());
+        assertEquals(2, sessions.getDepartures());
+    }
+}
@@ -0,0 +1,190 @@
+package com.vuongho.parkinglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the slots held for pre-booked cars, and the
+ * {@link TimingWheel} that expires them.
+ */
+public class SlotHoldTest {
+    private static final long SECOND = 1000;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void holdTest() {
+        ParkingLot parkingLot = new ParkingLot(3);
+        ParkingEventStream events = new ParkingEventStream(16);
+        ParkingEventStream.Subscription subscription = events.subscribe();
+        parkingLot.publishEvents(events);
+        assertEquals(0, parkingLot.hold(new Car("EUS687", "White"), NOW + 60 * SECOND));
+        assertEquals(ParkingLot.ALREADY_PARKED, parkingLot.hold(new Car("EUS687", "White"), NOW));
+        assertTrue(parkingLot.isHeld(0));
+        assertEquals(0, parkingLot.getHeldSlot("EUS687"));
+        assertEquals(1, parkingLot.getHoldCount());
+        assertEquals(0, parkingLot.getCurrentSize());
+
+        assertEquals(1, parkingLot.tryPark(new Car("510IBD", "White")));
+        assertEquals(2, parkingLot.tryPark(new Car("6TRJ24", "Red")));
+        assertFalse(parkingLot.isFull());
+        assertEquals(ParkingLot.FULL, parkingLot.tryPark(new Car("IYTE32", "Blue")));
+        assertEquals(ParkingLot.FULL, parkingLot.hold(new Car("IYTE32", "Blue"), NOW));
+        assertEquals(ParkingLot.ALREADY_PARKED, parkingLot.hold(new Car("510IBD", "White"), NOW));
+
+        // the booked car arrives on time and takes its slot
+        assertEquals(0, parkingLot.expireHolds(NOW + 30 * SECOND));
+        assertEquals(0, parkingLot.tryPark(new Car("EUS687", "Black")));
+        assertFalse(parkingLot.isHeld(0));
+        assertEquals(-1, parkingLot.getHeldSlot("EUS687"));
+        assertEquals(0, parkingLot.getHoldCount());
+        assertTrue(parkingLot.isFull());
+        assertEquals(0, parkingLot.expireHolds(NOW + 120 * SECOND));
+        assertEquals("EUS687", parkingLot.getCar(0).getLicensePlate());
+        assertEquals(Arrays.asList(0), parkingLot.getSlotsNumberForCarsWithColor("Black"));
+        assertEquals(ParkingEvent.Type.PARKED, subscription.poll().getType());
+        assertEquals(ParkingEvent.Type.PARKED, subscription.poll().getType());
+        ParkingEvent arrival = subscription.poll();
+        assertEquals(0, arrival.getSlot());
+        assertEquals("EUS687", arrival.getCar().getLicensePlate());
+
+        assertEquals("EUS687", parkingLot.tryLeave(0).getLicensePlate());
+        assertEquals(0, parkingLot.tryPark(new Car("IYTE32", "Blue")));
+    }
+
+    @Test
+    public void expiryTest() throws ParkingLotException {
+        ParkingLot parkingLot = new ParkingLot(4);
+        assertEquals(0, parkingLot.expireHolds(NOW));
+        assertEquals(0, parkingLot.hold(new Car("KA01", "White"), NOW + 10 * SECOND));
+        assertEquals(1, parkingLot.hold(new Car("KA02", "White"), NOW + 20 * SECOND + 1));
+        assertEquals(2, parkingLot.hold(new Car("KA03", "White"), NOW + 3600 * SECOND));
+        assertTrue(parkingLot.cancelHold("KA03"));
+        assertFalse(parkingLot.cancelHold("KA03"));
+        assertEquals(2, parkingLot.hold(new Car("KA04", "White"), NOW + 3600 * SECOND));
+
+        assertEquals(0, parkingLot.expireHolds(NOW + 10 * SECOND - 1));
+        assertEquals(1, parkingLot.expireHolds(NOW + 10 * SECOND));
+        assertFalse(parkingLot.isHeld(0));
+        // a hold is never released early, and at most a tick late
+        assertEquals(0, parkingLot.expireHolds(NOW + 20 * SECOND + 1));
+        assertTrue(parkingLot.isHeld(1));
+        assertEquals(1, parkingLot.expireHolds(NOW + 21 * SECOND));
+        assertEquals(-1, parkingLot.getHeldSlot("KA02"));
+
+        // the car arrives after its hold expired, and parks like any other
+        assertEquals(0, parkingLot.tryPark(new Car("KA02", "White")));
+        try {
+            parkingLot.resize(2);
+            fail("Expected a ParkingLotException");
+        } catch (ParkingLotException e) {
+            assertEquals("Sorry, slot number 3 is held", e.getMessage());
+        }
+        parkingLot.resize(8);
+        assertTrue(parkingLot.isHeld(2));
+        assertEquals(1, parkingLot.expireHolds(NOW + 365 * 24 * 3600 * SECOND));
+        parkingLot.resize(1);
+        assertEquals(0, parkingLot.getHoldCount());
+    }
+
+    @Test
+    public void strategyTest() {
+        ParkingLot parkingLot = new ParkingLot(6);
+        parkingLot.setAllocationStrategy(AllocationStrategy.nearestTo(slot -> Math.abs(slot - 3)));
+        assertEquals(3, parkingLot.hold(new Car("KA01", "White"), NOW + SECOND));
+        assertEquals(2, parkingLot.tryPark(new Car("KA02", "White")));
+        assertEquals(4, parkingLot.hold(new Car("KA03", "White"), NOW + SECOND));
+        // attaching a strategy again sees the held slots as taken
+        parkingLot.setAllocationStrategy(AllocationStrategy.nearestTo(slot -> Math.abs(slot - 3)));
+        assertEquals(1, parkingLot.tryPark(new Car("KA04", "White")));
+        assertEquals(2, parkingLot.expireHolds(NOW + SECOND));
+        assertEquals(3, parkingLot.tryPark(new Car("KA01", "White")));
+        assertEquals(4, parkingLot.tryPark(new Car("KA03", "White")));
+
+        ParkingLot batch = new ParkingLot(3);
+        assertEquals(0, batch.hold(new Car("KA02", "White"), NOW + SECOND));
+        int[] slots = batch.parkAll(Arrays.asList(new Car("KA01", "White"), new Car("KA02", "Red"),
+                new Car("KA03", "White"), new Car("KA04", "White")));
+        assertEquals("[1, 0, 2, -1]", Arrays.toString(slots));
+        assertNull(batch.getCar(3));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void concurrentLotTest() {
+        new ConcurrentParkingLot(4).hold(new Car("KA01", "White"), NOW);
+    }
+
+    /**
+     * Checks random schedules, cancels and jumps of time, from a tick to
+     * years, against the deadlines kept in a map.
+     */
+    @Test
+    public void timingWheelModelTest() {
+        Random random = new Random(24);
+        int capacity = 200;
+        long tick = 1000;
+        for (int run = 0; run < 20; run++) {
+            TimingWheel wheel = new TimingWheel(capacity, tick);
+            Map<Integer, Long> expected = new HashMap<>();
+            long now = random.nextBoolean() ? 0 : NOW + random.nextInt(1000);
+            wheel.advance(now, slot -> fail("Nothing is scheduled"));
+            for (int step = 0; step < 2000; step++) {
+                int slot = random.nextInt(capacity);
+                switch (random.nextInt(4)) {
+                    case 0:
+                    case 1:
+                        long deadline = now + span(random);
+                        wheel.schedule(slot, deadline);
+                        // a deadline already passed expires on the next tick
+                        expected.put(slot, Math.max(deadline, (Math.floorDiv(now, tick) + 1) * tick));
+                        break;
+                    case 2:
+                        assertEquals(expected.remove(slot) != null, wheel.cancel(slot));
+                        break;
+                    default:
+                        now += Math.max(span(random), 0);
+                        long reached = Math.floorDiv(now, tick) * tick;
+                        List<Integer> due = new ArrayList<>();
+                        expected.forEach((s, d) -> {
+                            if (d <= reached) {
+                                due.add(s);
+                            }
+                        });
+                        List<Integer> expired = new ArrayList<>();
+                        wheel.advance(now, expired::add);
+                        due.sort(null);
+                        expired.sort(null);
+                        assertEquals(due, expired);
+                        due.forEach(expected::remove);
+                        break;
+                }
+                assertEquals(expected.size(), wheel.size());
+                assertEquals(expected.containsKey(slot), wheel.isScheduled(slot));
+            }
+        }
+    }
+
+    private static long span(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return random.nextInt(3000) - 1000;
+            case 1:
+                return random.nextInt(5_000_000);
+            case 2:
+                return (long) random.nextInt(1 << 30) * 1000;
+            default:
+                return random.nextInt(100_000);
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.vuongho.parkinglot;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -37,6 +43,23 @@ public class UnitTest {
         assertEquals("Allocated slot number: 6", parkingLotMgr.park("MNG728", "Black"));
     }
 
+    @Test
+    public void parkLowestEmptySlotTest() {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        parkingLotMgr.createParkingLot(5000);
+        for (int i = 1; i <= 5000; i++) {
+            parkingLotMgr.park("CAR" + i, "White");
+        }
+        assertEquals("Sorry, parking lot is full", parkingLotMgr.park("EUS687", "White"));
+        parkingLotMgr.leave(4097);
+        parkingLotMgr.leave(65);
+        parkingLotMgr.leave(4999);
+        assertEquals("Allocated slot number: 65", parkingLotMgr.park("EUS687", "White"));
+        assertEquals("Allocated slot number: 4097", parkingLotMgr.park("510IBD", "White"));
+        assertEquals("Allocated slot number: 4999", parkingLotMgr.park("6TRJ24", "Black"));
+        assertEquals("Sorry, parking lot is full", parkingLotMgr.park("EK3333", "Red"));
+    }
+
     @Test
     public void leaveTest() {
         ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
@@ -73,6 +96,55 @@ public class UnitTest {
         assertEquals(expected, parkingLotMgr.status(true));
     }
 
+    @Test
+    public void statusCacheTest() throws Exception {
+        ParkingLot[] parkingLots = {new ParkingLot(3000), new ConcurrentParkingLot(3000)};
+        Random random = new Random(11);
+        for (int i = 0; i < 20000; i++) {
+            int slot = random.nextInt(3000);
+            for (ParkingLot parkingLot : parkingLots) {
+                if (i % 3 == 0) {
+                    parkingLot.leave(slot);
+                } else if (!parkingLot.isFull()) {
+                    parkingLot.park("CAR" + i, i % 2 == 0 ? "White" : "Red");
+                }
+            }
+            if (i % 1000 != 0) {
+                continue;
+            }
+            for (ParkingLot parkingLot : parkingLots) {
+                for (boolean fullInfo : new boolean[] {false, true}) {
+                    String expected = renderStatus(parkingLot.getParkedCars(), fullInfo);
+                    assertEquals(expected, parkingLot.status(fullInfo));
+                    assertEquals(expected, parkingLot.status(fullInfo));
+                    StringBuilder streamed = new StringBuilder();
+                    parkingLot.status(fullInfo, streamed);
+                    assertEquals(expected, streamed.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders a status the way {@link ParkingLot#status(boolean)} always has.
+     */
+    private static String renderStatus(Car[] parkedCars, boolean fullInfo) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Slot No.\tID\t\tColor\n");
+        for (int slot = 0; slot < parkedCars.length; slot++) {
+            Car parkedCar = parkedCars[slot];
+            if (parkedCar == null) {
+                if (fullInfo) {
+                    sb.append(slot + 1).append("\t\t(empty)\n");
+                }
+            } else {
+                sb.append(slot + 1).append("\t\t").append(parkedCar.getLicensePlate()).append("\t\t")
+                        .append(parkedCar.getColor()).append("\n");
+            }
+        }
+        return sb.substring(0, sb.length() - 1);
+    }
+
     @Test
     public void idsForCarsWithColorTest() {
         ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
@@ -93,6 +165,58 @@ public class UnitTest {
         assertEquals("5", parkingLotMgr.slotsForCarsWithColor("Blue"));
     }
 
+    @Test
+    public void colorIndexTest() {
+        ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
+        parkingLotMgr.leave(4);
+        parkingLotMgr.leave(1);
+        assertEquals("None found", parkingLotMgr.slotsForCarsWithColor("Red"));
+        assertEquals("Allocated slot number: 1", parkingLotMgr.park("AU7367", "Red"));
+        assertEquals("Allocated slot number: 4", parkingLotMgr.park("999AAA", "White"));
+        assertEquals("1", parkingLotMgr.slotsForCarsWithColor("Red"));
+        assertEquals("2, 4", parkingLotMgr.slotsForCarsWithColor("White"));
+        assertEquals("510IBD, 999AAA", parkingLotMgr.idsForCarsWithColor("White"));
+    }
+
+    @Test
+    public void colorIndexModelTest() {
+        // a common color grows past the sorted array and shrinks back, and
+        // rare colors come and go
+        Random random = new Random(3);
+        ParkingLot parkingLot = new ParkingLot(4000);
+        Car[] model = new Car[4000];
+        for (int round = 0; round < 60000; round++) {
+            boolean filling = (round / 15000) % 2 == 0;
+            if (random.nextInt(32) < (filling ? 24 : 1)) {
+                String color = random.nextInt(8) == 0 ? "C" + random.nextInt(200) : "White";
+                Car car = new Car("P" + round, color);
+                int expected = Arrays.asList(model).indexOf(null);
+                if (expected != -1) {
+                    model[expected] = car;
+                }
+                assertEquals(expected == -1 ? ParkingLot.FULL : expected, parkingLot.tryPark(car));
+            } else {
+                int slot = random.nextInt(model.length);
+                parkingLot.tryLeave(slot);
+                model[slot] = null;
+            }
+            if (round % 2500 != 2499) {
+                continue;
+            }
+            List<Integer> whiteSlots = new ArrayList<>();
+            List<Integer> rareSlots = new ArrayList<>();
+            for (int slot = 0; slot < model.length; slot++) {
+                if (model[slot] != null && model[slot].getColor().equals("White")) {
+                    whiteSlots.add(slot);
+                } else if (model[slot] != null && model[slot].getColor().equals("C7")) {
+                    rareSlots.add(slot);
+                }
+            }
+            assertEquals(whiteSlots, parkingLot.getSlotsNumberForCarsWithColor("White"));
+            assertEquals(rareSlots, parkingLot.getSlotsNumberForCarsWithColor("C7"));
+        }
+    }
+
     @Test
     public void getSlotNumberForId() {
         ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
@@ -100,6 +224,432 @@ public class UnitTest {
         assertEquals("Not found", parkingLotMgr.slotForId("045BKR"));
     }
 
+    @Test
+    public void parkDuplicateIdTest() {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        parkingLotMgr.createParkingLot(6);
+        assertEquals("Allocated slot number: 1", parkingLotMgr.park("EUS687", "White"));
+        assertEquals("Car EUS687 is already parked", parkingLotMgr.park("EUS687", "Black"));
+        assertEquals("1", parkingLotMgr.slotForId("EUS687"));
+        parkingLotMgr.leave(1);
+        assertEquals("Not found", parkingLotMgr.slotForId("EUS687"));
+        assertEquals("Allocated slot number: 1", parkingLotMgr.park("EUS687", "Black"));
+        assertEquals("1", parkingLotMgr.slotForId("EUS687"));
+    }
+
+    @Test
+    public void giveCommandMatchesSplitTest() {
+        String[] commands = {
+            "create_parking_lot 3", "park EUS687 White", "park 510IBD White ", "park  6TRJ24 Black",
+            " park 6TRJ24 Black", "park 6TRJ24 Black", "", "status", "status  ", "leave +2", "leave 002",
+            "leave 2 3", "slot_number_for_id EUS687", "slot_number_for_id", "ids_for_cars_with_color White",
+            "slot_numbers_for_cars_with_color White", "parking EUS687 White", "leave -1", "leave 4",
+            "park_all A1 Red A2 Blue A3 Red A4 Red", "park_all A1", "park_all A5 Red A6", "leave_all 1 2 9 0",
+            "leave_all", "park_all A5  Red"
+        };
+        ParkingLotMgr tokenized = new ParkingLotMgr();
+        ParkingLotMgr split = new ParkingLotMgr();
+        for (String command : commands) {
+            assertEquals(command, split.processCommand(command.split(" ")), tokenized.giveCommand(command));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void giveCommandInvalidNumberTest() {
+        parkingLotMgrInit().giveCommand("leave 1x");
+    }
+
+    @Test
+    public void storageModesTest() {
+        ParkingLotMgr heap = new ParkingLotMgr();
+        ParkingLotMgr columnar = new ParkingLotMgr(capacity -> new ParkingLot(new ColumnarSlotStorage(capacity)));
+        ParkingLotMgr offHeap = new ParkingLotMgr(
+                capacity -> new ParkingLot(new ColumnarSlotStorage(capacity, 8, true)));
+        String[] colors = {"White", "Black", "Red", "Blue"};
+        Random random = new Random(7);
+        List<String> commands = new ArrayList<>();
+        commands.add("create_parking_lot 300");
+        for (int i = 0; i < 5000; i++) {
+            String plate = "P" + random.nextInt(400);
+            switch (random.nextInt(5)) {
+                case 0:
+                case 1:
+                    commands.add("park " + plate + " " + colors[random.nextInt(colors.length)]);
+                    break;
+                case 2:
+                    commands.add("leave " + (random.nextInt(300) + 1));
+                    break;
+                case 3:
+                    commands.add("slot_number_for_id " + plate);
+                    break;
+                default:
+                    commands.add("ids_for_cars_with_color " + colors[random.nextInt(colors.length)]);
+            }
+        }
+        commands.add("status");
+        commands.add("leave 1");
+        commands.add("park TOOLONGPLATE White");
+        for (String command : commands) {
+            String expected = heap.giveCommand(command);
+            assertEquals(command, expected, columnar.giveCommand(command));
+            if (command.startsWith("park TOOLONG")) {
+                assertEquals("License plate is longer than 8 bytes", offHeap.giveCommand(command));
+                continue;
+            }
+            assertEquals(command, expected, offHeap.giveCommand(command));
+        }
+    }
+
+    @Test
+    public void batchCommandsTest() {
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr();
+        parkingLotMgr.createParkingLot(4);
+        parkingLotMgr.park("EUS687", "White");
+        assertEquals("Allocated slot number: 2\nCar EUS687 is already parked\nCar KA01 is already parked\n"
+                + "Allocated slot number: 3\nAllocated slot number: 4\nSorry, parking lot is full",
+                parkingLotMgr.giveCommand("park_all KA01 Red EUS687 Red KA01 Blue KA02 Blue KA03 Red KA04 Red"));
+        assertEquals("2, 4", parkingLotMgr.slotsForCarsWithColor("Red"));
+        assertEquals("Slot number 2 is free\nInvalid slot number\nSlot number 2 is free\nSlot number 1 is free",
+                parkingLotMgr.giveCommand("leave_all 2 5 2 1"));
+        assertEquals("KA02", parkingLotMgr.idsForCarsWithColor("Blue"));
+        assertEquals("Allocated slot number: 1\nAllocated slot number: 2",
+                parkingLotMgr.giveCommand("park_all KA05 Red KA06 Red"));
+        assertEquals("Invalid command", parkingLotMgr.giveCommand("park_all KA07"));
+        assertEquals("Please create a parking lot first", new ParkingLotMgr().giveCommand("leave_all 1"));
+    }
+
+    @Test
+    public void batchMatchesSingleTest() throws ParkingLotException {
+        String[] colors = {"White", "Black", "Red", "Blue"};
+        Random random = new Random(11);
+        ParkingLot batched = new ParkingLot(new ColumnarSlotStorage(500, 8, false));
+        ParkingLot single = new ParkingLot(new ColumnarSlotStorage(500, 8, false));
+        for (int round = 0; round < 200; round++) {
+            List<Car> cars = new ArrayList<>();
+            for (int i = random.nextInt(20); i > 0; i--) {
+                String plate = random.nextInt(50) == 0 ? "TOOLONGPLATE" : "P" + random.nextInt(800);
+                cars.add(new Car(plate, colors[random.nextInt(colors.length)]));
+            }
+            int[] slots = batched.parkAll(cars);
+            for (int i = 0; i < cars.size(); i++) {
+                int expected;
+                try {
+                    expected = single.park(cars.get(i));
+                } catch (ParkingLotException e) {
+                    expected = e.getMessage().startsWith("Car") ? ParkingLot.ALREADY_PARKED
+                            : e.getMessage().startsWith("Sorry") ? ParkingLot.FULL : ParkingLot.UNSTORABLE;
+                }
+                assertEquals(expected, slots[i]);
+            }
+            int[] leaving = new int[random.nextInt(15)];
+            for (int i = 0; i < leaving.length; i++) {
+                leaving[i] = random.nextInt(510) - 5;
+            }
+            Car[] left = batched.leaveAll(leaving);
+            for (int i = 0; i < leaving.length; i++) {
+                Car expected = leaving[i] < 0 || leaving[i] >= 500 ? null : single.leave(leaving[i]);
+                assertEquals(expected == null ? null : expected.getLicensePlate(),
+                        left[i] == null ? null : left[i].getLicensePlate());
+            }
+            assertEquals(single.status(true), batched.status(true));
+            for (String color : colors) {
+                assertEquals(single.getSlotsNumberForCarsWithColor(color), batched.getSlotsNumberForCarsWithColor(color));
+            }
+        }
+    }
+
+    @Test
+    public void largeBatchMatchesSingleTest() throws ParkingLotException {
+        String[] colors = {"White", "Black", "Red"};
+        Random random = new Random(17);
+        ParkingLot batched = new ParkingLot(5000);
+        ParkingLot single = new ParkingLot(5000);
+        // the plate search indexes are kept up to date from now on
+        batched.getSlotsNumberForIdsMatching("P*");
+        batched.getSlotsNumberForIdsNear("P1", 1, PlateDistance.LEVENSHTEIN);
+        for (int round = 0; round < 20; round++) {
+            List<Car> cars = new ArrayList<>();
+            for (int i = random.nextInt(2000); i > 0; i--) {
+                // long runs of a color grow its set past the sorted array
+                String color = colors[random.nextInt(4) == 0 ? random.nextInt(colors.length) : round % colors.length];
+                cars.add(new Car("P" + random.nextInt(8000), color));
+            }
+            int[] slots = batched.parkAll(cars);
+            for (int i = 0; i < cars.size(); i++) {
+                assertEquals(single.tryPark(cars.get(i)), slots[i]);
+            }
+            for (int i = random.nextInt(2500); i > 0; i--) {
+                int slot = random.nextInt(5000);
+                assertEquals(single.tryLeave(slot), batched.tryLeave(slot));
+            }
+            assertEquals(single.getCurrentSize(), batched.getCurrentSize());
+            assertEquals(single.status(true), batched.status(true));
+            for (String color : colors) {
+                assertEquals(single.getSlotsNumberForCarsWithColor(color), batched.getSlotsNumberForCarsWithColor(color));
+            }
+            assertEquals(single.getSlotsNumberForIdsMatching("P1*"), batched.getSlotsNumberForIdsMatching("P1*"));
+            assertEquals(single.getSlotsNumberForIdsNear("P1234", 1, PlateDistance.LEVENSHTEIN),
+                    batched.getSlotsNumberForIdsNear("P1234", 1, PlateDistance.LEVENSHTEIN));
+        }
+    }
+
+    @Test
+    public void resultCodesTest() throws ParkingLotException {
+        for (ParkingLot parkingLot : new ParkingLot[] {
+                new ParkingLot(new ColumnarSlotStorage(2, 8, false)), new ConcurrentParkingLot(2)}) {
+            assertEquals(0, parkingLot.tryPark(new Car("EUS687", "White")));
+            assertEquals(ParkingLot.ALREADY_PARKED, parkingLot.tryPark(new Car("EUS687", "Black")));
+            assertEquals(1, parkingLot.tryPark(new Car("510IBD", "White")));
+            assertEquals(ParkingLot.FULL, parkingLot.tryPark(new Car("6TRJ24", "Black")));
+            assertEquals(false, parkingLot.isValidSlot(2));
+            assertEquals(null, parkingLot.tryLeave(2));
+            assertEquals(null, parkingLot.tryLeave(-1));
+            assertEquals("EUS687", parkingLot.tryLeave(0).getLicensePlate());
+            assertEquals(null, parkingLot.tryLeave(0));
+            assertEquals(1, parkingLot.getCurrentSize());
+        }
+        ParkingLot parkingLot = new ParkingLot(new ColumnarSlotStorage(2, 8, false));
+        assertEquals(ParkingLot.UNSTORABLE, parkingLot.tryPark(new Car("TOOLONGPLATE", "White")));
+        assertEquals(0, parkingLot.tryPark(new Car("EUS687", "White")));
+        ParkingLotMgr parkingLotMgr = new ParkingLotMgr(parkingLot);
+        assertEquals("License plate is longer than 8 bytes", parkingLotMgr.park("TOOLONGPLATE", "White"));
+        try {
+            parkingLot.park(new Car("TOOLONGPLATE", "White"));
+            fail("Expected a ParkingLotException");
+        } catch (ParkingLotException e) {
+            assertEquals("License plate is longer than 8 bytes", e.getMessage());
+        }
+        // finding the reason stores nothing
+        assertEquals(1, parkingLot.getCurrentSize());
+        assertEquals(null, parkingLot.getCar(1));
+        assertEquals(1, parkingLot.tryPark(new Car("510IBD", "White")));
+        assertEquals("Invalid slot number", parkingLotMgr.leave(3));
+        assertEquals("Invalid slot number", parkingLotMgr.leave(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void colorIdReuseTest() throws ParkingLotException {
+        ColumnarSlotStorage storage = new ColumnarSlotStorage(2, 8, false);
+        ParkingLot parkingLot = new ParkingLot(storage);
+        assertEquals(0, parkingLot.tryPark(new Car("EUS687", "White")));
+        // far more colors over time than the dictionary holds at once
+        for (int i = 0; i < ColumnarSlotStorage.MAX_COLORS + 10; i++) {
+            assertEquals(1, parkingLot.tryPark(new Car("CAR" + i, "Color" + i)));
+            assertEquals(2, storage.getColorCount());
+            assertEquals("Color" + i, parkingLot.tryLeave(1).getColor());
+        }
+        assertEquals(1, storage.getColorCount());
+        assertEquals(1, parkingLot.tryPark(new Car("510IBD", "Red")));
+        assertEquals("White", parkingLot.getCar(0).getColor());
+        assertEquals("Red", parkingLot.getCar(1).getColor());
+    }
+
+    @Test
+    public void resizeMatchesModelTest() throws ParkingLotException {
+        String[] colors = {"White", "Black", "Red", "Blue"};
+        Random random = new Random(13);
+        ParkingLot[] parkingLots = {
+            new ParkingLot(3000), new ParkingLot(new ColumnarSlotStorage(3000, 8, true))
+        };
+        for (ParkingLot parkingLot : parkingLots) {
+            List<Car> model = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                model.add(null);
+            }
+            for (int round = 0; round < 3000; round++) {
+                int op = random.nextInt(10);
+                if (op == 0) {
+                    // trim the empty tail, or grow by up to two chunks
+                    int capacity = model.size();
+                    if (random.nextBoolean()) {
+                        while (capacity > 0 && model.get(capacity - 1) == null) {
+                            capacity--;
+                        }
+                        capacity += random.nextInt(model.size() - capacity + 1);
+                    } else {
+                        capacity += random.nextInt(8200);
+                    }
+                    parkingLot.resize(capacity);
+                    while (model.size() > capacity) {
+                        model.remove(model.size() - 1);
+                    }
+                    while (model.size() < capacity) {
+                        model.add(null);
+                    }
+                } else if (op < 6) {
+                    Car car = new Car("P" + round, colors[random.nextInt(colors.length)]);
+                    int expected = model.indexOf(null);
+                    if (expected != -1) {
+                        model.set(expected, car);
+                    }
+                    assertEquals(expected == -1 ? ParkingLot.FULL : expected, parkingLot.tryPark(car));
+                } else if (!model.isEmpty()) {
+                    int slot = random.nextInt(model.size());
+                    Car expected = model.set(slot, null);
+                    Car left = parkingLot.tryLeave(slot);
+                    assertEquals(expected == null ? null : expected.getLicensePlate(),
+                            left == null ? null : left.getLicensePlate());
+                }
+                assertEquals(model.size(), parkingLot.getCapacity());
+            }
+            List<Integer> whiteSlots = new ArrayList<>();
+            for (int slot = 0; slot < model.size(); slot++) {
+                Car car = model.get(slot);
+                if (car != null) {
+                    assertEquals(slot, parkingLot.getSlotNumberForId(car.getLicensePlate()));
+                    if (car.getColor().equals("White")) {
+                        whiteSlots.add(slot);
+                    }
+                }
+            }
+            assertEquals(whiteSlots, parkingLot.getSlotsNumberForCarsWithColor("White"));
+            assertEquals(model.size(), parkingLot.getParkedCars().length);
+            assertEquals(new ParkingLotMgr(parkingLot).status(true).split("\n").length, model.size() + 1);
+        }
+    }
+
+    @Test
+    public void resizeCommandTest() {
+        ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
+        assertEquals("Sorry, parking lot is full", parkingLotMgr.park("KA01", "Red"));
+        assertEquals("Resized the parking lot to 8 slots", parkingLotMgr.giveCommand("resize_parking_lot 8"));
+        assertEquals("Allocated slot number: 7", parkingLotMgr.park("KA01", "Red"));
+        assertEquals("Sorry, slot number 7 is still occupied", parkingLotMgr.giveCommand("resize_parking_lot 6"));
+        assertEquals("Resized the parking lot to 7 slots", parkingLotMgr.giveCommand("resize_parking_lot 7"));
+        assertEquals("Invalid capacity", parkingLotMgr.giveCommand("resize_parking_lot -1"));
+        assertEquals("Resized the parking lot to 3 slots",
+                new ParkingLotMgr(new ConcurrentParkingLot(2)).resizeParkingLot(3));
+        assertEquals("Please create a parking lot first", new ParkingLotMgr().resizeParkingLot(3));
+    }
+
+    @Test
+    public void slotsForIdsMatchingTest() {
+        ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
+        assertEquals("1:EUS687", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching EUS6*"));
+        assertEquals("3:6TRJ24", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching *24"));
+        assertEquals("1:EUS687, 6:MNG728", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching *?8*"));
+        assertEquals("4:EK3333", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching E?3*3"));
+        assertEquals("2:510IBD", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching 510IBD"));
+        parkingLotMgr.leave(1);
+        parkingLotMgr.park("EUS600", "Red");
+        assertEquals("1:EUS600", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching EUS6*"));
+        assertEquals("None found", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching EUS687"));
+        assertEquals("Invalid command", parkingLotMgr.giveCommand("slot_numbers_for_ids_matching"));
+        assertEquals("Please create a parking lot first",
+                new ParkingLotMgr().slotsForIdsMatching("*"));
+    }
+
+    /**
+     * Parks and unparks random short plates, and checks every search against
+     * a scan of the parked plates with the equivalent regular expression.
+     */
+    @Test
+    public void slotsForIdsMatchingModelTest() {
+        Random random = new Random(21);
+        String alphabet = "AB12*?";
+        for (ParkingLot parkingLot : new ParkingLot[] {new ParkingLot(200), new ConcurrentParkingLot(200)}) {
+            for (int round = 0; round < 4000; round++) {
+                if (random.nextInt(3) > 0) {
+                    parkingLot.tryPark(new Car(randomString(random, alphabet.substring(0, 4)), "White"));
+                } else {
+                    parkingLot.tryLeave(random.nextInt(200));
+                }
+                String pattern = randomString(random, alphabet);
+                String regex = pattern.replace("?", ".").replace("*", ".*");
+                List<Integer> expected = new ArrayList<>();
+                for (int slot = 0; slot < 200; slot++) {
+                    Car car = parkingLot.getCar(slot);
+                    if (car != null && car.getLicensePlate().matches(regex)) {
+                        expected.add(slot);
+                    }
+                }
+                assertEquals(pattern, expected, parkingLot.getSlotsNumberForIdsMatching(pattern));
+            }
+        }
+    }
+
+    @Test
+    public void slotsForIdsNearTest() {
+        ParkingLotMgr parkingLotMgr = parkingLotMgrInit();
+        parkingLotMgr.leave(5);
+        parkingLotMgr.park("EUS6B7", "Grey");
+        // the plate itself, then a B read for an 8, which is half an edit
+        assertEquals("5:EUS6B7, 1:EUS687", parkingLotMgr.giveCommand("slot_numbers_for_ids_near EUS6B7 1"));
+        assertEquals("1:EUS687, 5:EUS6B7", parkingLotMgr.giveCommand("slot_numbers_for_ids_near EUS687 1"));
+        assertEquals("5:EUS6B7, 1:EUS687", parkingLotMgr.giveCommand("slot_numbers_for_ids_near EUSGB7 2"));
+        assertEquals("2:510IBD", parkingLotMgr.giveCommand("slot_numbers_for_ids_near 51OIB0 2"));
+        assertEquals("None found", parkingLotMgr.giveCommand("slot_numbers_for_ids_near 51OIB0 1"));
+        assertEquals("6:MNG728", parkingLotMgr.giveCommand("slot_numbers_for_ids_near MNG728 0"));
+        assertEquals("Invalid number of edits", parkingLotMgr.giveCommand("slot_numbers_for_ids_near MNG728 -1"));
+        assertEquals("Invalid command", parkingLotMgr.giveCommand("slot_numbers_for_ids_near MNG728"));
+        assertEquals(0.5, PlateDistance.ANPR.distance("EUS687", "EUS6B7"), 0);
+        assertEquals(1, PlateDistance.LEVENSHTEIN.distance("EUS687", "EUS6B7"), 0);
+        assertEquals(2, PlateDistance.ANPR.distance("EUS687", "US6877"), 0);
+    }
+
+    /**
+     * Parks and unparks random short plates, and checks every search by
+     * edit distance against a scan of the parked plates.
+     */
+    @Test
+    public void slotsForIdsNearModelTest() {
+        Random random = new Random(34);
+        String alphabet = "AB08";
+        ParkingLot[] parkingLots = {
+            new ParkingLot(200), new ParkingLot(new ColumnarSlotStorage(200)), new ConcurrentParkingLot(200)
+        };
+        for (ParkingLot parkingLot : parkingLots) {
+            for (int round = 0; round < 3000; round++) {
+                if (random.nextInt(3) > 0) {
+                    parkingLot.tryPark(new Car(randomString(random, alphabet), "White"));
+                } else {
+                    parkingLot.tryLeave(random.nextInt(200));
+                }
+                String id = randomString(random, alphabet);
+                int maxEdits = random.nextInt(5);
+                List<Integer> expected = new ArrayList<>();
+                for (int slot = 0; slot < 200; slot++) {
+                    Car car = parkingLot.getCar(slot);
+                    if (car != null && levenshtein(id, car.getLicensePlate()) <= maxEdits) {
+                        expected.add(slot);
+                    }
+                }
+                List<Integer> found = parkingLot.getSlotsNumberForIdsNear(id, maxEdits, PlateDistance.ANPR);
+                double previous = 0;
+                for (int slot : found) {
+                    double distance = PlateDistance.ANPR.distance(id, parkingLot.getCar(slot).getLicensePlate());
+                    assertEquals(true, distance >= previous);
+                    previous = distance;
+                }
+                found.sort(null);
+                assertEquals(id + " " + maxEdits, expected, found);
+            }
+        }
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    d[i][j] = Math.min(d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                            Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String randomString(Random random, String alphabet) {
+        char[] chars = new char[1 + random.nextInt(5)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
     @Test
     public void invalidCommandTest() {
         ParkingLotMgr parkingLotMgr = parkingLotMgrInit();